@@ -247,11 +247,21 @@ public class IdentityConstraint {
 
     public class SelectorState extends ConstraintState {
         SchemaIdentityConstraint _constraint;
-        Set _values = new LinkedHashSet();
+        Set _values;
         XPath.ExecutionContext _context;
 
+        // The contexts of the fields of the selected elements which have
+        // ended, to be used again for the next ones
+        List _spareFieldContexts = new ArrayList();
+
         SelectorState(SchemaIdentityConstraint constraint, Event e, SchemaType st) {
             _constraint = constraint;
+
+            // The values of a keyref are checked in document order, those
+            // of a key or unique only looked up
+            _values = constraint.getConstraintCategory() == SchemaIdentityConstraint.CC_KEYREF
+                ? (Set) new LinkedHashSet() : new HashSet();
+
             _context = new XPath.ExecutionContext();
             _context.init((XPath)_constraint.getSelectorPath());
 
@@ -291,6 +301,27 @@ public class IdentityConstraint {
             new FieldState(this, e, st);
         }
 
+        XPath.ExecutionContext[] takeFieldContexts()
+        {
+            int n = _spareFieldContexts.size();
+
+            if (n > 0)
+                return (XPath.ExecutionContext[]) _spareFieldContexts.remove(n - 1);
+
+            XPath.ExecutionContext[] contexts =
+                new XPath.ExecutionContext[_constraint.getFields().length];
+
+            for (int i = 0 ; i < contexts.length ; i++)
+                contexts[i] = new XPath.ExecutionContext();
+
+            return contexts;
+        }
+
+        void giveFieldContexts(XPath.ExecutionContext[] contexts)
+        {
+            _spareFieldContexts.add(contexts);
+        }
+
         void remove(Event e) {
             // Bubble up key, unique values to keyrefs
             for (ConstraintState cs = _next ; cs != null ; cs = cs._next )
@@ -345,22 +376,33 @@ public class IdentityConstraint {
             }
         }
 
-        private boolean hasKeyValue(Object key)
+        private boolean hasKeyValue(Object key, List selfValues)
         {
+            // The values of the keys at the same level as this one are
+            // there, whatever the children added
+            for (int i = 0 ; i < selfValues.size() ; i++)
+            {
+                if (((Set) selfValues.get(i)).contains(key))
+                    return true;
+            }
+
             Object value = _keyValues.get(key);
             return value != null && value != CHILD_REMOVED;
         }
 
         void remove(Event e) {
             // First check if there are any keys at the same stack level as this
-            // that may contribute key values to me
+            // that may contribute key values to me; they are looked up in
+            // place rather than added to the values of the children
+            List selfValues = new ArrayList(1);
+
             for (ConstraintState cs = _next ; cs != null && cs != _elementStack._savePoint ; cs = cs._next)
             {
                 if (cs instanceof SelectorState)
                 {
                     SelectorState sel = (SelectorState)cs;
                     if (sel._constraint == _constraint.getReferencedKey())
-                        addKeyValues(sel._values, false);
+                        selfValues.add(sel._values);
                 }
             }
 
@@ -370,7 +412,7 @@ public class IdentityConstraint {
             {
 
                 XmlObjectList fields = (XmlObjectList)it.next();
-                if (fields.unfilled() < 0 && ! hasKeyValue(fields))
+                if (fields.unfilled() < 0 && ! hasKeyValue(fields, selfValues))
                 {
                     // KHK: cvc-identity-constraint.4.3 ?
                 	emitError(e, XmlErrorCodes.IDENTITY_CONSTRAINT_VALID$KEYREF_KEY_NOT_FOUND,
@@ -395,13 +437,12 @@ public class IdentityConstraint {
             SchemaIdentityConstraint ic = selector._constraint;
 
             int fieldCount = ic.getFields().length;
-            _contexts = new XPath.ExecutionContext[fieldCount];
+            _contexts = selector.takeFieldContexts();
             _needsValue = new boolean[fieldCount];
             _value = new XmlObjectList(fieldCount);
 
             for (int i = 0 ; i < fieldCount ; i++)
             {
-                _contexts[i] = new XPath.ExecutionContext();
                 _contexts[i].init((XPath)ic.getFieldPath(i));
                 if ( ( _contexts[i].start() & XPath.ExecutionContext.HIT ) != 0 )
                 {
@@ -509,6 +550,7 @@ public class IdentityConstraint {
 
         void remove(Event e) 
         {
+            _selector.giveFieldContexts(_contexts);
 
             if (_selector._constraint.getConstraintCategory() == SchemaIdentityConstraint.CC_KEY &&
                 _value.unfilled() >= 0 )
@@ -528,7 +570,12 @@ public class IdentityConstraint {
 
     public class IdState extends ConstraintState
     {
-        Set _values = new LinkedHashSet();
+        Set _values = new HashSet();
+
+        // Whether the last type seen is an ID; most values in a row are
+        // of the same type
+        SchemaType _lastType;
+        boolean _lastIsId;
 
         IdState() { }
 
@@ -557,7 +604,13 @@ public class IdentityConstraint {
                 return;
             }
 
-            if (XmlID.type.isAssignableFrom(st))
+            if (st != _lastType)
+            {
+                _lastType = st;
+                _lastIsId = XmlID.type.isAssignableFrom(st);
+            }
+
+            if (_lastIsId)
             {
                 XmlObjectList xmlValue = new XmlObjectList(1);
                 XmlObject o = newValue(XmlID.type, value);
@@ -585,6 +638,14 @@ public class IdentityConstraint {
         IdState _ids;
         List _values;
 
+        // The kind of the last type seen: IDREFS, IDREF or neither
+        SchemaType _lastType;
+        int _lastKind;
+
+        private static final int NOT_IDREF = 0;
+        private static final int IDREFS = 1;
+        private static final int IDREF = 2;
+
         IdRefState(IdState ids)
         {
             _ids = ids;
@@ -601,7 +662,15 @@ public class IdentityConstraint {
                 // ignore invalid values. Assume that validation catches these
                 return;
             }
-            if (XmlIDREFS.type.isAssignableFrom(st))
+            if (st != _lastType)
+            {
+                _lastType = st;
+                _lastKind =
+                    XmlIDREFS.type.isAssignableFrom(st) ? IDREFS :
+                    XmlIDREF.type.isAssignableFrom(st) ? IDREF : NOT_IDREF;
+            }
+
+            if (_lastKind == IDREFS)
             {
                 XmlIDREFS lv = (XmlIDREFS)newValue(XmlIDREFS.type, value);
 
@@ -619,7 +688,7 @@ public class IdentityConstraint {
                     _values.add(xmlValue);
                 }
             }
-            else if (XmlIDREF.type.isAssignableFrom(st))
+            else if (_lastKind == IDREF)
             {
                 XmlObjectList xmlValue = new XmlObjectList(1);
                 XmlIDREF idref = (XmlIDREF)st.newValue(value);
@@ -88,9 +88,13 @@ public class SystemCache
         return null;
     }
 
-    public void addToTypeLoaderCache(SchemaTypeLoader stl, ClassLoader cl)
+    /**
+     * Adds a type loader for the given class loader, and returns the one
+     * cached for it: the given one, or the one another thread has added.
+     */
+    public SchemaTypeLoader addToTypeLoaderCache(SchemaTypeLoader stl, ClassLoader cl)
     {
-        return;
+        return stl;
     }
 
     private ThreadLocal tl_saxLoaders = new ThreadLocal();
@@ -18,6 +18,7 @@ package org.apache.xmlbeans.impl.common;
 import javax.xml.namespace.QName;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -36,6 +37,20 @@ public class XPath
         }
     }
 
+    /**
+     * Thrown by select when a predicate meets a value which XPath 2.0
+     * engines treat differently from it, such as text which is not a
+     * number compared with a number.  The path must then be run by the
+     * engine which ran it before predicates were supported here.
+     */
+    public static class XPathUnsupportedValueException extends RuntimeException
+    {
+        XPathUnsupportedValueException ( String message )
+        {
+            super( message );
+        }
+    }
+
     //
     //
     //
@@ -53,6 +68,8 @@ public class XPath
         
         public final void init ( XPath xpath )
         {
+            assert !xpath._hasPredicates;
+
             if (_xpath != xpath)
             {
                 _xpath = xpath;
@@ -262,15 +279,28 @@ public class XPath
     public static XPath compileXPath (
         String xpath, String currentNodeVar, Map namespaces )
             throws XPathCompileException
+    {
+        return compileXPath( xpath, currentNodeVar, namespaces, false );
+    }
+
+    /**
+     * Compiles a path whose steps may have predicates, if predicates is
+     * true.  A path with predicates can not be run by an ExecutionContext,
+     * which sees the document as it streams by, and is run by select
+     * instead.
+     */
+    public static XPath compileXPath (
+        String xpath, String currentNodeVar, Map namespaces, boolean predicates )
+            throws XPathCompileException
     {
         return
-            new CompilationContext( namespaces, currentNodeVar ).
+            new CompilationContext( namespaces, currentNodeVar, predicates ).
                 compile( xpath );
     }
 
     private static class CompilationContext
     {
-        CompilationContext ( Map namespaces, String currentNodeVar )
+        CompilationContext ( Map namespaces, String currentNodeVar, boolean predicates )
         {
             assert
                 _currentNodeVar == null ||
@@ -285,6 +315,8 @@ public class XPath
             
             _externalNamespaces =
                 namespaces == null ? new HashMap() : namespaces;
+
+            _predicates = predicates;
         }
 
         XPath compile ( String expr ) throws XPathCompileException
@@ -647,7 +679,13 @@ public class XPath
 
         private Step addStep ( boolean deep, boolean attr, QName name, Step steps )
         {
-            Step step = new Step( deep, attr, name );
+            return addStep( deep, attr, name, null, steps );
+        }
+
+        private Step addStep (
+            boolean deep, boolean attr, QName name, Expr[] predicates, Step steps )
+        {
+            Step step = new Step( deep, attr, name, predicates );
 
             if (steps == null)
                 return step;
@@ -689,7 +727,8 @@ public class XPath
             {
                 if (tokenize( "attribute", "::" ) || tokenize( "@" ))
                 {
-                    steps = addStep( deep, true, tokenizeQName(), steps );
+                    QName name = tokenizeQName();
+                    steps = addStep( deep, true, name, tokenizePredicates(), steps );
                     break;
                 }
 
@@ -702,7 +741,7 @@ public class XPath
                     tokenize( "child", "::" );
                     if ((name = tokenizeQName()) != null)
                     {
-                        steps = addStep( deep, false, name, steps );
+                        steps = addStep( deep, false, name, tokenizePredicates(), steps );
                         deep = false; // only this step needs to be deep
                         // other folowing steps will be deep only if they are preceded by // wildcard
                     }
@@ -877,9 +916,9 @@ public class XPath
                 for ( Step t = steps ; t != null ; t = t._next )
                 {
                     if (t._next != null && t._next._next == null)
-                        s = addStep( t._deep, true, t._name, s );
+                        s = addStep( t._deep, true, t._name, t._predicates, s );
                     else
-                        s = addStep( t._deep, t._attr, t._name, s );
+                        s = addStep( t._deep, t._attr, t._name, t._predicates, s );
                 }
 
                 computeBacktrack( s );
@@ -990,130 +1029,1218 @@ public class XPath
                     "Unexpected char '" + (char) currChar() + "'" );
             }
 
-            return new XPath( selector, _sawDeepDot );
+            return new XPath( selector, _sawDeepDot, _sawPredicate );
         }
 
-        //split of prolog decls that are not standard XPath syntax
-        //but work in v1
-        private void processNonXpathDecls(){
+        //
+        // Predicates, in the subset of XPath 1.0 which select handles:
+        //
+        //   Expr        ::= AndExpr ( 'or' AndExpr )*
+        //   AndExpr     ::= CompareExpr ( 'and' CompareExpr )*
+        //   CompareExpr ::= AddExpr ( ( '=' | '!=' | '<' | '<=' | '>' | '>=' ) AddExpr )?
+        //   AddExpr     ::= Primary ( ( '+' | '-' ) Primary )*
+        //   Primary     ::= Literal | Number | '(' Expr ')' | FunctionCall | RelativePath
+        //   RelativePath::= '.' | ( Name ( '/' Name )* ( '/' '@' Name )? ) | '@' Name
+        //
+        // Anything else is an error, so that the path goes to another engine.
+        //
+
+        private Expr[] tokenizePredicates ( ) throws XPathCompileException
+        {
+            if (!_predicates || !tokenize( "[" ))
+                return null;
 
+            ArrayList predicates = new ArrayList();
+
+            do
+            {
+                predicates.add( tokenizeExpr() );
+
+                if (!tokenize( "]" ))
+                    throw newError( "Expected ']'" );
+            }
+            while ( tokenize( "[" ) );
+
+            _sawPredicate = true;
+
+            return (Expr[]) predicates.toArray( new Expr [ predicates.size() ] );
         }
 
-        private String _expr;
+        // Tokenizes a keyword which is not the start of a longer name
 
-        private boolean _sawDeepDot;  // Saw one overall
-        private boolean _lastDeepDot;
+        private boolean tokenizeKeyword ( String s )
+        {
+            int offset = 0;
 
-        private String _currentNodeVar;
-        
-       // private Map _namespaces;
-        protected Map _namespaces;
-        private Map _externalNamespaces;
-        
-        private int _offset;
-        private int _line;
-        private int _column;
-    }
+            while ( isWhitespace( offset ) )
+                offset++;
 
-    private static final class Step
-    {
-        Step ( boolean deep, boolean attr, QName name )
+            if (!startsWith( s, offset ))
+                return false;
+
+            int ch = currChar( offset + s.length() );
+
+            if (ch != -1 && XMLChar.isNCName( ch ))
+                return false;
+
+            advance( offset + s.length() );
+
+            return true;
+        }
+
+        private Expr tokenizeExpr ( ) throws XPathCompileException
         {
-            _name = name;
+            Expr expr = tokenizeAndExpr();
 
-            _deep = deep;
-            _attr = attr;
+            while ( tokenizeKeyword( "or" ) )
+                expr = new Logical( false, expr, tokenizeAndExpr() );
 
-            int flags = 0;
+            return expr;
+        }
 
-            if (_deep || !_attr)
-                flags |= ExecutionContext.DESCEND;
+        private Expr tokenizeAndExpr ( ) throws XPathCompileException
+        {
+            Expr expr = tokenizeCompareExpr();
 
-            if (_attr)
-                flags |= ExecutionContext.ATTRS;
+            while ( tokenizeKeyword( "and" ) )
+                expr = new Logical( true, expr, tokenizeCompareExpr() );
 
-            _flags = flags;
+            return expr;
         }
 
-        boolean isWild ( )
+        private Expr tokenizeCompareExpr ( ) throws XPathCompileException
         {
-            return _name.getLocalPart().length() == 0;
+            Expr expr = tokenizeAddExpr();
+
+            int op =
+                tokenize( "!=" ) ? Compare.NE :
+                tokenize( "<=" ) ? Compare.LE :
+                tokenize( ">=" ) ? Compare.GE :
+                tokenize( "=" )  ? Compare.EQ :
+                tokenize( "<" )  ? Compare.LT :
+                tokenize( ">" )  ? Compare.GT : -1;
+
+            if (op < 0)
+                return expr;
+
+            Expr right = tokenizeAddExpr();
+
+            // The paths with predicates used to be run by XPath 2.0
+            // engines, so only the comparisons which mean the same in XPath
+            // 1.0 and 2.0 are supported.  XPath 2.0 orders nodes as strings
+            // where XPath 1.0 orders them as numbers, so ordering needs a
+            // number literal.  It compares a boolean with the value of a
+            // node, and not with whether there is a node, and does not
+            // compare strings and numbers at all.
+
+            int left = expr.type();
+            int other = right.type();
+
+            if (op != Compare.EQ && op != Compare.NE)
+            {
+                if (!(Literal.isNumber( expr ) && other != Expr.STRING && other != Expr.BOOLEAN) &&
+                        !(Literal.isNumber( right ) && left != Expr.STRING && left != Expr.BOOLEAN))
+                    throw newError( "Ordering without a number literal is not supported" );
+            }
+            else if (left == Expr.BOOLEAN || other == Expr.BOOLEAN)
+            {
+                if (left != other)
+                    throw newError( "Comparing a boolean with a non boolean is not supported" );
+            }
+            else if (left == Expr.STRING && other == Expr.NUMBER ||
+                        left == Expr.NUMBER && other == Expr.STRING)
+                throw newError( "Comparing a string with a number is not supported" );
+
+            return new Compare( op, expr, right );
         }
 
-        boolean match ( QName name )
+        private Expr tokenizeAddExpr ( ) throws XPathCompileException
         {
-            String local = _name.getLocalPart();
-            String nameLocal = name.getLocalPart();
-            String uri;
-            String nameUri;
+            Expr expr = tokenizePrimary();
 
-            int localLength = local.length();
-            int uriLength;
+            for ( ; ; )
+            {
+                boolean subtract;
 
-            // match any name to _name when _name is empty ""@""
-            if (localLength==0)
+                if (tokenize( "+" ))
+                    subtract = false;
+                else if (tokenize( "-" ))
+                    subtract = true;
+                else
+                    return expr;
+
+                Expr right = tokenizePrimary();
+
+                // XPath 2.0 does no arithmetic on strings and booleans
+
+                if (!Add.isOperand( expr ) || !Add.isOperand( right ))
+                    throw newError( "Arithmetic on strings or booleans is not supported" );
+
+                expr = new Add( subtract, expr, right );
+            }
+        }
+
+        private Expr tokenizePrimary ( ) throws XPathCompileException
+        {
+            parseWhitespace();
+
+            int ch = currChar();
+
+            if (ch == '"' || ch == '\'')
+                return new Literal( tokenizeLiteral() );
+
+            if ((ch >= '0' && ch <= '9') || ch == '-' ||
+                    (ch == '.' && currChar( 1 ) >= '0' && currChar( 1 ) <= '9'))
+                return new Literal( new Double( tokenizeNumber() ) );
+
+            if (tokenize( "(" ))
             {
-                uri = _name.getNamespaceURI();
-                uriLength = uri.length();
+                Expr expr = tokenizeExpr();
 
-                if (uriLength==0)
-                    return true;
+                if (!tokenize( ")" ))
+                    throw newError( "Expected ')'" );
 
-                return uri.equals(name.getNamespaceURI());
+                return expr;
             }
 
-            if (localLength!=nameLocal.length())
-                return false;
+            // A name followed by '(' is a function call, and anything else
+            // a path
 
-            uri = _name.getNamespaceURI();
-            nameUri = name.getNamespaceURI();
+            int offset = 0;
 
-            if (uri.length()!=nameUri.length())
-                return false;
+            while ( currChar( offset ) != -1 && XMLChar.isNCName( currChar( offset ) ) )
+                offset++;
 
-            return local.equals(nameLocal) && uri.equals(nameUri);
+            if (offset > 0 && XMLChar.isNCNameStart( currChar() ))
+            {
+                while ( isWhitespace( offset ) )
+                    offset++;
+
+                if (currChar( offset ) == '(')
+                    return tokenizeFunction();
+            }
+
+            return tokenizeRelativePath();
         }
 
-        final boolean _attr;
-        final boolean _deep;
+        private Expr tokenizeFunction ( ) throws XPathCompileException
+        {
+            String name = tokenizeNCName();
 
-        int _flags;
-        
-        final QName _name;
+            tokenize( "(" );
 
-        Step _next, _prev;
+            Expr[] args;
 
-        boolean _hasBacktrack;
-        Step    _backtrack;
-    }
+            if (tokenize( ")" ))
+                args = new Expr [ 0 ];
+            else
+            {
+                ArrayList list = new ArrayList();
 
-    private static final class Selector
-    {
-        Selector ( Step[] paths )
+                do
+                    list.add( tokenizeExpr() );
+                while ( tokenize( "," ) );
+
+                if (!tokenize( ")" ))
+                    throw newError( "Expected ')'" );
+
+                args = (Expr[]) list.toArray( new Expr [ list.size() ] );
+            }
+
+            int function = Function.lookup( name );
+
+            if (function < 0)
+                throw newError( "Unsupported function in predicate: " + name );
+
+            if (args.length != Function.arity( function ))
+                throw newError( "Wrong number of arguments to " + name );
+
+            if (function == Function.COUNT && !(args[ 0 ] instanceof RelativePath))
+                throw newError( "Argument to count must be a path" );
+
+            // XPath 2.0 does not take a number or a boolean as a string
+
+            if (function == Function.CONTAINS || function == Function.STARTS_WITH)
+            {
+                for ( int i = 0 ; i < args.length ; i++ )
+                {
+                    if (args[ i ].type() != Expr.NODES && args[ i ].type() != Expr.STRING)
+                        throw newError( "Argument to " + name + " must be a string or a path" );
+                }
+            }
+
+            return new Function( function, args );
+        }
+
+        private Expr tokenizeRelativePath ( ) throws XPathCompileException
         {
-            _paths = paths;
+            if (tokenize( "." ))
+                return new RelativePath( new QName [ 0 ], null );
+
+            ArrayList names = new ArrayList();
+            QName attr = null;
+
+            for ( ; ; )
+            {
+                if (tokenize( "attribute", "::" ) || tokenize( "@" ))
+                {
+                    attr = tokenizeAttrName();
+                    break;
+                }
+
+                tokenize( "child", "::" );
+
+                names.add( tokenizeQName() );
+
+                // Stop short of a // or a / which is not followed by a step
+
+                if (tokenize( "//" ))
+                    throw newError( "Unsupported '//' in predicate" );
+
+                int offset = 0;
+
+                while ( isWhitespace( offset ) )
+                    offset++;
+
+                if (!startsWith( "/", offset ))
+                    break;
+
+                tokenize( "/" );
+            }
+
+            return
+                new RelativePath(
+                    (QName[]) names.toArray( new QName [ names.size() ] ), attr );
         }
 
-        final Step[] _paths;
+        // Unlike the name of an element, the name of an attribute is not in
+        // the default namespace when it has no prefix
+
+        private QName tokenizeAttrName ( ) throws XPathCompileException
+        {
+            if (tokenize( "*" ))
+                return getAnyQName();
+
+            String ncName = tokenizeNCName();
+
+            if (!tokenize( ":" ))
+                return new QName( "", ncName );
+
+            return
+                new QName(
+                    lookupPrefix( ncName ),
+                    tokenize( "*" ) ? "" : tokenizeNCName() );
+        }
+
+        private String tokenizeLiteral ( ) throws XPathCompileException
+        {
+            parseWhitespace();
+
+            int quote = currChar();
+
+            advance();
+
+            StringBuffer sb = new StringBuffer();
+
+            for ( ; currChar() != quote ; advance() )
+            {
+                if (currChar() == -1)
+                    throw newError( "Path terminated in string literal" );
+
+                sb.append( (char) currChar() );
+            }
+
+            advance();
+
+            return sb.toString();
+        }
+
+        private double tokenizeNumber ( ) throws XPathCompileException
+        {
+            parseWhitespace();
+
+            StringBuffer sb = new StringBuffer();
+
+            if (currChar() == '-')
+            {
+                sb.append( '-' );
+                advance();
+                parseWhitespace();
+            }
+
+            while ( (currChar() >= '0' && currChar() <= '9') || currChar() == '.' )
+            {
+                sb.append( (char) currChar() );
+                advance();
+            }
+
+            double d = Compare.number( sb.toString() );
+
+            if (Double.isNaN( d ))
+                throw newError( "Expected number" );
+
+            return d;
+        }
+
+        //split of prolog decls that are not standard XPath syntax
+        //but work in v1
+        private void processNonXpathDecls(){
+
+        }
+
+        private String _expr;
+
+        private boolean _sawDeepDot;  // Saw one overall
+        private boolean _lastDeepDot;
+
+        private boolean _predicates;
+        private boolean _sawPredicate;
+
+        private String _currentNodeVar;
+        
+       // private Map _namespaces;
+        protected Map _namespaces;
+        private Map _externalNamespaces;
+        
+        private int _offset;
+        private int _line;
+        private int _column;
     }
 
     //
+    // Selecting with predicates
     //
-    //
-    
-    private XPath ( Selector selector, boolean sawDeepDot )
+
+    /**
+     * The nodes of a document as select sees them.  A node is any object the
+     * navigator knows.  Elements, and the document or fragment a path is
+     * selected from, have element children and attributes.
+     */
+    public interface Navigator
     {
-        _selector = selector;
-        _sawDeepDot = sawDeepDot;
+        Object firstElement ( Object node );
+        Object nextElement  ( Object element );
+
+        /** Returns the first attribute, not counting namespace declarations */
+        Object firstAttr    ( Object node );
+        Object nextAttr     ( Object attr );
+
+        QName  getName        ( Object node );
+        String getStringValue ( Object node );
     }
 
-    public boolean sawDeepDot ( )
+    /**
+     * Adds the nodes this path selects from the given node to the results,
+     * in document order.  This runs paths with predicates, which look at
+     * the whole of the element they are on, and so can not be run by an
+     * ExecutionContext.
+     */
+    public final void select ( Navigator nav, Object node, List results )
     {
-        return _sawDeepDot;
+        Step[] paths = _selector._paths;
+
+        boolean ordered = paths.length == 1;
+
+        List selected = new ArrayList();
+
+        for ( int i = 0 ; i < paths.length ; i++ )
+            ordered = select( nav, node, paths[ i ], selected ) && ordered;
+
+        if (!ordered)
+            selected = inDocumentOrder( nav, node, selected );
+
+        results.addAll( selected );
+    }
+
+    // Returns false if the nodes may not be in document order
+
+    private static boolean select ( Navigator nav, Object root, Step steps, List results )
+    {
+        List nodes = new ArrayList();
+        nodes.add( root );
+
+        boolean ordered = true;
+
+        for ( Step s = steps ; s._name != null ; s = s._next )
+        {
+            // The nodes a // step starts from are the nodes and all the
+            // elements under them.  After the first of these, no node is
+            // a descendant of a node before it, so the children of the
+            // nodes are not in document order any more.
+
+            if (s._deep)
+            {
+                if (!ordered)
+                    nodes = inDocumentOrder( nav, root, nodes );
+
+                IdentityHashMap seen = new IdentityHashMap();
+                List descendants = new ArrayList();
+
+                for ( int i = 0 ; i < nodes.size() ; i++ )
+                {
+                    if (!seen.containsKey( nodes.get( i ) ))
+                        addDescendants( nav, nodes.get( i ), seen, descendants );
+                }
+
+                nodes = descendants;
+                ordered = nodes.size() <= 1;
+            }
+
+            List next = new ArrayList();
+            List candidates = new ArrayList();
+
+            for ( int i = 0 ; i < nodes.size() ; i++ )
+            {
+                Object n = nodes.get( i );
+
+                candidates.clear();
+
+                if (s._attr)
+                {
+                    for ( Object a = nav.firstAttr( n ) ; a != null ; a = nav.nextAttr( a ) )
+                    {
+                        if (s.match( nav.getName( a ) ))
+                            candidates.add( a );
+                    }
+                }
+                else
+                {
+                    for ( Object e = nav.firstElement( n ) ; e != null ; e = nav.nextElement( e ) )
+                    {
+                        if (s.match( nav.getName( e ) ))
+                            candidates.add( e );
+                    }
+                }
+
+                if (s._predicates != null)
+                {
+                    for ( int j = 0 ; j < s._predicates.length ; j++ )
+                        filter( nav, s._predicates[ j ], candidates );
+                }
+
+                next.addAll( candidates );
+            }
+
+            nodes = next;
+        }
+
+        results.addAll( nodes );
+
+        return ordered;
+    }
+
+    private static void addDescendants (
+        Navigator nav, Object node, IdentityHashMap seen, List descendants )
+    {
+        seen.put( node, node );
+        descendants.add( node );
+
+        for ( Object e = nav.firstElement( node ) ; e != null ; e = nav.nextElement( e ) )
+            addDescendants( nav, e, seen, descendants );
+    }
+
+    private static void filter ( Navigator nav, Expr predicate, List candidates )
+    {
+        int size = candidates.size();
+        int kept = 0;
+
+        for ( int i = 0 ; i < size ; i++ )
+        {
+            Object n = candidates.get( i );
+            Object v = predicate.evaluate( nav, n, i + 1, size );
+
+            boolean keep =
+                v instanceof Double
+                    ? ((Double) v).doubleValue() == i + 1
+                    : Compare.booleanValue( v );
+
+            if (keep)
+                candidates.set( kept++, n );
+        }
+
+        while ( candidates.size() > kept )
+            candidates.remove( candidates.size() - 1 );
+    }
+
+    // Returns the nodes, without duplicates, in the order a walk of the
+    // tree under the root comes to them
+
+    private static List inDocumentOrder ( Navigator nav, Object root, List nodes )
+    {
+        IdentityHashMap set = new IdentityHashMap();
+
+        for ( int i = 0 ; i < nodes.size() ; i++ )
+            set.put( nodes.get( i ), nodes.get( i ) );
+
+        List ordered = new ArrayList( set.size() );
+
+        addInDocumentOrder( nav, root, set, ordered );
+
+        assert ordered.size() == set.size();
+
+        return ordered;
+    }
+
+    private static void addInDocumentOrder (
+        Navigator nav, Object node, IdentityHashMap set, List ordered )
+    {
+        if (set.containsKey( node ))
+            ordered.add( node );
+
+        for ( Object a = nav.firstAttr( node ) ; a != null ; a = nav.nextAttr( a ) )
+        {
+            if (set.containsKey( a ))
+                ordered.add( a );
+        }
+
+        for ( Object e = nav.firstElement( node ) ;
+              e != null && ordered.size() < set.size() ; e = nav.nextElement( e ) )
+        {
+            addInDocumentOrder( nav, e, set, ordered );
+        }
+    }
+
+    /**
+     * An expression in a predicate.  The value of an expression is a
+     * Boolean, a Double, a String, or a List of nodes, as its type says.
+     */
+    private static abstract class Expr
+    {
+        static final int NODES   = 0;
+        static final int STRING  = 1;
+        static final int NUMBER  = 2;
+        static final int BOOLEAN = 3;
+
+        abstract int type ( );
+
+        abstract Object evaluate ( Navigator nav, Object node, int position, int size );
+    }
+
+    private static final class Literal extends Expr
+    {
+        Literal ( Object value )
+        {
+            _value = value;
+        }
+
+        int type ( )
+        {
+            return _value instanceof String ? STRING : NUMBER;
+        }
+
+        Object evaluate ( Navigator nav, Object node, int position, int size )
+        {
+            return _value;
+        }
+
+        static boolean isNumber ( Expr expr )
+        {
+            return expr instanceof Literal && ((Literal) expr)._value instanceof Double;
+        }
+
+        private final Object _value;
+    }
+
+    private static final class Add extends Expr
+    {
+        Add ( boolean subtract, Expr left, Expr right )
+        {
+            _subtract = subtract;
+            _left = left;
+            _right = right;
+        }
+
+        static boolean isOperand ( Expr expr )
+        {
+            return expr.type() == NODES || expr.type() == NUMBER;
+        }
+
+        int type ( )
+        {
+            return NUMBER;
+        }
+
+        Object evaluate ( Navigator nav, Object node, int position, int size )
+        {
+            double l = operand( nav, _left.evaluate( nav, node, position, size ) );
+            double r = operand( nav, _right.evaluate( nav, node, position, size ) );
+
+            return new Double( _subtract ? l - r : l + r );
+        }
+
+        // XPath 2.0 adds a single node which is a number, and gives no
+        // value, rather than NaN, for no node
+
+        private static double operand ( Navigator nav, Object v )
+        {
+            if (v instanceof List)
+            {
+                List l = (List) v;
+
+                if (l.size() != 1)
+                    throw new XPathUnsupportedValueException( "Arithmetic on " + l.size() + " nodes" );
+
+                Compare.checkNumbers( nav, l );
+            }
+
+            return Compare.numberValue( nav, v );
+        }
+
+        private final boolean _subtract;
+        private final Expr    _left;
+        private final Expr    _right;
+    }
+
+    private static final class RelativePath extends Expr
+    {
+        // A path with no names and no attribute is '.'
+
+        RelativePath ( QName[] names, QName attr )
+        {
+            _names = names;
+            _attr = attr;
+        }
+
+        int type ( )
+        {
+            return NODES;
+        }
+
+        Object evaluate ( Navigator nav, Object node, int position, int size )
+        {
+            List nodes = new ArrayList();
+            nodes.add( node );
+
+            for ( int i = 0 ; i < _names.length && !nodes.isEmpty() ; i++ )
+            {
+                List next = new ArrayList();
+
+                for ( int j = 0 ; j < nodes.size() ; j++ )
+                {
+                    for ( Object e = nav.firstElement( nodes.get( j ) ) ; e != null ;
+                          e = nav.nextElement( e ) )
+                    {
+                        if (Step.match( _names[ i ], nav.getName( e ) ))
+                            next.add( e );
+                    }
+                }
+
+                nodes = next;
+            }
+
+            if (_attr != null)
+            {
+                List attrs = new ArrayList();
+
+                for ( int j = 0 ; j < nodes.size() ; j++ )
+                {
+                    for ( Object a = nav.firstAttr( nodes.get( j ) ) ; a != null ;
+                          a = nav.nextAttr( a ) )
+                    {
+                        if (Step.match( _attr, nav.getName( a ) ))
+                            attrs.add( a );
+                    }
+                }
+
+                nodes = attrs;
+            }
+
+            return nodes;
+        }
+
+        private final QName[] _names;
+        private final QName   _attr;
+    }
+
+    private static final class Logical extends Expr
+    {
+        Logical ( boolean and, Expr left, Expr right )
+        {
+            _and = and;
+            _left = left;
+            _right = right;
+        }
+
+        int type ( )
+        {
+            return BOOLEAN;
+        }
+
+        Object evaluate ( Navigator nav, Object node, int position, int size )
+        {
+            boolean left =
+                Compare.booleanValue( _left.evaluate( nav, node, position, size ) );
+
+            if (left != _and)
+                return Boolean.valueOf( left );
+
+            return
+                Boolean.valueOf(
+                    Compare.booleanValue( _right.evaluate( nav, node, position, size ) ) );
+        }
+
+        private final boolean _and;
+        private final Expr    _left;
+        private final Expr    _right;
+    }
+
+    private static final class Compare extends Expr
+    {
+        static final int EQ = 0;
+        static final int NE = 1;
+        static final int LT = 2;
+        static final int LE = 3;
+        static final int GT = 4;
+        static final int GE = 5;
+
+        Compare ( int op, Expr left, Expr right )
+        {
+            _op = op;
+            _left = left;
+            _right = right;
+        }
+
+        int type ( )
+        {
+            return BOOLEAN;
+        }
+
+        Object evaluate ( Navigator nav, Object node, int position, int size )
+        {
+            Object left = _left.evaluate( nav, node, position, size );
+            Object right = _right.evaluate( nav, node, position, size );
+
+            return Boolean.valueOf( compare( nav, _op, left, right ) );
+        }
+
+        // A comparison with a set of nodes is true if it is true for the
+        // string value of any of the nodes.  XPath 2.0 fails on a node
+        // which is not a number compared with a number, wherever the node
+        // is in the set, so all of them are looked at first.
+
+        private static boolean compare ( Navigator nav, int op, Object left, Object right )
+        {
+            if (left instanceof List && right instanceof Double)
+                checkNumbers( nav, (List) left );
+
+            if (right instanceof List && left instanceof Double)
+                checkNumbers( nav, (List) right );
+
+            if (left instanceof List && right instanceof List)
+            {
+                List l = (List) left;
+                List r = (List) right;
+
+                for ( int i = 0 ; i < l.size() ; i++ )
+                {
+                    String s = nav.getStringValue( l.get( i ) );
+
+                    for ( int j = 0 ; j < r.size() ; j++ )
+                    {
+                        if (compare( op, s, nav.getStringValue( r.get( j ) ) ))
+                            return true;
+                    }
+                }
+
+                return false;
+            }
+
+            if (left instanceof List)
+            {
+                List l = (List) left;
+
+                if (right instanceof Boolean)
+                    return compare( op, Boolean.valueOf( !l.isEmpty() ), right );
+
+                for ( int i = 0 ; i < l.size() ; i++ )
+                {
+                    if (compare( op, nav.getStringValue( l.get( i ) ), right ))
+                        return true;
+                }
+
+                return false;
+            }
+
+            if (right instanceof List)
+            {
+                List r = (List) right;
+
+                if (left instanceof Boolean)
+                    return compare( op, left, Boolean.valueOf( !r.isEmpty() ) );
+
+                for ( int i = 0 ; i < r.size() ; i++ )
+                {
+                    if (compare( op, left, nav.getStringValue( r.get( i ) ) ))
+                        return true;
+                }
+
+                return false;
+            }
+
+            return compare( op, left, right );
+        }
+
+        private static boolean compare ( int op, Object left, Object right )
+        {
+            if (op == EQ || op == NE)
+            {
+                boolean equal;
+
+                if (left instanceof Boolean || right instanceof Boolean)
+                    equal = booleanValue( left ) == booleanValue( right );
+                else if (left instanceof Double || right instanceof Double)
+                    equal = numberValue( left ) == numberValue( right );
+                else
+                    equal = left.equals( right );
+
+                return op == EQ ? equal : !equal;
+            }
+
+            double l = numberValue( left );
+            double r = numberValue( right );
+
+            switch ( op )
+            {
+                case LT : return l <  r;
+                case LE : return l <= r;
+                case GT : return l >  r;
+                default : return l >= r;
+            }
+        }
+
+        static void checkNumbers ( Navigator nav, List nodes )
+        {
+            for ( int i = 0 ; i < nodes.size() ; i++ )
+            {
+                if (Double.isNaN( number( nav.getStringValue( nodes.get( i ) ) ) ))
+                    throw new XPathUnsupportedValueException( "Node value is not a number" );
+            }
+        }
+
+        static boolean booleanValue ( Object v )
+        {
+            if (v instanceof Boolean)
+                return ((Boolean) v).booleanValue();
+
+            if (v instanceof Double)
+            {
+                double d = ((Double) v).doubleValue();
+                return d != 0 && !Double.isNaN( d );
+            }
+
+            if (v instanceof String)
+                return ((String) v).length() > 0;
+
+            return !((List) v).isEmpty();
+        }
+
+        static double numberValue ( Navigator nav, Object v )
+        {
+            return v instanceof List ? number( stringValue( nav, v ) ) : numberValue( v );
+        }
+
+        static double numberValue ( Object v )
+        {
+            assert !(v instanceof List);
+
+            if (v instanceof Double)
+                return ((Double) v).doubleValue();
+
+            if (v instanceof Boolean)
+                return ((Boolean) v).booleanValue() ? 1 : 0;
+
+            return number( (String) v );
+        }
+
+        static String stringValue ( Navigator nav, Object v )
+        {
+            if (v instanceof String)
+                return (String) v;
+
+            if (v instanceof Boolean)
+                return ((Boolean) v).booleanValue() ? "true" : "false";
+
+            if (v instanceof List)
+            {
+                List l = (List) v;
+                return l.isEmpty() ? "" : nav.getStringValue( l.get( 0 ) );
+            }
+
+            double d = ((Double) v).doubleValue();
+
+            if (Double.isNaN( d ))
+                return "NaN";
+
+            if (Double.isInfinite( d ))
+                return d > 0 ? "Infinity" : "-Infinity";
+
+            if (d == Math.rint( d ) && Math.abs( d ) < 1e15)
+                return Long.toString( (long) d );
+
+            return Double.toString( d );
+        }
+
+        // The XPath 1.0 number of a string, which, unlike a Java double,
+        // has no exponent, no sign but '-', and no special values
+
+        static double number ( String s )
+        {
+            s = s.trim();
+
+            int i = s.startsWith( "-" ) ? 1 : 0;
+            int digits = 0;
+            boolean point = false;
+
+            for ( ; i < s.length() ; i++ )
+            {
+                char ch = s.charAt( i );
+
+                if (ch >= '0' && ch <= '9')
+                    digits++;
+                else if (ch == '.' && !point)
+                    point = true;
+                else
+                    return Double.NaN;
+            }
+
+            return digits == 0 ? Double.NaN : Double.parseDouble( s );
+        }
+
+        private final int  _op;
+        private final Expr _left;
+        private final Expr _right;
+    }
+
+    private static final class Function extends Expr
+    {
+        static final int POSITION    = 0;
+        static final int LAST        = 1;
+        static final int COUNT       = 2;
+        static final int NOT         = 3;
+        static final int TRUE        = 4;
+        static final int FALSE       = 5;
+        static final int CONTAINS    = 6;
+        static final int STARTS_WITH = 7;
+        static final int LOCAL_NAME  = 8;
+
+        private static final String[] NAMES = {
+            "position", "last", "count", "not", "true", "false",
+            "contains", "starts-with", "local-name"
+        };
+
+        private static final int[] ARITIES = { 0, 0, 1, 1, 0, 0, 2, 2, 0 };
+
+        static int lookup ( String name )
+        {
+            for ( int i = 0 ; i < NAMES.length ; i++ )
+            {
+                if (NAMES[ i ].equals( name ))
+                    return i;
+            }
+
+            return -1;
+        }
+
+        static int arity ( int function )
+        {
+            return ARITIES[ function ];
+        }
+
+        Function ( int function, Expr[] args )
+        {
+            _function = function;
+            _args = args;
+        }
+
+        int type ( )
+        {
+            switch ( _function )
+            {
+                case POSITION :
+                case LAST :
+                case COUNT :
+                    return NUMBER;
+
+                case LOCAL_NAME :
+                    return STRING;
+
+                default :
+                    return BOOLEAN;
+            }
+        }
+
+        // XPath 2.0 takes the string of a single node only
+
+        private static String stringArg ( Navigator nav, Object v )
+        {
+            if (v instanceof List && ((List) v).size() > 1)
+                throw new XPathUnsupportedValueException( "String of " + ((List) v).size() + " nodes" );
+
+            return Compare.stringValue( nav, v );
+        }
+
+        Object evaluate ( Navigator nav, Object node, int position, int size )
+        {
+            switch ( _function )
+            {
+                case POSITION :
+                    return new Double( position );
+
+                case LAST :
+                    return new Double( size );
+
+                case COUNT :
+                    return new Double(
+                        ((List) _args[ 0 ].evaluate( nav, node, position, size )).size() );
+
+                case NOT :
+                    return Boolean.valueOf(
+                        !Compare.booleanValue( _args[ 0 ].evaluate( nav, node, position, size ) ) );
+
+                case TRUE :
+                    return Boolean.TRUE;
+
+                case FALSE :
+                    return Boolean.FALSE;
+
+                case LOCAL_NAME :
+                    return nav.getName( node ).getLocalPart();
+
+                default :
+                {
+                    String s1 =
+                        stringArg( nav, _args[ 0 ].evaluate( nav, node, position, size ) );
+                    String s2 =
+                        stringArg( nav, _args[ 1 ].evaluate( nav, node, position, size ) );
+
+                    return Boolean.valueOf(
+                        _function == CONTAINS ? s1.indexOf( s2 ) >= 0 : s1.startsWith( s2 ) );
+                }
+            }
+        }
+
+        private final int    _function;
+        private final Expr[] _args;
+    }
+
+    private static final class Step
+    {
+        Step ( boolean deep, boolean attr, QName name, Expr[] predicates )
+        {
+            _name = name;
+            _predicates = predicates;
+
+            _deep = deep;
+            _attr = attr;
+
+            int flags = 0;
+
+            if (_deep || !_attr)
+                flags |= ExecutionContext.DESCEND;
+
+            if (_attr)
+                flags |= ExecutionContext.ATTRS;
+
+            _flags = flags;
+        }
+
+        boolean isWild ( )
+        {
+            return _name.getLocalPart().length() == 0;
+        }
+
+        boolean match ( QName name )
+        {
+            return match( _name, name );
+        }
+
+        static boolean match ( QName pattern, QName name )
+        {
+            String local = pattern.getLocalPart();
+            String nameLocal = name.getLocalPart();
+            String uri;
+            String nameUri;
+
+            int localLength = local.length();
+            int uriLength;
+
+            // match any name to the pattern when it is empty ""@""
+            if (localLength==0)
+            {
+                uri = pattern.getNamespaceURI();
+                uriLength = uri.length();
+
+                if (uriLength==0)
+                    return true;
+
+                return uri.equals(name.getNamespaceURI());
+            }
+
+            if (localLength!=nameLocal.length())
+                return false;
+
+            uri = pattern.getNamespaceURI();
+            nameUri = name.getNamespaceURI();
+
+            if (uri.length()!=nameUri.length())
+                return false;
+
+            return local.equals(nameLocal) && uri.equals(nameUri);
+        }
+
+        final boolean _attr;
+        final boolean _deep;
+
+        int _flags;
+        
+        final QName _name;
+
+        final Expr[] _predicates;
+
+        Step _next, _prev;
+
+        boolean _hasBacktrack;
+        Step    _backtrack;
+    }
+
+    private static final class Selector
+    {
+        Selector ( Step[] paths )
+        {
+            _paths = paths;
+        }
+
+        final Step[] _paths;
+    }
+
+    //
+    //
+    //
+    
+    private XPath ( Selector selector, boolean sawDeepDot, boolean hasPredicates )
+    {
+        _selector = selector;
+        _sawDeepDot = sawDeepDot;
+        _hasPredicates = hasPredicates;
+    }
+
+    public boolean sawDeepDot ( )
+    {
+        return _sawDeepDot;
+    }
+
+    /**
+     * True if a step of this path has a predicate, in which case the path
+     * is run by select rather than by an ExecutionContext.
+     */
+    public boolean hasPredicates ( )
+    {
+        return _hasPredicates;
     }
 
     public static final String _NS_BOUNDARY = "$xmlbeans!ns_boundary";
     public static final String _DEFAULT_ELT_NS = "$xmlbeans!default_uri";
     private final Selector _selector;
     private final boolean  _sawDeepDot;
+    private final boolean  _hasPredicates;
 }
\ No newline at end of file
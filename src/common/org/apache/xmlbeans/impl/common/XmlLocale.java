@@ -21,7 +21,8 @@ public interface XmlLocale
 {
     boolean sync   ( );
     boolean noSync ( );
-    
+    boolean frozen ( );
+
     void enter ( );
     void exit  ( );
 }
\ No newline at end of file
@@ -26,6 +26,11 @@ public class XmlObjectList
 {
     private final XmlObject[] _objects;
 
+    // The hash of the values, once computed; lists are hashed again and
+    // again as keys, and the values of a list never change once all set
+    private int _hash;
+    private boolean _hashed;
+
     /**
      * Construct a new empty object list of the given fixed size.
      */
@@ -46,6 +51,7 @@ public class XmlObjectList
             return false;
 
         _objects[index] = o;
+        _hashed = false;
         return true;
     }
 
@@ -79,12 +85,16 @@ public class XmlObjectList
         if (other._objects.length != this._objects.length)
             return false;
 
+        if (other.hashCode() != hashCode())
+            return false;
+
         for (int i = 0 ; i < _objects.length ; i++) {
             // Ignore missing values
             if (_objects[i] == null || other._objects[i] == null)
                 return false;
 
-            if (! _objects[i].valueEquals(other._objects[i]))
+            if (_objects[i] != other._objects[i] &&
+                    ! _objects[i].valueEquals(other._objects[i]))
                 return false;
         }
 
@@ -93,12 +103,18 @@ public class XmlObjectList
 
     public int hashCode()
     {
+        if (_hashed)
+            return _hash;
+
         int h = 0;
 
         for (int i = 0 ; i < _objects.length ; i++)
             if (_objects[i] != null)
                 h = 31 * h + _objects[i].valueHashCode();
 
+        _hash = h;
+        _hashed = true;
+
         return h;
     }
     
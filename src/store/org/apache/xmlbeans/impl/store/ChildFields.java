@@ -0,0 +1,203 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import org.apache.xmlbeans.SchemaField;
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.impl.values.TypeStoreUser;
+import org.apache.xmlbeans.impl.values.TypeStoreVisitor;
+
+import javax.xml.namespace.QName;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The schema fields of the element children of a wide parent, resolved by
+ * one pass of the visitor of the parent's content model.  Finding the field
+ * of a child takes a visit of every element before it, so without these,
+ * touching each child of a parent once is quadratic in their number.
+ * <p>
+ * As with ChildIndex, a parent only gets its fields once finding one has
+ * walked more than ChildIndex.THRESHOLD of its children, and they are
+ * dropped along with its ChildIndex when its children change.  They are
+ * resolved for a type of the parent, and resolved again for another.
+ * <p>
+ * Elements appended at the end are resolved when first asked for, by the
+ * visitor kept from the last pass.  The fields of a frozen locale are never
+ * changed once published, as its readers share them without locking;
+ * should they miss a child, they are resolved again from the start.
+ */
+final class ChildFields
+{
+    private ChildFields ( SchemaType type, TypeStoreVisitor visitor )
+    {
+        _type = type;
+        _visitor = visitor;
+        _fields = new IdentityHashMap();
+    }
+
+    /**
+     * Returns a visitor which has visited the element children of the
+     * parent of the given element, up to and including the element, or
+     * null if the parent has no content model to visit.
+     */
+    static TypeStoreVisitor visitTo ( Xobj x, TypeStoreUser parentUser )
+    {
+        assert x.isElem();
+
+        Xobj parent = x._parent;
+        ChildFields fields = parent.childFields();
+
+        if (fields != null && fields._type == parentUser.get_schema_type())
+        {
+            Field f = (Field) fields._fields.get( x );
+
+            if (f != null)
+                return f;
+
+            if (!parent._locale.frozen())
+                return fields.resolve( parent, x );
+        }
+
+        TypeStoreVisitor visitor = parentUser.new_visitor();
+
+        if (visitor == null)
+            return null;
+
+        int walked = 0;
+
+        for ( Xobj y = parent._firstChild ; ; y = y._nextSibling )
+        {
+            if (++walked > ChildIndex.THRESHOLD)
+            {
+                fields = new ChildFields( parentUser.get_schema_type(), parentUser.new_visitor() );
+
+                Field f = fields.resolve( parent, x );
+
+                parent.setChildFields( fields );
+
+                return f;
+            }
+
+            if (y.isElem())
+            {
+                visitor.visit( y._name );
+
+                if (y == x)
+                    return visitor;
+            }
+        }
+    }
+
+    /**
+     * Resolves the fields of the children after the last one resolved, to
+     * the end, and returns the field of the given one.
+     */
+    private Field resolve ( Xobj parent, Xobj x )
+    {
+        Field last = null;
+
+        for ( Xobj y = _last == null ? parent._firstChild : _last._nextSibling ;
+              y != null ; y = y._nextSibling )
+        {
+            if (y.isElem())
+            {
+                _visitor.visit( y._name );
+
+                // Runs of elements mostly share their field
+
+                Field f = new Field(
+                    _visitor.get_schema_field(), _visitor.get_elementflags(),
+                    _visitor.get_default_text() );
+
+                if (last != null && last.equals( f ))
+                    f = last;
+
+                _fields.put( y, f );
+
+                last = f;
+                _last = y;
+            }
+        }
+
+        Field f = (Field) _fields.get( x );
+
+        assert f != null;
+
+        return f;
+    }
+
+    private static final class Field implements TypeStoreVisitor
+    {
+        Field ( SchemaField field, int flags, String defaultText )
+        {
+            _field = field;
+            _flags = flags;
+            _defaultText = defaultText;
+        }
+
+        public boolean visit ( QName eltName )
+        {
+            throw new IllegalStateException( "Resolved field" );
+        }
+
+        public int get_elementflags ( )
+        {
+            return _flags;
+        }
+
+        public String get_default_text ( )
+        {
+            return _defaultText;
+        }
+
+        public SchemaField get_schema_field ( )
+        {
+            return _field;
+        }
+
+        public boolean equals ( Object o )
+        {
+            if (!(o instanceof Field))
+                return false;
+
+            Field f = (Field) o;
+
+            return
+                _field == f._field && _flags == f._flags &&
+                    (_defaultText == null
+                        ? f._defaultText == null
+                        : _defaultText.equals( f._defaultText ));
+        }
+
+        public int hashCode ( )
+        {
+            return _flags;
+        }
+
+        private final SchemaField _field;
+        private final int         _flags;
+        private final String      _defaultText;
+    }
+
+    private final SchemaType       _type;
+    private final TypeStoreVisitor _visitor;
+    private final Map              _fields;
+
+    // The last child resolved, from which the visitor goes on
+    private Xobj _last;
+}
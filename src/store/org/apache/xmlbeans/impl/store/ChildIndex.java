@@ -0,0 +1,220 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import org.apache.xmlbeans.QNameSet;
+
+import javax.xml.namespace.QName;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The element children of a wide parent, in document order, for each name
+ * (or compiled QNameSet) they have been looked up by.  It gives the nth
+ * child and the number of children in constant time, where the sibling
+ * list would have to be walked.
+ * <p>
+ * A parent is only indexed once a lookup has walked more than THRESHOLD
+ * of its children.  The index hangs off the parent and only changes to
+ * the children of that parent drop it, except that elements appended at
+ * the end, the way a document is usually built, are added to it.
+ * <p>
+ * The map is never changed once the index is published, a lookup by a
+ * new name publishes a new index instead, so the readers of a frozen
+ * locale can share it without locking.  Entries only grow when children
+ * are appended, which a frozen locale does not allow.
+ */
+final class ChildIndex
+{
+    // The number of children a lookup walks before indexing the parent
+
+    static final int THRESHOLD = 32;
+
+    // Key for any element, when neither a name nor a set is given
+
+    private static final Object ANY = new Object();
+
+    private ChildIndex ( Map entries )
+    {
+        _entries = entries;
+    }
+
+    /**
+     * Returns the nth element child of the parent with the given name or
+     * a name in the given set (or any element if both are null), or null
+     * if there are not that many.
+     */
+    static Xobj find ( Xobj parent, QName name, QNameSet set, int n )
+    {
+        assert name == null || set == null;
+        assert n >= 0;
+
+        Entry e = cached( parent, name, set );
+
+        if (e == null)
+        {
+            int walked = 0;
+            int i = n;
+
+            for ( Xobj x = parent._firstChild ; x != null ; x = x._nextSibling )
+            {
+                if (++walked > THRESHOLD)
+                {
+                    e = index( parent, name, set );
+                    break;
+                }
+
+                if (x.isElem() && matches( x, name, set ) && --i < 0)
+                    return x;
+            }
+
+            if (e == null)
+                return null;
+        }
+
+        return n < e._count ? e._elems[ n ] : null;
+    }
+
+    /**
+     * Returns the number of element children of the parent with the given
+     * name or a name in the given set (or of all elements if both are null).
+     */
+    static int count ( Xobj parent, QName name, QNameSet set )
+    {
+        assert name == null || set == null;
+
+        Entry e = cached( parent, name, set );
+
+        if (e != null)
+            return e._count;
+
+        int walked = 0;
+        int n = 0;
+
+        for ( Xobj x = parent._firstChild ; x != null ; x = x._nextSibling )
+        {
+            if (++walked > THRESHOLD)
+                return index( parent, name, set )._count;
+
+            if (x.isElem() && matches( x, name, set ))
+                n++;
+        }
+
+        return n;
+    }
+
+    /**
+     * Keeps the index of the parent up to date after the given child was
+     * appended to it.
+     */
+    static void appended ( Xobj parent, Xobj child )
+    {
+        ChildIndex index = parent.childIndex();
+
+        if (index == null || !child.isElem())
+            return;
+
+        for ( Iterator i = index._entries.entrySet().iterator() ; i.hasNext() ; )
+        {
+            Map.Entry me = (Map.Entry) i.next();
+            Object key = me.getKey();
+
+            boolean hit =
+                key == ANY ||
+                (key instanceof QNameSet
+                    ? ((QNameSet) key).contains( child._name )
+                    : key.equals( child._name ));
+
+            if (hit)
+                ((Entry) me.getValue()).add( child );
+        }
+    }
+
+    /**
+     * Drops the index of the parent, and the fields of its children (see
+     * ChildFields), after its children have changed.
+     */
+    static void invalidate ( Xobj parent )
+    {
+        if (parent != null)
+        {
+            parent.setChildIndex( null );
+            parent.setChildFields( null );
+        }
+    }
+
+    private static boolean matches ( Xobj x, QName name, QNameSet set )
+    {
+        return set == null ? name == null || name.equals( x._name ) : set.contains( x._name );
+    }
+
+    private static Object key ( QName name, QNameSet set )
+    {
+        // Compiled sets are compared by identity, as in the nth cache this
+        // index replaces
+
+        return set != null ? (Object) set : name != null ? (Object) name : ANY;
+    }
+
+    private static Entry cached ( Xobj parent, QName name, QNameSet set )
+    {
+        ChildIndex index = parent.childIndex();
+
+        return index == null ? null : (Entry) index._entries.get( key( name, set ) );
+    }
+
+    private static Entry index ( Xobj parent, QName name, QNameSet set )
+    {
+        Entry e = new Entry();
+
+        for ( Xobj x = parent._firstChild ; x != null ; x = x._nextSibling )
+        {
+            if (x.isElem() && matches( x, name, set ))
+                e.add( x );
+        }
+
+        ChildIndex index = parent.childIndex();
+
+        Map entries = index == null ? new HashMap() : new HashMap( index._entries );
+        entries.put( key( name, set ), e );
+
+        parent.setChildIndex( new ChildIndex( entries ) );
+
+        return e;
+    }
+
+    private static final class Entry
+    {
+        void add ( Xobj x )
+        {
+            if (_count == _elems.length)
+            {
+                Xobj[] newElems = new Xobj[ _elems.length * 2 ];
+                System.arraycopy( _elems, 0, newElems, 0, _count );
+                _elems = newElems;
+            }
+
+            _elems[ _count++ ] = x;
+        }
+
+        Xobj[] _elems = new Xobj[ THRESHOLD ];
+        int    _count;
+    }
+
+    private final Map _entries;
+}
@@ -1288,8 +1288,8 @@ final class Cur
 
         _xobj.ensureOccupancy();
 
-        n = _xobj._charNodesValue =
-            updateCharNodes( _locale, _xobj, _xobj._charNodesValue, _xobj._cchValue );
+        n = _xobj.setCharNodesValue(
+            updateCharNodes( _locale, _xobj, _xobj.charNodesValue(), _xobj._cchValue ) );
 
         for ( ; n != null ; n = n._next )
         {
@@ -1300,8 +1300,8 @@ final class Cur
             }
         }
 
-        n = _xobj._charNodesAfter =
-            updateCharNodes( _locale, _xobj, _xobj._charNodesAfter, _xobj._cchAfter );
+        n = _xobj.setCharNodesAfter(
+            updateCharNodes( _locale, _xobj, _xobj.charNodesAfter(), _xobj._cchAfter ) );
 
         for ( ; n != null ; n = n._next )
         {
@@ -1533,9 +1533,9 @@ final class Cur
         assert !x.isRoot() || (p > 0 && p < x.posAfter());
 
         if (p >= x.posAfter())
-            x._charNodesAfter = nodes;
+            x.setCharNodesAfter( nodes );
         else
-            x._charNodesValue = nodes;
+            x.setCharNodesValue( nodes );
 
         for ( ; nodes != null ; nodes = nodes._next )
             nodes.setDom( (Dom) x );
@@ -1555,15 +1555,15 @@ final class Cur
 
         if (_posTemp >= x.posAfter())
         {
-            nodes = x._charNodesAfter =
-                updateCharNodes( _locale, x, x._charNodesAfter, x._cchAfter );
+            nodes = x.setCharNodesAfter(
+                updateCharNodes( _locale, x, x.charNodesAfter(), x._cchAfter ) );
         }
         else
         {
             x.ensureOccupancy();
 
-            nodes = x._charNodesValue =
-                updateCharNodes( _locale, x, x._charNodesValue, x._cchValue );
+            nodes = x.setCharNodesValue(
+                updateCharNodes( _locale, x, x.charNodesValue(), x._cchValue ) );
         }
 
         return nodes;
@@ -1746,7 +1746,7 @@ final class Cur
             // I need to keep them alive.  I do this by moving these chars to a new root.  Note
             // that because Curs will stay behind, I don't have to check for them.
 
-            for ( Bookmark b = _xobj._bookmarks ; b != null ; b = b._next )
+            for ( Bookmark b = _xobj.bookmarks() ; b != null ; b = b._next )
             {
                 if (inChars( b, cchMove, false ))
                 {
@@ -2022,6 +2022,10 @@ final class Cur
 
         assert to == null || !to.isRoot();
 
+        // Not every path below reports the change before making it
+
+        x._locale.checkNotFrozen();
+
         // Collect a bit of information about the contents to move first.  Note that the collection
         // of this info must not cause a vacant value to become occupied.
 
@@ -2156,7 +2160,7 @@ final class Cur
             if (to != null)
                 y._locale = to._locale;
 
-            sawBookmark = sawBookmark || y._bookmarks != null;
+            sawBookmark = sawBookmark || y.bookmarks() != null;
         }
 
         Xobj lastToMove = x._lastChild;
@@ -2295,7 +2299,7 @@ final class Cur
         assert isNormal();
         assert key != null;
 
-        for ( Bookmark b = _xobj._bookmarks ; b != null ; b = b._next )
+        for ( Bookmark b = _xobj.bookmarks() ; b != null ; b = b._next )
             if (b._pos == _pos && b._key == key)
                 return b._value;
 
@@ -2313,7 +2317,7 @@ final class Cur
 
         if (isText())
         {
-            for ( Bookmark b = _xobj._bookmarks ; b != null ; b = b._next )
+            for ( Bookmark b = _xobj.bookmarks() ; b != null ; b = b._next )
                 if (b._key == key && inChars( b, cch, false ))
                     d = (d == -1 || b._pos - _pos < d) ? b._pos - _pos : d;
         }
@@ -2335,7 +2339,7 @@ final class Cur
             Xobj x = getDenormal();
             int  p = _posTemp - cch;
 
-            for ( Bookmark b = x._bookmarks ; b != null ; b = b._next )
+            for ( Bookmark b = x.bookmarks() ; b != null ; b = b._next )
                 if (b._key == key && x.inChars( p, b._xobj, b._pos, cch, false ))
                     d = (d == -1 || b._pos - p < d) ? b._pos - p : d;
         }
@@ -3428,7 +3432,7 @@ final class Cur
 
     private static void dumpBookmarks ( PrintStream o, Xobj xo, Object ref )
     {
-        for ( Bookmark b = xo._bookmarks ; b != null ; b = b._next )
+        for ( Bookmark b = xo.bookmarks() ; b != null ; b = b._next )
         {
             o.print( " " );
 
@@ -3529,11 +3533,11 @@ final class Cur
                 o.print( "@" + xo._name.getNamespaceURI() );
         }
 
-        if (xo._srcValue != null || xo._charNodesValue != null)
+        if (xo._srcValue != null || xo.charNodesValue() != null)
         {
             o.print( " Value( " );
             dumpChars( o, xo._srcValue, xo._offValue, xo._cchValue );
-            dumpCharNodes( o, xo._charNodesValue, ref );
+            dumpCharNodes( o, xo.charNodesValue(), ref );
             o.print( " )" );
         }
 
@@ -3543,11 +3547,11 @@ final class Cur
         if (xo.isVacant())
             o.print( " (VACANT)" );
 
-        if (xo._srcAfter != null || xo._charNodesAfter != null)
+        if (xo._srcAfter != null || xo.charNodesAfter() != null)
         {
             o.print( " After( " );
             dumpChars( o, xo._srcAfter, xo._offAfter, xo._cchAfter );
-            dumpCharNodes( o, xo._charNodesAfter, ref );
+            dumpCharNodes( o, xo.charNodesAfter(), ref );
             o.print( " )" );
         }
 
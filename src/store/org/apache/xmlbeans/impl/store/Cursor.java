@@ -576,50 +576,18 @@ public final class Cursor implements XmlCursor, ChangeListener {
         if (os == null)
             throw new IllegalArgumentException("Null OutputStream specified");
 
-        InputStream is = _newInputStream(options);
-
-        try {
-            byte[] bytes = new byte[8192];
-
-            for (; ;) {
-                int n = is.read(bytes);
-
-                if (n < 0)
-                    break;
-
-                os.write(bytes, 0, n);
-            }
-        } finally {
-            is.close();
-        }
+        Saver.save(_cur, os, options);
     }
 
     public void _save(Writer w, XmlOptions options) throws IOException {
         if (w == null)
             throw new IllegalArgumentException("Null Writer specified");
 
-        if (options != null && options.hasOption( XmlOptions.SAVE_OPTIMIZE_FOR_SPEED ))
-        {
-            Saver.OptimizedForSpeedSaver.save(_cur, w); //ignore all other options
-            return;
-        }
-
-        Reader r = _newReader(options);
-
-        try {
-            char[] chars = new char[8192];
-
-            for (; ;) {
-                int n = r.read(chars);
+        // Without an encoding there is no XML declaration, so saving
+        // straight to the writer gives what a TextReader would, for any
+        // options (SAVE_OPTIMIZE_FOR_SPEED no longer makes a difference)
 
-                if (n < 0)
-                    break;
-
-                w.write(chars, 0, n);
-            }
-        } finally {
-            r.close();
-        }
+        Saver.OptimizedForSpeedSaver.save(_cur, options, w);
     }
 
     public Node _getDomNode() {
@@ -1458,7 +1426,7 @@ public final class Cursor implements XmlCursor, ChangeListener {
 
     public void _getAllBookmarkRefs(Collection listToFill) {
         if (listToFill != null) {
-            for (Xobj.Bookmark b = _cur._xobj._bookmarks; b != null; b = b._next)
+            for (Xobj.Bookmark b = _cur._xobj.bookmarks(); b != null; b = b._next)
                 if (b._value instanceof XmlBookmark)
                     listToFill.add(b._value);
         }
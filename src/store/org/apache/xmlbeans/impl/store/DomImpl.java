@@ -570,6 +570,9 @@ final class DomImpl
         Locale l, String namespaceURI, String qualifiedName, DocumentType doctype )
     {
         validateQualifiedName( qualifiedName, namespaceURI, false );
+
+        if (l._ownerDoc != null)
+            l.share();
         
         Cur c = l.tempCur();
 
@@ -1288,7 +1291,7 @@ final class DomImpl
                 lastAttr.isNextSiblingPtrDomUsable())
                 return (Xobj.NodeXobj) lastAttr._nextSibling;
             if (node.isExistingCharNodesValueUsable())
-                return node._charNodesValue;
+                return node.charNodesValue();
         }
         if (l.noSync())         {  fc = node_getFirstChild( n );  }
         else synchronized ( l ) {  fc = node_getFirstChild( n ); }
@@ -1332,10 +1335,10 @@ final class DomImpl
                 if (lastAttr.isNextSiblingPtrDomUsable())
                     return (Xobj.NodeXobj) lastAttr._nextSibling;
                 else if (lastAttr.isCharNodesAfterUsable())
-                    return (CharNode) lastAttr._charNodesAfter;
+                    return (CharNode) lastAttr.charNodesAfter();
             }
             if (node.isCharNodesValueUsable())
-                return node._charNodesValue;
+                return node.charNodesValue();
 
 
             break;
@@ -1465,11 +1468,11 @@ final class DomImpl
             Xobj src = (Xobj) cn._src;
             //if src is attr this node is always value and
             // next is always the next ptr of the attr
-            src._charNodesAfter =
-                                    Cur.updateCharNodes( src._locale, src, src._charNodesAfter, src._cchAfter );
+            src.setCharNodesAfter(
+                Cur.updateCharNodes( src._locale, src, src.charNodesAfter(), src._cchAfter ) );
 
-            src._charNodesValue =
-                                  Cur.updateCharNodes( src._locale, src, src._charNodesValue, src._cchValue );
+            src.setCharNodesValue(
+                Cur.updateCharNodes( src._locale, src, src.charNodesValue(), src._cchValue ) );
 
             if (cn._next != null)
             {
@@ -1497,7 +1500,7 @@ final class DomImpl
                 return
                     (Xobj.NodeXobj) node._nextSibling;
             if (node.isCharNodesAfterUsable())
-                return node._charNodesAfter;
+                return node.charNodesAfter();
             break;
         }
 
@@ -1548,7 +1551,7 @@ final class DomImpl
                 prev = node._prev;
                 if (prev == null)
                     prev = isThisNodeAfterText ? (Dom) src :
-                        src._charNodesValue;
+                        src.charNodesValue();
                 break;
             }
         default:
@@ -2056,6 +2059,9 @@ final class DomImpl
     public static Dom node_cloneNode ( Dom n, boolean deep )
     {
         Locale l = n.locale();
+
+        if (n.nodeType() == DOCUMENT)
+            l.share();
         
         Dom clone = null;
         
@@ -2408,13 +2414,13 @@ final class DomImpl
                 src.ensureOccupancy();
                 boolean isThisNodeAfterText = node.isNodeAftertext();
                 if( isThisNodeAfterText ){
-                    src._charNodesAfter =
-                        Cur.updateCharNodes( src._locale, src, src._charNodesAfter, src._cchAfter );
+                    src.setCharNodesAfter(
+                        Cur.updateCharNodes( src._locale, src, src.charNodesAfter(), src._cchAfter ) );
                     s = src.getCharsAfterAsString(node._off, node._cch);
                 }
                 else{
-                    src._charNodesValue =
-                       Cur.updateCharNodes( src._locale, src, src._charNodesValue, src._cchValue );
+                    src.setCharNodesValue(
+                        Cur.updateCharNodes( src._locale, src, src.charNodesValue(), src._cchValue ) );
                     s = src.getCharsValueAsString(node._off, node._cch);
                 }
 
@@ -3818,9 +3824,9 @@ final class DomImpl
             assert _src instanceof Xobj :
                 "this method is to only be used for nodes backed up by Xobjs";
             Xobj src =(Xobj) _src;
-            return src._charNodesValue == null ? true :
-                src._charNodesAfter == null ? false :
-                CharNode.isOnList(src._charNodesAfter, this);
+            return src.charNodesValue() == null ? true :
+                src.charNodesAfter() == null ? false :
+                CharNode.isOnList(src.charNodesAfter(), this);
         }
         public void dump ( PrintStream o, Object ref )
         {
@@ -30,16 +30,21 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.SAXException;
 import org.xml.sax.DTDHandler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.Reference;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 
 import java.lang.reflect.Method;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
@@ -69,6 +74,7 @@ import org.w3c.dom.Element;
 import javax.xml.namespace.QName;
 
 import org.apache.xmlbeans.impl.common.XMLNameHelper;
+import org.apache.xmlbeans.impl.common.XPath;
 import org.apache.xmlbeans.impl.common.QNameHelper;
 import org.apache.xmlbeans.impl.common.XmlLocale;
 import org.apache.xmlbeans.impl.common.ResolverUtil;
@@ -90,6 +96,8 @@ import org.apache.xmlbeans.XmlLineNumber;
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlCursor.XmlBookmark;
 import org.apache.xmlbeans.XmlSaxHandler;
+import org.apache.xmlbeans.XmlElementHandler;
+import org.apache.xmlbeans.XmlAnySimpleType;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
@@ -101,6 +109,7 @@ import org.apache.xmlbeans.QNameCache;
 import org.apache.xmlbeans.XmlError;
 import org.apache.xmlbeans.XmlRuntimeException;
 import org.apache.xmlbeans.XmlDocumentProperties;
+import org.apache.xmlbeans.DelegateXmlObject;
 
 import org.apache.xmlbeans.impl.values.TypeStore;
 import org.apache.xmlbeans.impl.values.TypeStoreUser;
@@ -170,6 +179,20 @@ public final class Locale
         _schemaTypeLoader = stl;
 
         _validateOnSet = options.hasOption(XmlOptions.VALIDATE_ON_SET);
+
+        if (options.hasOption(XmlOptions.LOAD_VALUE_CACHE_SIZE))
+        {
+            int size = ((Integer) options.get(
+                XmlOptions.LOAD_VALUE_CACHE_SIZE)).intValue();
+
+            if (size <= 0)
+                throw new IllegalArgumentException(
+                    "Value cache size must be greater than zero: " + size);
+
+            _userCache = new Xobj[size];
+            _evictedUsers = new HashMap();
+            _evictedQueue = new ReferenceQueue();
+        }
         
         //
         // Check for Saaj implementation request
@@ -215,14 +238,30 @@ public final class Locale
         {
             Object source = options.get(USE_SAME_LOCALE);
 
+            if (source instanceof XmlTokenSource)
+                source = ((XmlTokenSource) source).monitor();
+
             if (source instanceof Locale)
                 l = (Locale) source;
-            else if (source instanceof XmlTokenSource)
-                l = (Locale) ((XmlTokenSource) source).monitor();
             else
                 throw new IllegalArgumentException(
                     "Source locale not understood: " + source);
 
+            // The monitor of a frozen document is not its locale, and a
+            // frozen locale cannot take new documents anyway
+
+            if (l.frozen())
+                throw new IllegalArgumentException(
+                    "Source locale is read-only");
+
+            // Freezing a locale freezes every document in it, so a
+            // read-only document has a locale of its own
+
+            if (options.hasOption(XmlOptions.LOAD_READ_ONLY) ||
+                options.hasOption(XmlOptions.COPY_READ_ONLY))
+                throw new IllegalArgumentException(
+                    "A read-only document cannot use the source locale");
+
             if (l._schemaTypeLoader != stl)
                 throw new IllegalArgumentException(
                     "Source locale does not support same schema type loader");
@@ -237,6 +276,8 @@ public final class Locale
                     "Source locale does not support same validate on set");
 
             // TODO - other things to check?
+
+            l.share();
         }
         else
             l = new Locale(stl, options);
@@ -264,6 +305,20 @@ public final class Locale
     static void autoTypeDocument(Cur c, SchemaType requestedType,
         XmlOptions options)
         throws XmlException
+    {
+        typeDocument(c, requestedType, options);
+
+        options = XmlOptions.maskNull(options);
+
+        if (options.hasOption(XmlOptions.LOAD_READ_ONLY))
+            c._locale.freeze(c._xobj);
+        else if (options.hasOption(XmlOptions.LOAD_TRIM_TEXT_BUFFER))
+            c._locale.compactText(c._xobj);
+    }
+
+    private static void typeDocument(Cur c, SchemaType requestedType,
+        XmlOptions options)
+        throws XmlException
     {
         assert c.isRoot();
 
@@ -863,6 +918,382 @@ public final class Locale
         return x;
     }
 
+    /**
+     * Loads every element of the stream which matches the name, at any
+     * depth, or the path, from the document element down, as an XmlObject
+     * of its own and hands it to the handler.  Only the matching elements
+     * are loaded, everything around them is read past, so the memory used
+     * is bounded by the size of one element rather than of the stream.
+     * <p>
+     * An element loaded for a document type (or for no type at all)
+     * becomes the document element of its own document.  For any other
+     * type, the attributes and content of the element are the value,
+     * as in an xml-fragment.  Either way the namespaces declared above
+     * the element are carried over, so prefixes in its text still resolve.
+     */
+    public static void parseElements(SchemaTypeLoader stl,
+        XMLStreamReader xsr, QName name, QName[] path, SchemaType type,
+        XmlElementHandler handler, XmlOptions options)
+        throws XmlException
+    {
+        assert (name == null) != (path == null);
+
+        XmlOptions elementOptions = new XmlOptions(options);
+
+        if (type != null && !type.isDocumentType())
+            elementOptions.setLoadReplaceDocumentElement(null);
+
+        // The names of the open elements, and the prefix/uri pairs they
+        // declare, with the first pair of each element in marks
+
+        ArrayList names = new ArrayList();
+        ArrayList namespaces = new ArrayList();
+        int[] marks = new int[16];
+
+        try
+        {
+            for (int eventType = xsr.getEventType(); ; eventType = xsr.next())
+            {
+                if (eventType == XMLStreamReader.START_ELEMENT)
+                {
+                    QName elementName = xsr.getName();
+
+                    boolean matches =
+                        name != null
+                        ? name.equals(elementName)
+                        : matchesPath(path, names, elementName);
+
+                    if (matches)
+                    {
+                        // Leaves the reader on the end of the element
+
+                        XmlObject x = parseElementToXmlObject(stl, xsr, type,
+                            inScopeNamespaces(namespaces), elementOptions);
+
+                        if (!handler.element(x))
+                            return;
+                    }
+                    else
+                    {
+                        int depth = names.size();
+
+                        if (depth == marks.length)
+                        {
+                            int[] newMarks = new int[marks.length * 2];
+                            System.arraycopy(marks, 0, newMarks, 0, marks.length);
+                            marks = newMarks;
+                        }
+
+                        marks[depth] = namespaces.size();
+                        names.add(elementName);
+
+                        declareNamespaces(xsr, namespaces);
+                    }
+                }
+                else if (eventType == XMLStreamReader.END_ELEMENT)
+                {
+                    // The end of the element the reader started in
+
+                    if (names.isEmpty())
+                        return;
+
+                    int depth = names.size() - 1;
+
+                    names.remove(depth);
+
+                    for (int i = namespaces.size(); i > marks[depth]; i--)
+                        namespaces.remove(i - 1);
+                }
+                else if (eventType == XMLStreamReader.END_DOCUMENT)
+                    break;
+
+                if (!xsr.hasNext())
+                    break;
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            throw new XmlException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs a path over a stream, handing each element it selects to the
+     * handler as an XmlObject of its own, loaded as by parseElements, and
+     * each attribute it selects as a simple value without a store.  The
+     * path is matched an event at a time by the XPath execution context,
+     * so it may only use the forward steps that context knows, and no
+     * predicates.  An element selected is read whole, so nothing inside
+     * it is selected on its own.
+     */
+    public static void selectPath(SchemaTypeLoader stl,
+        XMLStreamReader xsr, String path, SchemaType type,
+        XmlElementHandler handler, XmlOptions options)
+        throws XmlException
+    {
+        XPath xpath =
+            XPath.compileXPath(path, Path.getCurrentNodeVar(options), null);
+
+        if (xpath.sawDeepDot())
+            throw new XmlException("Path cannot be run over a stream: " + path);
+
+        XmlOptions elementOptions = new XmlOptions(options);
+
+        if (type != null && !type.isDocumentType())
+            elementOptions.setLoadReplaceDocumentElement(null);
+
+        XPath.ExecutionContext context = new XPath.ExecutionContext();
+        context.init(xpath);
+
+        int start = context.start();
+
+        // The prefix/uri pairs declared by the open elements, with the
+        // first pair of each element in marks
+
+        ArrayList namespaces = new ArrayList();
+        int[] marks = new int[16];
+        int depth = 0;
+
+        try
+        {
+            if ((start & XPath.ExecutionContext.HIT) != 0)
+            {
+                // The path selects the document itself
+
+                while (xsr.getEventType() != XMLStreamReader.START_ELEMENT)
+                    xsr.next();
+
+                handler.element(parseElementToXmlObject(stl, xsr, type,
+                    new HashMap(), elementOptions));
+                return;
+            }
+
+            if ((start & XPath.ExecutionContext.DESCEND) == 0)
+                return;
+
+            for (int eventType = xsr.getEventType(); ; eventType = xsr.next())
+            {
+                if (eventType == XMLStreamReader.START_ELEMENT)
+                {
+                    int ret = context.element(xsr.getName());
+
+                    // Attributes are read before the element, as the
+                    // reader is past them once the element is loaded
+
+                    ArrayList attrs = null;
+
+                    if ((ret & XPath.ExecutionContext.ATTRS) != 0)
+                    {
+                        for (int i = 0; i < xsr.getAttributeCount(); i++)
+                        {
+                            if (context.attr(xsr.getAttributeName(i)))
+                            {
+                                if (attrs == null)
+                                    attrs = new ArrayList();
+
+                                attrs.add(xsr.getAttributeValue(i));
+                            }
+                        }
+                    }
+
+                    if ((ret & XPath.ExecutionContext.HIT) != 0)
+                    {
+                        // Leaves the reader on the end of the element
+
+                        XmlObject x = parseElementToXmlObject(stl, xsr, type,
+                            inScopeNamespaces(namespaces), elementOptions);
+
+                        context.end();
+
+                        if (!handler.element(x))
+                            return;
+                    }
+                    else if ((ret & XPath.ExecutionContext.DESCEND) == 0)
+                    {
+                        skipElement(xsr);
+                        context.end();
+                    }
+                    else
+                    {
+                        if (depth == marks.length)
+                        {
+                            int[] newMarks = new int[marks.length * 2];
+                            System.arraycopy(marks, 0, newMarks, 0, marks.length);
+                            marks = newMarks;
+                        }
+
+                        marks[depth++] = namespaces.size();
+
+                        declareNamespaces(xsr, namespaces);
+                    }
+
+                    if (attrs != null && !handleAttributes(attrs, type, handler))
+                        return;
+                }
+                else if (eventType == XMLStreamReader.END_ELEMENT)
+                {
+                    // The end of the element the reader started in
+
+                    if (depth == 0)
+                        return;
+
+                    depth--;
+
+                    for (int i = namespaces.size(); i > marks[depth]; i--)
+                        namespaces.remove(i - 1);
+
+                    context.end();
+                }
+                else if (eventType == XMLStreamReader.END_DOCUMENT)
+                    break;
+
+                if (!xsr.hasNext())
+                    break;
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            throw new XmlException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean handleAttributes(ArrayList values,
+        SchemaType type, XmlElementHandler handler)
+        throws XmlException
+    {
+        if (type == null || !type.isSimpleType())
+            type = XmlAnySimpleType.type;
+
+        for (int i = 0; i < values.size(); i++)
+        {
+            if (!handler.element(type.newValue(values.get(i))))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads past the element the reader is on, leaving it on the end
+     * of the element.
+     */
+    private static void skipElement(XMLStreamReader xsr)
+        throws XMLStreamException
+    {
+        for (int depth = 1; depth > 0; )
+        {
+            int eventType = xsr.next();
+
+            if (eventType == XMLStreamReader.START_ELEMENT)
+                depth++;
+            else if (eventType == XMLStreamReader.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private static void declareNamespaces(XMLStreamReader xsr,
+        ArrayList namespaces)
+    {
+        for (int i = 0; i < xsr.getNamespaceCount(); i++)
+        {
+            String prefix = xsr.getNamespacePrefix(i);
+            String uri = xsr.getNamespaceURI(i);
+
+            namespaces.add(prefix == null ? "" : prefix);
+            namespaces.add(uri == null ? "" : uri);
+        }
+    }
+
+    private static boolean matchesPath(QName[] path, ArrayList names,
+        QName name)
+    {
+        int n = path.length - 1;
+
+        if (names.size() != n || !path[n].equals(name))
+            return false;
+
+        for (int i = 0; i < n; i++)
+        {
+            if (!path[i].equals(names.get(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static Map inScopeNamespaces(ArrayList namespaces)
+    {
+        Map map = new HashMap();
+
+        // Inner declarations come later and win
+
+        for (int i = 0; i < namespaces.size(); i += 2)
+            map.put(namespaces.get(i), namespaces.get(i + 1));
+
+        return map;
+    }
+
+    private static XmlObject parseElementToXmlObject(SchemaTypeLoader stl,
+        XMLStreamReader xsr, SchemaType type, Map namespaces,
+        XmlOptions options)
+        throws XmlException
+    {
+        Locale l = getLocale(stl, options);
+
+        if (l.noSync())
+        {
+            l.enter();
+            try
+            {
+                return l.parseElementToXmlObject(xsr, type, namespaces, options);
+            }
+            finally
+            {
+                l.exit();
+            }
+        }
+        else
+            synchronized (l)
+            {
+                l.enter();
+                try
+                {
+                    return l.parseElementToXmlObject(xsr, type, namespaces, options);
+                }
+                finally
+                {
+                    l.exit();
+                }
+            }
+    }
+
+    private XmlObject parseElementToXmlObject(XMLStreamReader xsr,
+        SchemaType type, Map namespaces, XmlOptions options)
+        throws XmlException
+    {
+        Cur c;
+
+        try
+        {
+            c = loadXMLStreamReader(xsr, options);
+        }
+        catch (XMLStreamException e)
+        {
+            throw new XmlException(e.getMessage(), e);
+        }
+
+        if (!namespaces.isEmpty())
+            applyNamespaces(c, namespaces);
+
+        autoTypeDocument(c, type, options);
+
+        XmlObject x = (XmlObject) c.getUser();
+
+        c.release();
+
+        return x;
+    }
+
     private static void lineNumber(XMLEvent xe, LoadContext context)
     {
         org.apache.xmlbeans.xml.stream.Location loc = xe.getLocation();
@@ -1687,6 +2118,8 @@ public final class Locale
 
     void notifyChange()
     {
+        checkNotFrozen();
+
         // First, notify the registered listeners ...
 
         while (_changeListeners != null)
@@ -2030,44 +2463,15 @@ public final class Locale
         if (parent == null)
             return null;
 
-        int da = _nthCache_A.distance(parent, name, set, n);
-        int db = _nthCache_B.distance(parent, name, set, n);
-
-        Xobj x =
-            da <= db
-            ? _nthCache_A.fetch(parent, name, set, n)
-            : _nthCache_B.fetch(parent, name, set, n);
-
-        if (da == db)
-        {
-            nthCache temp = _nthCache_A;
-            _nthCache_A = _nthCache_B;
-            _nthCache_B = temp;
-        }
-
-        return x;
+        return ChildIndex.find(parent, name, set, n);
     }
 
     int count(Xobj parent, QName name, QNameSet set)
     {
-        int n = 0;
-
-        for (Xobj x = findNthChildElem(parent, name, set, 0);
-             x != null; x = x._nextSibling)
-        {
-            if (x.isElem())
-            {
-                if (set == null)
-                {
-                    if (x._name.equals(name))
-                        n++;
-                }
-                else if (set.contains(x._name))
-                    n++;
-            }
-        }
+        if (parent == null)
+            return 0;
 
-        return n;
+        return ChildIndex.count(parent, name, set);
     }
 
     static boolean toChild(Cur c, QName name, int n)
@@ -2331,132 +2735,6 @@ public final class Locale
         return filleMe;
     }
 
-    class nthCache
-    {
-        private boolean namesSame(QName pattern, QName name)
-        {
-            return pattern == null || pattern.equals(name);
-        }
-
-        private boolean setsSame(QNameSet patternSet, QNameSet set)
-        {
-            // value equality is probably too expensive. Since the use case
-            // involves QNameSets that are generated by the compiler, we
-            // can use identity comparison.
-
-            return patternSet != null && patternSet == set;
-        }
-
-        private boolean nameHit(QName namePattern, QNameSet setPattern,
-            QName name)
-        {
-            return
-                setPattern == null
-                ? namesSame(namePattern, name)
-                : setPattern.contains(name);
-        }
-
-        private boolean cacheSame(QName namePattern, QNameSet setPattern)
-        {
-            return
-                setPattern == null
-                ? namesSame(namePattern, _name)
-                : setsSame(setPattern, _set);
-        }
-
-        int distance(Xobj parent, QName name, QNameSet set, int n)
-        {
-            assert n >= 0;
-
-            if (_version != Locale.this.version())
-                return Integer.MAX_VALUE - 1;
-
-            if (parent != _parent || !cacheSame(name, set))
-                return Integer.MAX_VALUE;
-
-            return n > _n ? n - _n : _n - n;
-        }
-
-        Xobj fetch(Xobj parent, QName name, QNameSet set, int n)
-        {
-            assert n >= 0;
-
-            if (_version != Locale.this.version() || _parent != parent ||
-                !cacheSame(name, set) || n == 0)
-            {
-                _version = Locale.this.version();
-                _parent = parent;
-                _name = name;
-                _child = null;
-                _n = -1;
-
-                loop:
-                for (Xobj x = parent._firstChild;
-                     x != null; x = x._nextSibling)
-                {
-                    if (x.isElem() && nameHit(name, set, x._name))
-                    {
-                        _child = x;
-                        _n = 0;
-
-                        break loop;
-                    }
-                }
-            }
-
-            if (_n < 0)
-                return null;
-
-            if (n > _n)
-            {
-                while (n > _n)
-                {
-                    for (Xobj x = _child._nextSibling; ; x = x._nextSibling)
-                    {
-                        if (x == null)
-                            return null;
-
-                        if (x.isElem() && nameHit(name, set, x._name))
-                        {
-                            _child = x;
-                            _n++;
-
-                            break;
-                        }
-                    }
-                }
-            }
-            else if (n < _n)
-            {
-                while (n < _n)
-                {
-                    for (Xobj x = _child._prevSibling; ; x = x._prevSibling)
-                    {
-                        if (x == null)
-                            return null;
-
-                        if (x.isElem() && nameHit(name, set, x._name))
-                        {
-                            _child = x;
-                            _n--;
-
-                            break;
-                        }
-                    }
-                }
-            }
-
-            return _child;
-        }
-
-        private long _version;
-        private Xobj _parent;
-        private QName _name;
-        private QNameSet _set;
-        private Xobj _child;
-        private int _n;
-    }
-
     //
     //
     //
@@ -2819,6 +3097,9 @@ public final class Locale
 
     public void enter()
     {
+        if (_frozen)
+            _frozenLock.lock();
+
         assert _numTempFramesLeft >= 0;
 
         if (--_numTempFramesLeft <= 0)
@@ -2865,6 +3146,11 @@ public final class Locale
 
     public void exit()
     {
+        // A locale can be frozen in between an enter and its exit, so
+        // only give back the lock if enter actually took it
+
+        boolean unlock = _frozen && _frozenLock.isHeldByCurrentThread();
+
         // assert _numTempFramesLeft >= 0;
         //asserts computed frame fits between 0 and _tempFrames.length
         assert _numTempFramesLeft >= 0 &&
@@ -2876,6 +3162,9 @@ public final class Locale
 
         while (_tempFrames[frame] != null)
             _tempFrames[frame].release();
+
+        if (unlock)
+            _frozenLock.unlock();
     }
 
     //
@@ -2892,6 +3181,269 @@ public final class Locale
         return !_noSync;
     }
 
+    public boolean frozen()
+    {
+        return _frozen;
+    }
+
+    void checkNotFrozen()
+    {
+        if (_frozen)
+            throw new IllegalStateException("Document is read-only");
+    }
+
+    /**
+     * Notes that a second document is made in this locale, after which
+     * no document in it can be frozen, as that would freeze the others
+     * without preparing them.
+     */
+    void share()
+    {
+        _shared = true;
+    }
+
+    //
+    // With LOAD_VALUE_CACHE_SIZE, the locale only holds on to the users of
+    // the nodes it has most recently handed out, up to the given number.
+    // Recency is approximated with a clock: each cached node has a slot,
+    // and its RECENT_USER bit is set when its user is used.  The hand
+    // sweeps the slots clearing the bits, and the first node it finds
+    // with the bit clear gives up its user (see Xobj.evictUser).  Users
+    // given up are only held weakly, so that one still referenced by the
+    // application is found again, and attached back to its node, the next
+    // time either of them asks for the other.
+    //
+
+    boolean cachesUsers()
+    {
+        return _userCache != null;
+    }
+
+    boolean hasEvictedUsers()
+    {
+        return _evictedUsers != null && !_evictedUsers.isEmpty();
+    }
+
+    /**
+     * Called when the user of the given node is used, makes room for it
+     * in the cache if it is not in there already.
+     */
+    void cacheUser(Xobj x)
+    {
+        assert cachesUsers() && x._user != null;
+
+        x.setBit(Xobj.RECENT_USER);
+
+        if (x.bitIsSet(Xobj.CACHED_USER))
+            return;
+
+        pollEvictedUsers();
+
+        // Nodes which cannot give up their users keep their slots for a
+        // second sweep, after which the slot is taken anyway, the node
+        // then keeps its user until it is used again
+
+        for (int i = 0; i < 2 * _userCache.length; i++)
+        {
+            Xobj y = _userCache[_userCacheHand];
+
+            if (y == null || y._user == null ||
+                y.bitIsClear(Xobj.CACHED_USER))
+            {
+                break;
+            }
+
+            if (y.bitIsSet(Xobj.RECENT_USER))
+                y.clearBit(Xobj.RECENT_USER);
+            else if (y.evictUser())
+                break;
+
+            _userCacheHand = (_userCacheHand + 1) % _userCache.length;
+        }
+
+        Xobj y = _userCache[_userCacheHand];
+
+        if (y != null)
+            y.clearBit(Xobj.CACHED_USER);
+
+        _userCache[_userCacheHand] = x;
+        x.setBit(Xobj.CACHED_USER);
+
+        _userCacheHand = (_userCacheHand + 1) % _userCache.length;
+    }
+
+    void evictedUser(Xobj x, TypeStoreUser user)
+    {
+        _evictedUsers.put(x, new EvictedUser(x, user, _evictedQueue));
+    }
+
+    /**
+     * Returns the user the given node gave up, if it is still around,
+     * and forgets about it.
+     */
+    TypeStoreUser reclaimUser(Xobj x)
+    {
+        if (!hasEvictedUsers())
+            return null;
+
+        EvictedUser ref = (EvictedUser) _evictedUsers.remove(x);
+
+        return ref == null ? null : (TypeStoreUser) ref.get();
+    }
+
+    private void pollEvictedUsers()
+    {
+        for (; ;)
+        {
+            EvictedUser ref = (EvictedUser) _evictedQueue.poll();
+
+            if (ref == null)
+                break;
+
+            if (_evictedUsers.get(ref._xobj) == ref)
+                _evictedUsers.remove(ref._xobj);
+        }
+    }
+
+    private static final class EvictedUser
+        extends WeakReference
+    {
+        EvictedUser(Xobj x, TypeStoreUser user, ReferenceQueue queue)
+        {
+            super(user, queue);
+
+            _xobj = x;
+        }
+
+        final Xobj _xobj;
+    }
+
+    /**
+     * Makes this locale read-only.  Before the switch, the text held by
+     * the typed users of the nodes under the given root is brought back
+     * into the store, the values of the existing users are computed and
+     * the text is compacted, so readers of a frozen locale find everything
+     * they need in place and do not have to synchronize on the locale
+     * itself.  Users which do not exist yet are created, and prepared in
+     * the same way, on first use (see Xobj.getUser).  From then on,
+     * enter/exit still serialize everything which works through curs:
+     * cursors, DOM, paths, saving and validation.  Besides the temp frames
+     * and the cur pool, those share the registered and embedded cur lists,
+     * which hang off the nodes, and _offSrc/_cchSrc, so giving each thread
+     * its own frames would not be enough to drop the lock.  Any change to
+     * the document throws an IllegalStateException.  A locale which other
+     * documents share (see share) cannot be frozen.
+     */
+    void freeze(Xobj root)
+    {
+        if (_frozen)
+            return;
+
+        if (_shared)
+            throw new IllegalStateException(
+                "Document shares its synchronization domain with other " +
+                "documents, freeze a copy in a new domain instead");
+
+        enter();
+
+        try
+        {
+            // A frozen locale holds on to all its users, so the ones
+            // which were given up are attached back
+
+            if (cachesUsers())
+            {
+                for (Iterator i = _evictedUsers.values().iterator(); i.hasNext();)
+                {
+                    EvictedUser ref = (EvictedUser) i.next();
+                    TypeStoreUser user = (TypeStoreUser) ref.get();
+
+                    if (user != null)
+                    {
+                        assert ref._xobj._user == null;
+
+                        ref._xobj._user = user;
+                        user.attach_store(ref._xobj);
+                    }
+                }
+
+                for (int i = 0; i < _userCache.length; i++)
+                {
+                    if (_userCache[i] != null)
+                        _userCache[i].clearBit(Xobj.CACHED_USER | Xobj.RECENT_USER);
+                }
+
+                _userCache = null;
+                _evictedUsers = null;
+                _evictedQueue = null;
+            }
+
+            for (Xobj x = root; x != null; x = x.walk(root, true))
+                x.ensureOccupancy();
+
+            for (Xobj x = root; x != null; x = x.walk(root, true))
+            {
+                if (x._user != null && x.isUserNode())
+                    x._user.prepare_freeze();
+            }
+
+            compactText(root);
+        }
+        finally
+        {
+            exit();
+        }
+
+        _frozenLock = new ReentrantLock();
+
+        // Written last, the volatile flag publishes the prepared users and
+        // values to every thread which finds this locale frozen
+
+        _frozen = true;
+    }
+
+    /**
+     * Copies the text of the nodes under the given root into one char
+     * array of exactly the right size.  The loader saves text into large
+     * buffers which are shared by all the documents loaded on a thread,
+     * so a small document can keep alive far more than its own text;
+     * a compacted document holds on to its own characters only.
+     */
+    void compactText(Xobj root)
+    {
+        long cch = 0;
+
+        for (Xobj x = root; x != null; x = x.walk(root, true))
+            cch += x._cchValue + x._cchAfter;
+
+        if (cch == 0 || cch > Integer.MAX_VALUE)
+            return;
+
+        char[] chars = new char[(int) cch];
+        int off = 0;
+
+        for (Xobj x = root; x != null; x = x.walk(root, true))
+        {
+            if (x._cchValue > 0)
+            {
+                CharUtil.getChars(chars, off, x._srcValue, x._offValue, x._cchValue);
+                x._srcValue = chars;
+                x._offValue = off;
+                off += x._cchValue;
+            }
+
+            if (x._cchAfter > 0)
+            {
+                CharUtil.getChars(chars, off, x._srcAfter, x._offAfter, x._cchAfter);
+                x._srcAfter = chars;
+                x._offAfter = off;
+                off += x._cchAfter;
+            }
+        }
+
+        assert off == cch;
+    }
+
     static final boolean isWhiteSpace(String s)
     {
         int l = s.length();
@@ -3660,6 +4212,40 @@ public final class Locale
         return Jsr173.nodeFromStream(xs);
     }
 
+    public static void freezeXmlObject(XmlObject o)
+    {
+        while (o instanceof DelegateXmlObject)
+            o = ((DelegateXmlObject) o).underlyingXmlObject();
+
+        if (!(o instanceof TypeStoreUser))
+            throw new IllegalArgumentException("Not an XmlBeans object: " + o);
+
+        TypeStore store = ((TypeStoreUser) o).get_store();
+
+        // Values which are not in a store (o.isImmutable()) are frozen already
+
+        if (store == null)
+            return;
+
+        if (!(store instanceof Xobj))
+            throw new IllegalArgumentException("Unknown store: " + store);
+
+        Xobj x = (Xobj) store;
+
+        while (x._parent != null)
+            x = x._parent;
+
+        Locale l = x._locale;
+
+        if (l.noSync())
+            l.freeze(x);
+        else
+            synchronized (l)
+            {
+                l.freeze(x);
+            }
+    }
+
     //
     // SaajCallback methods
     //
@@ -3773,6 +4359,15 @@ public final class Locale
 
     boolean _noSync;
 
+    private volatile boolean _frozen;
+    private ReentrantLock _frozenLock;
+    private volatile boolean _shared;
+
+    private Xobj[] _userCache;
+    private int _userCacheHand;
+    private Map _evictedUsers;
+    private ReferenceQueue _evictedQueue;
+
     SchemaTypeLoader _schemaTypeLoader;
 
     private ReferenceQueue _refQueue;
@@ -3808,9 +4403,6 @@ public final class Locale
 
     int _posTemp;
 
-    nthCache _nthCache_A = new nthCache();
-    nthCache _nthCache_B = new nthCache();
-
     domNthCache _domNthCache_A = new domNthCache();
     domNthCache _domNthCache_B = new domNthCache();
 }
@@ -20,9 +20,9 @@ import java.util.*;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.xml.namespace.QName;
 
 import org.apache.xmlbeans.impl.common.XPath;
 import org.apache.xmlbeans.impl.common.XPath.XPathCompileException;
@@ -49,10 +49,31 @@ public abstract class Path
     private static final int USE_XQRL2002 = 0x08;
     private static final int USE_XDK      = 0x10;
 
-    private static Map _xbeanPathCache = new WeakHashMap();
-    private static Map _xdkPathCache = new WeakHashMap();
-    private static Map _xqrlPathCache = new WeakHashMap();
-    private static Map _xqrl2002PathCache = new WeakHashMap();
+    // The number of compiled paths kept, which can be changed with the
+    // xmlbean.pathcachesize system property
+
+    private static final int DEFAULT_PATH_CACHE_SIZE = 512;
+
+    private static final PathCache _pathCache = new PathCache(pathCacheSize());
+
+    private static int pathCacheSize()
+    {
+        String size = SystemProperties.getProperty("xmlbean.pathcachesize");
+
+        if (size == null)
+            return DEFAULT_PATH_CACHE_SIZE;
+
+        // A bad size must not leave the paths without a cache
+        try
+        {
+            int n = Integer.parseInt(size.trim());
+            return n > 0 ? n : DEFAULT_PATH_CACHE_SIZE;
+        }
+        catch (NumberFormatException e)
+        {
+            return DEFAULT_PATH_CACHE_SIZE;
+        }
+    }
 
     private static Method _xdkCompilePath;
     private static Method _xqrlCompilePath;
@@ -63,7 +84,6 @@ public abstract class Path
     private static boolean _xqrl2002Available = true;
 
     private static String _delIntfName;
-    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     static
     {
@@ -141,60 +161,27 @@ public abstract class Path
     static Path getCompiledPath(String pathExpr, int force,
         String currentVar, String delIntfName)
     {
-        Path path = null;
-        WeakReference pathWeakRef = null;
-        Map namespaces = (force & USE_DELEGATE) != 0 ? new HashMap() : null;
-        lock.readLock().lock();
-        try {
-        if ((force & USE_XBEAN) != 0)
-            pathWeakRef = (WeakReference)_xbeanPathCache.get(pathExpr);
-        if (pathWeakRef == null && (force & USE_XQRL) != 0)
-            pathWeakRef = (WeakReference)_xqrlPathCache.get(pathExpr);
-        if (pathWeakRef == null && (force & USE_XDK) != 0)
-            pathWeakRef = (WeakReference)_xdkPathCache.get(pathExpr);
-        if (pathWeakRef == null && (force & USE_XQRL2002) != 0)
-            pathWeakRef = (WeakReference)_xqrl2002PathCache.get(pathExpr);
-
-        if (pathWeakRef!=null)
-            path = (Path)pathWeakRef.get();
+        Object key = PathCache.key(pathExpr, force, currentVar,
+            (force & USE_DELEGATE) != 0 ? delIntfName : null);
+
+        Path path = _pathCache.get(key);
+
         if (path != null)
             return path;
-        } finally {
-            lock.readLock().unlock();
-        }
-        lock.writeLock().lock();
-        try {
-        if ((force & USE_XBEAN) != 0) {
-            pathWeakRef = (WeakReference)_xbeanPathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXbean(pathExpr, currentVar, namespaces);
-        }
-        if (path == null && (force & USE_XQRL) != 0) {
-            pathWeakRef = (WeakReference)_xqrlPathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXqrl(pathExpr, currentVar);
-        }
-        if (path == null && (force & USE_XDK) != 0) {
-            pathWeakRef = (WeakReference)_xdkPathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXdk(pathExpr, currentVar);
-        }
-        if (path == null && (force & USE_DELEGATE) != 0) {
+
+        Map namespaces = (force & USE_DELEGATE) != 0 ? new HashMap() : null;
+
+        if ((force & USE_XBEAN) != 0)
+            path = XbeanPath.create(pathExpr, currentVar, namespaces);
+        if (path == null && (force & USE_XQRL) != 0)
+            path = createXqrlCompiledPath(pathExpr, currentVar);
+        if (path == null && (force & USE_XDK) != 0)
+            path = createXdkCompiledPath(pathExpr, currentVar);
+        if (path == null && (force & USE_DELEGATE) != 0)
             path = getCompiledPathDelegate(pathExpr, currentVar, namespaces, delIntfName);
-        }
-        if (path == null && (force & USE_XQRL2002) != 0) {
-            pathWeakRef = (WeakReference)_xqrl2002PathCache.get(pathExpr);
-            if (pathWeakRef != null)
-                path = (Path)pathWeakRef.get();
-            if (path==null)
-            path = getCompiledPathXqrl2002(pathExpr, currentVar);
-        }
+        if (path == null && (force & USE_XQRL2002) != 0)
+            path = createXqrl2002CompiledPath(pathExpr, currentVar);
+
         if (path == null)
         {
             StringBuffer errMessage = new StringBuffer();
@@ -211,47 +198,8 @@ public abstract class Path
 
             throw new RuntimeException(errMessage.toString() + " FAILED on " + pathExpr);
         }
-        } finally {
-            lock.writeLock().unlock();
-        }
-        return path;
-    }
-
-    static private Path getCompiledPathXdk(String pathExpr, String currentVar)
-    {
-        Path path = createXdkCompiledPath(pathExpr, currentVar);
-        if (path != null)
-            _xdkPathCache.put(path._pathKey, new WeakReference(path));
-
-        return path;
-    }
-
-    static private Path getCompiledPathXqrl(String pathExpr, String currentVar)
-    {
-        Path path = createXqrlCompiledPath(pathExpr, currentVar);
-        if (path != null)
-            _xqrlPathCache.put(path._pathKey, new WeakReference(path));
-
-        return path;
-    }
 
-    static private Path getCompiledPathXqrl2002(String pathExpr, String currentVar)
-    {
-        Path path = createXqrl2002CompiledPath(pathExpr, currentVar);
-        if (path != null)
-            _xqrl2002PathCache.put(path._pathKey, new WeakReference(path));
-
-        return path;
-    }
-
-    static private Path getCompiledPathXbean(String pathExpr,
-        String currentVar, Map namespaces)
-    {
-        Path path = XbeanPath.create(pathExpr, currentVar, namespaces);
-        if (path != null)
-            _xbeanPathCache.put(path._pathKey, new WeakReference(path));
-
-        return path;
+        return _pathCache.put(key, path);
     }
 
     static private Path getCompiledPathDelegate(String pathExpr, String currentVar, Map namespaces, String delIntfName)
@@ -288,6 +236,40 @@ public abstract class Path
         return getCompiledPath(pathExpr, options)._pathKey;
     }
 
+    /**
+     * Returns the number of lookups of compiled paths, by XmlCursor.selectPath,
+     * XmlObject.selectPath and compilePath, which found the path compiled.
+     */
+    public static long getCacheHits()
+    {
+        return _pathCache.hits();
+    }
+
+    /**
+     * Returns the number of lookups of compiled paths which had to compile
+     * the path.
+     */
+    public static long getCacheMisses()
+    {
+        return _pathCache.misses();
+    }
+
+    /**
+     * Returns the number of compiled paths in the cache.
+     */
+    public static int getCacheSize()
+    {
+        return _pathCache.size();
+    }
+
+    /**
+     * Drops all the compiled paths and resets the hit and miss counts.
+     */
+    public static void clearCache()
+    {
+        _pathCache.clear();
+    }
+
     //
     // Xbean store specific implementation of compiled path
     //
@@ -299,7 +281,7 @@ public abstract class Path
             try
             {
                 return new XbeanPath(pathExpr, currentVar,
-                                XPath.compileXPath(pathExpr, currentVar, namespaces));
+                                XPath.compileXPath(pathExpr, currentVar, namespaces, true));
             }
             catch (XPathCompileException e) {
                 return null;
@@ -317,9 +299,6 @@ public abstract class Path
         PathEngine execute(Cur c, XmlOptions options)
         {
             options = XmlOptions.maskNull(options);
-            String delIntfName = 
-                options.hasOption(PATH_DELEGATE_INTERFACE) ? 
-                    (String)options.get(PATH_DELEGATE_INTERFACE) : _delIntfName;
 
             // The builtin XPath engine works only on containers.  Delegate to
             // xqrl otherwise.  Also, if the path had a //. at the end, the
@@ -327,13 +306,31 @@ public abstract class Path
             // attrs and elements.
 
             if (!c.isContainer() || _compiledPath.sawDeepDot())
-            {
-                int force = USE_DELEGATE | USE_XQRL | USE_XDK;
-                return getCompiledPath(_pathKey, force, _currentVar, delIntfName).execute(c, options);
-            }
+                return executeDelegate(c, options);
+
+            // Predicates look at the whole of an element, so a path with them
+            // is run over the tree rather than as the document streams by
+
+            if (_compiledPath.hasPredicates())
+                return new XbeanSelectPathEngine(this, c, options);
+
             return new XbeanPathEngine(_compiledPath, c);
         }
 
+        /**
+         * Runs this path with the engines it would have been run with if
+         * predicates were not supported by the builtin engine.
+         */
+        PathEngine executeDelegate(Cur c, XmlOptions options)
+        {
+            String delIntfName =
+                options.hasOption(PATH_DELEGATE_INTERFACE) ?
+                    (String)options.get(PATH_DELEGATE_INTERFACE) : _delIntfName;
+
+            int force = USE_DELEGATE | USE_XQRL | USE_XDK;
+            return getCompiledPath(_pathKey, force, _currentVar, delIntfName).execute(c, options);
+        }
+
         private final String _currentVar;
         private final XPath _compiledPath;
         public Map namespaces;
@@ -575,6 +572,136 @@ public abstract class Path
         private Cur _cur;
     }
 
+    private static final class XbeanSelectPathEngine
+        implements PathEngine
+    {
+        XbeanSelectPathEngine(XbeanPath path, Cur c, XmlOptions options)
+        {
+            assert c.isContainer();
+
+            _path = path;
+            _options = options;
+            _version = c._locale.version();
+            _cur = c.weakCur(this);
+        }
+
+        public boolean next(Cur c)
+        {
+            if (_delegate != null)
+                return _delegate.next(c);
+
+            if (_cur == null)
+                return false;
+
+            if (_version != _cur._locale.version())
+                throw new ConcurrentModificationException("Document changed during select");
+
+            List results = new ArrayList();
+
+            try
+            {
+                _path._compiledPath.select(XobjNavigator.INSTANCE, _cur._xobj, results);
+            }
+            catch (XPath.XPathUnsupportedValueException e)
+            {
+                // The document has a value the delegate treats differently,
+                // so the delegate runs the path, as it did before
+
+                _delegate = _path.executeDelegate(_cur, _options);
+                releaseCur();
+                return _delegate.next(c);
+            }
+
+            for (int i = 0; i < results.size(); i++)
+            {
+                Cur pos = ((Xobj) results.get(i)).tempCur();
+                c.addToSelection(pos);
+                pos.release();
+            }
+
+            release();
+
+            return !results.isEmpty();
+        }
+
+        public void release()
+        {
+            releaseCur();
+
+            if (_delegate != null)
+                _delegate.release();
+        }
+
+        private void releaseCur()
+        {
+            if (_cur != null) {
+                _cur.release();
+                _cur = null;
+            }
+        }
+
+        private final XbeanPath _path;
+        private final XmlOptions _options;
+        private final long _version;
+        private Cur _cur;
+        private PathEngine _delegate;
+    }
+
+    private static final class XobjNavigator
+        implements XPath.Navigator
+    {
+        static final XobjNavigator INSTANCE = new XobjNavigator();
+
+        public Object firstElement(Object node)
+        {
+            return element(((Xobj) node)._firstChild);
+        }
+
+        public Object nextElement(Object element)
+        {
+            return element(((Xobj) element)._nextSibling);
+        }
+
+        public Object firstAttr(Object node)
+        {
+            return attr(((Xobj) node)._firstChild);
+        }
+
+        public Object nextAttr(Object attr)
+        {
+            return attr(((Xobj) attr)._nextSibling);
+        }
+
+        public QName getName(Object node)
+        {
+            return ((Xobj) node)._name;
+        }
+
+        public String getStringValue(Object node)
+        {
+            return ((Xobj) node).getValueAsString();
+        }
+
+        private static Xobj element(Xobj x)
+        {
+            while (x != null && !x.isElem())
+                x = x._nextSibling;
+
+            return x;
+        }
+
+        // Attributes come before the other children, and namespace
+        // declarations are not attributes to a path
+
+        private static Xobj attr(Xobj x)
+        {
+            while (x != null && x.isXmlns())
+                x = x._nextSibling;
+
+            return x == null || !x.isAttr() ? null : x;
+        }
+    }
+
     private static final class DelegatePathImpl
         extends Path
     {
@@ -0,0 +1,242 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.store;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The compiled paths, by expression, current node variable and the engines
+ * they may be compiled with.  Lookups do not lock, and compiled paths stay
+ * until the cache is full, when the least recently used of them are dropped.
+ * <p>
+ * A path which is missed by two threads at once is compiled by both, and
+ * the first one to be put in the cache is the one both get.
+ * <p>
+ * A hit does not write anything shared by all the threads: the clock the
+ * paths are stamped with only moves when a path is added, so a hit stamps
+ * its path only the first time it is used since then, and the hits are
+ * counted in one of several counters picked by thread.
+ */
+final class PathCache
+{
+    PathCache ( int maxSize )
+    {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException( "Path cache size must be positive" );
+
+        _maxSize = maxSize;
+        _map = new ConcurrentHashMap();
+    }
+
+    /**
+     * Returns the key of a path.  The delegate interface only matters when
+     * the delegate engine is one of the engines, and is null otherwise.
+     */
+    static Object key ( String pathExpr, int engines, String currentVar, String delIntfName )
+    {
+        return new Key( pathExpr, engines, currentVar, delIntfName );
+    }
+
+    Path get ( Object key )
+    {
+        Entry e = (Entry) _map.get( key );
+
+        if (e == null)
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        _hits.incrementAndGet( hitSlot() );
+
+        long now = _clock.get();
+
+        if (e._used != now)
+            e._used = now;
+
+        return e._path;
+    }
+
+    /**
+     * Adds a compiled path, and returns the path in the cache, which is not
+     * the given one when another thread put it there first.
+     */
+    Path put ( Object key, Path path )
+    {
+        assert path != null;
+
+        Entry e = new Entry( path, _clock.incrementAndGet() );
+
+        Entry old = (Entry) _map.putIfAbsent( key, e );
+
+        if (old != null)
+            return old._path;
+
+        if (_map.size() > _maxSize)
+            evict();
+
+        return path;
+    }
+
+    void clear ( )
+    {
+        _map.clear();
+
+        for ( int i = 0 ; i < _hits.length() ; i++ )
+            _hits.set( i, 0 );
+
+        _misses.set( 0 );
+    }
+
+    int size ( )
+    {
+        return _map.size();
+    }
+
+    long hits ( )
+    {
+        long hits = 0;
+
+        for ( int i = 0 ; i < _hits.length() ; i += HIT_SPACING )
+            hits += _hits.get( i );
+
+        return hits;
+    }
+
+    private static int hitSlot ( )
+    {
+        int h = System.identityHashCode( Thread.currentThread() );
+        return ((h ^ (h >>> 16)) & (HIT_COUNTERS - 1)) * HIT_SPACING;
+    }
+
+    long misses ( )
+    {
+        return _misses.get();
+    }
+
+    private void evict ( )
+    {
+        // Evicting takes a sort, so a full cache drops an eighth of its
+        // paths at once rather than one path on every miss.  The use stamps
+        // are copied first, as other threads keep changing them.
+
+        synchronized ( _evictLock )
+        {
+            int keep = _maxSize - _maxSize / 8;
+
+            Entry[] entries = (Entry[]) _map.values().toArray( new Entry[ 0 ] );
+
+            if (entries.length <= keep)
+                return;
+
+            long[] stamps = new long[ entries.length ];
+
+            for ( int i = 0 ; i < entries.length ; i++ )
+                stamps[ i ] = entries[ i ]._used;
+
+            long[] sorted = (long[]) stamps.clone();
+            Arrays.sort( sorted );
+
+            long oldest = sorted[ entries.length - keep - 1 ];
+
+            for ( Iterator i = _map.values().iterator() ; i.hasNext() ; )
+            {
+                if (((Entry) i.next())._used <= oldest)
+                    i.remove();
+            }
+        }
+    }
+
+    private static final class Key
+    {
+        Key ( String pathExpr, int engines, String currentVar, String delIntfName )
+        {
+            _pathExpr = pathExpr;
+            _engines = engines;
+            _currentVar = currentVar;
+            _delIntfName = delIntfName;
+
+            int h = pathExpr.hashCode();
+            h = 31 * h + engines;
+            h = 31 * h + (currentVar == null ? 0 : currentVar.hashCode());
+            h = 31 * h + (delIntfName == null ? 0 : delIntfName.hashCode());
+
+            _hash = h;
+        }
+
+        public int hashCode ( )
+        {
+            return _hash;
+        }
+
+        public boolean equals ( Object o )
+        {
+            if (o == this)
+                return true;
+
+            if (!(o instanceof Key))
+                return false;
+
+            Key k = (Key) o;
+
+            return
+                _hash == k._hash && _engines == k._engines &&
+                    _pathExpr.equals( k._pathExpr ) &&
+                    equal( _currentVar, k._currentVar ) &&
+                    equal( _delIntfName, k._delIntfName );
+        }
+
+        private static boolean equal ( String s1, String s2 )
+        {
+            return s1 == null ? s2 == null : s1.equals( s2 );
+        }
+
+        private final String _pathExpr;
+        private final int    _engines;
+        private final String _currentVar;
+        private final String _delIntfName;
+        private final int    _hash;
+    }
+
+    private static final class Entry
+    {
+        Entry ( Path path, long used )
+        {
+            _path = path;
+            _used = used;
+        }
+
+        final Path    _path;
+        volatile long _used;
+    }
+
+    private final int               _maxSize;
+    private final ConcurrentHashMap _map;
+    private final Object            _evictLock = new Object();
+
+    // The hit counters are spaced out so that no two share a cache line
+
+    private static final int HIT_COUNTERS = 16;
+    private static final int HIT_SPACING  = 8;
+
+    private final AtomicLong      _clock  = new AtomicLong();
+    private final AtomicLongArray _hits   = new AtomicLongArray( HIT_COUNTERS * HIT_SPACING );
+    private final AtomicLong      _misses = new AtomicLong();
+}
@@ -323,6 +323,8 @@ public final class Public2
         public void invalidate_element_order() { throw new RuntimeException( "Not impl" ); }
         public void validate_now() { throw new RuntimeException( "Not impl" ); }
         public void disconnect_store() { throw new RuntimeException( "Not impl" ); }
+        public void prepare_freeze() { }
+        public void evict_store() { }
         public TypeStoreUser create_element_user(QName eltName, QName xsiType) { return new TestTypeStoreUser( "ELEM" ); }
         public TypeStoreUser create_attribute_user(QName attrName) { throw new RuntimeException( "Not impl" ); }
         public String get_default_element_text(QName eltName) { throw new RuntimeException( "Not impl" ); }
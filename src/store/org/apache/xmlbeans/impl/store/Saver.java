@@ -32,6 +32,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 
 import org.xml.sax.ContentHandler;
 import org.xml.sax.ext.LexicalHandler;
@@ -291,6 +296,239 @@ abstract class Saver
             (ch == 0x9) || (ch == 0xA) || (ch == 0xD)
         );
     }
+
+    /**
+     * Where the escaping helpers below write.  The savers which produce
+     * text, TextSaver and OptimizedForSpeedSaver, are both sinks, and
+     * escape the same way through these helpers.
+     */
+    interface TextSink
+    {
+        void emit ( char ch );
+        void emit ( String s );
+        void emit ( char[] buf, int off, int cch );
+    }
+
+    /**
+     * Copies the text at the cursor to the start of buf, growing buf if
+     * it is too small.  The text is c._cchSrc long.
+     */
+    static char[] copyText ( SaveCur c, char[] buf )
+    {
+        assert c.isText();
+
+        Object src = c.getChars();
+        int cch = c._cchSrc;
+
+        if (buf.length < cch)
+            buf = new char [ Math.max( cch, buf.length * 2 ) ];
+
+        CharUtil.getChars( buf, 0, src, c._offSrc, cch );
+
+        return buf;
+    }
+
+    /**
+     * Writes element content, as a CDATA section when forced to or when
+     * it is long and has many characters to escape, otherwise entitized.
+     * Bad characters become '?' either way.
+     */
+    static void entitizeContent (
+        TextSink sink, char[] text, int cch, boolean forceCData,
+        int cdataLengthThreshold, int cdataEntityCountThreshold,
+        boolean isPrettyPrint, XmlOptionCharEscapeMap replaceChar )
+    {
+        if (cch == 0)
+            return;
+
+        int count = 0;
+
+        for ( int i = 0 ; i < cch ; i++ )
+        {
+            char ch = text[ i ];
+
+            if (ch == '<' || ch == '&')
+                count++;
+        }
+
+        //
+        // Heuristic for knowing when to save out stuff as a CDATA.
+        //
+        if (forceCData || (cch > cdataLengthThreshold && count > cdataEntityCountThreshold) )
+        {
+            sink.emit( "<![CDATA[" );
+
+            boolean lastWasBracket = false;
+            boolean secondToLastWasBracket = false;
+            int start = 0;
+
+            for ( int i = 0 ; i < cch ; i++ )
+            {
+                char ch = text[ i ];
+
+                if (ch == '>' && secondToLastWasBracket && lastWasBracket)
+                {
+                    sink.emit( text, start, i - start );
+                    sink.emit( "]]>><![CDATA[" );
+                    start = i + 1;
+                }
+                else if (isBadChar( ch ))
+                    text[ i ] = '?';
+
+                secondToLastWasBracket = lastWasBracket;
+                lastWasBracket = ch == ']';
+            }
+
+            sink.emit( text, start, cch - start );
+            sink.emit( "]]>" );
+
+            return;
+        }
+
+        int start = 0;
+        char ch = 0, ch_1 = 0, ch_2;
+
+        for ( int i = 0 ; i < cch ; i++ )
+        {
+            ch_2 = ch_1;
+            ch_1 = ch;
+            ch = text[ i ];
+
+            String replacement;
+
+            if (ch == '<')
+                replacement = "&lt;";
+            else if (ch == '&')
+                replacement = "&amp;";
+            else if (ch == '>' && ch_1 == ']' && ch_2 == ']')
+                replacement = "&gt;";
+            else if (isBadChar( ch ))
+                replacement = "?";
+            else if (!isPrettyPrint && ch == '\r')
+                replacement = "&#13;";
+            else if (isEscapedChar( replaceChar, ch ))
+                replacement = replaceChar.getEscapedString( ch );
+            else
+                continue;
+
+            sink.emit( text, start, i - start );
+            sink.emit( replacement );
+            start = i + 1;
+        }
+
+        sink.emit( text, start, cch - start );
+    }
+
+    /**
+     * Writes an attribute value for a double quoted attribute.  The
+     * substitute characters are not used when replaceChar is null, as
+     * for namespace declarations.
+     */
+    static void entitizeAttrValue ( TextSink sink, String value, XmlOptionCharEscapeMap replaceChar )
+    {
+        int len = value.length();
+
+        for ( int i = 0 ; i < len ; i++ )
+        {
+            char ch = value.charAt( i );
+
+            if (ch == '<')
+                sink.emit( "&lt;" );
+            else if (ch == '&')
+                sink.emit( "&amp;" );
+            else if (ch == '"')
+                sink.emit( "&quot;" );
+            else if (isEscapedChar( replaceChar, ch ))
+                sink.emit( replaceChar.getEscapedString( ch ) );
+            else
+                sink.emit( ch );
+        }
+    }
+
+    /**
+     * Writes the text of a comment, changing it in place so that it
+     * has no "--" and does not end with '-'
+     */
+    static void entitizeComment ( TextSink sink, char[] text, int cch )
+    {
+        if (cch == 0)
+            return;
+
+        boolean lastWasDash = false;
+
+        for ( int i = 0 ; i < cch ; i++ )
+        {
+            char ch = text[ i ];
+
+            if (isBadChar( ch ))
+                text[ i ] = '?';
+            else if (ch == '-')
+            {
+                if (lastWasDash)
+                {
+                    // Replace "--" with "- " to make well formed
+                    text[ i ] = ' ';
+                    lastWasDash = false;
+                }
+                else
+                {
+                    lastWasDash = true;
+                }
+            }
+            else
+            {
+                lastWasDash = false;
+            }
+        }
+
+        if (text[ cch - 1 ] == '-')
+            text[ cch - 1 ] = ' ';
+
+        sink.emit( text, 0, cch );
+    }
+
+    /**
+     * Writes the text of a processing instruction, changing it in place
+     * so that it has no "?>"
+     */
+    static void entitizeProcinst ( TextSink sink, char[] text, int cch )
+    {
+        boolean lastWasQuestion = false;
+
+        for ( int i = 0 ; i < cch ; i++ )
+        {
+            char ch = text[ i ];
+
+            if (isBadChar( ch ))
+            {
+                text[ i ] = '?';
+                ch = '?';
+            }
+
+            if (ch == '>')
+            {
+                // TODO - Had to convert to a space here ... imples not well formed XML
+                if (lastWasQuestion)
+                    text[ i ] = ' ';
+
+                lastWasQuestion = false;
+            }
+            else
+            {
+                lastWasQuestion = ch == '?';
+            }
+        }
+
+        sink.emit( text, 0, cch );
+    }
+
+    /**
+     * Test if a character is to be replaced with an escaped value
+     */
+    private static boolean isEscapedChar ( XmlOptionCharEscapeMap replaceChar, char ch )
+    {
+        return ( null != replaceChar && replaceChar.containsChar( ch ) );
+    }
         
     protected boolean saveNamespacesFirst ( )
     {
@@ -925,7 +1163,7 @@ abstract class Saver
     //
     //
 
-    static final class TextSaver extends Saver
+    static final class TextSaver extends Saver implements TextSink
     {
         TextSaver ( Cur c, XmlOptions options, String encoding )
         {
@@ -1023,8 +1261,7 @@ abstract class Saver
 
             // TODO - must encode uri properly
 
-            emit( uri );
-            entitizeAttrValue(false);
+            entitizeAttrValue( this, uri, null );
 
             emit( '"' );
         }
@@ -1043,8 +1280,7 @@ abstract class Saver
             emit( ' ' );
             emitName( attrName, true );
             emit( '=', '\"' );
-            emit( attrValue );
-            entitizeAttrValue(true);
+            entitizeAttrValue( this, attrValue, _replaceChar );
             emit( '"' );
         }
 
@@ -1055,9 +1291,10 @@ abstract class Saver
             // c.isTextCData() is expensive do it only if useCDataBookmarks option is enabled
             boolean forceCData = _useCDataBookmarks && c.isTextCData();
 
-            emit( c );
+            _text = copyText( c, _text );
 
-            entitizeContent( forceCData );
+            entitizeContent( this, _text, c._cchSrc, forceCData,
+                _cdataLengthThreshold, _cdataEntityCountThreshold, _isPrettyPrint, _replaceChar );
         }
 
         protected void emitComment ( SaveCur c )
@@ -1069,11 +1306,14 @@ abstract class Saver
             c.push();
             c.next();
 
-            emit( c );
+            if (c.isText())
+            {
+                _text = copyText( c, _text );
+                entitizeComment( this, _text, c._cchSrc );
+            }
 
             c.pop();
 
-            entitizeComment();
             emit( "-->" );
         }
 
@@ -1093,8 +1333,8 @@ abstract class Saver
             if (c.isText())
             {
                 emit( " " );
-                emit( c );
-                entitizeProcinst();
+                _text = copyText( c, _text );
+                entitizeProcinst( this, _text, c._cchSrc );
             }
 
             c.pop();
@@ -1194,7 +1434,7 @@ abstract class Saver
             emit( name.getLocalPart() );
         }
 
-        private void emit ( char ch )
+        public void emit ( char ch )
         {
             assert _buf==null ||
                 (_out<_in && _free == _buf.length - ( _in - _out ) ) || // data in the middle, free on the edges
@@ -1236,7 +1476,7 @@ abstract class Saver
                 : "_buf.length:" + _buf.length + " _in:" + _in + " _out:" + _out + " _free:" + _free;            
         }
 
-        private void emit ( String s )
+        public void emit ( String s )
         {
             assert _buf==null ||
                 (_out<_in && _free == _buf.length - ( _in - _out ) ) || // data in the middle, free on the edges
@@ -1272,32 +1512,24 @@ abstract class Saver
                 : "_buf.length:" + _buf.length + " _in:" + _in + " _out:" + _out + " _free:" + _free;
         }
 
-        private void emit ( SaveCur c )
+        public void emit ( char[] buf, int off, int cch )
         {
-            if (c.isText())
-            {
-                Object src = c.getChars();
-                int cch = c._cchSrc;
-
-                if (preEmit( cch ))
-                    return;
+            if (preEmit( cch ))
+                return;
 
-                int chunk;
+            int chunk;
 
-                if (_in <= _out || cch < (chunk = _buf.length - _in))
-                {
-                    CharUtil.getChars( _buf, _in, src, c._offSrc, cch );
-                    _in += cch;
-                }
-                else
-                {
-                    CharUtil.getChars( _buf, _in, src, c._offSrc, chunk );
-                    CharUtil.getChars( _buf, 0, src, c._offSrc + chunk, cch - chunk );
-                    _in = (_in + cch) % _buf.length;
-                }
+            if (_in <= _out || cch < (chunk = _buf.length - _in))
+            {
+                System.arraycopy( buf, off, _buf, _in, cch );
+                _in += cch;
             }
             else
-                preEmit( 0 );
+            {
+                System.arraycopy( buf, off, _buf, _in, chunk );
+                System.arraycopy( buf, off + chunk, _buf, 0, cch - chunk );
+                _in = (_in + cch) % _buf.length;
+            }
         }
 
         private boolean preEmit ( int cch )
@@ -1310,8 +1542,6 @@ abstract class Saver
                 (_out==_in && _free == 0)                               // buffer full
                 : "_buf.length:" + _buf.length + " _in:" + _in + " _out:" + _out + " _free:" + _free;
 
-            _lastEmitCch = cch;
-
             if (cch == 0)
                 return true;
 
@@ -1333,8 +1563,6 @@ abstract class Saver
                 _in = _out = 0;
             }
 
-            _lastEmitIn = _in;
-
             _free -= cch;
 
             assert _free >= 0;
@@ -1349,305 +1577,6 @@ abstract class Saver
             return false;
         }
 
-        private void entitizeContent ( boolean forceCData )
-        {
-            assert _free >=0;
-            
-            if (_lastEmitCch == 0)
-                return;
-
-            int i = _lastEmitIn;
-            final int n = _buf.length;
-
-            boolean hasCharToBeReplaced = false;
-
-            int count = 0;
-            char prevChar = 0;
-            char prevPrevChar = 0;
-            for ( int cch = _lastEmitCch ; cch > 0 ; cch-- )
-            {
-                char ch = _buf[ i ];
-
-                if (ch == '<' || ch == '&')
-                    count++;
-                else if (prevPrevChar == ']' && prevChar == ']' && ch == '>' )
-                    hasCharToBeReplaced = true;
-                else if (isBadChar( ch ) || isEscapedChar( ch ) || (!_isPrettyPrint && ch == '\r') )
-                    hasCharToBeReplaced = true;
-
-                if (++i == n)
-                    i = 0;
-
-                prevPrevChar = prevChar;
-                prevChar = ch;
-            }
-
-            if (!forceCData && count == 0 && !hasCharToBeReplaced && count<_cdataEntityCountThreshold)
-                return;
-
-            i = _lastEmitIn;
-
-            //
-            // Heuristic for knowing when to save out stuff as a CDATA.
-            //
-            if (forceCData || (_lastEmitCch > _cdataLengthThreshold && count > _cdataEntityCountThreshold) )
-            {
-                boolean lastWasBracket = _buf[ i ] == ']';
-
-                i = replace( i, "<![CDATA[" + _buf[ i ] );
-
-                boolean secondToLastWasBracket = lastWasBracket;
-
-                lastWasBracket = _buf[ i ] == ']';
-
-                if (++i == _buf.length)
-                    i = 0;
-
-                for ( int cch = _lastEmitCch ; cch > 0 ; cch-- )
-                {
-                    char ch = _buf[ i ];
-
-                    if (ch == '>' && secondToLastWasBracket && lastWasBracket)
-                        i = replace( i, "]]>><![CDATA[" );
-                    else if (isBadChar( ch ))
-                        i = replace( i, "?" );
-                    else
-                        i++;
-
-                    secondToLastWasBracket = lastWasBracket;
-                    lastWasBracket = ch == ']';
-
-                    if (i == _buf.length)
-                        i = 0;
-                }
-
-                emit( "]]>" );
-            }
-            else
-            {
-                char ch = 0, ch_1 = 0, ch_2;
-                for ( int cch = _lastEmitCch ; cch > 0 ; cch-- )
-                {
-                    ch_2 = ch_1;
-                    ch_1 = ch;
-                    ch = _buf[ i ];
-
-                    if (ch == '<')
-                        i = replace( i, "&lt;" );
-                    else if (ch == '&')
-                        i = replace( i, "&amp;" );
-                    else if (ch == '>' && ch_1 == ']' && ch_2 == ']')
-                        i = replace( i, "&gt;" );
-                    else if (isBadChar( ch ))
-                        i = replace( i, "?" );
-                    else if (!_isPrettyPrint && ch == '\r')
-                        i = replace( i, "&#13;" );
-                    else if (isEscapedChar( ch ))
-                        i = replace( i, _replaceChar.getEscapedString( ch ) );
-                    else
-                        i++;
-
-                    if (i == _buf.length)
-                        i = 0;
-                }
-            }
-        }
-
-        private void entitizeAttrValue ( boolean replaceEscapedChar )
-        {
-            if (_lastEmitCch == 0)
-                return;
-
-            int i = _lastEmitIn;
-
-            for ( int cch = _lastEmitCch ; cch > 0 ; cch-- )
-            {
-                char ch = _buf[ i ];
-
-                if (ch == '<')
-                    i = replace( i, "&lt;" );
-                else if (ch == '&')
-                    i = replace( i, "&amp;" );
-                else if (ch == '"')
-                    i = replace( i, "&quot;" );
-                else if (isEscapedChar( ch ))
-                {
-                    if (replaceEscapedChar)
-                        i = replace( i, _replaceChar.getEscapedString( ch ) );
-                }
-                else
-                    i++;
-
-                if (i == _buf.length)
-                    i = 0;
-            }
-        }
-
-        private void entitizeComment ( )
-        {
-            if (_lastEmitCch == 0)
-                return;
-
-            int i = _lastEmitIn;
-
-            boolean lastWasDash = false;
-
-            for ( int cch = _lastEmitCch ; cch > 0 ; cch-- )
-            {
-                char ch = _buf[ i ];
-
-                if (isBadChar( ch ))
-                    i = replace( i, "?" );
-                else if (ch == '-')
-                {
-                    if (lastWasDash)
-                    {
-                        // Replace "--" with "- " to make well formed
-                        i = replace( i, " " );
-                        lastWasDash = false;
-                    }
-                    else
-                    {
-                        lastWasDash = true;
-                        i++;
-                    }
-                }
-                else
-                {
-                    lastWasDash = false;
-                    i++;
-                }
-
-                if (i == _buf.length)
-                    i = 0;
-            }
-
-            // Because I have only replaced chars with single chars,
-            // _lastEmitIn will still be ok
-
-            int offset = (_lastEmitIn + _lastEmitCch - 1) % _buf.length;
-            if (_buf[ offset ] == '-')
-                i = replace( offset, " " );
-        }
-
-        private void entitizeProcinst ( )
-        {
-            if (_lastEmitCch == 0)
-                return;
-
-            int i = _lastEmitIn;
-
-            boolean lastWasQuestion = false;
-
-            for ( int cch = _lastEmitCch ; cch > 0 ; cch-- )
-            {
-                char ch = _buf[ i ];
-
-                if (isBadChar( ch ))
-                    i = replace( i, "?" );
-
-                if (ch == '>')
-                {
-    // TODO - Had to convert to a space here ... imples not well formed XML
-                    if (lastWasQuestion)
-                        i = replace( i, " " );
-                    else
-                        i++;
-
-                    lastWasQuestion = false;
-                }
-                else
-                {
-                    lastWasQuestion = ch == '?';
-                    i++;
-                }
-
-                if (i == _buf.length)
-                    i = 0;
-            }
-        }
-
-        /**
-         * Test if a character is to be replaced with an escaped value
-         */
-        private boolean isEscapedChar ( char ch )
-        {
-            return ( null != _replaceChar && _replaceChar.containsChar( ch ) );
-        }
-
-        private int replace ( int i, String replacement )
-        {
-            assert replacement.length() > 0;
-
-            int dCch = replacement.length() - 1;
-
-            if (dCch == 0)
-            {
-                _buf[ i ] = replacement.charAt( 0 );
-                return i + 1;
-            }
-
-            assert _free >= 0;
-
-            if (dCch > _free)
-                i = resize( dCch, i );
-
-            assert _free >= 0;
-
-            assert _free >= dCch;
-            assert getAvailable() > 0;
-
-            int charsToCopy = dCch + 1;
-
-            if (_out > _in && i >= _out)
-            {
-                System.arraycopy( _buf, _out, _buf, _out - dCch, i - _out );
-                _out -= dCch;
-                i -= dCch;
-            }
-            else
-            {
-                assert i < _in;
-                int availableEndChunk = _buf.length - _in;
-                if ( dCch <= availableEndChunk )
-                {
-                    System.arraycopy( _buf, i, _buf, i + dCch, _in - i );
-                    _in = ( _in + dCch) % _buf.length;
-                }
-                else if ( dCch <= availableEndChunk + _in - i - 1 )
-                {
-                    int numToCopyToStart = dCch - availableEndChunk;
-                    System.arraycopy( _buf, _in-numToCopyToStart, _buf, 0, numToCopyToStart );
-                    System.arraycopy( _buf, i+1, _buf, i+1+dCch, _in-i-1-numToCopyToStart);
-
-                    _in = numToCopyToStart;
-                }
-                else
-                {
-                    int numToCopyToStart = _in - i - 1;
-                    charsToCopy = availableEndChunk + _in - i;
-
-                    System.arraycopy( _buf, _in-numToCopyToStart, _buf, dCch-charsToCopy+1, numToCopyToStart );
-                    replacement.getChars( charsToCopy, dCch + 1, _buf, 0);
-
-                    _in = numToCopyToStart + dCch - charsToCopy + 1;
-                }
-            }
-
-            replacement.getChars( 0, charsToCopy, _buf, i );
-
-            _free -= dCch;
-
-            assert _free >= 0;
-            assert _buf==null ||
-                (_out<_in && _free == _buf.length - ( _in - _out ) ) || // data in the middle, free on the edges
-                (_out>_in && _free == _out - _in ) ||                   // data on the edges, free in the middle
-                (_out==_in && _free == _buf.length) ||                  // no data, all buffer free
-                (_out==_in && _free == 0)                               // buffer full
-                : "_buf.length:" + _buf.length + " _in:" + _in + " _out:" + _out + " _free:" + _free;
-
-            return (i + dCch + 1) % _buf.length;
-        }
         //
         //
         //
@@ -1856,6 +1785,59 @@ abstract class Saver
             return charsAvailable;
         }
 
+        /**
+         * Saves the whole document to the stream, encoding the characters
+         * straight out of the buffer.
+         */
+        void save ( OutputStream os, CharsetEncoder encoder ) throws IOException
+        {
+            byte[] bytes = new byte [ 8192 ];
+            ByteBuffer bb = ByteBuffer.wrap( bytes );
+
+            for ( boolean more = true ; more ; )
+            {
+                while ( more && getAvailable() < _initialBufSize )
+                    more = process();
+
+                int available = getAvailable();
+
+                if (available == 0)
+                    continue;
+
+                // As in write(Writer, int), the buffer is always emptied,
+                // so the text is not split around its end
+
+                assert _out == 0;
+
+                CharBuffer cb = CharBuffer.wrap( _buf, 0, available );
+
+                while ( encoder.encode( cb, bb, !more ).isOverflow() )
+                {
+                    os.write( bytes, 0, bb.position() );
+                    bb.clear();
+                }
+
+                // Only a high surrogate, waiting for the low one, is left
+
+                int left = cb.remaining();
+
+                if (left > 0)
+                    System.arraycopy( _buf, cb.position(), _buf, 0, left );
+
+                _in = left;
+                _free = _buf.length - left;
+            }
+
+            while ( encoder.flush( bb ).isOverflow() )
+            {
+                os.write( bytes, 0, bb.position() );
+                bb.clear();
+            }
+
+            if (bb.position() > 0)
+                os.write( bytes, 0, bb.position() );
+        }
+
         public String saveToString ( )
         {
             // We're gonna build a string.  Instead of using StringBuffer, may
@@ -1882,8 +1864,7 @@ abstract class Saver
         private boolean _useCDataBookmarks = false;
         private boolean _isPrettyPrint = false;
 
-        private int _lastEmitIn;
-        private int _lastEmitCch;
+        private char[] _text = new char [ 1024 ];
 
         private int    _free;
         private int    _in;
@@ -1897,13 +1878,17 @@ abstract class Saver
          */
     }
 
+    /**
+     * Saves straight to a Writer, with the same output as a TextSaver
+     * without an encoding (and so without an XML declaration), for all
+     * the save options.  It walks the same SaveCur chain as the other
+     * savers, and escapes through the same helpers as a TextSaver, but
+     * writes into a flat buffer which goes to the Writer once it is full,
+     * rather than into a ring buffer which is then read back out.
+     */
     static final class OptimizedForSpeedSaver
-        extends Saver
+        extends Saver implements TextSink
     {
-        Writer _w;
-        private char[] _buf = new char[1024];
-
-
         static private class SaverIOException
             extends RuntimeException
         {
@@ -1913,21 +1898,36 @@ abstract class Saver
             }
         }
 
-
-        OptimizedForSpeedSaver(Cur cur, Writer writer)
+        OptimizedForSpeedSaver(Cur cur, XmlOptions options, Writer writer)
         {
-            super(cur, XmlOptions.maskNull(null));
+            super(cur, options);
+
+            if (options != null && options.hasOption(XmlOptions.SAVE_CDATA_LENGTH_THRESHOLD))
+                _cdataLengthThreshold = ((Integer)options.get(XmlOptions.SAVE_CDATA_LENGTH_THRESHOLD)).intValue();
+
+            if (options != null && options.hasOption(XmlOptions.SAVE_CDATA_ENTITY_COUNT_THRESHOLD))
+                _cdataEntityCountThreshold = ((Integer)options.get(XmlOptions.SAVE_CDATA_ENTITY_COUNT_THRESHOLD)).intValue();
+
+            if (options != null && options.hasOption(XmlOptions.LOAD_SAVE_CDATA_BOOKMARKS) )
+                _useCDataBookmarks = true;
+
+            if (options != null && options.hasOption(XmlOptions.SAVE_PRETTY_PRINT) )
+                _isPrettyPrint = true;
+
             _w = writer;
         }
 
-        static void save(Cur cur, Writer writer)
+        static void save(Cur cur, XmlOptions options, Writer writer)
             throws IOException
         {
             try
             {
-                Saver saver = new OptimizedForSpeedSaver(cur, writer);
+                OptimizedForSpeedSaver saver = new OptimizedForSpeedSaver(cur, options, writer);
+
                 while(saver.process())
                 {}
+
+                saver.flush();
             }
             catch (SaverIOException e)
             {
@@ -1935,11 +1935,12 @@ abstract class Saver
             }
         }
 
-        private void emit(String s)
+        private void flush()
         {
             try
             {
-                _w.write(s);
+                _w.write(_buf, 0, _len);
+                _len = 0;
             }
             catch (IOException e)
             {
@@ -1947,43 +1948,70 @@ abstract class Saver
             }
         }
 
-        private void emit(char c)
+        public void emit(String s)
         {
-            try
-            {
-                _buf[0] = c;
-                _w.write(_buf, 0, 1);
-            }
-            catch (IOException e)
+            int cch = s.length();
+
+            if (_len + cch > _buf.length)
             {
-                throw new SaverIOException(e);
+                flush();
+
+                if (cch > _buf.length)
+                {
+                    try
+                    {
+                        _w.write(s);
+                    }
+                    catch (IOException e)
+                    {
+                        throw new SaverIOException(e);
+                    }
+
+                    return;
+                }
             }
+
+            s.getChars(0, cch, _buf, _len);
+            _len += cch;
+        }
+
+        public void emit(char c)
+        {
+            if (_len == _buf.length)
+                flush();
+
+            _buf[_len++] = c;
         }
 
         private void emit(char c1, char c2)
         {
-            try
-            {
-                _buf[0] = c1;
-                _buf[1] = c2;
-                _w.write(_buf, 0 , 2);
-            }
-            catch (IOException e)
-            {
-                throw new SaverIOException(e);
-            }
+            emit(c1);
+            emit(c2);
         }
 
-        private void emit(char[] buf, int start, int len)
+        public void emit(char[] buf, int start, int len)
         {
-            try
+            if (_len + len > _buf.length)
             {
-                _w.write(buf, start, len);
-            }
-            catch (IOException e)
-            {
-                throw new SaverIOException(e);
+                flush();
+
+                if (len > _buf.length)
+                {
+                    try
+                    {
+                        _w.write(buf, start, len);
+                    }
+                    catch (IOException e)
+                    {
+                        throw new SaverIOException(e);
+                    }
+
+                    return;
+                }
             }
+
+            System.arraycopy(buf, start, _buf, _len, len);
+            _len += len;
         }
 
         protected boolean emitElement ( SaveCur c, ArrayList attrNames, ArrayList attrValues )
@@ -1993,6 +2021,9 @@ abstract class Saver
             emit( '<' );
             emitName( c.getName(), false );
 
+            if (saveNamespacesFirst())
+                emitNamespacesHelper();
+
             for ( int i = 0 ; i < attrNames.size() ; i++ )
                 emitAttrHelper( (QName) attrNames.get( i ), (String) attrValues.get( i ) );
 
@@ -2034,7 +2065,7 @@ abstract class Saver
             emit( '=', '\"' );
 
             // TODO - must encode uri properly
-            emitAttrValue(uri);
+            entitizeAttrValue( this, uri, null );
 
             emit( '"' );
         }
@@ -2053,8 +2084,7 @@ abstract class Saver
             emit( ' ' );
             emitName( attrName, true );
             emit( '=', '\"' );
-            emitAttrValue(attrValue);
-
+            entitizeAttrValue( this, attrValue, _replaceChar );
             emit( '"' );
         }
 
@@ -2067,7 +2097,11 @@ abstract class Saver
             c.push();
             c.next();
 
-            emitCommentText( c );
+            if (c.isText())
+            {
+                _text = copyText( c, _text );
+                entitizeComment( this, _text, c._cchSrc );
+            }
 
             c.pop();
 
@@ -2090,7 +2124,8 @@ abstract class Saver
             if (c.isText())
             {
                 emit( ' ' );
-                emitPiText( c );
+                _text = copyText( c, _text );
+                entitizeProcinst( this, _text, c._cchSrc );
             }
 
             c.pop();
@@ -2172,25 +2207,6 @@ abstract class Saver
             emit( name.getLocalPart() );
         }
 
-        private void emitAttrValue ( CharSequence attVal)
-        {
-            int len = attVal.length();
-
-            for ( int i = 0; i<len ; i++ )
-            {
-                char ch = attVal.charAt(i);
-
-                if (ch == '<')
-                    emit( "&lt;" );
-                else if (ch == '&')
-                    emit( "&amp;" );
-                else if (ch == '"')
-                    emit( "&quot;" );
-                else
-                    emit(ch);
-            }
-        }
-
         private void emitLiteral ( String literal )
         {
             // TODO: systemId production http://www.w3.org/TR/REC-xml/#NT-SystemLiteral
@@ -2213,146 +2229,25 @@ abstract class Saver
         {
             assert c.isText();
 
-            Object src = c.getChars();
-            int cch = c._cchSrc;
-            int off = c._offSrc;
-            int index = 0;
-            int indexLimit = 0;
-            while( index<cch )
-            {
-                indexLimit = index + 512 > cch ? cch : index + 512;
-                CharUtil.getChars( _buf, 0, src, off+index, indexLimit-index );
-                entitizeAndWriteText(indexLimit-index);
-                index = indexLimit;
-            }
-        }
-
-        protected void emitPiText ( SaveCur c )
-        {
-            assert c.isText();
-
-            Object src = c.getChars();
-            int cch = c._cchSrc;
-            int off = c._offSrc;
-            int index = 0;
-            int indexLimit = 0;
-            while( index<cch )
-            {
-                indexLimit = index + 512 > cch ? cch : 512;
-                CharUtil.getChars( _buf, 0, src, off+index, indexLimit );
-                entitizeAndWritePIText(indexLimit-index);
-                index = indexLimit;
-            }
-        }
-
-        protected void emitCommentText ( SaveCur c )
-        {
-            assert c.isText();
-
-            Object src = c.getChars();
-            int cch = c._cchSrc;
-            int off = c._offSrc;
-            int index = 0;
-            int indexLimit = 0;
-            while( index<cch )
-            {
-                indexLimit = index + 512 > cch ? cch : 512;
-                CharUtil.getChars( _buf, 0, src, off+index, indexLimit );
-                entitizeAndWriteCommentText(indexLimit-index);
-                index = indexLimit;
-            }
-        }
-
-        private void entitizeAndWriteText(int bufLimit)
-        {
-            int index = 0;
-            for (int i = 0; i < bufLimit; i++)
-            {
-                char c = _buf[i];
-                switch(c)
-                {
-                case '<':
-                    emit(_buf, index, i-index);
-                    emit("&lt;");
-                    index = i+1;
-                    break;
-                case '&':
-                    emit(_buf, index, i-index);
-                    emit("&amp;");
-                    index = i+1;
-                    break;
-                }
-            }
-            emit(_buf, index, bufLimit-index);
-        }
-
-        private void entitizeAndWriteCommentText ( int bufLimit )
-        {
-            boolean lastWasDash = false;
-
-            for ( int i=0 ; i<bufLimit ; i++ )
-            {
-                char ch = _buf[ i ];
-
-                if (isBadChar( ch ))
-                    _buf[i] = '?';
-                else if (ch == '-')
-                {
-                    if (lastWasDash)
-                    {
-                        // Replace "--" with "- " to make well formed
-                        _buf[i] = ' ';
-                        lastWasDash = false;
-                    }
-                    else
-                    {
-                        lastWasDash = true;
-                    }
-                }
-                else
-                {
-                    lastWasDash = false;
-                }
-
-                if (i == _buf.length)
-                    i = 0;
-            }
+            // c.isTextCData() is expensive do it only if useCDataBookmarks option is enabled
+            boolean forceCData = _useCDataBookmarks && c.isTextCData();
 
-            if (_buf[ bufLimit-1 ] == '-')
-                _buf[ bufLimit-1 ] = ' ';
+            _text = copyText( c, _text );
 
-            emit(_buf, 0, bufLimit);
+            entitizeContent( this, _text, c._cchSrc, forceCData,
+                _cdataLengthThreshold, _cdataEntityCountThreshold, _isPrettyPrint, _replaceChar );
         }
 
-        private void entitizeAndWritePIText(int bufLimit)
-        {
-            boolean lastWasQuestion = false;
-
-            for ( int i=0 ; i<bufLimit ; i++ )
-            {
-                char ch = _buf[ i ];
+        private final Writer _w;
 
-                if (isBadChar( ch ))
-                {
-                    _buf[i] = '?';
-                    ch = '?';
-                }
-
-                if (ch == '>')
-                {
-                    // Had to convert to a space here ... imples not well formed XML
-                    if (lastWasQuestion)
-                        _buf[i] = ' ';
+        private char[] _buf = new char[ 8192 ];
+        private int    _len;
+        private char[] _text = new char[ 1024 ];
 
-                    lastWasQuestion = false;
-                }
-                else
-                {
-                    lastWasQuestion = ch == '?';
-                }
-            }
-            emit(_buf, 0, bufLimit);
-        }
+        private int _cdataLengthThreshold = 32;
+        private int _cdataEntityCountThreshold = 5;
+        private boolean _useCDataBookmarks = false;
+        private boolean _isPrettyPrint = false;
     }
 
     static final class TextReader extends Reader
@@ -2403,45 +2298,76 @@ abstract class Saver
         private boolean   _closed;
     }
 
-    static final class InputStreamSaver extends InputStream
+    /**
+     * Returns the IANA name of the encoding to save the document in, which
+     * is the one in the options, or the one the document was loaded with,
+     * or UTF-8.
+     */
+    static String getEncoding ( Cur c, XmlOptions options )
     {
-        InputStreamSaver ( Cur c, XmlOptions options )
+        String encoding = null;
+
+        XmlDocumentProperties props = Locale.getDocProps( c, false );
+
+        if (props != null && props.getEncoding() != null)
+            encoding = EncodingMap.getIANA2JavaMapping( props.getEncoding() );
+
+        if (options.hasOption( XmlOptions.CHARACTER_ENCODING ))
+            encoding = (String) options.get( XmlOptions.CHARACTER_ENCODING );
+
+        if (encoding != null)
         {
-            _locale = c._locale;
+            String ianaEncoding = EncodingMap.getJava2IANAMapping( encoding );
 
-            _closed = false;
+            if (ianaEncoding != null)
+                encoding = ianaEncoding;
+        }
 
-            assert _locale.entered();
+        if (encoding == null)
+            encoding = EncodingMap.getJava2IANAMapping( "UTF8" );
 
-            options = XmlOptions.maskNull( options );
+        if (EncodingMap.getIANA2JavaMapping( encoding ) == null)
+            throw new IllegalStateException( "Unknown encoding: " + encoding );
 
-            _outStreamImpl = new OutputStreamImpl();
+        return encoding;
+    }
 
-            String encoding = null;
+    /**
+     * Saves to the stream, encoding the text straight out of the buffer of
+     * a TextSaver, rather than through an InputStreamSaver, its Writer and
+     * its byte queue.
+     */
+    static void save ( Cur c, OutputStream os, XmlOptions options ) throws IOException
+    {
+        options = XmlOptions.maskNull( options );
 
-            XmlDocumentProperties props = Locale.getDocProps( c, false );
+        String encoding = getEncoding( c, options );
 
-            if (props != null && props.getEncoding() != null)
-                encoding = EncodingMap.getIANA2JavaMapping( props.getEncoding() );
+        // Replace what cannot be encoded, as an OutputStreamWriter does
+        CharsetEncoder encoder =
+            Charset.forName( EncodingMap.getIANA2JavaMapping( encoding ) ).newEncoder()
+                .onMalformedInput( CodingErrorAction.REPLACE )
+                .onUnmappableCharacter( CodingErrorAction.REPLACE );
 
-            if (options.hasOption( XmlOptions.CHARACTER_ENCODING ))
-                encoding = (String) options.get( XmlOptions.CHARACTER_ENCODING );
+        new TextSaver( c, options, encoding ).save( os, encoder );
+    }
 
-            if (encoding != null)
-            {
-                String ianaEncoding = EncodingMap.getJava2IANAMapping( encoding );
+    static final class InputStreamSaver extends InputStream
+    {
+        InputStreamSaver ( Cur c, XmlOptions options )
+        {
+            _locale = c._locale;
 
-                if (ianaEncoding != null)
-                    encoding = ianaEncoding;
-            }
+            _closed = false;
 
-            if (encoding == null)
-                encoding = EncodingMap.getJava2IANAMapping( "UTF8" );
+            assert _locale.entered();
 
-            String javaEncoding = EncodingMap.getIANA2JavaMapping( encoding );
+            options = XmlOptions.maskNull( options );
 
-            if (javaEncoding == null)
-                throw new IllegalStateException( "Unknown encoding: " + encoding );
+            _outStreamImpl = new OutputStreamImpl();
+
+            String encoding = getEncoding( c, options );
+            String javaEncoding = EncodingMap.getIANA2JavaMapping( encoding );
 
             try
             {
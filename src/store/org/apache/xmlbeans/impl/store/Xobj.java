@@ -84,6 +84,7 @@ import org.apache.xmlbeans.XmlOptions;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.QNameSet;
+import org.apache.xmlbeans.SimpleValue;
 
 import org.apache.xmlbeans.impl.values.TypeStore;
 import org.apache.xmlbeans.impl.values.TypeStoreUser;
@@ -172,15 +173,15 @@ abstract class Xobj implements TypeStore
     {
         if (_firstChild == null &&
             _srcValue == null &&
-            _charNodesValue == null)
+            charNodesValue() == null)
             return 0;
 
         if (_lastChild != null &&
             _lastChild.isAttr() &&
-            _lastChild._charNodesAfter == null &&
+            _lastChild.charNodesAfter() == null &&
             _lastChild._srcAfter == null &&
             _srcValue == null &&
-            _charNodesValue == null
+            charNodesValue() == null
         )
             return 0;
 
@@ -188,16 +189,16 @@ abstract class Xobj implements TypeStore
             _firstChild != null &&
             !_firstChild.isAttr() &&
             _srcValue == null &&
-            _charNodesValue == null &&
+            charNodesValue() == null &&
             _firstChild._srcAfter == null
         )
             return 1;
 
         if (_firstChild == null &&
             _srcValue != null &&
-           ( _charNodesValue == null ||
-            (_charNodesValue._next == null &&
-            _charNodesValue._cch == _cchValue))
+           ( charNodesValue() == null ||
+            (charNodesValue()._next == null &&
+            charNodesValue()._cch == _cchValue))
         )
             return 1;
         //single elem after an attr
@@ -224,13 +225,13 @@ abstract class Xobj implements TypeStore
     {
         if (_firstChild == null &&
             _srcValue == null &&
-            _charNodesValue == null)
+            charNodesValue() == null)
             return true;
 
         if (_firstChild != null &&
             !_firstChild.isAttr() &&
             _srcValue == null &&
-            _charNodesValue == null)
+            charNodesValue() == null)
         {
             assert (_firstChild instanceof Xobj.NodeXobj):
                 "wrong node type";
@@ -246,7 +247,7 @@ abstract class Xobj implements TypeStore
      */
     final protected boolean isNextSiblingPtrDomUsable()
     {
-        if (_charNodesAfter == null &&
+        if (charNodesAfter() == null &&
             _srcAfter == null)
         {
             assert (_nextSibling == null ||
@@ -257,7 +258,7 @@ abstract class Xobj implements TypeStore
         return false;
     }
     /**
-     * can one use the _charNodesValue pointer to retrieve
+     * can one use the charNodesValue() list to retrieve
      * the next DOM sibling
      *
      * @return
@@ -265,21 +266,21 @@ abstract class Xobj implements TypeStore
     final protected boolean isExistingCharNodesValueUsable()
     {
         if (_srcValue == null) return false;
-        if (_charNodesValue != null && _charNodesValue._next == null
-            && _charNodesValue._cch == _cchValue)
+        CharNode nodes = charNodesValue();
+        if (nodes != null && nodes._next == null
+            && nodes._cch == _cchValue)
             return true;
        return false;
     }
       final protected boolean isCharNodesValueUsable()
       {
           return isExistingCharNodesValueUsable() ||
-              (_charNodesValue =
-              Cur.updateCharNodes(_locale, this,
-                  _charNodesValue, _cchValue)) != null;
+              setCharNodesValue(Cur.updateCharNodes(_locale, this,
+                  charNodesValue(), _cchValue)) != null;
       }
 
     /**
-     * can one use the _charNodesAfter pointer to retrieve
+     * can one use the charNodesAfter() list to retrieve
      * the next DOM sibling
      *
      * @return
@@ -287,12 +288,12 @@ abstract class Xobj implements TypeStore
     final protected boolean isCharNodesAfterUsable()
     {
         if (_srcAfter == null) return false;
-        if (_charNodesAfter != null && _charNodesAfter._next == null
-            && _charNodesAfter._cch == this._cchAfter)
+        CharNode nodes = charNodesAfter();
+        if (nodes != null && nodes._next == null
+            && nodes._cch == this._cchAfter)
             return true;
-        return (_charNodesAfter =
-            Cur.updateCharNodes(_locale, this,
-                _charNodesAfter, _cchAfter)) != null;
+        return setCharNodesAfter(Cur.updateCharNodes(_locale, this,
+                nodes, _cchAfter)) != null;
     }
 
 
@@ -462,13 +463,13 @@ abstract class Xobj implements TypeStore
     {
         assert isNormal( p );
 
-        for ( Bookmark b = _bookmarks ; b != null ; b = b._next )
+        for ( Bookmark b = bookmarks() ; b != null ; b = b._next )
         {
             if (p == b._pos && key == b._key)
             {
                 if (value == null)
                 {
-                    _bookmarks = b.listRemove( _bookmarks );
+                    setBookmarks( b.listRemove( bookmarks() ) );
                     return null;
                 }
 
@@ -488,14 +489,14 @@ abstract class Xobj implements TypeStore
         b._key   = key;
         b._value = value;
 
-        _bookmarks = b.listInsert( _bookmarks );
+        setBookmarks( b.listInsert( bookmarks() ) );
 
         return b;
     }
 
     final boolean hasBookmark(Object key, int pos)
     {
-        for ( Bookmark b = _bookmarks ; b != null ; b = b._next )
+        for ( Bookmark b = bookmarks() ; b != null ; b = b._next )
             if ( b._pos == pos && key == b._key )
             {
                 //System.out.println("hasCDataBookmark  pos: " + pos + " xobj: " + getQName() + " b._pos: " + _bookmarks._pos);
@@ -581,6 +582,10 @@ abstract class Xobj implements TypeStore
             QName oldName = _name;
 
             _name = newName;
+
+            if (isElem())
+                ChildIndex.invalidate( _parent );
+
             if (this instanceof Xobj.NamedNodeXobj)
             {
                 NamedNodeXobj me = (NamedNodeXobj)this;
@@ -766,6 +771,8 @@ abstract class Xobj implements TypeStore
             if (_nextSibling != null)
                 _nextSibling._prevSibling = _prevSibling;
 
+            ChildIndex.invalidate( _parent );
+
             _parent = null;
             _prevSibling = null;
             _nextSibling = null;
@@ -795,6 +802,8 @@ abstract class Xobj implements TypeStore
 
         _prevSibling = s;
 
+        ChildIndex.invalidate( _parent );
+
         return this;
     }
 
@@ -817,6 +826,8 @@ abstract class Xobj implements TypeStore
 
         _lastChild = c;
 
+        ChildIndex.appended( this, c );
+
         return this;
     }
 
@@ -838,6 +849,8 @@ abstract class Xobj implements TypeStore
         if (last._nextSibling != null)
             last._nextSibling._prevSibling = first._prevSibling;
 
+        ChildIndex.invalidate( this );
+
         // Leave the children linked together
 
         first._prevSibling = null;
@@ -865,6 +878,8 @@ abstract class Xobj implements TypeStore
 
         _prevSibling = last;
 
+        ChildIndex.invalidate( _parent );
+
         for ( ; first != this ; first = first._nextSibling )
             first._parent = _parent;
     }
@@ -887,6 +902,8 @@ abstract class Xobj implements TypeStore
 
         _lastChild = last;
 
+        ChildIndex.invalidate( this );
+
         for ( ; first != null ; first = first._nextSibling )
             first._parent = this;
     }
@@ -995,7 +1012,7 @@ abstract class Xobj implements TypeStore
         // xTo/pTo.  The caller has to make sure that if xTo/pTo is not specified, then there are
         // no bookmarks in the span of text to be removed.
 
-        for ( Bookmark b = _bookmarks ; b != null ; )
+        for ( Bookmark b = bookmarks() ; b != null ; )
         {
             Bookmark next = b._next;
 
@@ -1065,7 +1082,7 @@ abstract class Xobj implements TypeStore
                 if (c._pos >= p)
                     c._pos += cch;
 
-            for ( Bookmark b = _bookmarks ; b != null ; b = b._next )
+            for ( Bookmark b = bookmarks() ; b != null ; b = b._next )
                 if (b._pos >= p)
                     b._pos += cch;
         }
@@ -1119,7 +1136,7 @@ abstract class Xobj implements TypeStore
             newX._offAfter = x._offAfter;
             newX._cchAfter = x._cchAfter;
 
-            for ( Bookmark b = x._bookmarks; b != null ; b = b._next )
+            for ( Bookmark b = x.bookmarks(); b != null ; b = b._next )
             {
                if ( x.hasBookmark( CDataBookmark.CDATA_BOOKMARK.getKey(), b._pos) )
                    newX.setBookmark(b._pos, CDataBookmark.CDATA_BOOKMARK.getKey(), CDataBookmark.CDATA_BOOKMARK);
@@ -1390,6 +1407,8 @@ abstract class Xobj implements TypeStore
     static final int VACANT             = 0x100;
     static final int STABLE_USER        = 0x200;
     static final int INHIBIT_DISCONNECT = 0x400;
+    static final int CACHED_USER        = 0x800;
+    static final int RECENT_USER        = 0x1000;
 
     final boolean isVacant          ( ) { return bitIsSet   ( VACANT ); }
     final boolean isOccupied        ( ) { return bitIsClear ( VACANT ); }
@@ -1424,12 +1443,51 @@ abstract class Xobj implements TypeStore
 
     void disconnectUser ( )
     {
-        if (_user != null && !inhibitDisconnect())
+        if (inhibitDisconnect())
+            return;
+
+        if (_user != null)
         {
             ensureOccupancy();
             _user.disconnect_store();
             _user = null;
         }
+        else if (_locale.hasEvictedUsers())
+        {
+            TypeStoreUser user = _locale.reclaimUser( this );
+
+            if (user != null)
+                user.disconnect_store();
+        }
+    }
+
+    /**
+     * Gives up the user of this node to the value cache of the locale
+     * (see Locale.cacheUser), returns false if it has to be kept.  Only
+     * leaves give up their users, the user of an element with element
+     * children or with attribute users may be in the middle of using them.
+     */
+    boolean evictUser ( )
+    {
+        if (_user == null || isRoot() || isStableUser() || inhibitDisconnect())
+            return false;
+
+        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
+        {
+            if (x.isElem() || x._user != null)
+                return false;
+        }
+
+        ensureOccupancy();
+
+        TypeStoreUser user = _user;
+        _user = null;
+
+        _locale.evictedUser( this, user );
+
+        user.evict_store();
+
+        return true;
     }
 
     // If a node does not have a user, then I don't need to walk its descendents.  NOte that
@@ -1442,7 +1500,7 @@ abstract class Xobj implements TypeStore
 
         for ( Xobj x = this ; x != null ; x = next )
         {
-            next = x.walk( this, x._user != null );
+            next = x.walk( this, x._user != null || _locale.hasEvictedUsers() );
 
             if (!x.isRoot())
                 x.disconnectUser();
@@ -1453,9 +1511,11 @@ abstract class Xobj implements TypeStore
     {
         Xobj next;
 
-        for ( Xobj x = walk( this, _user == null ) ; x != null ; x = next )
+        boolean evicted = _locale.hasEvictedUsers();
+
+        for ( Xobj x = walk( this, _user == null && !evicted ) ; x != null ; x = next )
         {
-            next = x.walk( this, x._user != null );
+            next = x.walk( this, x._user != null || evicted );
 
             x.disconnectUser();
         }
@@ -1661,28 +1721,97 @@ abstract class Xobj implements TypeStore
     final TypeStoreUser getUser ( )
     {
         assert isUserNode();
+
+        if (_locale.frozen())
+            return getFrozenUser();
+
         assert _user != null || (!isRoot() && !isStableUser());
 
         if (_user == null)
         {
-            // BUGBUG - this is recursive
+            // A user given up to the value cache is taken back if it is
+            // still around, so that an XmlObject keeps its identity
 
-            TypeStoreUser parentUser =
-                _parent == null
-                    ? ((TypeStoreUserFactory) XmlBeans.NO_TYPE).createTypeStoreUser()
-                    : _parent.getUser();
+            TypeStoreUser user = _locale.reclaimUser( this );
 
-            _user =
-                isElem()
-                    ? parentUser.create_element_user( _name, getXsiTypeName() )
-                    : parentUser.create_attribute_user( _name );
+            if (user == null)
+            {
+                // BUGBUG - this is recursive
+
+                TypeStoreUser parentUser =
+                    _parent == null
+                        ? ((TypeStoreUserFactory) XmlBeans.NO_TYPE).createTypeStoreUser()
+                        : _parent.getUser();
+
+                user =
+                    isElem()
+                        ? parentUser.create_element_user( _name, getXsiTypeName() )
+                        : parentUser.create_attribute_user( _name );
+            }
+
+            _user = user;
 
             _user.attach_store( this );
         }
 
+        if (_locale.cachesUsers())
+            _locale.cacheUser( this );
+
         return _user;
     }
 
+    /**
+     * The readers of a frozen locale do not hold its monitor.  The users
+     * made before the freeze are published by it (see Locale.freeze), and
+     * _user is not written after it.  A user made after the freeze is
+     * made under the locale's lock (see Locale.enter), and is prepared
+     * before it is published through the volatile Extras._frozenUser, so
+     * readers finding it never see it half computed.
+     */
+    private TypeStoreUser getFrozenUser ( )
+    {
+        TypeStoreUser user = _user;
+
+        if (user != null)
+            return user;
+
+        Extras extras = _extras;
+
+        if (extras != null && (user = extras._frozenUser) != null)
+            return user;
+
+        _locale.enter();
+
+        try
+        {
+            extras = extras();
+
+            if (extras._frozenUser == null)
+            {
+                TypeStoreUser parentUser =
+                    _parent == null
+                        ? ((TypeStoreUserFactory) XmlBeans.NO_TYPE).createTypeStoreUser()
+                        : _parent.getUser();
+
+                user =
+                    isElem()
+                        ? parentUser.create_element_user( _name, getXsiTypeName() )
+                        : parentUser.create_attribute_user( _name );
+
+                user.attach_store( this );
+                user.prepare_freeze();
+
+                extras._frozenUser = user;
+            }
+
+            return extras._frozenUser;
+        }
+        finally
+        {
+            _locale.exit();
+        }
+    }
+
     final void invalidateUser ( )
     {
         assert isValid();
@@ -1771,6 +1900,8 @@ abstract class Xobj implements TypeStore
 
     public void invalidate_text ( )
     {
+        _locale.checkNotFrozen();
+
         _locale.enter();
 
         try
@@ -1851,21 +1982,9 @@ abstract class Xobj implements TypeStore
 
         assert isElem();
 
-        TypeStoreVisitor visitor = parentUser.new_visitor();
-
-        if (visitor == null)
-            return null;
-
-        for ( Xobj x = _parent._firstChild ; ; x = x._nextSibling )
-        {
-            if (x.isElem())
-            {
-                visitor.visit( x._name );
+        TypeStoreVisitor visitor = ChildFields.visitTo( this, parentUser );
 
-                if (x == this)
-                    return visitor.get_schema_field();
-            }
-        }
+        return visitor == null ? null : visitor.get_schema_field();
     }
 
     public void validate ( ValidatorListener eventSink )
@@ -1886,6 +2005,8 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser change_type ( SchemaType type )
     {
+        _locale.checkNotFrozen();
+
         _locale.enter();
 
         try
@@ -1904,6 +2025,8 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser substitute ( QName name, SchemaType type )
     {
+        _locale.checkNotFrozen();
+
         _locale.enter();
 
         try
@@ -1927,6 +2050,8 @@ abstract class Xobj implements TypeStore
 
     public void store_text ( String text )
     {
+        _locale.checkNotFrozen();
+
         _locale.enter();
 
         TypeStoreUser user = _user;
@@ -1955,6 +2080,56 @@ abstract class Xobj implements TypeStore
         }
     }
 
+    public void reattach_user ( TypeStoreUser user )
+    {
+        if (_user == user)
+            return;
+
+        if (_locale.noSync())
+        {
+            _locale.enter();
+            try
+            {
+                reattachUser( user );
+            }
+            finally
+            {
+                _locale.exit();
+            }
+        }
+        else synchronized ( _locale )
+        {
+            _locale.enter();
+            try
+            {
+                reattachUser( user );
+            }
+            finally
+            {
+                _locale.exit();
+            }
+        }
+    }
+
+    private void reattachUser ( TypeStoreUser user )
+    {
+        if (_user == user)
+            return;
+
+        assert _user == null;
+
+        TypeStoreUser evicted = _locale.reclaimUser( this );
+
+        assert evicted == user;
+
+        _user = user;
+
+        _user.attach_store( this );
+
+        if (_locale.cachesUsers())
+            _locale.cacheUser( this );
+    }
+
     public int compute_flags ( )
     {
         if (isRoot())
@@ -1970,21 +2145,9 @@ abstract class Xobj implements TypeStore
         if (f != -1)
             return f;
 
-        TypeStoreVisitor visitor = parentUser.new_visitor();
-
-        if (visitor == null)
-            return 0;
-
-        for ( Xobj x = _parent._firstChild ; ; x = x._nextSibling )
-        {
-            if (x.isElem())
-            {
-                visitor.visit( x._name );
+        TypeStoreVisitor visitor = ChildFields.visitTo( this, parentUser );
 
-                if (x == this)
-                    return visitor.get_elementflags();
-            }
-        }
+        return visitor == null ? 0 : visitor.get_elementflags();
     }
 
     public String compute_default_text ( )
@@ -2002,21 +2165,9 @@ abstract class Xobj implements TypeStore
         if (result != null)
             return result;
 
-        TypeStoreVisitor visitor = parentUser.new_visitor();
-
-        if (visitor == null)
-            return null;
+        TypeStoreVisitor visitor = ChildFields.visitTo( this, parentUser );
 
-        for ( Xobj x = _parent._firstChild ; ; x = x._nextSibling )
-        {
-            if (x.isElem())
-            {
-                visitor.visit( x._name );
-
-                if (x == this)
-                    return visitor.get_default_text();
-            }
-        }
+        return visitor == null ? null : visitor.get_default_text();
     }
 
     public boolean find_nil ( )
@@ -2048,6 +2199,8 @@ abstract class Xobj implements TypeStore
         if (isAttr())
             return;
 
+        _locale.checkNotFrozen();
+
         _locale.enter();
 
         try
@@ -2075,20 +2228,300 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser find_element_user ( QName name, int i )
     {
-        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && x._name.equals( name ) && --i < 0)
-                return x.getUser();
+        Xobj x = i < 0 ? null : ChildIndex.find( this, name, null, i );
 
-        return null;
+        return x == null ? null : x.getUser();
     }
 
     public TypeStoreUser find_element_user ( QNameSet names, int i )
     {
-        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && names.contains( x._name ) && --i < 0)
-                return x.getUser();
+        Xobj x = i < 0 ? null : ChildIndex.find( this, null, names, i );
 
-        return null;
+        return x == null ? null : x.getUser();
+    }
+
+    //
+    // A primitive value is parsed straight from the text of its node when
+    // the node has no user yet, no attributes or children (so no xsi:nil,
+    // xsi:type or comments) and its text is a plain literal.  Anything
+    // else, an empty text which may take a default, INF, an overflow or
+    // text which is not valid at all, is left to the user of the node,
+    // as is the value of a locale which validates on set.
+    //
+
+    public int fetch_int ( QName name, boolean isAttr )
+    {
+        Xobj x = isAttr ? getAttr( name ) : ChildIndex.find( this, name, null, 0 );
+
+        if (x == null)
+            return 0;
+
+        if (x.hasPlainText() && isPlainInteger( x._srcValue, x._offValue, x._cchValue ))
+        {
+            long v = parsePlainInteger( x._srcValue, x._offValue, x._cchValue );
+
+            if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE)
+                return (int) v;
+        }
+
+        return ((SimpleValue) x.getUser()).getIntValue();
+    }
+
+    public long fetch_long ( QName name, boolean isAttr )
+    {
+        Xobj x = isAttr ? getAttr( name ) : ChildIndex.find( this, name, null, 0 );
+
+        if (x == null)
+            return 0L;
+
+        if (x.hasPlainText() && isPlainInteger( x._srcValue, x._offValue, x._cchValue ))
+            return parsePlainInteger( x._srcValue, x._offValue, x._cchValue );
+
+        return ((SimpleValue) x.getUser()).getLongValue();
+    }
+
+    public double fetch_double ( QName name, boolean isAttr )
+    {
+        Xobj x = isAttr ? getAttr( name ) : ChildIndex.find( this, name, null, 0 );
+
+        if (x == null)
+            return 0.0;
+
+        if (x.hasPlainText())
+        {
+            double v = parsePlainDouble( x._srcValue, x._offValue, x._cchValue );
+
+            if (!Double.isNaN( v ))
+                return v;
+        }
+
+        return ((SimpleValue) x.getUser()).getDoubleValue();
+    }
+
+    public boolean fetch_boolean ( QName name, boolean isAttr )
+    {
+        Xobj x = isAttr ? getAttr( name ) : ChildIndex.find( this, name, null, 0 );
+
+        if (x == null)
+            return false;
+
+        if (x.hasPlainText())
+        {
+            int v = parsePlainBoolean( x._srcValue, x._offValue, x._cchValue );
+
+            if (v >= 0)
+                return v == 1;
+        }
+
+        return ((SimpleValue) x.getUser()).getBooleanValue();
+    }
+
+    private boolean hasPlainText ( )
+    {
+        return
+            _user == null && isOccupied() && _firstChild == null && !_locale._validateOnSet &&
+                (_srcValue instanceof char[] || _srcValue instanceof String);
+    }
+
+    private static char charAt ( Object src, int i )
+    {
+        return src instanceof char[] ? ((char[]) src)[ i ] : ((String) src).charAt( i );
+    }
+
+    /**
+     * Returns true if the text is a sign and up to 18 digits, which
+     * cannot overflow a long, between white space.
+     */
+    private static boolean isPlainInteger ( Object src, int off, int cch )
+    {
+        int i = off;
+        int end = off + cch;
+
+        while ( i < end && CharUtil.isWhiteSpace( charAt( src, i ) ) )
+            i++;
+
+        while ( end > i && CharUtil.isWhiteSpace( charAt( src, end - 1 ) ) )
+            end--;
+
+        if (i < end && (charAt( src, i ) == '-' || charAt( src, i ) == '+'))
+            i++;
+
+        if (i == end || end - i > 18)
+            return false;
+
+        for ( ; i < end ; i++ )
+        {
+            char ch = charAt( src, i );
+
+            if (ch < '0' || ch > '9')
+                return false;
+        }
+
+        return true;
+    }
+
+    private static long parsePlainInteger ( Object src, int off, int cch )
+    {
+        int i = off;
+        int end = off + cch;
+
+        while ( CharUtil.isWhiteSpace( charAt( src, i ) ) )
+            i++;
+
+        boolean negative = charAt( src, i ) == '-';
+
+        if (negative || charAt( src, i ) == '+')
+            i++;
+
+        long v = 0;
+
+        for ( char ch ; i < end && (ch = charAt( src, i )) >= '0' && ch <= '9' ; i++ )
+            v = v * 10 + (ch - '0');
+
+        return negative ? -v : v;
+    }
+
+    private static final double[] POWERS_OF_TEN =
+    {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Parses a decimal literal, with an optional exponent, of up to 15
+     * significant digits and a power of ten up to 22.  Both are exact
+     * doubles, so the one multiplication or division rounds the value the
+     * way Double.parseDouble does.  Returns NaN for any other text.
+     */
+    private static double parsePlainDouble ( Object src, int off, int cch )
+    {
+        int i = off;
+        int end = off + cch;
+
+        while ( i < end && CharUtil.isWhiteSpace( charAt( src, i ) ) )
+            i++;
+
+        while ( end > i && CharUtil.isWhiteSpace( charAt( src, end - 1 ) ) )
+            end--;
+
+        boolean negative = i < end && charAt( src, i ) == '-';
+
+        if (i < end && (negative || charAt( src, i ) == '+'))
+            i++;
+
+        long m = 0;
+        int digits = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean point = false;
+
+        for ( ; i < end ; i++ )
+        {
+            char ch = charAt( src, i );
+
+            if (ch == '.' && !point)
+                point = true;
+            else if (ch >= '0' && ch <= '9')
+            {
+                digits++;
+
+                if (m > 0 || ch != '0')
+                    significant++;
+
+                m = m * 10 + (ch - '0');
+
+                if (point)
+                    scale++;
+            }
+            else
+                break;
+        }
+
+        if (digits == 0 || significant > 15)
+            return Double.NaN;
+
+        int exp = 0;
+
+        if (i < end && (charAt( src, i ) == 'e' || charAt( src, i ) == 'E'))
+        {
+            i++;
+
+            boolean negativeExp = i < end && charAt( src, i ) == '-';
+
+            if (i < end && (negativeExp || charAt( src, i ) == '+'))
+                i++;
+
+            if (i == end || end - i > 3)
+                return Double.NaN;
+
+            for ( ; i < end ; i++ )
+            {
+                char ch = charAt( src, i );
+
+                if (ch < '0' || ch > '9')
+                    return Double.NaN;
+
+                exp = exp * 10 + (ch - '0');
+            }
+
+            if (negativeExp)
+                exp = -exp;
+        }
+
+        if (i != end)
+            return Double.NaN;
+
+        double v = m;
+
+        if (m != 0)
+        {
+            exp -= scale;
+
+            if (exp < -22 || exp > 22)
+                return Double.NaN;
+
+            v = exp < 0 ? v / POWERS_OF_TEN[ -exp ] : v * POWERS_OF_TEN[ exp ];
+        }
+
+        return negative ? -v : v;
+    }
+
+    /**
+     * Returns 1 for true, 0 for false, or -1 if the text is not one of
+     * the literals of a boolean.
+     */
+    private static int parsePlainBoolean ( Object src, int off, int cch )
+    {
+        int i = off;
+        int end = off + cch;
+
+        while ( i < end && CharUtil.isWhiteSpace( charAt( src, i ) ) )
+            i++;
+
+        while ( end > i && CharUtil.isWhiteSpace( charAt( src, end - 1 ) ) )
+            end--;
+
+        if (matches( src, i, end, "true" ) || matches( src, i, end, "1" ))
+            return 1;
+
+        if (matches( src, i, end, "false" ) || matches( src, i, end, "0" ))
+            return 0;
+
+        return -1;
+    }
+
+    private static boolean matches ( Object src, int i, int end, String literal )
+    {
+        if (end - i != literal.length())
+            return false;
+
+        for ( int j = 0 ; i < end ; i++, j++ )
+        {
+            if (charAt( src, i ) != literal.charAt( j ))
+                return false;
+        }
+
+        return true;
     }
 
     public void find_all_element_users ( QName name, List fillMeUp )
@@ -2126,6 +2559,8 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser insert_element_user ( QName name, int i )
     {
+        _locale.checkNotFrozen();
+
         if (i < 0)
             throw new IndexOutOfBoundsException();
 
@@ -2147,6 +2582,8 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser insert_element_user ( QNameSet names, QName name, int i )
     {
+        _locale.checkNotFrozen();
+
         if (i < 0)
             throw new IndexOutOfBoundsException();
 
@@ -2168,9 +2605,26 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser add_element_user ( QName name )
     {
+        _locale.checkNotFrozen();
+
         if (!isContainer())
             throw new IllegalStateException();
 
+        Xobj candidate = findAddPosition( name );
+
+        return
+            candidate == null
+                ? insertElement( name, this, END_POS )
+                : insertElement( name, candidate, 0 );
+    }
+
+    /**
+     * Returns the child before which a new element with the given name
+     * is added, null for the end: the first ending delimiter after the
+     * last element with that name.
+     */
+    private Xobj findAddPosition ( QName name )
+    {
         QNameSet endSet = null;
         boolean  gotEndSet = false;
 
@@ -2194,10 +2648,7 @@ abstract class Xobj implements TypeStore
             }
         }
 
-        return
-            candidate == null
-                ? insertElement( name, this, END_POS )
-                : insertElement( name, candidate, 0 );
+        return candidate;
     }
 
     private static void removeElement ( Xobj x )
@@ -2221,36 +2672,28 @@ abstract class Xobj implements TypeStore
 
     public void remove_element ( QName name, int i )
     {
+        _locale.checkNotFrozen();
+
         if (i < 0)
             throw new IndexOutOfBoundsException();
 
         if (!isContainer())
             throw new IllegalStateException();
 
-        Xobj x;
-
-        for ( x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && x._name.equals( name ) && --i < 0)
-                break;
-
-        removeElement( x );
+        removeElement( ChildIndex.find( this, name, null, i ) );
     }
 
     public void remove_element ( QNameSet names, int i )
     {
+        _locale.checkNotFrozen();
+
         if (i < 0)
             throw new IndexOutOfBoundsException();
 
         if (!isContainer())
             throw new IllegalStateException();
 
-        Xobj x;
-
-        for ( x = _firstChild ; x != null ; x = x._nextSibling )
-            if (x.isElem() && names.contains( x._name ) && --i < 0)
-                break;
-
-        removeElement( x );
+        removeElement( ChildIndex.find( this, null, names, i ) );
     }
 
     public TypeStoreUser find_attribute_user ( QName name )
@@ -2262,6 +2705,8 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser add_attribute_user ( QName name )
     {
+        _locale.checkNotFrozen();
+
         if (getAttr( name ) != null)
             throw new IndexOutOfBoundsException();
 
@@ -2279,6 +2724,8 @@ abstract class Xobj implements TypeStore
 
     public void remove_attribute ( QName name )
     {
+        _locale.checkNotFrozen();
+
         _locale.enter();
 
         try
@@ -2294,6 +2741,8 @@ abstract class Xobj implements TypeStore
 
     public TypeStoreUser copy_contents_from ( TypeStore source )
     {
+        _locale.checkNotFrozen();
+
         Xobj xSrc = (Xobj) source;
 
         if (xSrc == this)
@@ -2386,9 +2835,15 @@ abstract class Xobj implements TypeStore
         if (sType == null)
             sType = type == null ? XmlObject.type : type;
 
+        boolean readOnly = options.hasOption(XmlOptions.COPY_READ_ONLY);
+
+        // a copy of a frozen document is writable, so it cannot share the frozen locale
         Locale locale = this.locale();
-        if ( Boolean.TRUE.equals(options.get(XmlOptions.COPY_USE_NEW_SYNC_DOMAIN)) )
+        if ( readOnly || locale.frozen() ||
+             Boolean.TRUE.equals(options.get(XmlOptions.COPY_USE_NEW_SYNC_DOMAIN)) )
             locale = Locale.getLocale(stl, options);
+        else
+            locale.share();
 
         if (sType.isDocumentType() || (sType.isNoType() && (this instanceof Xobj.DocumentXobj)))
             destination = Cur.createDomDocumentRootXobj(locale, false);
@@ -2409,11 +2864,17 @@ abstract class Xobj implements TypeStore
         }
 
         TypeStoreUser tsu = destination.copy_contents_from(this);
+
+        if (readOnly)
+            locale.freeze(destination);
+
         return tsu;
     }
 
     public void array_setter ( XmlObject[] sources, QName elementName )
     {
+        _locale.checkNotFrozen();
+
         _locale.enter();
 
         try
@@ -2509,6 +2970,185 @@ abstract class Xobj implements TypeStore
         }
     }
 
+    public void array_setter ( String[] texts, QName elementName )
+    {
+        _locale.checkNotFrozen();
+
+        if (!isContainer())
+            throw new IllegalStateException();
+
+        _locale.enter();
+
+        try
+        {
+            int n = texts.length;
+            int m = count_elements( elementName );
+
+            Xobj[] elements = new Xobj[ m ];
+
+            int i = 0;
+
+            for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
+            {
+                if (x.isElem() && x._name.equals( elementName ))
+                    elements[ i++ ] = x;
+            }
+
+            assert i == m;
+
+            for ( i = m ; i > n ; i-- )
+                removeElement( elements[ i - 1 ] );
+
+            Cur c = tempCur();
+
+            // The value of an existing element is replaced the way a user
+            // replaces it in store_text, except that its user is left to
+            // be invalidated by the change, and a nil element is not nil
+            // anymore
+
+            for ( i = 0 ; i < m && i < n ; i++ )
+            {
+                Xobj x = elements[ i ];
+
+                if (x.find_nil())
+                    x.removeAttr( Locale._xsiNil );
+
+                Cur.moveNodeContents( x, null, false );
+
+                c.moveTo( x, END_POS );
+                c.insertString( texts[ i ] );
+            }
+
+            // New elements all go where add_element_user would add the
+            // first of them
+
+            if (n > m)
+            {
+                Xobj candidate = findAddPosition( elementName );
+
+                if (candidate == null)
+                    c.moveTo( this, END_POS );
+                else
+                    c.moveTo( candidate, 0 );
+
+                for ( ; i < n ; i++ )
+                {
+                    c.createElement( elementName );
+
+                    Xobj x = c._xobj;
+
+                    c.next();
+                    c.insertString( texts[ i ] );
+
+                    c.moveTo( x, END_POS );
+                    c.next();
+                }
+            }
+
+            c.release();
+        }
+        finally
+        {
+            _locale.exit();
+        }
+    }
+
+    public int[] fetch_all_ints ( QName name )
+    {
+        int[] values = new int[ count_elements( name ) ];
+
+        int i = 0;
+
+        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
+        {
+            if (!x.isElem() || !x._name.equals( name ))
+                continue;
+
+            if (x.hasPlainText() && isPlainInteger( x._srcValue, x._offValue, x._cchValue ))
+            {
+                long v = parsePlainInteger( x._srcValue, x._offValue, x._cchValue );
+
+                if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE)
+                {
+                    values[ i++ ] = (int) v;
+                    continue;
+                }
+            }
+
+            values[ i++ ] = ((SimpleValue) x.getUser()).getIntValue();
+        }
+
+        assert i == values.length;
+
+        return values;
+    }
+
+    public long[] fetch_all_longs ( QName name )
+    {
+        long[] values = new long[ count_elements( name ) ];
+
+        int i = 0;
+
+        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
+        {
+            if (!x.isElem() || !x._name.equals( name ))
+                continue;
+
+            if (x.hasPlainText() && isPlainInteger( x._srcValue, x._offValue, x._cchValue ))
+                values[ i++ ] = parsePlainInteger( x._srcValue, x._offValue, x._cchValue );
+            else
+                values[ i++ ] = ((SimpleValue) x.getUser()).getLongValue();
+        }
+
+        assert i == values.length;
+
+        return values;
+    }
+
+    public double[] fetch_all_doubles ( QName name )
+    {
+        double[] values = new double[ count_elements( name ) ];
+
+        int i = 0;
+
+        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
+        {
+            if (!x.isElem() || !x._name.equals( name ))
+                continue;
+
+            double v = x.hasPlainText()
+                ? parsePlainDouble( x._srcValue, x._offValue, x._cchValue ) : Double.NaN;
+
+            values[ i++ ] = Double.isNaN( v ) ? ((SimpleValue) x.getUser()).getDoubleValue() : v;
+        }
+
+        assert i == values.length;
+
+        return values;
+    }
+
+    public boolean[] fetch_all_booleans ( QName name )
+    {
+        boolean[] values = new boolean[ count_elements( name ) ];
+
+        int i = 0;
+
+        for ( Xobj x = _firstChild ; x != null ; x = x._nextSibling )
+        {
+            if (!x.isElem() || !x._name.equals( name ))
+                continue;
+
+            int v = x.hasPlainText()
+                ? parsePlainBoolean( x._srcValue, x._offValue, x._cchValue ) : -1;
+
+            values[ i++ ] = v < 0 ? ((SimpleValue) x.getUser()).getBooleanValue() : v == 1;
+        }
+
+        assert i == values.length;
+
+        return values;
+    }
+
     public void visit_elements ( TypeStoreVisitor visitor )
     {
         throw new RuntimeException( "Not implemeneted" );
@@ -3120,6 +3760,126 @@ abstract class Xobj implements TypeStore
     //
     //
 
+    /**
+     * The fields most nodes never need: bookmarks, the DOM text nodes, the
+     * index of the children of a wide parent, and the users made for a
+     * frozen locale after the freeze.  They hang off the node, so that a
+     * loaded, and in particular a read-only, document pays one reference
+     * per node for them.
+     * <p>
+     * The extras of a node are made on the first write and never replaced,
+     * and only the fields read without a lock are volatile.  A reader of a
+     * frozen locale which races with their making may find them missing,
+     * and then looks again under the locale's lock (see extras).
+     */
+    static final class Extras
+    {
+        Bookmark _bookmarks;
+
+        CharNode _charNodesValue;
+        CharNode _charNodesAfter;
+
+        // The index of the element children of a wide parent, see ChildIndex
+        volatile ChildIndex _childIndex;
+
+        // The schema fields of the element children of a wide parent, see
+        // ChildFields; dropped along with _childIndex
+        volatile ChildFields _childFields;
+
+        // A user made after the freeze, see getFrozenUser
+        volatile TypeStoreUser _frozenUser;
+    }
+
+    private Extras extras ( )
+    {
+        if (_extras == null)
+        {
+            if (_locale.frozen())
+            {
+                _locale.enter();
+
+                try
+                {
+                    if (_extras == null)
+                        _extras = new Extras();
+                }
+                finally
+                {
+                    _locale.exit();
+                }
+            }
+            else
+                _extras = new Extras();
+        }
+
+        return _extras;
+    }
+
+    final Bookmark bookmarks ( )
+    {
+        return _extras == null ? null : _extras._bookmarks;
+    }
+
+    final Bookmark setBookmarks ( Bookmark b )
+    {
+        if (b != null || _extras != null)
+            extras()._bookmarks = b;
+
+        return b;
+    }
+
+    final CharNode charNodesValue ( )
+    {
+        return _extras == null ? null : _extras._charNodesValue;
+    }
+
+    final CharNode setCharNodesValue ( CharNode nodes )
+    {
+        if (nodes != null || _extras != null)
+            extras()._charNodesValue = nodes;
+
+        return nodes;
+    }
+
+    final CharNode charNodesAfter ( )
+    {
+        return _extras == null ? null : _extras._charNodesAfter;
+    }
+
+    final CharNode setCharNodesAfter ( CharNode nodes )
+    {
+        if (nodes != null || _extras != null)
+            extras()._charNodesAfter = nodes;
+
+        return nodes;
+    }
+
+    final ChildIndex childIndex ( )
+    {
+        Extras extras = _extras;
+
+        return extras == null ? null : extras._childIndex;
+    }
+
+    final void setChildIndex ( ChildIndex index )
+    {
+        if (index != null || _extras != null)
+            extras()._childIndex = index;
+    }
+
+    final ChildFields childFields ( )
+    {
+        Extras extras = _extras;
+
+        return extras == null ? null : extras._childFields;
+    }
+
+    final void setChildFields ( ChildFields fields )
+    {
+        if (fields != null || _extras != null)
+            extras()._childFields = fields;
+    }
+
     static class Bookmark implements XmlMark
     {
         boolean isOnList ( Bookmark head )
@@ -3176,12 +3936,12 @@ abstract class Xobj implements TypeStore
 
         void moveTo ( Xobj x, int p )
         {
-            assert isOnList( _xobj._bookmarks );
+            assert isOnList( _xobj.bookmarks() );
 
             if (_xobj != x)
             {
-                _xobj._bookmarks = listRemove( _xobj._bookmarks );
-                x._bookmarks = listInsert( x._bookmarks );
+                _xobj.setBookmarks( listRemove( _xobj.bookmarks() ) );
+                x.setBookmarks( listInsert( x.bookmarks() ) );
 
                 _xobj = x;
             }
@@ -3228,8 +3988,6 @@ abstract class Xobj implements TypeStore
 
     Cur _embedded;
 
-    Bookmark _bookmarks;
-
     int _bits;
 
     Xobj _parent;
@@ -3242,10 +4000,9 @@ abstract class Xobj implements TypeStore
     int    _offValue, _offAfter;
     int    _cchValue, _cchAfter;
 
-    // TODO - put this in a ptr off this node
-    CharNode _charNodesValue;
-    CharNode _charNodesAfter;
-
     // TODO - put this in a ptr off this node
     TypeStoreUser _user;
+
+    // What few nodes have, see Extras
+    Extras _extras;
 }
@@ -694,17 +694,9 @@ public class RegularExpression implements java.io.Serializable {
      */
     public boolean matches(char[]  target, int start, int end, Match match) {
 
-        synchronized (this) {
-            if (this.operations == null)
-                this.prepare();
-            if (this.context == null)
-                this.context = new Context();
-        }
-        Context con = null;
-        synchronized (this.context) {
-            con = this.context.inuse ? new Context() : this.context;
-            con.reset(target, start, end, this.numberOfClosures);
-        }
+        this.prepareOnce();
+        Context con = this.getContext();
+        con.reset(target, start, end, this.numberOfClosures);
         if (match != null) {
             match.setNumberOfGroups(this.nofparen);
             match.setSource(target);
@@ -724,9 +716,10 @@ public class RegularExpression implements java.io.Serializable {
                     con.match.setBeginning(0, con.start);
                     con.match.setEnd(0, matchEnd);
                 }
-                con.inuse = false;
+                con.release();
                 return true;
             }
+            con.release();
             return false;
         }
 
@@ -742,10 +735,10 @@ public class RegularExpression implements java.io.Serializable {
                     con.match.setBeginning(0, o);
                     con.match.setEnd(0, o+this.fixedString.length());
                 }
-                con.inuse = false;
+                con.release();
                 return true;
             }
-            con.inuse = false;
+            con.release();
             return false;
         }
 
@@ -758,7 +751,7 @@ public class RegularExpression implements java.io.Serializable {
             int o = this.fixedStringTable.matches(target, con.start, con.limit);
             if (o < 0) {
                 //System.err.println("Non-match in fixed-string search.");
-                con.inuse = false;
+                con.release();
                 return false;
             }
         }
@@ -846,10 +839,10 @@ public class RegularExpression implements java.io.Serializable {
                 con.match.setBeginning(0, matchStart);
                 con.match.setEnd(0, matchEnd);
             }
-            con.inuse = false;
+            con.release();
             return true;
         } else {
-            con.inuse = false;
+            con.release();
             return false;
         }
     }
@@ -1403,17 +1396,9 @@ public class RegularExpression implements java.io.Serializable {
      */
     public boolean matches(String  target, int start, int end, Match match) {
 
-        synchronized (this) {
-            if (this.operations == null)
-                this.prepare();
-            if (this.context == null)
-                this.context = new Context();
-        }
-        Context con = null;
-        synchronized (this.context) {
-            con = this.context.inuse ? new Context() : this.context;
-            con.reset(target, start, end, this.numberOfClosures);
-        }
+        this.prepareOnce();
+        Context con = this.getContext();
+        con.reset(target, start, end, this.numberOfClosures);
         if (match != null) {
             match.setNumberOfGroups(this.nofparen);
             match.setSource(target);
@@ -1439,9 +1424,10 @@ public class RegularExpression implements java.io.Serializable {
                     con.match.setBeginning(0, con.start);
                     con.match.setEnd(0, matchEnd);
                 }
-                con.inuse = false;
+                con.release();
                 return true;
             }
+            con.release();
             return false;
         }
 
@@ -1457,10 +1443,10 @@ public class RegularExpression implements java.io.Serializable {
                     con.match.setBeginning(0, o);
                     con.match.setEnd(0, o+this.fixedString.length());
                 }
-                con.inuse = false;
+                con.release();
                 return true;
             }
-            con.inuse = false;
+            con.release();
             return false;
         }
 
@@ -1473,7 +1459,7 @@ public class RegularExpression implements java.io.Serializable {
             int o = this.fixedStringTable.matches(target, con.start, con.limit);
             if (o < 0) {
                 //System.err.println("Non-match in fixed-string search.");
-                con.inuse = false;
+                con.release();
                 return false;
             }
         }
@@ -1561,10 +1547,10 @@ public class RegularExpression implements java.io.Serializable {
                 con.match.setBeginning(0, matchStart);
                 con.match.setEnd(0, matchEnd);
             }
-            con.inuse = false;
+            con.release();
             return true;
         } else {
-            con.inuse = false;
+            con.release();
             return false;
         }
     }
@@ -2056,17 +2042,9 @@ public class RegularExpression implements java.io.Serializable {
 
 
 
-        synchronized (this) {
-            if (this.operations == null)
-                this.prepare();
-            if (this.context == null)
-                this.context = new Context();
-        }
-        Context con = null;
-        synchronized (this.context) {
-            con = this.context.inuse ? new Context() : this.context;
-            con.reset(target, start, end, this.numberOfClosures);
-        }
+        this.prepareOnce();
+        Context con = this.getContext();
+        con.reset(target, start, end, this.numberOfClosures);
         if (match != null) {
             match.setNumberOfGroups(this.nofparen);
             match.setSource(target);
@@ -2086,9 +2064,10 @@ public class RegularExpression implements java.io.Serializable {
                     con.match.setBeginning(0, con.start);
                     con.match.setEnd(0, matchEnd);
                 }
-                con.inuse = false;
+                con.release();
                 return true;
             }
+            con.release();
             return false;
         }
 
@@ -2104,10 +2083,10 @@ public class RegularExpression implements java.io.Serializable {
                     con.match.setBeginning(0, o);
                     con.match.setEnd(0, o+this.fixedString.length());
                 }
-                con.inuse = false;
+                con.release();
                 return true;
             }
-            con.inuse = false;
+            con.release();
             return false;
         }
 
@@ -2120,7 +2099,7 @@ public class RegularExpression implements java.io.Serializable {
             int o = this.fixedStringTable.matches(target, con.start, con.limit);
             if (o < 0) {
                 //System.err.println("Non-match in fixed-string search.");
-                con.inuse = false;
+                con.release();
                 return false;
             }
         }
@@ -2208,10 +2187,10 @@ public class RegularExpression implements java.io.Serializable {
                 con.match.setBeginning(0, matchStart);
                 con.match.setEnd(0, matchEnd);
             }
-            con.inuse = false;
+            con.release();
             return true;
         } else {
-            con.inuse = false;
+            con.release();
             return false;
         }
     }
@@ -2756,7 +2735,8 @@ public class RegularExpression implements java.io.Serializable {
     transient int minlength;
     transient Op operations = null;
     transient int numberOfClosures;
-    transient Context context = null;
+    transient ThreadLocal context = null;
+    transient volatile boolean prepared = false;
     transient RangeToken firstChar = null;
 
     transient String fixedString = null;
@@ -2805,6 +2785,48 @@ public class RegularExpression implements java.io.Serializable {
             this.limit = limit;
             this.resetCommon(nofclosures);
         }
+        void release() {
+            // Do not keep the target alive while the context is cached
+            this.ciTarget = null;
+            this.strTarget = null;
+            this.charTarget = null;
+            this.match = null;
+            this.inuse = false;
+        }
+    }
+
+    /**
+     * Prepares for matching on first use.  After that, the operations and
+     * the other prepared fields are only read, so that any number of
+     * threads can match against this expression without locking.
+     */
+    private void prepareOnce() {
+        if (this.prepared)
+            return;
+        synchronized (this) {
+            if (!this.prepared) {
+                if (this.operations == null)
+                    this.prepare();
+                if (this.context == null)
+                    this.context = new ThreadLocal();
+                this.prepared = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the context of the current thread, or a new one if that is in
+     * use, which happens only if a match is started from within another.
+     */
+    private Context getContext() {
+        Context con = (Context)this.context.get();
+        if (con == null) {
+            con = new Context();
+            this.context.set(con);
+        }
+        else if (con.inuse)
+            con = new Context();
+        return con;
     }
 
     /**
@@ -3001,6 +3023,7 @@ public class RegularExpression implements java.io.Serializable {
 
         this.operations = null;
         this.context = null;
+        this.prepared = false;
     }
     /**
      *
@@ -0,0 +1,289 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.schema;
+
+import org.apache.xmlbeans.SchemaParticle;
+
+import javax.xml.namespace.QName;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A content model as a deterministic automaton.  Its states are the states
+ * of a SchemaTypeVisitorImpl between two elements, and its transitions are
+ * the visits of an element from them, each made once by a visitor and then
+ * taken by all the visitors of the content model, without visiting again.
+ * <p>
+ * The automaton is built as the content model is used, so it only has the
+ * states and names met in the instances.  States differing only in how
+ * many times an unbounded particle has been seen past its minimum are the
+ * same state.  Past MAX_STATES states, the visitors go on visiting without
+ * it; past MAX_TRANSITIONS names from a state, as a wildcard may match,
+ * further transitions are found but not kept.
+ * <p>
+ * The automaton is shared by the threads using the content model: the
+ * transitions of a state are read without locking, from a map replaced
+ * rather than changed when a transition is added.
+ */
+final class ContentModelAutomaton
+{
+    static final int MAX_STATES = 1024;
+    static final int MAX_TRANSITIONS = 64;
+
+    /**
+     * Returns the automaton of the content model rooted at the given
+     * particle, or null if it cannot have one.
+     */
+    static ContentModelAutomaton forParticle(SchemaParticle part)
+    {
+        if (!(part instanceof SchemaParticleImpl))
+            return null;
+
+        SchemaParticleImpl impl = (SchemaParticleImpl) part;
+        ContentModelAutomaton automaton = impl.getAutomaton();
+
+        if (automaton == null)
+        {
+            automaton = new ContentModelAutomaton();
+            impl.setAutomaton(automaton);
+        }
+
+        return automaton;
+    }
+
+    private ContentModelAutomaton()
+    {
+    }
+
+    /**
+     * Returns the start state, or null if it has not been added yet.
+     */
+    State getStart()
+    {
+        return _start;
+    }
+
+    /**
+     * Adds the start state, the given stack of a visitor just started.
+     */
+    synchronized State addStart(SchemaTypeVisitorImpl.VisitorState[] stack, int size)
+    {
+        if (_start == null)
+            _start = addState(new Key(stack, size), stack, size);
+
+        return _start;
+    }
+
+    /**
+     * Adds the transition on a name from a state: the given stack is the
+     * one of a visitor which has visited the name from the state.  Returns
+     * null if the transition leads to a new state and there are too many.
+     */
+    synchronized Transition addTransition(
+        State from, QName name, boolean valid, SchemaParticle matched,
+        SchemaTypeVisitorImpl.VisitorState[] stack, int size)
+    {
+        State to = from;
+
+        if (valid)
+        {
+            Key key = new Key(stack, size);
+
+            to = (State) _states.get(key);
+
+            if (to == null)
+            {
+                if (_states.size() >= MAX_STATES)
+                    return null;
+
+                to = addState(key, stack, size);
+            }
+        }
+
+        Transition t = new Transition(to, valid, valid ? matched : null);
+
+        if (name == null)
+            from._end = t;
+        else if (from._transitions.size() < MAX_TRANSITIONS)
+        {
+            Map transitions = new HashMap(from._transitions);
+            transitions.put(name, t);
+            from._transitions = transitions;
+        }
+
+        return t;
+    }
+
+    private State addState(Key key, SchemaTypeVisitorImpl.VisitorState[] stack, int size)
+    {
+        SchemaTypeVisitorImpl.VisitorState[] copy =
+            new SchemaTypeVisitorImpl.VisitorState[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            copy[i] = new SchemaTypeVisitorImpl.VisitorState();
+            copy[i].copy(stack[i]);
+        }
+
+        State state = new State(copy);
+        _states.put(key, state);
+        return state;
+    }
+
+    static final class State
+    {
+        private State(SchemaTypeVisitorImpl.VisitorState[] stack)
+        {
+            _stack = stack;
+        }
+
+        /**
+         * The stack of a visitor in this state, not to be changed.
+         */
+        SchemaTypeVisitorImpl.VisitorState[] getStack()
+        {
+            return _stack;
+        }
+
+        /**
+         * Returns the transition on the given name, null for the end of
+         * the content, or null if it is not known yet.
+         */
+        Transition getTransition(QName name)
+        {
+            if (name == null)
+                return _end;
+
+            return (Transition) _transitions.get(name);
+        }
+
+        private final SchemaTypeVisitorImpl.VisitorState[] _stack;
+        private volatile Map _transitions = Collections.EMPTY_MAP;
+        private volatile Transition _end;
+    }
+
+    static final class Transition
+    {
+        private Transition(State target, boolean valid, SchemaParticle matched)
+        {
+            _target = target;
+            _valid = valid;
+            _matched = matched;
+        }
+
+        State getTarget()
+            { return _target; }
+
+        boolean isValid()
+            { return _valid; }
+
+        SchemaParticle getMatched()
+            { return _matched; }
+
+        private final State _target;
+        private final boolean _valid;
+        private final SchemaParticle _matched;
+    }
+
+    /**
+     * What tells a state of a visitor from another: the particles on its
+     * stack, and for each, its count, the children it has gone past and,
+     * for an all, the children seen.
+     */
+    private static final class Key
+    {
+        Key(SchemaTypeVisitorImpl.VisitorState[] stack, int size)
+        {
+            _parts = new SchemaParticle[size];
+
+            int n = 0;
+
+            for (int i = 0; i < size; i++)
+            {
+                _parts[i] = stack[i]._curPart;
+                n += 2;
+                if (_parts[i].getParticleType() == SchemaParticle.ALL)
+                    n += stack[i]._childCount;
+            }
+
+            _values = new int[n];
+
+            n = 0;
+
+            for (int i = 0; i < size; i++)
+            {
+                SchemaTypeVisitorImpl.VisitorState state = stack[i];
+
+                // Past the minimum of an unbounded particle, the count
+                // only matters in being past the minimum
+
+                int count = state._curCount;
+
+                if (state._curMax == Integer.MAX_VALUE &&
+                        count > state._curMin && count < Integer.MAX_VALUE)
+                    count = state._curMin + 1;
+
+                _values[n++] = count;
+                _values[n++] = state._processedChildCount;
+
+                if (_parts[i].getParticleType() == SchemaParticle.ALL)
+                {
+                    for (int j = 0; j < state._childCount; j++)
+                        _values[n++] = state._seen[j] ? 1 : 0;
+                }
+            }
+
+            int hash = Arrays.hashCode(_values);
+            for (int i = 0; i < size; i++)
+                hash = hash * 31 + System.identityHashCode(_parts[i]);
+            _hash = hash;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+
+            Key k = (Key) o;
+
+            if (_hash != k._hash || _parts.length != k._parts.length)
+                return false;
+
+            for (int i = 0; i < _parts.length; i++)
+            {
+                if (_parts[i] != k._parts[i])
+                    return false;
+            }
+
+            return Arrays.equals(_values, k._values);
+        }
+
+        public int hashCode()
+        {
+            return _hash;
+        }
+
+        private final SchemaParticle[] _parts;
+        private final int[] _values;
+        private final int _hash;
+    }
+
+    private final Map _states = new HashMap();
+    private volatile State _start;
+}
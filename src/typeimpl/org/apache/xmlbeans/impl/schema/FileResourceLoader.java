@@ -61,6 +61,19 @@ public class FileResourceLoader implements ResourceLoader
         }
     }
 
+    /**
+     * Returns the file of the resource when it is a plain file in a
+     * directory, otherwise null.
+     */
+    File getResourceFile(String resourceName)
+    {
+        if (_directory == null)
+            return null;
+
+        File file = new File(_directory, resourceName);
+        return file.isFile() ? file : null;
+    }
+
     public void close()
     {
         if (_zipfile != null)
@@ -51,6 +51,7 @@ public class SchemaParticleImpl implements SchemaParticle
     protected XmlObject _parseObject;
     private Object _userData;
     private XmlValueRef _defaultValue;
+    private volatile ContentModelAutomaton _automaton;
 
     protected void mutate()
         { if (_isImmutable) throw new IllegalStateException(); }
@@ -255,4 +256,18 @@ public class SchemaParticleImpl implements SchemaParticle
     {
         _userData = data;
     }
+
+    /**
+     * The automaton of the content model rooted here, built by the
+     * visitors of the content model as they go.
+     */
+    ContentModelAutomaton getAutomaton()
+    {
+        return _automaton;
+    }
+
+    void setAutomaton(ContentModelAutomaton automaton)
+    {
+        _automaton = automaton;
+    }
 }
@@ -0,0 +1,298 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.schema;
+
+import org.apache.xmlbeans.SystemProperties;
+import org.apache.xmlbeans.impl.common.XBeanDebug;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * The schema metadata resources a class loader has, found by listing the
+ * jars and directories of its class path once, so that looking up a
+ * component it does not have no longer probes each of them.
+ * <p>
+ * Only the hashes of the resource names in jars are kept: a name whose
+ * hash is not in the index and which is not a file in one of the
+ * directories of the class path is not a resource of the class loader, and
+ * one whose hash is may be, and is then probed as before.  The directories
+ * are not listed, as resources may be added to them at any time.
+ * <p>
+ * A class loader is only indexed when its class path, and the class paths
+ * of the loaders it delegates to, can be listed: those of URLClassLoaders,
+ * of the system class loader and of the class loaders of the runtime.  An
+ * index is built again when one of its URLClassLoaders gets another URL,
+ * or when one of its jars, or an entry of the class path which did not
+ * exist, has changed; the jars are looked at again at most once every
+ * CHECK_INTERVAL milliseconds.  Setting the "xmlbean.typeloaderindex"
+ * system property to "false" turns the index off.
+ */
+final class SchemaResourceIndex
+{
+    private static final String PREFIX =
+        "schema" + SchemaTypeLoaderImpl.METADATA_PACKAGE_LOAD + "/";
+
+    private static final long CHECK_INTERVAL = 1000;
+
+    private SchemaResourceIndex(
+        URLClassLoader[] loaders, int[] urlCounts, int[] hashes,
+        File[] dirs, File[] files, long[] stamps)
+    {
+        _loaders = loaders;
+        _urlCounts = urlCounts;
+        _hashes = hashes;
+        _dirs = dirs;
+        _files = files;
+        _stamps = stamps;
+        _checked = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the index of the given class loader, or null if it cannot
+     * be indexed.
+     */
+    static SchemaResourceIndex build(ClassLoader cl)
+    {
+        if ("false".equals(SystemProperties.getProperty("xmlbean.typeloaderindex")))
+            return null;
+
+        try
+        {
+            return index(cl);
+        }
+        catch (SecurityException e)
+        {
+            return null;
+        }
+    }
+
+    private static SchemaResourceIndex index(ClassLoader cl)
+    {
+        ClassLoader system = ClassLoader.getSystemClassLoader();
+        ClassLoader platform = system == null ? null : system.getParent();
+
+        List loaders = new ArrayList();
+        List urls = new ArrayList();
+
+        for ( ClassLoader l = cl ; l != null ; l = l.getParent() )
+        {
+            if (l instanceof URLClassLoader &&
+                    (l.getClass() == URLClassLoader.class || l == system || l == platform))
+            {
+                URL[] ls = ((URLClassLoader) l).getURLs();
+                loaders.add(l);
+                urls.addAll(Arrays.asList(ls));
+            }
+            else if (l == system && l.getClass().getName().startsWith("jdk.internal.loader."))
+            {
+                StringTokenizer st = new StringTokenizer(
+                    SystemProperties.getProperty("java.class.path", ""), File.pathSeparator);
+
+                while (st.hasMoreTokens())
+                {
+                    try
+                    {
+                        urls.add(new File(st.nextToken()).toURI().toURL());
+                    }
+                    catch (IOException e)
+                    {
+                        return null;
+                    }
+                }
+            }
+            else if (l != platform)
+                return null;
+        }
+
+        int[] urlCounts = new int[loaders.size()];
+        for (int i = 0; i < urlCounts.length; i++)
+            urlCounts[i] = ((URLClassLoader) loaders.get(i)).getURLs().length;
+
+        Set hashes = new HashSet();
+        List dirs = new ArrayList();
+        List files = new ArrayList();
+        List stamps = new ArrayList();
+
+        try
+        {
+            Set seen = new HashSet();
+
+            for (int i = 0; i < urls.size(); i++)
+            {
+                URL url = (URL) urls.get(i);
+
+                if (!seen.add(url.toString()))
+                    continue;
+
+                if (!"file".equals(url.getProtocol()))
+                    return null;
+
+                File f = new File(url.toURI());
+
+                // The stamps of the jars, and of the entries which are
+                // not there yet, are taken before they are read
+
+                if (f.isDirectory())
+                    dirs.add(f);
+                else
+                {
+                    files.add(f);
+                    stamps.add(new Long(stamp(f)));
+
+                    if (f.isFile())
+                        addJar(f, url, hashes, urls);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (URISyntaxException e)
+        {
+            return null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+
+        int[] sorted = new int[hashes.size()];
+        int n = 0;
+        for (Iterator it = hashes.iterator(); it.hasNext(); )
+            sorted[n++] = ((Integer) it.next()).intValue();
+        Arrays.sort(sorted);
+
+        XBeanDebug.trace(XBeanDebug.TRACE_SCHEMA_LOADING,
+            "Indexed " + sorted.length + " schema resources on " + urls.size() + " class path entries", 0);
+
+        long[] stampArray = new long[stamps.size()];
+        for (int i = 0; i < stampArray.length; i++)
+            stampArray[i] = ((Long) stamps.get(i)).longValue();
+
+        return new SchemaResourceIndex(
+            (URLClassLoader[]) loaders.toArray(new URLClassLoader[loaders.size()]),
+            urlCounts, sorted, (File[]) dirs.toArray(new File[dirs.size()]),
+            (File[]) files.toArray(new File[files.size()]), stampArray);
+    }
+
+    private static long stamp(File f)
+    {
+        return f.lastModified() * 31 + f.length();
+    }
+
+    private static void addJar(File f, URL url, Set hashes, List urls)
+        throws IOException
+    {
+        JarFile jar = new JarFile(f);
+
+        try
+        {
+            for ( Enumeration e = jar.entries() ; e.hasMoreElements() ; )
+            {
+                JarEntry entry = (JarEntry) e.nextElement();
+                String name = entry.getName();
+
+                if (name.startsWith(PREFIX) && !entry.isDirectory())
+                    hashes.add(new Integer(name.hashCode()));
+            }
+
+            // The class path of the jar is on the class path too
+
+            Manifest manifest = jar.getManifest();
+            String classPath = manifest == null ? null :
+                manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+
+            if (classPath != null)
+            {
+                for ( StringTokenizer st = new StringTokenizer(classPath) ; st.hasMoreTokens() ; )
+                    urls.add(new URL(url, st.nextToken()));
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    /**
+     * Returns false if the class loader has no resource of the given name.
+     */
+    boolean mayContain(String resource)
+    {
+        if (Arrays.binarySearch(_hashes, resource.hashCode()) >= 0)
+            return true;
+
+        for (int i = 0; i < _dirs.length; i++)
+        {
+            if (new File(_dirs[i], resource).isFile())
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns false if the class path of the class loader has changed
+     * since it was indexed.
+     */
+    boolean isCurrent()
+    {
+        for (int i = 0; i < _loaders.length; i++)
+        {
+            if (_loaders[i].getURLs().length != _urlCounts[i])
+                return false;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (now - _checked < CHECK_INTERVAL && now >= _checked)
+            return true;
+
+        for (int i = 0; i < _files.length; i++)
+        {
+            if (stamp(_files[i]) != _stamps[i])
+                return false;
+        }
+
+        _checked = now;
+        return true;
+    }
+
+    private final URLClassLoader[] _loaders;
+    private final int[] _urlCounts;
+    private final int[] _hashes;
+    private final File[] _dirs;
+    private final File[] _files;
+    private final long[] _stamps;
+    private volatile long _checked;
+}
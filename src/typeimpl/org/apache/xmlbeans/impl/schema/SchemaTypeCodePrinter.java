@@ -1645,6 +1645,43 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
         }
         emit("return result;");
     }
+    /**
+     * Returns the primitive type of the TypeStore methods (fetch_int,
+     * fetch_all_ints and so on) which read the values of a property
+     * straight from the store, or null if the getters have to go
+     * through the TypeStoreUser of the element or attribute: a union, a
+     * substitution group, or an attribute whose default is filled in
+     * when it is missing.
+     */
+    String fetchTypeForProperty(SchemaProperty prop, boolean isAttr, int javaType,
+        boolean isunion, String identifier, String setIdentifier)
+    {
+        if (isunion || !setIdentifier.equals(identifier))
+            return null;
+
+        if (isAttr && (prop.hasDefault() == SchemaProperty.CONSISTENTLY ||
+                prop.hasFixed() == SchemaProperty.CONSISTENTLY))
+            return null;
+
+        switch (javaType)
+        {
+            case SchemaProperty.JAVA_INT:
+                return "int";
+
+            case SchemaProperty.JAVA_LONG:
+                return "long";
+
+            case SchemaProperty.JAVA_DOUBLE:
+                return "double";
+
+            case SchemaProperty.JAVA_BOOLEAN:
+                return "boolean";
+
+            default:
+                return null;
+        }
+    }
+
     void printJGetValue(int javaType, String type, SchemaTypeImpl stype) throws IOException {
         switch (javaType)
         {
@@ -2089,24 +2126,33 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
             startBlock();
             emitImplementationPreamble();
 
-            emitGetTarget(setIdentifier, identifier, isAttr, "0", NOTHING, jtargetType);
+            String fetch = fetchTypeForProperty(prop, isAttr, javaType, isunion,
+                identifier, setIdentifier);
 
-            if (isAttr && (prop.hasDefault() == SchemaProperty.CONSISTENTLY ||
-                    prop.hasFixed() == SchemaProperty.CONSISTENTLY))
+            if (fetch != null)
+            {
+                emit("return get_store().fetch_" + fetch + "(" + identifier + ", " + isAttr + ");");
+            }
+            else
             {
+                emitGetTarget(setIdentifier, identifier, isAttr, "0", NOTHING, jtargetType);
+
+                if (isAttr && (prop.hasDefault() == SchemaProperty.CONSISTENTLY ||
+                        prop.hasFixed() == SchemaProperty.CONSISTENTLY))
+                {
+                    emit("if (target == null)");
+                    startBlock();
+                    makeAttributeDefaultValue(jtargetType, prop, identifier);
+                    endBlock();
+                }
                 emit("if (target == null)");
                 startBlock();
-                makeAttributeDefaultValue(jtargetType, prop, identifier);
+                makeMissingValue(javaType);
                 endBlock();
-            }
-            emit("if (target == null)");
-            startBlock();
-            makeMissingValue(javaType);
-            endBlock();
 
-            
-            printJGetValue(javaType, type, (SchemaTypeImpl)prop.getType());    
-            
+                
+                printJGetValue(javaType, type, (SchemaTypeImpl)prop.getType());    
+            }
 
             emitImplementationPostamble();
 
@@ -2200,13 +2246,23 @@ public final class SchemaTypeCodePrinter implements SchemaCodePrinter
             startBlock();
             emitImplementationPreamble();
 
-            if (_useJava15)
-                emit("java.util.List<" + xtype + "> targetList = new java.util.ArrayList<" + xtype + ">();");
+            String fetch = fetchTypeForProperty(prop, isAttr, javaType, isunion,
+                identifier, setIdentifier);
+
+            if (fetch != null)
+            {
+                emit("return get_store().fetch_all_" + fetch + "s(" + identifier + ");");
+            }
             else
-                emit("java.util.List targetList = new java.util.ArrayList();");
-            emit("get_store().find_all_element_users(" + setIdentifier + ", targetList);");
+            {
+                if (_useJava15)
+                    emit("java.util.List<" + xtype + "> targetList = new java.util.ArrayList<" + xtype + ">();");
+                else
+                    emit("java.util.List targetList = new java.util.ArrayList();");
+                emit("get_store().find_all_element_users(" + setIdentifier + ", targetList);");
 
-            printJGetArrayValue(javaType, type, (SchemaTypeImpl)prop.getType());
+                printJGetArrayValue(javaType, type, (SchemaTypeImpl)prop.getType());
+            }
 
             emitImplementationPostamble();
             endBlock();
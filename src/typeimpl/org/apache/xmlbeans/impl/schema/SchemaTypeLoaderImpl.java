@@ -31,13 +31,14 @@ import javax.xml.namespace.QName;
 
 import java.io.InputStream;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.Collections;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 
 public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
 {
@@ -45,7 +46,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
     private ClassLoader _classLoader;
     private SchemaTypeLoader[] _searchPath;
 
-    private Map _classpathTypeSystems;
+    private ConcurrentHashMap _classpathTypeSystems;
     private Map _classLoaderTypeSystems;
     private Map _elementCache;
     private Map _attributeCache;
@@ -57,73 +58,138 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
     private Map _attributeTypeCache;
     private Map _classnameCache;
 
+    // The metadata resources of the class loader, if it can be indexed
+    private volatile SchemaResourceIndex _classLoaderIndex;
+    private volatile boolean _classLoaderIndexed;
+
     public static String METADATA_PACKAGE_LOAD = SchemaTypeSystemImpl.METADATA_PACKAGE_GEN;
     private static final Object CACHED_NOT_FOUND = new Object();
 
     private static class SchemaTypeLoaderCache extends SystemCache
     {
-        // The following maintains a cache of SchemaTypeLoaders per ClassLoader per Thread.
-        // I use soft references to allow the garbage collector to reclain the type loaders
-        // and/pr class loaders at will.
+        // The following maintains a cache of SchemaTypeLoaders per ClassLoader,
+        // shared by all the threads, so that a type found by one is found for
+        // all of them.  The class loaders are held weakly and the type loaders
+        // softly, to allow the garbage collector to reclaim them at will.
+
+        private final ConcurrentHashMap _cachedTypeLoaders = new ConcurrentHashMap();
+        private final ReferenceQueue _collected = new ReferenceQueue();
 
-        private ThreadLocal _cachedTypeSystems =
-            new ThreadLocal() { protected Object initialValue() { return new ArrayList(); } };
+        // The type loader for the null class loader, which cannot be a key
+        private volatile SoftReference _nullLoaderTypeLoader;
 
         public SchemaTypeLoader getFromTypeLoaderCache(ClassLoader cl)
         {
-            ArrayList a = (ArrayList) _cachedTypeSystems.get();
+            SoftReference ref = cl == null
+                ? _nullLoaderTypeLoader
+                : (SoftReference) _cachedTypeLoaders.get( new ClassLoaderProbe( cl ) );
 
-            int candidate = -1;
-            SchemaTypeLoaderImpl result = null;
+            return ref == null ? null : (SchemaTypeLoader) ref.get();
+        }
 
-            for ( int i = 0 ; i < a.size() ; i++ )
-            {
-                SchemaTypeLoaderImpl tl = (SchemaTypeLoaderImpl) ((SoftReference) a.get( i )).get();
+        public SchemaTypeLoader addToTypeLoaderCache(SchemaTypeLoader stl, ClassLoader cl)
+        {
+            assert (stl instanceof SchemaTypeLoaderImpl) &&
+                ((SchemaTypeLoaderImpl) stl)._classLoader == cl;
 
-                if (tl == null)
-                {
-                    assert i > candidate;
-                    a.remove( i-- );
-                }
-                else if (tl._classLoader == cl)
+            SoftReference ref = new SoftReference( stl );
+
+            if (cl == null)
+            {
+                synchronized ( this )
                 {
-                    assert candidate == -1 && result == null;
+                    SchemaTypeLoader old = _nullLoaderTypeLoader == null
+                        ? null : (SchemaTypeLoader) _nullLoaderTypeLoader.get();
 
-                    candidate = i;
-                    result = tl;
+                    if (old != null)
+                        return old;
 
-                    break;
+                    _nullLoaderTypeLoader = ref;
+                    return stl;
                 }
             }
 
-            // Make sure the most recently accessed entry is at the beginning of the array
+            for ( Object key ; (key = _collected.poll()) != null ; )
+                _cachedTypeLoaders.remove( key );
+
+            // Keep the type loader another thread may have added meanwhile,
+            // unless it has been reclaimed already
 
-            if (candidate > 0)
+            ClassLoaderKey key = new ClassLoaderKey( cl, _collected );
+
+            for ( ; ; )
             {
-                Object t = a.get( 0 );
-                a.set( 0, a.get( candidate ) );
-                a.set( candidate, t );
+                SoftReference old = (SoftReference) _cachedTypeLoaders.putIfAbsent( key, ref );
+
+                if (old == null)
+                    return stl;
+
+                SchemaTypeLoader oldStl = (SchemaTypeLoader) old.get();
+
+                if (oldStl != null)
+                    return oldStl;
+
+                if (_cachedTypeLoaders.replace( key, old, ref ))
+                    return stl;
             }
+        }
+    }
 
-            return result;
+    /**
+     * A weak key matching the same class loader, or a probe for it.
+     */
+    private static final class ClassLoaderKey extends WeakReference
+    {
+        ClassLoaderKey(ClassLoader cl, ReferenceQueue queue)
+        {
+            super( cl, queue );
+            _hash = System.identityHashCode( cl );
         }
 
-        public void addToTypeLoaderCache(SchemaTypeLoader stl, ClassLoader cl)
+        public boolean equals(Object o)
         {
-            assert (stl instanceof SchemaTypeLoaderImpl) &&
-                ((SchemaTypeLoaderImpl) stl)._classLoader == cl;
+            if (o == this)
+                return true;
 
-            ArrayList a = (ArrayList) _cachedTypeSystems.get();
-            // Make sure this entry is at the top of the stack
-            if (a.size() > 0)
-            {
-                Object t = a.get( 0 );
-                a.set( 0, new SoftReference( stl ) );
-                a.add( t );
-            }
-            else
-                a.add( new SoftReference( stl ) );
+            Object cl = get();
+
+            if (o instanceof ClassLoaderProbe)
+                return cl != null && cl == ((ClassLoaderProbe) o)._cl;
+
+            return
+                o instanceof ClassLoaderKey &&
+                    cl != null && cl == ((ClassLoaderKey) o).get();
+        }
+
+        public int hashCode()
+        {
+            return _hash;
         }
+
+        private final int _hash;
+    }
+
+    /**
+     * Looks up a ClassLoaderKey, without making a reference to look it up.
+     */
+    private static final class ClassLoaderProbe
+    {
+        ClassLoaderProbe(ClassLoader cl)
+        {
+            _cl = cl;
+        }
+
+        public boolean equals(Object o)
+        {
+            return o instanceof ClassLoaderKey && ((ClassLoaderKey) o).get() == _cl;
+        }
+
+        public int hashCode()
+        {
+            return System.identityHashCode( _cl );
+        }
+
+        private final ClassLoader _cl;
     }
 
     public static SchemaTypeLoaderImpl getContextTypeLoader ( )
@@ -134,10 +200,11 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
 
         if (result == null)
         {
-            result =
-                new SchemaTypeLoaderImpl(
-                    new SchemaTypeLoader[] { BuiltinSchemaTypeSystem.get() }, null, cl );
-            SystemCache.get().addToTypeLoaderCache(result, cl);
+            result = (SchemaTypeLoaderImpl)
+                SystemCache.get().addToTypeLoaderCache(
+                    new SchemaTypeLoaderImpl(
+                        new SchemaTypeLoader[] { BuiltinSchemaTypeSystem.get() }, null, cl ),
+                    cl );
         }
 
         return result;
@@ -227,21 +294,22 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
     }
 
     /**
-     * Initializes the caches.
+     * Initializes the caches.  The context type loaders are shared by all
+     * the threads, so these are read without locking.
      */
     private final void initCaches()
     {
-        _classpathTypeSystems = Collections.synchronizedMap(new HashMap());
-        _classLoaderTypeSystems = Collections.synchronizedMap(new HashMap());
-        _elementCache = Collections.synchronizedMap(new HashMap());
-        _attributeCache = Collections.synchronizedMap(new HashMap());
-        _modelGroupCache = Collections.synchronizedMap(new HashMap());
-        _attributeGroupCache = Collections.synchronizedMap(new HashMap());
-        _idConstraintCache = Collections.synchronizedMap(new HashMap());
-        _typeCache = Collections.synchronizedMap(new HashMap());
-        _documentCache = Collections.synchronizedMap(new HashMap());
-        _attributeTypeCache = Collections.synchronizedMap(new HashMap());
-        _classnameCache = Collections.synchronizedMap(new HashMap());
+        _classpathTypeSystems = new ConcurrentHashMap();
+        _classLoaderTypeSystems = new ConcurrentHashMap();
+        _elementCache = new ConcurrentHashMap();
+        _attributeCache = new ConcurrentHashMap();
+        _modelGroupCache = new ConcurrentHashMap();
+        _attributeGroupCache = new ConcurrentHashMap();
+        _idConstraintCache = new ConcurrentHashMap();
+        _typeCache = new ConcurrentHashMap();
+        _documentCache = new ConcurrentHashMap();
+        _attributeTypeCache = new ConcurrentHashMap();
+        _classnameCache = new ConcurrentHashMap();
     }
 
     SchemaTypeSystemImpl typeSystemForComponent(String searchdir, QName name)
@@ -253,7 +321,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
             tsname = crackEntry(_resourceLoader, searchfor);
 
         if (_classLoader != null)
-            tsname = crackEntry(_classLoader, searchfor);
+            tsname = crackClassLoaderEntry(searchfor);
 
         if (tsname != null)
             return (SchemaTypeSystemImpl)typeSystemForName(tsname);
@@ -292,7 +360,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
 
         if (_classLoader != null)
         {
-            String tsname = crackEntry(_classLoader, searchfor);
+            String tsname = crackClassLoaderEntry(searchfor);
             if (tsname != null)
                 return getTypeSystemOnClassloader(tsname);
         }
@@ -305,8 +373,11 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
         SchemaTypeSystemImpl result = (SchemaTypeSystemImpl)_classpathTypeSystems.get(name);
         if (result == null)
         {
+            // the types of the first one opened are the ones found
             result = new SchemaTypeSystemImpl(_resourceLoader, name, this);
-            _classpathTypeSystems.put(name, result);
+            SchemaTypeSystemImpl other = (SchemaTypeSystemImpl)_classpathTypeSystems.putIfAbsent(name, result);
+            if (other != null)
+                result = other;
         }
         return result;
     }
@@ -319,11 +390,42 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
         {
             XBeanDebug.trace(XBeanDebug.TRACE_SCHEMA_LOADING, "Type system " + name + " not cached - consulting field", 0);
             result = SchemaTypeSystemImpl.forName(name, _classLoader);
-            _classLoaderTypeSystems.put(name, result);
+            if (result != null)
+                _classLoaderTypeSystems.put(name, result);
         }
         return result;
     }
 
+    /**
+     * Cracks the entry of the class loader, unless its index shows it has
+     * no such resource.
+     */
+    private String crackClassLoaderEntry(String searchfor)
+    {
+        SchemaResourceIndex index = _classLoaderIndex;
+
+        if (!_classLoaderIndexed || (index != null && !index.isCurrent()))
+        {
+            index = SchemaResourceIndex.build(_classLoader);
+            _classLoaderIndex = index;
+            _classLoaderIndexed = true;
+        }
+
+        if (index != null && !index.mayContain(searchfor))
+            return null;
+
+        return crackEntry(_classLoader, searchfor);
+    }
+
+    /**
+     * Returns true if the resources of the class loader are looked up in an
+     * index of its class path rather than probed for each component.
+     */
+    public boolean isClassLoaderIndexed()
+    {
+        return _classLoaderIndex != null;
+    }
+
     static String crackEntry(ResourceLoader loader, String searchfor)
     {
         InputStream is = loader.getResourceAsStream(searchfor);
@@ -358,7 +460,7 @@ public class SchemaTypeLoaderImpl extends SchemaTypeLoaderBase
     public SchemaType.Ref findTypeRef(QName name)
     {
         /**
-         * The maps are synchronized, we use two accesses to the cache (one read
+         * The maps are concurrent, we use two accesses to the cache (one read
          * and one write), but the code inbetween is not synchronized. The
          * assumption is that the underlying datastructures (the search path and
          * the classloader) do not change, so two threads running the code in
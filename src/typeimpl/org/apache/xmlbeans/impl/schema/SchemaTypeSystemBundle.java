@@ -0,0 +1,302 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.schema;
+
+import org.apache.xmlbeans.ResourceLoader;
+import org.apache.xmlbeans.SchemaTypeLoaderException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * All the .xsb files of one compiled type system in a single resource,
+ * bundle.xsb, next to the index.xsb it contains.
+ * <p>
+ * The bundle starts with the usual xsb header, followed by the number of
+ * files, a table of (handle, offset, length) for each of them and then
+ * the files themselves, unchanged.  A type system which finds a bundle
+ * opens and reads that one resource, mapping it into memory when it is a
+ * plain file, rather than looking up a resource for every component it
+ * resolves.  Components are still decoded only when first resolved.
+ * <p>
+ * Bundles are written by the xsbbundle tool.  A bundle that is older than
+ * the .xsb files around it is not noticed, so it has to be rebuilt
+ * whenever the schema is recompiled.
+ */
+public class SchemaTypeSystemBundle
+{
+    public static final String BUNDLE_HANDLE = "bundle";
+
+    private final ByteBuffer _data;
+    private final Map _entries;
+
+    private SchemaTypeSystemBundle(ByteBuffer data, Map entries)
+    {
+        _data = data;
+        _entries = entries;
+    }
+
+    /**
+     * Returns the bundle of the type system with the given base package
+     * (e.g. "schemaorg_apache_xmlbeans/system/s1234/"), or null if there
+     * is none.
+     */
+    static SchemaTypeSystemBundle open(ResourceLoader loader, String basePackage, String name)
+    {
+        String resourcename = basePackage + BUNDLE_HANDLE + ".xsb";
+
+        try
+        {
+            ByteBuffer buffer = null;
+
+            File file = fileForResource(loader, resourcename);
+            if (file != null)
+                buffer = map(file);
+
+            if (buffer == null)
+            {
+                InputStream input = loader.getResourceAsStream(resourcename);
+                if (input == null)
+                    return null;
+
+                buffer = ByteBuffer.wrap(readFully(input));
+            }
+
+            return read(buffer, name);
+        }
+        catch (IOException e)
+        {
+            throw new SchemaTypeLoaderException(e.getMessage(), name, BUNDLE_HANDLE, SchemaTypeLoaderException.IO_EXCEPTION, e);
+        }
+    }
+
+    /**
+     * Returns the .xsb file for the given handle, or null if it is not
+     * in the bundle.  The stream may be used from any thread.
+     */
+    InputStream getResourceAsStream(String handle)
+    {
+        int[] entry = (int[]) _entries.get(handle);
+
+        if (entry == null)
+            return null;
+
+        ByteBuffer slice = _data.duplicate();
+        slice.position(entry[0]);
+        slice.limit(entry[0] + entry[1]);
+
+        return new ByteBufferInputStream(slice.slice());
+    }
+
+    /**
+     * Writes a bundle of the given .xsb files, a map from handle (the file
+     * name without .xsb) to its content.
+     */
+    public static void write(OutputStream output, Map xsbFiles) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(output);
+
+        out.writeInt(SchemaTypeSystemImpl.DATA_BABE);
+        out.writeShort(SchemaTypeSystemImpl.MAJOR_VERSION);
+        out.writeShort(SchemaTypeSystemImpl.MINOR_VERSION);
+        out.writeShort(SchemaTypeSystemImpl.RELEASE_NUMBER);
+        out.writeShort(SchemaTypeSystemImpl.FILETYPE_SCHEMABUNDLE);
+
+        out.writeInt(xsbFiles.size());
+
+        int offset = 0;
+
+        for (Iterator i = xsbFiles.entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry) i.next();
+            byte[] bytes = (byte[]) entry.getValue();
+
+            out.writeUTF((String) entry.getKey());
+            out.writeInt(offset);
+            out.writeInt(bytes.length);
+
+            offset += bytes.length;
+        }
+
+        for (Iterator i = xsbFiles.values().iterator(); i.hasNext(); )
+            out.write((byte[]) i.next());
+
+        out.flush();
+    }
+
+    private static SchemaTypeSystemBundle read(ByteBuffer buffer, String name) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new ByteBufferInputStream(buffer.duplicate()));
+
+        if (input.readInt() != SchemaTypeSystemImpl.DATA_BABE)
+            throw new SchemaTypeLoaderException("XML-BEANS compiled schema: Wrong magic cookie", name, BUNDLE_HANDLE, SchemaTypeLoaderException.WRONG_MAGIC_COOKIE);
+
+        int majorver = input.readShort();
+        int minorver = input.readShort();
+        input.readShort(); // release number
+
+        if (majorver != SchemaTypeSystemImpl.MAJOR_VERSION)
+            throw new SchemaTypeLoaderException("XML-BEANS compiled schema: Wrong major version - expecting " + SchemaTypeSystemImpl.MAJOR_VERSION + ", got " + majorver, name, BUNDLE_HANDLE, SchemaTypeLoaderException.WRONG_MAJOR_VERSION);
+
+        if (minorver > SchemaTypeSystemImpl.MINOR_VERSION)
+            throw new SchemaTypeLoaderException("XML-BEANS compiled schema: Incompatible minor version - expecting up to " + SchemaTypeSystemImpl.MINOR_VERSION + ", got " + minorver, name, BUNDLE_HANDLE, SchemaTypeLoaderException.WRONG_MINOR_VERSION);
+
+        int filetype = input.readShort();
+        if (filetype != SchemaTypeSystemImpl.FILETYPE_SCHEMABUNDLE)
+            throw new SchemaTypeLoaderException("XML-BEANS compiled schema: File has the wrong type - expecting type " + SchemaTypeSystemImpl.FILETYPE_SCHEMABUNDLE + ", got type " + filetype, name, BUNDLE_HANDLE, SchemaTypeLoaderException.WRONG_FILE_TYPE);
+
+        int count = input.readInt();
+        Map entries = new HashMap(count * 2);
+        String[] handles = new String[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            handles[i] = input.readUTF();
+            entries.put(handles[i], new int[] { input.readInt(), input.readInt() });
+        }
+
+        // The offsets are relative to the end of the table, which is
+        // where the header stream stopped reading
+
+        int start = buffer.limit() - input.available();
+
+        for (int i = 0; i < count; i++)
+        {
+            int[] entry = (int[]) entries.get(handles[i]);
+            entry[0] += start;
+
+            if (entry[0] + entry[1] > buffer.limit())
+                throw new SchemaTypeLoaderException("XML-BEANS compiled schema: Truncated bundle", name, handles[i], SchemaTypeLoaderException.IO_EXCEPTION);
+        }
+
+        return new SchemaTypeSystemBundle(buffer, entries);
+    }
+
+    private static File fileForResource(ResourceLoader loader, String resourcename)
+    {
+        if (loader instanceof FileResourceLoader)
+            return ((FileResourceLoader) loader).getResourceFile(resourcename);
+
+        if (loader instanceof ClassLoaderResourceLoader)
+        {
+            URL url = ((ClassLoaderResourceLoader) loader)._classLoader.getResource(resourcename);
+
+            if (url != null && "file".equals(url.getProtocol()))
+            {
+                try
+                {
+                    File file = new File(new URI(url.toString()));
+                    if (file.isFile())
+                        return file;
+                }
+                catch (URISyntaxException e)
+                {
+                    // read it as a stream then
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // read it as a stream then
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static ByteBuffer map(File file) throws IOException
+    {
+        FileInputStream input = new FileInputStream(file);
+
+        try
+        {
+            FileChannel channel = input.getChannel();
+
+            // The mapping stays valid after the channel is closed
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+            byte[] buf = new byte[8192];
+
+            for (int n; (n = input.read(buf)) > 0; )
+                output.write(buf, 0, n);
+
+            return output.toByteArray();
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer _buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            _buffer = buffer;
+        }
+
+        public int read()
+        {
+            return _buffer.hasRemaining() ? _buffer.get() & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0)
+                return 0;
+
+            if (!_buffer.hasRemaining())
+                return -1;
+
+            len = Math.min(len, _buffer.remaining());
+            _buffer.get(b, off, len);
+
+            return len;
+        }
+
+        public int available()
+        {
+            return _buffer.remaining();
+        }
+    }
+}
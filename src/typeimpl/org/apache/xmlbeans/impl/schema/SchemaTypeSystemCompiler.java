@@ -33,6 +33,12 @@ import java.util.Map;
 import java.util.List;
 import java.util.Set;
 import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.net.URI;
 
 import org.apache.xmlbeans.impl.xb.xsdschema.SchemaDocument.Schema;
@@ -43,6 +49,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 
 public class SchemaTypeSystemCompiler
@@ -441,6 +448,17 @@ public class SchemaTypeSystemCompiler
         types.addAll(Arrays.asList(system.documentTypes()));
         types.addAll(Arrays.asList(system.attributeTypes()));
 
+        Object threads = XmlOptions.safeGet(options, XmlOptions.GENERATE_THREADS);
+
+        // A printer given in the options may not be thread safe, the
+        // default one is created per type
+
+        if (threads instanceof Integer && ((Integer)threads).intValue() > 1 &&
+            !XmlOptions.hasOption(options, XmlOptions.SCHEMA_CODE_PRINTER))
+        {
+            return generateTypes(types, filer, options, ((Integer)threads).intValue());
+        }
+
         for (Iterator i = types.iterator(); i.hasNext(); )
         {
             SchemaType type = (SchemaType)i.next();
@@ -488,4 +506,111 @@ public class SchemaTypeSystemCompiler
 
         return success;
     }
+
+    /**
+     * Prints the types on a pool of threads, but hands the sources to the
+     * filer on this thread and in the same order as the serial loop, so
+     * the filer need not be thread safe and the output does not change.
+     */
+    private static boolean generateTypes(List types, Filer filer, final XmlOptions options, int threads)
+    {
+        boolean success = true;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try
+        {
+            // Keep a few types per thread printed ahead of the filer, so
+            // the sources waiting to be written stay bounded
+
+            LinkedList pending = new LinkedList();
+            Iterator i = types.iterator();
+
+            while (i.hasNext() || !pending.isEmpty())
+            {
+                while (i.hasNext() && pending.size() < threads * 4)
+                {
+                    final SchemaType type = (SchemaType)i.next();
+                    if (type.isBuiltinType())
+                        continue;
+                    if (type.getFullJavaName() == null)
+                        continue;
+
+                    pending.add(executor.submit(new Callable()
+                    {
+                        public Object call() throws IOException
+                        {
+                            StringWriter source = new StringWriter();
+                            SchemaTypeCodePrinter.printType(source, type, options);
+
+                            StringWriter implSource = new StringWriter();
+                            SchemaTypeCodePrinter.printTypeImpl(implSource, type, options);
+
+                            return new Object[] { type, source.toString(), implSource.toString() };
+                        }
+                    }));
+                }
+
+                if (pending.isEmpty())
+                    break;
+
+                Object[] printed;
+
+                try
+                {
+                    printed = (Object[])((Future)pending.removeFirst()).get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    System.err.println("IO Error " + cause);
+                    success = false;
+                    continue;
+                }
+
+                SchemaType type = (SchemaType)printed[0];
+
+                if (!writeSource(filer, type.getFullJavaName(), (String)printed[1]))
+                    success = false;
+
+                if (!writeSource(filer, type.getFullJavaImplName(), (String)printed[2]))
+                    success = false;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return success;
+    }
+
+    private static boolean writeSource(Filer filer, String fjn, String source)
+    {
+        Writer writer = null;
+
+        try
+        {
+            writer = filer.createSourceFile(fjn);
+            writer.write(source);
+            return true;
+        }
+        catch (IOException e)
+        {
+            System.err.println("IO Error " + e);
+            return false;
+        }
+        finally {
+            try { if (writer != null) writer.close(); } catch (IOException e) {}
+        }
+    }
 }
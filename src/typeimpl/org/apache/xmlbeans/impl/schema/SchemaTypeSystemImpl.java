@@ -92,6 +92,7 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
     public static final int FILETYPE_SCHEMAMODELGROUP = 6;
     public static final int FILETYPE_SCHEMAATTRIBUTEGROUP = 7;
     public static final int FILETYPE_SCHEMAIDENTITYCONSTRAINT = 8;
+    public static final int FILETYPE_SCHEMABUNDLE = 9;
 
     public static final int FLAG_PART_SKIPPABLE = 1;
     public static final int FLAG_PART_FIXED = 4;
@@ -182,6 +183,7 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
         _resourceLoader = new ClassLoaderResourceLoader(_classloader);
         try
         {
+            _bundle = SchemaTypeSystemBundle.open(_resourceLoader, _basePackage, _name);
             initFromHeader();
         }
         catch (RuntimeException e)
@@ -249,6 +251,7 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
         _resourceLoader = resourceLoader;
         try
         {
+            _bundle = SchemaTypeSystemBundle.open(_resourceLoader, _basePackage, _name);
             initFromHeader();
         }
         catch (RuntimeException e)
@@ -1249,6 +1252,7 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
 
     // the loader for loading .xsb resources
     private ResourceLoader _resourceLoader;
+    private SchemaTypeSystemBundle _bundle;
 
     // the following is used to link references during load
     SchemaTypeLoader _linker;
@@ -2241,6 +2245,14 @@ public class SchemaTypeSystemImpl extends SchemaTypeLoaderBase implements Schema
 
         InputStream getLoaderStream(String resourcename)
         {
+            if (_bundle != null && resourcename.startsWith(_basePackage))
+            {
+                String handle = resourcename.substring(_basePackage.length(), resourcename.length() - ".xsb".length());
+                InputStream input = _bundle.getResourceAsStream(handle);
+                if (input != null)
+                    return input;
+            }
+
             return _resourceLoader.getResourceAsStream(resourcename);
         }
 
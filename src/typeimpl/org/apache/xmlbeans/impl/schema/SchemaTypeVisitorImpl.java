@@ -27,6 +27,10 @@ import java.util.Arrays;
 /**
  * This state machine validates element order based on a deterministic
  * content model.
+ * <p>
+ * The visits from a state of the machine are kept, in the automaton of
+ * the content model, and visiting an element already visited from the
+ * same state is then a lookup of the next state.
  */
 public class SchemaTypeVisitorImpl implements TypeStoreVisitor
 {
@@ -45,6 +49,17 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
 
     public void init(SchemaParticle part)
     {
+        _automaton = ContentModelAutomaton.forParticle(part);
+        _state = null;
+
+        if (_automaton != null)
+        {
+            _state = _automaton.getStart();
+
+            if (_state != null)
+                return;
+        }
+
         if (_stack == null)
         {
             _stack = expand(null);
@@ -62,6 +77,33 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
             push(part);
             _rollbackIndex = 1;
         }
+
+        if (_automaton != null)
+            _state = _automaton.addStart(_stack, _stackSize);
+    }
+
+    /**
+     * Sets the stack to the one of the given state of the automaton.
+     */
+    private void load(ContentModelAutomaton.State state)
+    {
+        if (_stack == null)
+            _stack = expand(null);
+        if (_rollback == null)
+            _rollback = expand(null);
+
+        VisitorState[] stack = state.getStack();
+
+        while (_stack.length < stack.length)
+            _stack = expand(_stack);
+
+        for (int i = 0; i < stack.length; i++)
+            _stack[i].copy(stack[i]);
+
+        _stackSize = stack.length;
+        _rollbackIndex = _stackSize;
+        _rollbackSize = 0;
+        _top = null;
     }
 
     public VisitorState[] expand(VisitorState[] orig)
@@ -90,7 +132,12 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
     private VisitorState _top;
     private int _rollbackIndex;
 
-    private static class VisitorState
+    // The automaton of the content model, and the state in it, or null
+    // when visiting without it
+    private ContentModelAutomaton _automaton;
+    private ContentModelAutomaton.State _state;
+
+    static class VisitorState
     {
         public void copy(VisitorState orig)
         {
@@ -305,8 +352,7 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
     }
 
     /**
-     * The actual implementation that
-     * traverses a deterministic content model, checking for
+     * Traverses a deterministic content model, checking for
      * validity at any given point.
      *
      * When testValidity is false then this method will change states
@@ -314,9 +360,68 @@ public class SchemaTypeVisitorImpl implements TypeStoreVisitor
      *
      * When testValidity is true then this method will not change states
      * and will return if a particular state is valid or invalid
+     *
+     * This takes the transition of the automaton if there is one, and
+     * otherwise visits the element and adds the transition.
      */
 
     public boolean visit(QName eltName, boolean testValidity)
+    {
+        if (_state == null)
+            return interpret(eltName, testValidity);
+
+        ContentModelAutomaton.Transition t = _state.getTransition(eltName);
+
+        if (t == null)
+        {
+            SchemaParticle matched = _matchedParticle;
+
+            load(_state);
+
+            boolean valid = interpret(eltName, CHECK_VALIDITY);
+
+            t = _automaton.addTransition(
+                _state, eltName, valid, _matchedParticle, _stack, _stackSize);
+
+            if (t == null)
+            {
+                // The automaton is full, go on without it from here
+
+                if (valid && testValidity)
+                {
+                    load(_state);
+                    _matchedParticle = matched;
+                }
+
+                _state = null;
+                return valid;
+            }
+
+            _matchedParticle = matched;
+        }
+
+        if (!t.isValid())
+        {
+            _isValid = false;
+            _matchedParticle = null;
+            return false;
+        }
+
+        if (!testValidity)
+        {
+            _matchedParticle = t.getMatched();
+            _state = t.getTarget();
+        }
+
+        return true;
+    }
+
+    /**
+     * The actual implementation that
+     * traverses a deterministic content model, checking for
+     * validity at any given point.
+     */
+    private boolean interpret(QName eltName, boolean testValidity)
     {
         if (!prepare())
             return notValid();
@@ -47,6 +47,7 @@ public class FilerImpl implements Filer
     private Repackager repackager;
     private boolean verbose;
     private List sourceFiles;
+    private List changedSourceFiles = new ArrayList();
     private boolean incrSrcGen;
     private Set seenTypes;
     private static final Charset CHARSET;
@@ -125,10 +126,12 @@ public class FilerImpl implements Filer
         {
             // Generate the file in a buffer and then compare it to the
             // file already on disk
-            return new IncrFileWriter(sourcefile, repackager);
+            return new IncrFileWriter(sourcefile, repackager, changedSourceFiles);
         }
         else
         {
+            changedSourceFiles.add(sourcefile);
+
             return repackager == null ?
                 (Writer) writerForFile( sourcefile ) :
                 (Writer) new RepackagingWriter( sourcefile, repackager );
@@ -140,6 +143,15 @@ public class FilerImpl implements Filer
         return new ArrayList(sourceFiles);
     }
 
+    /**
+     * Returns the source files which were written, leaving out those which
+     * the incremental source generation found unchanged.
+     */
+    public List getChangedSourceFiles()
+    {
+        return new ArrayList(changedSourceFiles);
+    }
+
     public Repackager getRepackager()
     {
         return repackager;
@@ -160,11 +172,13 @@ public class FilerImpl implements Filer
     {
         private File _file;
         private Repackager _repackager;
+        private List _changedFiles;
 
-        public IncrFileWriter(File file, Repackager repackager)
+        public IncrFileWriter(File file, Repackager repackager, List changedFiles)
         {
             _file = file;
             _repackager = repackager;
+            _changedFiles = changedFiles;
         }
 
         public void close() throws IOException
@@ -195,6 +209,7 @@ public class FilerImpl implements Filer
             {
                 // Diffs encountered, replace the file on disk with text from
                 // the buffer
+                _changedFiles.add(_file);
                 Writer fw = writerForFile(_file);
                 try
                 {   fw.write(str); }
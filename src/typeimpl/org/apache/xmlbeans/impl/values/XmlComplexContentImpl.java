@@ -137,6 +137,21 @@ public class XmlComplexContentImpl extends XmlObjectBase
     // So much redundant code ..... what I'd give for generics!
     //
 
+    // The primitive and string array setters hand the store the texts
+    // of all the elements at once when nothing has to be validated.  The
+    // texts are the ones the typed values would print (see compute_text).
+
+    private static boolean containsNull ( Object[] sources )
+    {
+        for ( int i = 0 ; sources != null && i < sources.length ; i++ )
+        {
+            if (sources[ i ] == null)
+                return true;
+        }
+
+        return false;
+    }
+
     protected void unionArraySetterHelper ( Object[] sources, QName elemName )
     {
         int n = sources == null ? 0 : sources.length;
@@ -217,6 +232,18 @@ public class XmlComplexContentImpl extends XmlObjectBase
     {
         int n = sources == null ? 0 : sources.length;
 
+        if (!_validateOnSet())
+        {
+            String[] texts = new String[ n ];
+
+            for ( int i = 0 ; i < n ; i++ )
+                texts[ i ] = sources[ i ] ? "true" : "false";
+
+            get_store().array_setter( texts, elemName );
+
+            return;
+        }
+
         TypeStore store = get_store();
 
         int m = store.count_elements( elemName );
@@ -264,6 +291,18 @@ public class XmlComplexContentImpl extends XmlObjectBase
     protected void arraySetterHelper ( double[] sources, QName elemName )
     {
         int n = sources == null ? 0 : sources.length;
+
+        if (!_validateOnSet())
+        {
+            String[] texts = new String[ n ];
+
+            for ( int i = 0 ; i < n ; i++ )
+                texts[ i ] = JavaDoubleHolder.serialize( sources[ i ] );
+
+            get_store().array_setter( texts, elemName );
+
+            return;
+        }
         
         TypeStore store = get_store();
 
@@ -336,6 +375,18 @@ public class XmlComplexContentImpl extends XmlObjectBase
     protected void arraySetterHelper ( int[] sources, QName elemName )
     {
         int n = sources == null ? 0 : sources.length;
+
+        if (!_validateOnSet())
+        {
+            String[] texts = new String[ n ];
+
+            for ( int i = 0 ; i < n ; i++ )
+                texts[ i ] = Long.toString( sources[ i ] );
+
+            get_store().array_setter( texts, elemName );
+
+            return;
+        }
         
         TypeStore store = get_store();
 
@@ -360,6 +411,18 @@ public class XmlComplexContentImpl extends XmlObjectBase
     protected void arraySetterHelper ( long[] sources, QName elemName )
     {
         int n = sources == null ? 0 : sources.length;
+
+        if (!_validateOnSet())
+        {
+            String[] texts = new String[ n ];
+
+            for ( int i = 0 ; i < n ; i++ )
+                texts[ i ] = Long.toString( sources[ i ] );
+
+            get_store().array_setter( texts, elemName );
+
+            return;
+        }
         
         TypeStore store = get_store();
 
@@ -432,6 +495,15 @@ public class XmlComplexContentImpl extends XmlObjectBase
     protected void arraySetterHelper ( String[] sources, QName elemName )
     {
         int n = sources == null ? 0 : sources.length;
+
+        // A null source nils its element, through the element's user
+
+        if (!_validateOnSet() && !containsNull( sources ))
+        {
+            get_store().array_setter( sources == null ? new String[ 0 ] : sources, elemName );
+
+            return;
+        }
         
         TypeStore store = get_store();
 
@@ -95,10 +95,28 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
     public final Object monitor()
     {
         if (has_store())
-            return get_store().get_locale();
+        {
+            XmlLocale locale = get_store().get_locale();
+            if (locale.frozen())
+                return _frozenMonitor.get();
+            return locale;
+        }
         return this;
     }
 
+    /**
+     * A read-only document is never written, so readers only need some
+     * monitor to satisfy the synchronized blocks around every accessor.
+     * Handing each thread its own keeps them from ever contending.
+     */
+    private static final ThreadLocal _frozenMonitor = new ThreadLocal()
+    {
+        protected Object initialValue()
+        {
+            return new Object();
+        }
+    };
+
     private static XmlObjectBase underlying(XmlObject obj)
     {
         if (obj == null)
@@ -620,6 +638,7 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
     private static final int FLAG_COMPLEXCONTENT  = 16384;
     private static final int FLAG_NOT_VARIABLE    = 32768;
     private static final int FLAG_VALIDATE_ON_SET = 65536;
+    private static final int FLAG_EVICTED         = 131072;
 
 
     /**
@@ -801,6 +820,7 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         if ((_flags & FLAG_IMMUTABLE) != 0)
             throw new IllegalStateException();
         _flags |= FLAG_STORE | FLAG_VALUE_DATED | FLAG_NIL_DATED | FLAG_ELEMENT_DATED;
+        _flags &= ~FLAG_EVICTED;
 
         if (store.is_attribute())
             _flags |= FLAG_ATTRIBUTE;
@@ -858,6 +878,10 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
     public final TypeStore get_store()
     {
         assert((_flags & FLAG_STORE) != 0);
+
+        if ((_flags & FLAG_EVICTED) != 0)
+            ((TypeStore)_textsource).reattach_user(this);
+
         return (TypeStore)_textsource;
     }
 
@@ -919,9 +943,40 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
     {
         assert((_flags & FLAG_STORE) != 0);
         _flags |= FLAGS_DATED | FLAG_ORPHANED;
+        _flags &= ~FLAG_EVICTED;
         // do NOT null out _textsource, because we need it non-null for synchronization
     }
 
+    /**
+     * A store with a value cache calls back here when it no longer holds
+     * on to this object.  If this object is still used afterwards, it
+     * gives itself back to the store first (see get_store), and computes
+     * its value from the text again, as the text may have changed since.
+     */
+    public void evict_store()
+    {
+        assert((_flags & FLAG_STORE) != 0);
+        _flags |= FLAGS_DATED | FLAG_EVICTED;
+    }
+
+    /**
+     * A store calls back here before this object is shared by the
+     * readers of a read-only store, so the value is computed while
+     * only one thread can see it. A value which cannot be computed
+     * stays dated, and the error is thrown when somebody reads it.
+     */
+    public void prepare_freeze()
+    {
+        try
+        {
+            check_dated();
+        }
+        catch (RuntimeException e)
+        {
+            // left dated, reported by the next get
+        }
+    }
+
     /**
      * A typestore user can create a new TypeStoreUser instance for
      * a given element child name as long as you also pass the
@@ -1118,6 +1173,8 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         if ((_flags & FLAG_IMMUTABLE) != 0)
             throw new IllegalStateException();
 
+        check_frozen();
+
         boolean wasNilled = ((_flags & FLAG_NIL) != 0);
 
         // update the underlying value from the string
@@ -1275,54 +1332,80 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
 
             assert((_flags & FLAG_STORE) != 0);
 
-            check_element_dated();
-
-            if ((_flags & FLAG_ELEMENT_DATED) != 0)
-            {
-                int eltflags = get_store().compute_flags();
-                _flags &= ~(FLAGS_ELEMENT | FLAG_ELEMENT_DATED);
-                _flags |= eltflags;
-            }
-
-            boolean nilled = false;
+            XmlLocale locale = get_store().get_locale();
 
-            if ((_flags & FLAG_NIL_DATED) != 0)
+            // The readers of a frozen store do not hold its monitor (see
+            // monitor()), and only a value which could not be computed
+            // when it was prepared is still dated here. Such a value is
+            // retried under the store's own lock, which is the innermost
+            // lock, so it cannot deadlock with cursors holding the monitor.
+            if (locale.frozen())
             {
-                if (get_store().find_nil())
+                locale.enter();
+                try
                 {
-                    if ((_flags & FLAG_NILLABLE) == 0 &&
-                        (_flags & FLAG_VALIDATE_ON_SET) != 0)
-                        throw new XmlValueOutOfRangeException(); // nil not allowed
-
-                    // let the implementation know that we're nil now
-                    set_nil();
-
-                    _flags |= FLAG_NIL;
-                    nilled = true;
+                    if ((_flags & FLAGS_DATED) != 0)
+                        update_dated();
                 }
-                else
+                finally
                 {
-                    _flags &= ~FLAG_NIL;
+                    locale.exit();
                 }
-                _flags &= ~FLAG_NIL_DATED;
             }
+            else
+                update_dated();
+        }
+    }
+
+    private final void update_dated()
+    {
+        check_element_dated();
+
+        if ((_flags & FLAG_ELEMENT_DATED) != 0)
+        {
+            int eltflags = get_store().compute_flags();
+            _flags &= ~(FLAGS_ELEMENT | FLAG_ELEMENT_DATED);
+            _flags |= eltflags;
+        }
+
+        boolean nilled = false;
 
-            if (!nilled)
+        if ((_flags & FLAG_NIL_DATED) != 0)
+        {
+            if (get_store().find_nil())
             {
-                String text;
+                if ((_flags & FLAG_NILLABLE) == 0 &&
+                    (_flags & FLAG_VALIDATE_ON_SET) != 0)
+                    throw new XmlValueOutOfRangeException(); // nil not allowed
 
-                if ((_flags & FLAG_COMPLEXCONTENT) != 0 || (text = get_wscanon_text()) == null)
-                    update_from_complex_content();
-                else
-                {
-                    NamespaceContext.push(new NamespaceContext(get_store()));
-                    try { update_from_wscanon_text(text); }
-                    finally { NamespaceContext.pop(); }
-                }
+                // let the implementation know that we're nil now
+                set_nil();
+
+                _flags |= FLAG_NIL;
+                nilled = true;
+            }
+            else
+            {
+                _flags &= ~FLAG_NIL;
             }
+            _flags &= ~FLAG_NIL_DATED;
+        }
 
-            _flags &= ~FLAG_VALUE_DATED;
+        if (!nilled)
+        {
+            String text;
+
+            if ((_flags & FLAG_COMPLEXCONTENT) != 0 || (text = get_wscanon_text()) == null)
+                update_from_complex_content();
+            else
+            {
+                NamespaceContext.push(new NamespaceContext(get_store()));
+                try { update_from_wscanon_text(text); }
+                finally { NamespaceContext.pop(); }
+            }
         }
+
+        _flags &= ~FLAG_VALUE_DATED;
     }
 
     /**
@@ -1336,6 +1419,18 @@ public abstract class XmlObjectBase implements TypeStoreUser, Serializable, XmlO
         check_element_dated();
         if ((_flags & FLAG_IMMUTABLE) != 0)
             throw new IllegalStateException();
+        check_frozen();
+    }
+
+    /**
+     * Throws if this value lives in a read-only store. Setting the
+     * default text is not a change of the document, so it is allowed.
+     */
+    private final void check_frozen()
+    {
+        if ((_flags & (FLAG_STORE | FLAG_SETTINGDEFAULT)) == FLAG_STORE &&
+            get_store().get_locale().frozen())
+            throw new IllegalStateException("Document is read-only");
     }
 
     /**
@@ -94,6 +94,13 @@ public interface TypeStore extends NamespaceManager
      */
     void store_text(String text);
 
+    /**
+     * A user which the store has let go of (see TypeStoreUser.evict_store)
+     * calls reattach_user before it uses the store again, and the store
+     * attaches it again with attach_store.
+     */
+    void reattach_user(TypeStoreUser user);
+
     /**
      * Here the TypeStore is responsible for locating the default value.
      * This is done as follows
@@ -182,6 +189,27 @@ public interface TypeStore extends NamespaceManager
      */
     TypeStoreUser find_element_user(QNameSet names, int i);
 
+    /**
+     * Return the value of the first element with the given name (or of
+     * the attribute with the given name, if isAttr) as a primitive, or
+     * 0 (false) if there is none.  The value is the one the getter of
+     * its TypeStoreUser gives, but plain literals are parsed straight
+     * from the text, without creating the TypeStoreUser or any String.
+     */
+    int fetch_int(QName name, boolean isAttr);
+    long fetch_long(QName name, boolean isAttr);
+    double fetch_double(QName name, boolean isAttr);
+    boolean fetch_boolean(QName name, boolean isAttr);
+
+    /**
+     * Return the values of all the elements with the given name, in one
+     * pass over the children, in the same way as fetch_int and so on.
+     */
+    int[] fetch_all_ints(QName name);
+    long[] fetch_all_longs(QName name);
+    double[] fetch_all_doubles(QName name);
+    boolean[] fetch_all_booleans(QName name);
+
     /**
      * Returns all the TypeStoreUsers corresponding to elements with the
      * given name owned by this typestore, or the empty array of
@@ -330,6 +358,14 @@ public interface TypeStore extends NamespaceManager
     
     void array_setter ( XmlObject[] sources, QName elementName );
 
+    /**
+     * Like array_setter, but with the text of each element, which replaces
+     * its contents (not its attributes).  The elements are changed in one
+     * pass and get no TypeStoreUsers they did not have already.  Used by
+     * the primitive array setters, which do not validate on set.
+     */
+    void array_setter ( String[] texts, QName elementName );
+
     /**
      * Visits all the elements immediately, using the given visitor.
      * A TypeStoreUser calls this when somebody has requested validation.
@@ -107,6 +107,24 @@ public interface TypeStoreUser
      */
     void disconnect_store();
 
+    /**
+     * A store calls back on prepare_freeze when it becomes read-only,
+     * or right after attaching a new user to a store which is read-only
+     * already, so that any value which is computed lazily from the text
+     * can be computed before other threads can see this user.
+     * Errors such as invalid text must not be thrown from here; they
+     * are reported when the value is actually read.
+     */
+    void prepare_freeze();
+
+    /**
+     * A store with a value cache calls back on evict_store when it lets
+     * go of this user to save memory.  The user forgets its value, and
+     * calls reattach_user on the store before it next uses it, in case
+     * it is still around then.
+     */
+    void evict_store();
+
     /**
      * A typestore user can create a new TypeStoreUser instance for
      * a given element child name as long as you also pass the
@@ -60,13 +60,22 @@ public class CodeGenUtil
     }
     
     static void addAllJavaFiles(List srcFiles, List args)
+    {
+        List files = new ArrayList();
+        collectJavaFiles(srcFiles, files);
+
+        for (Iterator i = files.iterator(); i.hasNext(); )
+            args.add(quoteAndEscapeFilename(((File)i.next()).getAbsolutePath()));
+    }
+
+    static void collectJavaFiles(List srcFiles, List files)
     {
         for (Iterator i = srcFiles.iterator(); i.hasNext(); )
         {
             File f = (File)i.next();
             if (!f.isDirectory())
             {
-                args.add(quoteAndEscapeFilename(f.getAbsolutePath()));
+                files.add(f);
             }
             else
             {
@@ -77,7 +86,7 @@ public class CodeGenUtil
                             { return (file.isFile() && file.getName().endsWith(".java")) || file.isDirectory(); }
                     }
                 )));
-                addAllJavaFiles(inside, args);
+                collectJavaFiles(inside, files);
             }
         }
     }
@@ -126,9 +135,25 @@ public class CodeGenUtil
      * into binary files in the output directory.  This will return a list of
      * <code>GenFile</code>s for all of the classes produced or null if an
      * error occurred.
+     * <p>
+     * Unless a compiler other than javac is named, the sources are compiled
+     * with the javax.tools compiler of the running JDK, without starting
+     * another JVM.  The memory settings only apply to a separate javac,
+     * which is still started when there is no compiler in this JVM, or
+     * when the system property xmlbean.inprocessjavac is "false".
      */
     static public boolean externalCompile(List srcFiles, File outdir, File[] cp, boolean debug, String javacPath, String genver, String memStart, String memMax,  boolean quiet, boolean verbose)
     {
+        if ((javacPath == null || javacPath.equals(DEFAULT_COMPILER)) && hasInProcessCompiler())
+        {
+            Boolean result = InProcessCompiler.compile(srcFiles,
+                outdir == null ? new File(".") : outdir, cp == null ? systemClasspath() : cp,
+                debug, genver == null ? "1.4" : genver, quiet, verbose);
+
+            if (result != null)
+                return result.booleanValue();
+        }
+
         List args = new ArrayList();
 
         File javac = findJavaTool(javacPath == null ? DEFAULT_COMPILER : javacPath);
@@ -267,6 +292,22 @@ public class CodeGenUtil
         return true;
     }
 
+    private static boolean hasInProcessCompiler()
+    {
+        if ("false".equals(SystemProperties.getProperty("xmlbean.inprocessjavac")))
+            return false;
+
+        try
+        {
+            Class.forName("javax.tools.ToolProvider");
+            return true;
+        }
+        catch (ClassNotFoundException e)
+        {
+            return false;
+        }
+    }
+
     public static File[] systemClasspath()
     {
         List cp = new ArrayList();
@@ -0,0 +1,155 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles generated sources with the javax.tools compiler of the running
+ * JDK, saving the start of a second JVM for javac.  Only loaded by
+ * {@link CodeGenUtil} once it has seen that javax.tools is there, as
+ * XmlBeans itself still runs on JREs that do not have it.
+ */
+class InProcessCompiler
+{
+    /**
+     * Returns the result of compiling, or null if there is no compiler
+     * in this JVM (e.g. when running on a JRE).
+     */
+    static Boolean compile(List srcFiles, File outdir, File[] cp, boolean debug,
+        String genver, boolean quiet, boolean verbose)
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+        if (compiler == null)
+            return null;
+
+        List args = new ArrayList();
+
+        args.add("-d");
+        args.add(outdir.getAbsolutePath());
+
+        StringBuffer classPath = new StringBuffer();
+
+        // As for external javac, classes compiled previously into the
+        // output directory can be found
+        classPath.append(outdir.getAbsolutePath());
+
+        for (int i = 0; i < cp.length; i++)
+        {
+            classPath.append(File.pathSeparator);
+            classPath.append(cp[i].getAbsolutePath());
+        }
+
+        args.add("-classpath");
+        args.add(classPath.toString());
+
+        String version = supportedVersion(genver);
+
+        if (!version.equals(genver) && !quiet)
+            System.out.println("Compiling for Java " + version + ", as " + genver + " is no longer supported by the compiler");
+
+        args.add("-source");
+        args.add(version);
+
+        args.add("-target");
+        args.add(version);
+
+        args.add(debug ? "-g" : "-g:none");
+
+        if (verbose)
+            args.add("-verbose");
+
+        List sources = new ArrayList();
+        CodeGenUtil.collectJavaFiles(srcFiles, sources);
+
+        StringWriter output = new StringWriter();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        boolean result;
+
+        try
+        {
+            result = compiler.getTask(new PrintWriter(output), fileManager, null, args, null,
+                fileManager.getJavaFileObjectsFromFiles(sources)).call().booleanValue();
+        }
+        finally
+        {
+            try
+            {
+                fileManager.close();
+            }
+            catch (IOException e)
+            {
+                // oh, well.
+            }
+        }
+
+        if ((verbose || !result) && output.getBuffer().length() > 0)
+        {
+            System.err.println(output.toString());
+            System.err.flush();
+        }
+
+        return result ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+    /**
+     * Returns the given version if the compiler still accepts it as source
+     * level, or else the oldest version it does accept.  Java source
+     * generated for 1.4 compiles the same at later levels.
+     */
+    private static String supportedVersion(String genver)
+    {
+        String release = genver.startsWith("1.") ? genver.substring(2) : genver;
+        int wanted;
+
+        try
+        {
+            wanted = Integer.parseInt(release);
+        }
+        catch (NumberFormatException e)
+        {
+            return genver; // leave it to javac to complain
+        }
+
+        // getSourceVersions() lists levels javac no longer accepts, so go
+        // by the JDK: 9 dropped 1.5 and before, 12 dropped 6, 20 dropped 7
+
+        int latest = SourceVersion.latest().ordinal();
+        int oldest;
+
+        if (latest >= 20)
+            oldest = 8;
+        else if (latest >= 12)
+            oldest = 7;
+        else if (latest >= 9)
+            oldest = 6;
+        else
+            oldest = wanted;
+
+        return wanted < oldest ? String.valueOf(oldest) : genver;
+    }
+}
@@ -47,6 +47,7 @@ import org.apache.xmlbeans.impl.config.BindingConfigImpl;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -59,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 import repackage.Repackager;
 
 public class SchemaCompiler
@@ -81,6 +83,8 @@ public class SchemaCompiler
         System.out.println("    -noext - ignore all extension (Pre/Post and Interface) found in .xsdconfig files");
         System.out.println("    -compiler - path to external java compiler");
         System.out.println("    -javasource [version] - generate java source compatible for a Java version (1.4 or 1.5)");
+        System.out.println("    -threads [n] - number of threads to generate java source on (default 1)");
+        System.out.println("    -incremental - skip the build if no input changed since the last one into the same -src dir, or else rewrite and compile only the sources that changed");
         System.out.println("    -ms - initial memory for external java compiler (default '" + CodeGenUtil.DEFAULT_MEM_START + "')");
         System.out.println("    -mx - maximum memory for external java compiler (default '" + CodeGenUtil.DEFAULT_MEM_MAX + "')");
         System.out.println("    -debug - compile with debug symbols");
@@ -124,6 +128,7 @@ public class SchemaCompiler
         flags.add("noext");
         flags.add("srconly");
         flags.add("debug");
+        flags.add("incremental");
 
         Set opts = new HashSet();
         opts.add("out");
@@ -133,6 +138,7 @@ public class SchemaCompiler
         opts.add("cp");
         opts.add("compiler");
         opts.add("javasource");
+        opts.add("threads");
         opts.add("jar"); // deprecated
         opts.add("ms");
         opts.add("mx");
@@ -215,6 +221,7 @@ public class SchemaCompiler
         boolean noExt= (cl.getOpt("noext") != null);
         boolean nojavac = (cl.getOpt("srconly") != null);
         boolean debug = (cl.getOpt("debug") != null);
+        boolean incremental = (cl.getOpt("incremental") != null);
 
         String allowmdef = cl.getOpt("allowmdef");
         Set mdefNamespaces = (allowmdef == null ? Collections.EMPTY_SET :
@@ -312,6 +319,25 @@ public class SchemaCompiler
 
         String javasource = cl.getOpt("javasource");
         String compiler = cl.getOpt("compiler");
+
+        int threads = 1;
+        if (cl.getOpt("threads") != null)
+        {
+            try
+            {
+                threads = Integer.parseInt(cl.getOpt("threads"));
+            }
+            catch (NumberFormatException e)
+            {
+                threads = 0;
+            }
+
+            if (threads < 1)
+            {
+                System.err.println("The -threads option needs a positive number, got " + cl.getOpt("threads"));
+                System.exit(1);
+            }
+        }
         String jar = cl.getOpt("jar");
         if (verbose && jar != null)
             System.out.println("The 'jar' option is no longer supported.");
@@ -351,6 +377,7 @@ public class SchemaCompiler
         params.setClassesDir(classes);
         params.setCompiler(compiler);
         params.setJavaSource(javasource);
+        params.setThreads(threads);
         params.setMemoryInitialSize(memoryInitialSize);
         params.setMemoryMaximumSize(memoryMaximumSize);
         params.setNojavac(nojavac);
@@ -363,6 +390,7 @@ public class SchemaCompiler
         params.setNoVDoc(noVDoc);
         params.setNoExt(noExt);
         params.setDebug(debug);
+        params.setIncremental(incremental);
         params.setErrorListener(err);
         params.setRepackage(repackage);
         params.setExtensions(extensions);
@@ -398,6 +426,7 @@ public class SchemaCompiler
         private String memoryMaximumSize;
         private String compiler;
         private String javasource;
+        private int threads = 1;
         private boolean nojavac;
         private boolean quiet;
         private boolean verbose;
@@ -410,6 +439,7 @@ public class SchemaCompiler
         private boolean noExt;
         private boolean debug;
         private boolean incrementalSrcGen;
+        private boolean incremental;
         private String repackage;
         private List extensions = Collections.EMPTY_LIST;
         private Set mdefNamespaces = Collections.EMPTY_SET;
@@ -627,6 +657,22 @@ public class SchemaCompiler
             this.incrementalSrcGen = incrSrcGen;
         }
 
+        public boolean isIncremental()
+        {
+            return incremental;
+        }
+
+        /**
+         * Keeps a cache of the inputs and outputs in the source directory,
+         * so that the next compile into the same directories is skipped
+         * if no input changed, or else only rewrites and compiles the
+         * generated sources that changed.
+         */
+        public void setIncremental(boolean incremental)
+        {
+            this.incremental = incremental;
+        }
+
         public boolean isDebug()
         {
             return debug;
@@ -677,6 +723,16 @@ public class SchemaCompiler
             this.javasource = javasource;
         }
 
+        public int getThreads()
+        {
+            return threads;
+        }
+
+        public void setThreads(int threads)
+        {
+            this.threads = threads;
+        }
+
         /** @deprecated */
         public String getJar()
         {
@@ -1039,6 +1095,7 @@ public class SchemaCompiler
         File classesDir = params.getClassesDir();
         String compiler = params.getCompiler();
         String javasource = params.getJavaSource();
+        int threads = params.getThreads();
         String memoryInitialSize = params.getMemoryInitialSize();
         String memoryMaximumSize = params.getMemoryMaximumSize();
         boolean nojavac = params.isNojavac();
@@ -1052,6 +1109,7 @@ public class SchemaCompiler
         boolean noVDoc = params.isNoVDoc();
         boolean noExt = params.isNoExt();
         boolean incrSrcGen = params.isIncrementalSrcGen();
+        boolean incremental = params.isIncremental() && (urlFiles == null || urlFiles.length == 0);
         Collection outerErrorListener = params.getErrorListener();
 
         String repackage = params.getRepackage();
@@ -1078,6 +1136,51 @@ public class SchemaCompiler
         if (srcDir == null || classesDir == null)
             throw new IllegalArgumentException("src and class gen directories may not be null.");
 
+        // with -incremental, skip the build if nothing changed since the last
+        // one, or else keep the type system name of the last build
+        SchemaCompilerCache cache = null;
+        String cacheOptions = null;
+        File[] givenFiles = null;
+
+        if (incremental)
+        {
+            cacheOptions = cacheOptions(params);
+            givenFiles = givenFiles(xsdFiles, wsdlFiles, configFiles, javaFiles);
+            cache = SchemaCompilerCache.load(srcDir);
+
+            if (cache != null && !cache.hasOptions(cacheOptions))
+                cache = null;
+
+            // if what the last build wrote was deleted since, neither skip
+            // the build nor compile part of it, but keep its name
+            if (cache != null && !cache.hasOutputs(srcDir, classesDir, !nojavac))
+            {
+                if (name == null)
+                    name = cache.getName();
+                cache = null;
+            }
+
+            try
+            {
+                if (cache != null && cache.hasInputs() && (nojavac || outputJar == null || outputJar.exists()))
+                {
+                    if (!quiet)
+                        System.out.println("Compiled types are up to date");
+                    return true;
+                }
+            }
+            catch (IOException e)
+            {
+                cache = null;
+            }
+
+            if (cache != null && name == null)
+                name = cache.getName();
+
+            SchemaCompilerCache.delete(srcDir);
+            incrSrcGen = true;
+        }
+
         long start = System.currentTimeMillis();
 
         // Calculate the usenames based on the relativized filenames on the filesystem
@@ -1121,6 +1224,8 @@ public class SchemaCompiler
                 options.setSchemaCodePrinter(codePrinter);
             if (javasource != null)
                 options.setGenerateJavaVersion(javasource);
+            if (threads > 1)
+                options.setGenerateThreads(threads);
 
             // save .xsb files
             system.save(filer);
@@ -1128,7 +1233,13 @@ public class SchemaCompiler
             // gen source files
             result &= SchemaTypeSystemCompiler.generateTypes(system, filer, options);
 
-            if (incrSrcGen)
+            if (cache != null)
+            {
+                // Delete the sources, and their classes, of the types that
+                // are gone since the last build
+                deleteObsoleteSources(cache.getSourceFiles(), filer.getSourceFiles(), srcDir, classesDir);
+            }
+            else if (incrSrcGen)
             {
                 // We have to delete extra source files that may be out of date
                 SchemaCodeGenerator.deleteObsoleteFiles(srcDir, srcDir,
@@ -1147,11 +1258,13 @@ public class SchemaCompiler
             {
                 start = System.currentTimeMillis();
 
-                List sourcefiles = filer.getSourceFiles();
+                // after an incremental build, the classes of the sources
+                // which were not rewritten are still good
+                List sourcefiles = cache != null ? filer.getChangedSourceFiles() : filer.getSourceFiles();
 
                 if (javaFiles != null)
                     sourcefiles.addAll(java.util.Arrays.asList(javaFiles));
-                if (!CodeGenUtil.externalCompile(sourcefiles, classesDir, classpath, debug, compiler, javasource, memoryInitialSize, memoryMaximumSize, quiet, verbose))
+                if (!sourcefiles.isEmpty() && !CodeGenUtil.externalCompile(sourcefiles, classesDir, classpath, debug, compiler, javasource, memoryInitialSize, memoryMaximumSize, quiet, verbose))
                     result = false;
 
                 finish = System.currentTimeMillis();
@@ -1175,6 +1288,14 @@ public class SchemaCompiler
                         System.out.println("Compiled types to: " + outputJar);
                 }
             }
+
+            if (result && incremental)
+            {
+                // the name is given as the last part of the full one,
+                // schemaorg_apache_xmlbeans.system.<name>
+                String systemName = system.getName().substring(system.getName().lastIndexOf('.') + 1);
+                saveCache(srcDir, systemName, cacheOptions, givenFiles, sourcesToCopyMap.keySet(), filer.getSourceFiles());
+            }
         }
 
         if (!result && !quiet)
@@ -1191,6 +1312,140 @@ public class SchemaCompiler
         return result;
     }
 
+    // The options the output of an incremental build depends on, besides
+    // the content of the input files
+
+    private static String cacheOptions(Parameters params)
+    {
+        StringBuffer sb = new StringBuffer();
+
+        File[][] files = { params.getXsdFiles(), params.getWsdlFiles(), params.getConfigFiles(), params.getJavaFiles() };
+        for (int i = 0; i < files.length; i++)
+        {
+            if (files[i] == null)
+                continue;
+            for (int j = 0; j < files[i].length; j++)
+                sb.append(files[i][j].getAbsolutePath()).append(';');
+            sb.append('|');
+        }
+
+        // a changed jar on the classpath may change what the schemas resolve to
+        File[] classpath = params.getClasspath();
+        if (classpath != null)
+        {
+            for (int i = 0; i < classpath.length; i++)
+                sb.append(classpath[i].getAbsolutePath()).append(':')
+                    .append(classpath[i].length()).append(':')
+                    .append(classpath[i].lastModified()).append(';');
+        }
+
+        sb.append('|').append(params.getName());
+        sb.append('|').append(params.getClassesDir().getAbsolutePath());
+        sb.append('|').append(params.getOutputJar() == null ? null : params.getOutputJar().getAbsolutePath());
+        sb.append('|').append(params.getJavaSource());
+        sb.append('|').append(params.getRepackage());
+        sb.append('|').append(params.getCatalogFile());
+        sb.append('|').append(new TreeSet(params.getMdefNamespaces()));
+        sb.append('|').append(params.getSchemaCodePrinter() == null ? null : params.getSchemaCodePrinter().getClass().getName());
+        sb.append('|').append(params.getEntityResolver() == null ? null : params.getEntityResolver().getClass().getName());
+        sb.append('|').append(params.isNojavac()).append(params.isDebug()).append(params.isDownload())
+            .append(params.isNoUpa()).append(params.isNoPvr()).append(params.isNoAnn())
+            .append(params.isNoVDoc()).append(params.isNoExt());
+
+        return sb.toString();
+    }
+
+    private static File[] givenFiles(File[] xsdFiles, File[] wsdlFiles, File[] configFiles, File[] javaFiles)
+    {
+        List files = new ArrayList();
+        File[][] given = { xsdFiles, wsdlFiles, configFiles, javaFiles };
+
+        for (int i = 0; i < given.length; i++)
+        {
+            if (given[i] != null)
+                files.addAll(Arrays.asList(given[i]));
+        }
+
+        return (File[])files.toArray(new File[files.size()]);
+    }
+
+    /**
+     * Deletes the sources generated by the last build which were not
+     * generated again, along with their classes.
+     */
+    private static void deleteObsoleteSources(List oldSources, List newSources, File srcDir, File classesDir)
+    {
+        Set keep = new HashSet();
+        for (Iterator i = newSources.iterator(); i.hasNext(); )
+            keep.add(((File)i.next()).getAbsoluteFile());
+
+        String srcPath = srcDir.getAbsolutePath() + File.separator;
+
+        for (Iterator i = oldSources.iterator(); i.hasNext(); )
+        {
+            File source = ((File)i.next()).getAbsoluteFile();
+
+            if (keep.contains(source) || !source.getPath().startsWith(srcPath))
+                continue;
+
+            source.delete();
+
+            // X.class and the X$Y.class of its inner classes
+            String relative = source.getPath().substring(srcPath.length());
+            File classDir = new File(classesDir, relative).getParentFile();
+            String className = source.getName().substring(0, source.getName().length() - ".java".length());
+            File[] classes = classDir.listFiles();
+
+            for (int j = 0; classes != null && j < classes.length; j++)
+            {
+                String classFile = classes[j].getName();
+                if (classFile.equals(className + ".class") ||
+                    (classFile.startsWith(className + "$") && classFile.endsWith(".class")))
+                    classes[j].delete();
+            }
+        }
+    }
+
+    private static void saveCache(File srcDir, String name, String options, File[] givenFiles, Collection sourceUris, List sourceFiles)
+    {
+        Set inputs = new HashSet();
+        for (int i = 0; i < givenFiles.length; i++)
+            inputs.add(givenFiles[i].getAbsoluteFile());
+
+        for (Iterator i = sourceUris.iterator(); i.hasNext(); )
+        {
+            String uri = (String)i.next();
+
+            // a schema loaded from anywhere but a file cannot be checked
+            // for changes, so the next build has to be a full one
+            if (!uri.startsWith("file:"))
+                return;
+
+            try
+            {
+                inputs.add(new File(new URI(uri)).getAbsoluteFile());
+            }
+            catch (URISyntaxException e)
+            {
+                return;
+            }
+            catch (IllegalArgumentException e)
+            {
+                return;
+            }
+        }
+
+        try
+        {
+            SchemaCompilerCache.save(srcDir, name, options, inputs, sourceFiles);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not save " + SchemaCompilerCache.FILENAME + ": " + e.getMessage());
+            SchemaCompilerCache.delete(srcDir);
+        }
+    }
+
     private static void runExtensions(List extensions, SchemaTypeSystem system, File classesDir)
     {
         if (extensions != null && extensions.size() > 0)
@@ -0,0 +1,265 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.tool;
+
+import org.apache.xmlbeans.impl.util.HexBin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * What an incremental run of the schema compiler keeps for the next one,
+ * in a file in the source directory: the content hash of every input
+ * file, the options the output depends on, the name of the type system
+ * and the list of generated source files.
+ * <p>
+ * With the same options, the next run is skipped when no input changed.
+ * Otherwise it keeps the name of the type system, so that the generated
+ * source of a type only changes when its schema, or a schema it depends
+ * on, does.  Only those sources are then rewritten and compiled.
+ */
+class SchemaCompilerCache
+{
+    static final String FILENAME = "scomp.cache";
+
+    private static final String NAME = "name";
+    private static final String OPTIONS = "options";
+    private static final String INPUT = "input.";
+    private static final String SOURCE = "source.";
+
+    private final Properties _props;
+
+    private SchemaCompilerCache(Properties props)
+    {
+        _props = props;
+    }
+
+    /**
+     * Returns the cache kept in the given source directory, or null if
+     * there is none or it cannot be read.
+     */
+    static SchemaCompilerCache load(File srcDir)
+    {
+        File file = new File(srcDir, FILENAME);
+
+        if (!file.isFile())
+            return null;
+
+        Properties props = new Properties();
+
+        try
+        {
+            InputStream input = new FileInputStream(file);
+            try
+            {
+                props.load(input);
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+
+        if (props.getProperty(NAME) == null || props.getProperty(OPTIONS) == null)
+            return null;
+
+        return new SchemaCompilerCache(props);
+    }
+
+    static void delete(File srcDir)
+    {
+        new File(srcDir, FILENAME).delete();
+    }
+
+    /**
+     * Saves the cache, with the hashes of the given input files.
+     */
+    static void save(File srcDir, String name, String options, Collection inputs, List sourceFiles)
+        throws IOException
+    {
+        Properties props = new Properties();
+
+        props.setProperty(NAME, name);
+        props.setProperty(OPTIONS, options);
+
+        for (Iterator i = hashFiles(inputs).entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry)i.next();
+            props.setProperty(INPUT + entry.getKey(), (String)entry.getValue());
+        }
+
+        for (int i = 0; i < sourceFiles.size(); i++)
+            props.setProperty(SOURCE + i, ((File)sourceFiles.get(i)).getAbsolutePath());
+
+        OutputStream output = new FileOutputStream(new File(srcDir, FILENAME));
+        try
+        {
+            props.store(output, "XMLBeans schema compiler cache, do not edit");
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    String getName()
+    {
+        return _props.getProperty(NAME);
+    }
+
+    boolean hasOptions(String options)
+    {
+        return options.equals(_props.getProperty(OPTIONS));
+    }
+
+    /**
+     * Returns true if none of the inputs of the last run, the files given
+     * and the ones they include or import, has changed since.
+     */
+    boolean hasInputs() throws IOException
+    {
+        List inputs = new ArrayList();
+
+        for (Iterator i = _props.keySet().iterator(); i.hasNext(); )
+        {
+            String key = (String)i.next();
+
+            if (key.startsWith(INPUT))
+            {
+                File input = new File(key.substring(INPUT.length()));
+                if (!input.isFile())
+                    return false;
+                inputs.add(input);
+            }
+        }
+
+        Map hashes = hashFiles(inputs);
+
+        for (Iterator i = hashes.entrySet().iterator(); i.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry)i.next();
+            if (!entry.getValue().equals(_props.getProperty(INPUT + entry.getKey())))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if what the last run wrote is still there: the index of
+     * the type system, the generated sources and, if they were compiled,
+     * the class of each source.
+     */
+    boolean hasOutputs(File srcDir, File classesDir, boolean compiled)
+    {
+        File index = new File(classesDir,
+            "schemaorg_apache_xmlbeans/system/" + getName() + "/index.xsb");
+
+        if (!index.isFile())
+            return false;
+
+        String srcPath = srcDir.getAbsolutePath() + File.separator;
+
+        for (Iterator i = getSourceFiles().iterator(); i.hasNext(); )
+        {
+            File source = (File)i.next();
+
+            if (!source.isFile())
+                return false;
+
+            if (!compiled || !source.getPath().startsWith(srcPath))
+                continue;
+
+            String relative = source.getPath().substring(srcPath.length());
+            relative = relative.substring(0, relative.length() - ".java".length()) + ".class";
+
+            if (!new File(classesDir, relative).isFile())
+                return false;
+        }
+
+        return true;
+    }
+
+    List getSourceFiles()
+    {
+        List files = new ArrayList();
+
+        for (int i = 0; ; i++)
+        {
+            String path = _props.getProperty(SOURCE + i);
+            if (path == null)
+                return files;
+            files.add(new File(path));
+        }
+    }
+
+    /**
+     * Returns a map from the absolute path of each of the files to the
+     * hash of its content.
+     */
+    static Map hashFiles(Collection files) throws IOException
+    {
+        Map hashes = new TreeMap();
+
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e.getMessage());
+        }
+
+        byte[] buf = new byte[8192];
+
+        for (Iterator i = files.iterator(); i.hasNext(); )
+        {
+            File file = (File)i.next();
+            InputStream input = new FileInputStream(file);
+            try
+            {
+                for (int n; (n = input.read(buf)) > 0; )
+                    digest.update(buf, 0, n);
+            }
+            finally
+            {
+                input.close();
+            }
+
+            hashes.put(file.getAbsolutePath(), new String(HexBin.encode(digest.digest())));
+        }
+
+        return hashes;
+    }
+}
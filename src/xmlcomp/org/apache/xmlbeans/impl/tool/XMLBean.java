@@ -74,6 +74,7 @@ public class XMLBean extends MatchingTask
                         fork = true,
                         includeAntRuntime = true,
                         noSrcRegen,
+                        incremental,
                         includeJavaRuntime = false;
 
     private String      typesystemname,
@@ -85,6 +86,8 @@ public class XMLBean extends MatchingTask
                         catalog,
                         javasource;
 
+    private int         threads = 1;
+
     private List        extensions = new ArrayList();
 
     private HashMap     _extRouter = new HashMap(5);
@@ -230,6 +233,7 @@ public class XMLBean extends MatchingTask
             params.setErrorListener(err);
             params.setCatalogFile(catalog);
             params.setIncrementalSrcGen(noSrcRegen);
+            params.setIncremental(incremental);
             params.setMdefNamespaces(mdefnamespaces);
             params.setNoUpa(noupa);
             params.setNoPvr(nopvr);
@@ -237,6 +241,7 @@ public class XMLBean extends MatchingTask
             params.setNoVDoc(novdoc);
             params.setNoExt(noext);
             params.setJavaSource(javasource);
+            params.setThreads(threads);
             success = SchemaCompiler.compile(params);
 
             if (success && !srconly) {
@@ -790,6 +795,35 @@ public class XMLBean extends MatchingTask
         return javasource;
     }
 
+    /**
+     * Generate java source on the given number of threads.  The source
+     * generated is the same as with the default of one thread.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Skip generating source if no schema or config file changed since the
+     * last build into the same source directory, or else only rewrite the
+     * sources that changed, so that javac only recompiles those.
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
   //REVIEW this allows people to deal with the case where they drag in
   //more files for compilation than they should.  not sure if this is
   //a good thing or not
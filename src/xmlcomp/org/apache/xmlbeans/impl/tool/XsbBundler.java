@@ -0,0 +1,275 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.tool;
+
+import org.apache.xmlbeans.impl.schema.SchemaTypeSystemBundle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Adds a bundle.xsb to every compiled type system in a jar or directory,
+ * so that the type system is loaded from one resource instead of one
+ * resource per schema component.
+ * See {@link SchemaTypeSystemBundle}.
+ */
+public class XsbBundler
+{
+    private static final String INDEX = "index.xsb";
+    private static final String BUNDLE = SchemaTypeSystemBundle.BUNDLE_HANDLE + ".xsb";
+
+    public static void printUsage()
+    {
+        System.out.println("Adds a single-file bundle of the compiled schema (.xsb) files");
+        System.out.println("to each type system in a jar or class directory, which makes");
+        System.out.println("loading type systems with many components faster.");
+        System.out.println("The bundle has to be rebuilt whenever the schema is recompiled.");
+        System.out.println("Usage: xsbbundle myschema.jar [out.jar]");
+        System.out.println("       xsbbundle classdir");
+        System.out.println("    myschema.jar - A jar produced by scomp.");
+        System.out.println("    out.jar - The jar to write, by default myschema.jar is replaced.");
+        System.out.println("    classdir - A directory of classes produced by scomp.");
+        System.out.println();
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 1 || args.length > 2 || args[0].equalsIgnoreCase("-usage"))
+        {
+            printUsage();
+            System.exit(0);
+            return;
+        }
+
+        File input = new File(args[0]);
+
+        try
+        {
+            int count;
+
+            if (input.isDirectory())
+            {
+                if (args.length > 1)
+                {
+                    printUsage();
+                    System.exit(1);
+                    return;
+                }
+
+                count = bundleDirectory(input);
+            }
+            else
+            {
+                File output = args.length > 1 ? new File(args[1]) : null;
+                count = bundleJar(input, output);
+            }
+
+            System.out.println("Bundled " + count + " type system(s) in " + input);
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes a bundle.xsb into each directory below the given one that
+     * holds an index.xsb, returning the number of bundles written.
+     */
+    public static int bundleDirectory(File dir) throws IOException
+    {
+        int count = 0;
+
+        File[] files = dir.listFiles();
+
+        if (files == null)
+            return 0;
+
+        for (int i = 0; i < files.length; i++)
+        {
+            if (files[i].isDirectory())
+                count += bundleDirectory(files[i]);
+        }
+
+        if (!new File(dir, INDEX).isFile())
+            return count;
+
+        Map xsbFiles = new TreeMap();
+
+        for (int i = 0; i < files.length; i++)
+        {
+            String name = files[i].getName();
+
+            if (files[i].isFile() && name.endsWith(".xsb") && !name.equals(BUNDLE))
+                xsbFiles.put(handle(name), readFully(new FileInputStream(files[i])));
+        }
+
+        OutputStream output = new FileOutputStream(new File(dir, BUNDLE));
+
+        try
+        {
+            SchemaTypeSystemBundle.write(output, xsbFiles);
+        }
+        finally
+        {
+            output.close();
+        }
+
+        return count + 1;
+    }
+
+    /**
+     * Copies the jar to the output jar, adding a bundle.xsb to each type
+     * system in it and dropping any bundle it had.  If the output is null,
+     * the jar is replaced.  Returns the number of bundles written.
+     */
+    public static int bundleJar(File jar, File out) throws IOException
+    {
+        File output = out != null ? out : File.createTempFile("xsbbundle", ".jar", jar.getAbsoluteFile().getParentFile());
+
+        ZipFile zip = new ZipFile(jar);
+        int count;
+
+        try
+        {
+            // Find the type system directories, the ones with an index.xsb
+
+            List systems = new ArrayList();
+
+            for (Enumeration e = zip.entries(); e.hasMoreElements(); )
+            {
+                String name = ((ZipEntry) e.nextElement()).getName();
+
+                if (name.endsWith("/" + INDEX))
+                    systems.add(name.substring(0, name.length() - INDEX.length()));
+            }
+
+            ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(output));
+
+            try
+            {
+                Map[] xsbFiles = new Map[systems.size()];
+
+                for (int i = 0; i < xsbFiles.length; i++)
+                    xsbFiles[i] = new TreeMap();
+
+                for (Enumeration e = zip.entries(); e.hasMoreElements(); )
+                {
+                    ZipEntry entry = (ZipEntry) e.nextElement();
+                    String name = entry.getName();
+                    int system = systemOf(systems, name);
+
+                    if (system >= 0 && name.endsWith("/" + BUNDLE))
+                        continue;
+
+                    zout.putNextEntry(new ZipEntry(name));
+
+                    if (!entry.isDirectory())
+                    {
+                        InputStream input = zip.getInputStream(entry);
+
+                        if (system >= 0 && name.endsWith(".xsb"))
+                        {
+                            byte[] bytes = readFully(input);
+                            String file = name.substring(((String) systems.get(system)).length());
+
+                            xsbFiles[system].put(handle(file), bytes);
+                            zout.write(bytes);
+                        }
+                        else
+                            zout.write(readFully(input));
+                    }
+
+                    zout.closeEntry();
+                }
+
+                for (int i = 0; i < xsbFiles.length; i++)
+                {
+                    zout.putNextEntry(new ZipEntry(systems.get(i) + BUNDLE));
+                    SchemaTypeSystemBundle.write(zout, xsbFiles[i]);
+                    zout.closeEntry();
+                }
+
+                count = xsbFiles.length;
+            }
+            finally
+            {
+                zout.close();
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+
+        if (out == null)
+        {
+            if (!jar.delete() || !output.renameTo(jar))
+                throw new IOException("Could not replace " + jar + " with " + output);
+        }
+
+        return count;
+    }
+
+    // Returns the type system directory the entry is directly in, or -1
+
+    private static int systemOf(List systems, String name)
+    {
+        int slash = name.lastIndexOf('/');
+
+        if (slash < 0)
+            return -1;
+
+        return systems.indexOf(name.substring(0, slash + 1));
+    }
+
+    private static String handle(String filename)
+    {
+        return filename.substring(0, filename.length() - ".xsb".length());
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+
+            for (int n; (n = input.read(buf)) > 0; )
+                output.write(buf, 0, n);
+
+            return output.toByteArray();
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+}
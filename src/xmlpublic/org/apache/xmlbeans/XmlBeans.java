@@ -132,6 +132,9 @@ public final class XmlBeans
     private static final Method _nodeToXmlObjectMethod = buildNodeToXmlObjectMethod();
     private static final Method _nodeToXmlStreamMethod = buildNodeToXmlStreamMethod();
     private static final Method _streamToNodeMethod = buildStreamToNodeMethod();
+    private static final Method _freezeMethod = buildFreezeMethod();
+    private static final Method _parseElementsMethod = buildParseElementsMethod();
+    private static final Method _selectPathMethod = buildSelectPathMethod();
     private static final Constructor _pathResourceLoaderConstructor = buildPathResourceLoaderConstructor();
 
     private static RuntimeException causedException ( RuntimeException e, Throwable cause )
@@ -250,6 +253,34 @@ public final class XmlBeans
                 new Class[] { XMLStreamReader.class } );
     }
 
+    private static final Method buildFreezeMethod()
+    {
+        return
+            buildMethod(
+                "org.apache.xmlbeans.impl.store.Locale", "freezeXmlObject",
+                new Class[] { XmlObject.class } );
+    }
+
+    private static final Method buildParseElementsMethod()
+    {
+        return
+            buildMethod(
+                "org.apache.xmlbeans.impl.store.Locale", "parseElements",
+                new Class[] { SchemaTypeLoader.class, XMLStreamReader.class,
+                              QName.class, QName[].class, SchemaType.class,
+                              XmlElementHandler.class, XmlOptions.class } );
+    }
+
+    private static final Method buildSelectPathMethod()
+    {
+        return
+            buildMethod(
+                "org.apache.xmlbeans.impl.store.Locale", "selectPath",
+                new Class[] { SchemaTypeLoader.class, XMLStreamReader.class,
+                              String.class, SchemaType.class,
+                              XmlElementHandler.class, XmlOptions.class } );
+    }
+
     private static final Constructor buildPathResourceLoaderConstructor()
     {
         return
@@ -458,6 +489,202 @@ public final class XmlBeans
         }
     }
 
+    /**
+     * Makes the whole document containing the given XmlObject read-only.
+     * <p>
+     * From then on every attempt to modify the document, through
+     * XmlObjects, cursors or DOM, throws an IllegalStateException.  In exchange,
+     * any number of threads can call the typed getters of its XmlObjects
+     * at the same time without contending on its synchronization domain,
+     * as long as the document is handed to them after this method returns.
+     * Cursors, DOM, selectPath and execQuery, saving and validation are
+     * not lock-free: they still take the document's lock, one thread at a
+     * time.
+     * <p>
+     * The same can be had when loading or copying a document with
+     * {@link XmlOptions#setLoadReadOnly} or {@link XmlOptions#setCopyReadOnly}.
+     * A document cannot be made writable again; copy it instead.
+     * <p>
+     * The document must have its synchronization domain to itself.  If
+     * other documents share it, because they were loaded into the same
+     * locale or copied without
+     * {@link XmlOptions#setCopyUseNewSynchronizationDomain}, an
+     * IllegalStateException is thrown and nothing is frozen.
+     */
+    public static void freeze ( XmlObject obj )
+    {
+        try
+        {
+            _freezeMethod.invoke( null, new Object[] { obj } );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw causedException(
+                new IllegalStateException(
+                    "No access to freezeXmlObject verify that version of xbean.jar is correct" ), e );
+        }
+        catch ( InvocationTargetException e )
+        {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            IllegalStateException ise = new IllegalStateException(t.getMessage());
+            ise.initCause(t); // use initCause() to support Java 1.4
+            throw ise;
+        }
+    }
+
+    /**
+     * Parses the elements of the given name out of a stream one at a time,
+     * handing each to the handler as an XmlObject of the given type.
+     * <p>
+     * Only the matching elements are loaded; everything around them is
+     * read past without building a store, and an element is dropped by the
+     * parser as soon as the handler returns.  This is how to process a
+     * stream of many records which is too big to be loaded as one document.
+     * Elements of the given name nested inside a matching element are
+     * part of it and are not handed over separately.
+     * <p>
+     * If the type is a document type, or null, each element is the
+     * document element of its own document.  For any other type, the
+     * attributes and content of the element are the value of the returned
+     * XmlObject.  The namespaces declared above an element are in scope in it.
+     * <p>
+     * The reader is left after the last element handled, or at the end of
+     * the document, and is not closed.  A reader started inside an element
+     * stops on the end of that element, so that a stream can be handled
+     * one enclosing element at a time.
+     *
+     * @param xsr the stream, on or before the document element, or inside an element
+     * @param elementName the name of the elements to hand over, at any depth
+     * @param type the type of each element, or null to type by the document element
+     * @param handler receives the elements, and may stop the parse
+     * @param options load options, applied to each element
+     */
+    public static void parseElements (
+        XMLStreamReader xsr, QName elementName, SchemaType type,
+        XmlElementHandler handler, XmlOptions options )
+            throws XmlException
+    {
+        if (elementName == null)
+            throw new IllegalArgumentException( "No element name" );
+
+        parseElements( xsr, elementName, null, type, handler, options );
+    }
+
+    /**
+     * Like {@link #parseElements(XMLStreamReader, QName, SchemaType, XmlElementHandler, XmlOptions)},
+     * but hands over only the elements found at the given path of names,
+     * the first of which is the name of the document element.
+     */
+    public static void parseElements (
+        XMLStreamReader xsr, QName[] path, SchemaType type,
+        XmlElementHandler handler, XmlOptions options )
+            throws XmlException
+    {
+        if (path == null || path.length == 0)
+            throw new IllegalArgumentException( "No element path" );
+
+        parseElements( xsr, null, path, type, handler, options );
+    }
+
+    private static void parseElements (
+        XMLStreamReader xsr, QName elementName, QName[] path, SchemaType type,
+        XmlElementHandler handler, XmlOptions options )
+            throws XmlException
+    {
+        if (handler == null)
+            throw new IllegalArgumentException( "No element handler" );
+
+        try
+        {
+            _parseElementsMethod.invoke(
+                null,
+                new Object[] { getContextTypeLoader(), xsr, elementName, path,
+                               type, handler, options } );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw causedException(
+                new IllegalStateException(
+                    "No access to parseElements verify that version of xbean.jar is correct" ), e );
+        }
+        catch ( InvocationTargetException e )
+        {
+            Throwable t = e.getCause();
+            if (t instanceof XmlException)
+                throw (XmlException) t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            IllegalStateException ise = new IllegalStateException(t.getMessage());
+            ise.initCause(t); // use initCause() to support Java 1.4
+            throw ise;
+        }
+    }
+
+    /**
+     * Runs a path over a stream, handing what it selects to the handler
+     * one item at a time, without loading the stream into a document.
+     * Each element selected is loaded on its own, as by
+     * {@link #parseElements(XMLStreamReader, QName, SchemaType, XmlElementHandler, XmlOptions)},
+     * and each attribute selected is handed over as a simple value of its
+     * text, of the given type if that is a simple type.  This is how to
+     * pick a few fields out of a stream too big to be loaded at all.
+     * <p>
+     * The path is relative to the document, as with
+     * {@link XmlObject#selectPath(String, XmlOptions)} on a document, and is
+     * run an event at a time, so it may only use child, descendant and
+     * attribute steps, with no predicates.  An element selected is read
+     * whole, so nothing inside it is selected on its own.
+     * <p>
+     * The reader is left after the last item handled, or at the end of
+     * the document, and is not closed.
+     *
+     * @param xsr the stream, on or before the document element
+     * @param path the path, for example "$this//order/@id"
+     * @param type the type of each item, or null to type by the document element
+     * @param handler receives the items, and may stop the parse
+     * @param options load options, applied to each element
+     * @throws XmlException if the path cannot be run over a stream, or
+     *         the stream cannot be read
+     */
+    public static void selectPath (
+        XMLStreamReader xsr, String path, SchemaType type,
+        XmlElementHandler handler, XmlOptions options )
+            throws XmlException
+    {
+        if (path == null)
+            throw new IllegalArgumentException( "No path" );
+
+        if (handler == null)
+            throw new IllegalArgumentException( "No element handler" );
+
+        try
+        {
+            _selectPathMethod.invoke(
+                null,
+                new Object[] { getContextTypeLoader(), xsr, path, type,
+                               handler, options } );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw causedException(
+                new IllegalStateException(
+                    "No access to selectPath verify that version of xbean.jar is correct" ), e );
+        }
+        catch ( InvocationTargetException e )
+        {
+            Throwable t = e.getCause();
+            if (t instanceof XmlException)
+                throw (XmlException) t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            IllegalStateException ise = new IllegalStateException(t.getMessage());
+            ise.initCause(t); // use initCause() to support Java 1.4
+            throw ise;
+        }
+    }
+
     /**
      * Returns the SchemaTypeSystem that results from compiling the XML
      * schema definitions passed.
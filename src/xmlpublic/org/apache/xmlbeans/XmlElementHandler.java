@@ -0,0 +1,35 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans;
+
+/**
+ * Receives the elements picked out of a stream by
+ * {@link XmlBeans#parseElements(javax.xml.stream.XMLStreamReader, javax.xml.namespace.QName, SchemaType, XmlElementHandler, XmlOptions)},
+ * or selected from one by
+ * {@link XmlBeans#selectPath(javax.xml.stream.XMLStreamReader, String, SchemaType, XmlElementHandler, XmlOptions)}.
+ * Each element is loaded into its own synchronization domain, so the
+ * handler may keep it, but once the handler returns the parser holds no
+ * reference to it and the memory is reclaimed if the handler did not keep it.
+ */
+public interface XmlElementHandler
+{
+    /**
+     * Called with each matching element, in document order.
+     *
+     * @return true to go on with the next element, false to stop parsing
+     */
+    boolean element ( XmlObject element ) throws XmlException;
+}
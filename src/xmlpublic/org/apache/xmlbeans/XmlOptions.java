@@ -624,6 +624,47 @@ public class XmlOptions implements java.io.Serializable
         return set( LOAD_USE_XMLREADER, xmlReader );
     }
 
+    /**
+     * If this option is set, the loaded document is read-only: every
+     * attempt to modify it throws an IllegalStateException.
+     * The text of the document is kept in one compact buffer, and the
+     * XmlObjects of its elements and attributes are only created when
+     * they are first read.
+     * Use this option for configuration and reference data which is
+     * loaded once and then only read.
+     * <p>
+     * Only the typed getters of its XmlObjects, such as the generated
+     * getters and the SimpleValue getters, read the document without a
+     * lock, so any number of threads can call them without contending.
+     * Cursors, DOM, selectPath and execQuery, saving and validation still
+     * go through the document's lock one thread at a time, as does
+     * creating the XmlObject of a node when it is first read.
+     *
+     * @see XmlBeans#freeze(XmlObject)
+     * @see XmlObject.Factory#parse(java.io.File, XmlOptions)
+     */
+    public XmlOptions setLoadReadOnly () {
+        return set( LOAD_READ_ONLY );
+    }
+
+    /**
+     * If this option is set, the loaded document holds on to the
+     * XmlObjects of at most the given number of its elements and
+     * attributes, the ones most recently used, instead of keeping every
+     * XmlObject (and its typed value) until the document goes away.
+     * Others are let go of, and are created again from the text of the
+     * document when they are next used; an XmlObject which the
+     * application still holds on to keeps working as before.
+     * Use this option for large documents whose typed values are read
+     * once or only in a small part at a time.
+     *
+     * @param size the number of XmlObjects held, greater than zero
+     * @see XmlObject.Factory#parse(java.io.File, XmlOptions)
+     */
+    public XmlOptions setLoadValueCacheSize (int size) {
+        return set( LOAD_VALUE_CACHE_SIZE, size );
+    }
+
     /**
      * Sets the name of the variable that represents
      * the current node in a query expression.
@@ -846,6 +887,22 @@ public class XmlOptions implements java.io.Serializable
         return set( GENERATE_JAVA_VERSION, source );
     }
 
+    /**
+     * If this option is set to more than one, the schema compiler prints
+     * the java code of the compiled types on that many threads.  The
+     * files written are the same, and written in the same order, as
+     * when printing on one thread.  It has no effect when a
+     * {@link #setSchemaCodePrinter SchemaCodePrinter} is set, as that
+     * printer may not be safe to use from several threads.
+     *
+     * @param threads the number of threads to print on
+     *
+     * @see XmlBeans#compileXmlBeans
+     */
+    public XmlOptions setGenerateThreads (int threads) {
+        return set( GENERATE_THREADS, threads );
+    }
+
     /**
      * If this option is set to true, the return of XmlObject.copy() method will
      * return an object in it's own synchronization domain, otherwise both objects
@@ -861,6 +918,26 @@ public class XmlOptions implements java.io.Serializable
         return set(COPY_USE_NEW_SYNC_DOMAIN, useNewSyncDomain ? Boolean.TRUE : Boolean.FALSE );
     }
 
+    /**
+     * If this option is set, XmlObject.copy() returns a read-only snapshot of
+     * the source in its own synchronization domain.  Every attempt to modify
+     * the snapshot throws an IllegalStateException.
+     * <p>
+     * Only the typed getters of the snapshot's XmlObjects, such as the
+     * generated getters and the SimpleValue getters, read it without a
+     * lock, so any number of threads can call them without contending.
+     * Cursors, DOM, selectPath and execQuery, saving and validation still
+     * go through the snapshot's lock one thread at a time, as does
+     * creating the XmlObject of a node when it is first read.
+     *
+     * @see XmlObject#copy(XmlOptions)
+     * @see XmlBeans#freeze(XmlObject)
+     */
+    public XmlOptions setCopyReadOnly ( )
+    {
+        return set( COPY_READ_ONLY );
+    }
+
     /**
      * Sets the maximum number of bytes allowed when an Entity is expanded during parsing.
      * The default value is 10240 bytes.
@@ -946,6 +1023,10 @@ public class XmlOptions implements java.io.Serializable
     public static final String LOAD_USE_DEFAULT_RESOLVER       = "LOAD_USE_DEFAULT_RESOLVER";
     /** @exclude */
     public static final String LOAD_USE_XMLREADER              = "LOAD_USE_XMLREADER";
+    /** @exclude */
+    public static final String LOAD_READ_ONLY                  = "LOAD_READ_ONLY";
+    /** @exclude */
+    public static final String LOAD_VALUE_CACHE_SIZE           = "LOAD_VALUE_CACHE_SIZE";
 
     /** @exclude */
     public static final String XQUERY_CURRENT_NODE_VAR         = "XQUERY_CURRENT_NODE_VAR";
@@ -993,8 +1074,12 @@ public class XmlOptions implements java.io.Serializable
     /** @exclude */
     public static final String GENERATE_JAVA_VERSION           = "GENERATE_JAVA_VERSION";
     /** @exclude */
+    public static final String GENERATE_THREADS                = "GENERATE_THREADS";
+    /** @exclude */
     public static final String COPY_USE_NEW_SYNC_DOMAIN        = "COPY_USE_NEW_LOCALE";
     /** @exclude */
+    public static final String COPY_READ_ONLY                  = "COPY_READ_ONLY";
+    /** @exclude */
     public static final String LOAD_ENTITY_BYTES_LIMIT         = "LOAD_ENTITY_BYTES_LIMIT";
 
     private static final XmlOptions EMPTY_OPTIONS;
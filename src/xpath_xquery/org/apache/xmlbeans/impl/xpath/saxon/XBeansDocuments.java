@@ -0,0 +1,128 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.impl.xpath.saxon;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import net.sf.saxon.Configuration;
+import net.sf.saxon.dom.DocumentWrapper;
+import net.sf.saxon.dom.NodeOverNodeInfo;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.om.VirtualNode;
+
+/**
+ * The Saxon view of xmlbeans documents.  Saxon navigates the store through
+ * its DOM, wrapped in place rather than copied into a Saxon tree, so a query
+ * costs no more memory than its results.
+ * <p>
+ * A document is wrapped once for all the queries and paths run over it,
+ * and the context node and the variables bound to nodes of the same
+ * document get the same wrapper, which Saxon needs to compare them.  The
+ * wrappers are held weakly, as each holds on to its document.
+ */
+public final class XBeansDocuments
+{
+    private XBeansDocuments()
+    {
+    }
+
+    private static final Configuration _config;
+
+    static
+    {
+        _config = new Configuration();
+        _config.setDOMLevel(2);
+        _config.setTreeModel(net.sf.saxon.event.Builder.STANDARD_TREE);
+    }
+
+    private static final Map _wrappers = new WeakHashMap();
+
+    /**
+     * The Configuration shared by the compiled paths and queries, and by
+     * the documents they run over.
+     */
+    public static Configuration getConfiguration()
+    {
+        return _config;
+    }
+
+    /**
+     * Returns the Saxon node for a DOM node of the store.
+     */
+    public static NodeInfo wrap(Node node)
+    {
+        if (node instanceof NodeOverNodeInfo)
+            return ((NodeOverNodeInfo) node).getUnderlyingNodeInfo();
+
+        Document doc = node.getNodeType() == Node.DOCUMENT_NODE
+            ? (Document) node : node.getOwnerDocument();
+
+        DocumentWrapper wrapper;
+
+        synchronized (_wrappers)
+        {
+            WeakReference ref = (WeakReference) _wrappers.get(doc);
+            wrapper = ref == null ? null : (DocumentWrapper) ref.get();
+
+            if (wrapper == null)
+            {
+                wrapper = new DocumentWrapper(doc, null, _config);
+                _wrappers.put(doc, new WeakReference(wrapper));
+            }
+        }
+
+        return node == doc ? wrapper : wrapper.wrap(node);
+    }
+
+    /**
+     * Returns the DOM node for a Saxon node: the node of the store it
+     * wraps, or a DOM view of a node the query built.
+     */
+    public static Node unwrap(NodeInfo node)
+    {
+        if (node instanceof VirtualNode)
+            return getUnderlyingNode((VirtualNode) node);
+
+        return NodeOverNodeInfo.wrap(node);
+    }
+
+    /**
+     * According to the Saxon javadoc:
+     * <code>getUnderlyingNode</code> in <code>NodeWrapper</code> implements
+     * the method specified in the interface <code>VirtualNode</code>, and
+     * the specification of the latter says that it may return another
+     * <code>VirtualNode</code>, and you may have to drill down through
+     * several layers of wrapping.
+     * To be safe, this method is provided to drill down through multiple
+     * layers of wrapping.
+     * @param v The <code>VirtualNode</code>
+     * @return The underlying node
+     */
+    static Node getUnderlyingNode(VirtualNode v)
+    {
+        Object o = v;
+        while (o instanceof VirtualNode)
+        {
+            o = ((VirtualNode)o).getUnderlyingNode();
+        }
+        return (Node)o;
+    }
+}
@@ -15,17 +15,15 @@
 
 package org.apache.xmlbeans.impl.xpath.saxon;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ListIterator;
 
-import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.TransformerException;
 
 import org.w3c.dom.Node;
 
-import net.sf.saxon.Configuration;
-import net.sf.saxon.dom.NodeWrapper;
 import net.sf.saxon.om.NodeInfo;
 import net.sf.saxon.om.VirtualNode;
 import net.sf.saxon.om.Item;
@@ -41,10 +39,8 @@ import org.apache.xmlbeans.impl.store.PathDelegate;
 public class XBeansXPath
         implements PathDelegate.SelectPathInterface
 {
-    private Object[] namespaceMap;
-    private String path;
-    private String contextVar;
-    private String defaultNS;
+    private XPathExpression xpath;
+    private XPathVariable thisVar;
 
     /**
      * Construct given an XPath expression string.
@@ -56,10 +52,31 @@ public class XBeansXPath
     public XBeansXPath(String path, String contextVar,
                        Map namespaceMap, String defaultNS)
     {
-        this.path = path;
-        this.contextVar = contextVar;
-        this.defaultNS = defaultNS;
-        this.namespaceMap = namespaceMap.entrySet().toArray();
+        // The expression is compiled once, as compiled paths are cached,
+        // and each selection only makes a dynamic context for it
+        XPathEvaluator xpe = new XPathEvaluator();
+        IndependentContext sc =
+            new IndependentContext(XBeansDocuments.getConfiguration());
+        // Declare ns bindings
+        if (defaultNS != null)
+            sc.setDefaultElementNamespace(defaultNS);
+
+        for (Iterator it = namespaceMap.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            sc.declareNamespace((String) entry.getKey(),
+                    (String) entry.getValue());
+        }
+        xpe.setStaticContext(sc);
+        thisVar = xpe.declareVariable("", contextVar);
+        try
+        {
+            xpath = xpe.createExpression(path);
+        }
+        catch (TransformerException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -90,28 +107,7 @@ public class XBeansXPath
     {
         try
         {
-            Node contextNode = (Node)node;
-            XPathEvaluator xpe = new XPathEvaluator();
-            Configuration config = new Configuration();
-            config.setDOMLevel(2);
-            config.setTreeModel(net.sf.saxon.event.Builder.STANDARD_TREE);
-            IndependentContext sc = new IndependentContext(config);
-            // Declare ns bindings
-            if (defaultNS != null)
-                sc.setDefaultElementNamespace(defaultNS);
-
-            for (int i = 0; i < namespaceMap.length; i++)
-            {
-                Map.Entry entry = (Map.Entry) namespaceMap[i];
-                sc.declareNamespace((String) entry.getKey(),
-                        (String) entry.getValue());
-            }
-            xpe.setStaticContext(sc);
-            XPathVariable thisVar = xpe.declareVariable("", contextVar);
-            XPathExpression xpath = xpe.createExpression(path);
-            NodeInfo contextItem = 
-                //config.buildDocument(new DOMSource(contextNode));
-                config.unravel(new DOMSource(contextNode));
+            NodeInfo contextItem = XBeansDocuments.wrap((Node)node);
             XPathDynamicContext dc = xpath.createDynamicContext(null);
             dc.setContextItem(contextItem);
             dc.setVariable(thisVar, contextItem);
@@ -122,9 +118,9 @@ public class XBeansXPath
                 Object o = it.next();
                 if (o instanceof NodeInfo)
                 {
-                    if (o instanceof NodeWrapper)
+                    if (o instanceof VirtualNode)
                     {
-                        Node n = getUnderlyingNode((NodeWrapper)o);
+                        Node n = XBeansDocuments.getUnderlyingNode((VirtualNode)o);
                         it.set(n);
                     }
                     else
@@ -147,27 +143,4 @@ public class XBeansXPath
     {
         return selectNodes(node);
     }
-
-    /**
-     * According to the Saxon javadoc: 
-     * <code>getUnderlyingNode</code> in <code>NodeWrapper</code> implements 
-     * the method specified in the interface <code>VirtualNode</code>, and
-     * the specification of the latter says that it may return another
-     * <code>VirtualNode</code>, and you may have to drill down through
-     * several layers of wrapping.
-     * To be safe, this method is provided to drill down through multiple
-     * layers of wrapping.
-     * @param v The <code>VirtualNode</code>
-     * @return The underlying node
-     */
-    private static Node getUnderlyingNode(VirtualNode v)
-    {
-        Object o = v;
-        while (o instanceof VirtualNode)
-        {
-            o = ((VirtualNode)o).getUnderlyingNode();
-        }
-        return (Node)o;
-    }
-
 }
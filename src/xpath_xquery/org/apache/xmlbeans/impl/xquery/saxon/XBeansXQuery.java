@@ -25,8 +25,6 @@ import javax.xml.transform.TransformerException;
 
 import org.w3c.dom.Node;
 
-import net.sf.saxon.Configuration;
-import net.sf.saxon.dom.NodeOverNodeInfo;
 import net.sf.saxon.om.NodeInfo;
 import net.sf.saxon.query.DynamicQueryContext;
 import net.sf.saxon.query.StaticQueryContext;
@@ -35,13 +33,13 @@ import net.sf.saxon.query.XQueryExpression;
 import org.apache.xmlbeans.XmlRuntimeException;
 import org.apache.xmlbeans.XmlTokenSource;
 import org.apache.xmlbeans.impl.store.QueryDelegate;
+import org.apache.xmlbeans.impl.xpath.saxon.XBeansDocuments;
 
 public class XBeansXQuery
         implements QueryDelegate.QueryInterface
 {
     private XQueryExpression xquery;
     private String contextVar;
-    private Configuration config;
 
     /**
      * Construct given an XQuery expression string.
@@ -51,10 +49,8 @@ public class XBeansXQuery
      */
     public XBeansXQuery(String query, String contextVar, Integer boundary)
     {
-        config = new Configuration();
-        config.setDOMLevel(2);
-        config.setTreeModel(net.sf.saxon.event.Builder.STANDARD_TREE);
-        StaticQueryContext sc = new StaticQueryContext(config);
+        StaticQueryContext sc =
+            new StaticQueryContext(XBeansDocuments.getConfiguration());
         this.contextVar = contextVar;
         int bdry = boundary.intValue();
         //Saxon requires external variables at the end of the prolog...
@@ -79,11 +75,18 @@ public class XBeansXQuery
     {
         try
         {
+            // A document is queried in place; building a Saxon tree from
+            // it would copy the whole document for every query.  The
+            // context of a query from any other node is a document holding
+            // a copy of the node, as queries are written against that.
             Node contextNode = (Node)node;
-            NodeInfo contextItem = 
-                config.buildDocument(new DOMSource(contextNode));
-                //config.unravel(new DOMSource(contextNode));
-            DynamicQueryContext dc = new DynamicQueryContext(config);
+            NodeInfo contextItem =
+                contextNode.getNodeType() == Node.DOCUMENT_NODE
+                ? XBeansDocuments.wrap(contextNode)
+                : XBeansDocuments.getConfiguration().buildDocument(
+                    new DOMSource(contextNode));
+            DynamicQueryContext dc =
+                new DynamicQueryContext(XBeansDocuments.getConfiguration());
             dc.setContextItem(contextItem);
             dc.setParameter(contextVar, contextItem);
             // Set the other variables
@@ -98,7 +101,7 @@ public class XBeansXQuery
                     if (value instanceof XmlTokenSource)
                     {
                         Node paramObject = ((XmlTokenSource)value).getDomNode();
-                        dc.setParameter(key, paramObject);
+                        dc.setParameter(key, XBeansDocuments.wrap(paramObject));
                     }
                     else if (value instanceof String)
                         dc.setParameter(key, value);
@@ -111,7 +114,7 @@ public class XBeansXQuery
                 Object o = it.next();
                 if(o instanceof NodeInfo)
                 {
-                    Node n = NodeOverNodeInfo.wrap((NodeInfo)o);
+                    Node n = XBeansDocuments.unwrap((NodeInfo)o);
                     it.set(n);
                 }
             }
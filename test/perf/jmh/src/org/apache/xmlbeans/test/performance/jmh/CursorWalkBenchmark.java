@@ -0,0 +1,112 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures XmlCursor navigation over a loaded (untyped) document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CursorWalkBenchmark
+{
+    @Param({ "10", "1000", "100000" })
+    public int lineItems;
+
+    private XmlObject _doc;
+
+    @Setup
+    public void setup ( ) throws Exception
+    {
+        _doc = XmlObject.Factory.parse( PODocuments.purchaseOrder( lineItems ) );
+    }
+
+    @Benchmark
+    public int walkTokens ( )
+    {
+        XmlCursor c = _doc.newCursor();
+        int n = 0;
+
+        try
+        {
+            while ( !c.toNextToken().isNone() )
+                n++;
+        }
+        finally
+        {
+            c.dispose();
+        }
+
+        return n;
+    }
+
+    @Benchmark
+    public int walkElements ( )
+    {
+        XmlCursor c = _doc.newCursor();
+        int n = 0;
+
+        try
+        {
+            c.toFirstChild();
+
+            if (c.toFirstChild())
+            {
+                do
+                {
+                    n++;
+
+                    if (c.toFirstChild())
+                    {
+                        do
+                        {
+                            n += c.getTextValue().length();
+                        }
+                        while ( c.toNextSibling() );
+
+                        c.toParent();
+                    }
+                }
+                while ( c.toNextSibling() );
+            }
+        }
+        finally
+        {
+            c.dispose();
+        }
+
+        return n;
+    }
+}
@@ -0,0 +1,88 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openuri.easypo.PurchaseOrderDocument;
+
+/**
+ * Measures Locale.parseToXmlObject through the default Piccolo loader, both
+ * untyped and through the generated easypo document type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LoadBenchmark
+{
+    @Param({ "10", "1000", "100000" })
+    public int lineItems;
+
+    private String _text;
+    private byte[] _bytes;
+    private XmlOptions _stripOptions;
+
+    @Setup
+    public void setup ( )
+    {
+        _text = PODocuments.purchaseOrder( lineItems );
+        _bytes = PODocuments.purchaseOrderBytes( lineItems );
+        _stripOptions = new XmlOptions().setLoadStripWhitespace();
+    }
+
+    @Benchmark
+    public XmlObject parseUntypedString ( ) throws Exception
+    {
+        return XmlObject.Factory.parse( _text );
+    }
+
+    @Benchmark
+    public XmlObject parseTypedString ( ) throws Exception
+    {
+        return PurchaseOrderDocument.Factory.parse( _text );
+    }
+
+    @Benchmark
+    public XmlObject parseTypedBytes ( ) throws Exception
+    {
+        return PurchaseOrderDocument.Factory.parse( new ByteArrayInputStream( _bytes ) );
+    }
+
+    @Benchmark
+    public XmlObject parseTypedBytesStripWhitespace ( ) throws Exception
+    {
+        return
+            PurchaseOrderDocument.Factory.parse(
+                new ByteArrayInputStream( _bytes ), _stripOptions );
+    }
+}
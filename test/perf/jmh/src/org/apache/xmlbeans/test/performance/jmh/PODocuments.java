@@ -0,0 +1,76 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Builds easypo purchase-order instances (see test/perf/cases/xsd/purchase-order.xsd)
+ * of a given number of line items, so every benchmark in this package can be
+ * parameterized on document size without shipping large instance files.
+ */
+public final class PODocuments
+{
+    public static final String PO_NS = "http://openuri.org/easypo";
+
+    public static final String NS_DECL =
+        "declare namespace po='" + PO_NS + "' ";
+
+    private PODocuments ( ) { }
+
+    public static String purchaseOrder ( int lineItems )
+    {
+        StringBuffer sb = new StringBuffer( 256 + lineItems * 200 );
+
+        sb.append( "<po:purchase-order xmlns:po=\"" ).append( PO_NS ).append( "\">\n" );
+        sb.append( "  <po:customer>\n" );
+        sb.append( "    <po:name>Gladys Kravitz</po:name>\n" );
+        sb.append( "    <po:address>Anytown, PA</po:address>\n" );
+        sb.append( "  </po:customer>\n" );
+        sb.append( "  <po:date>2003-01-07T14:16:00-05:00</po:date>\n" );
+
+        for ( int i = 0 ; i < lineItems ; i++ )
+        {
+            sb.append( "  <po:line-item>\n" );
+            sb.append( "    <po:description>Burnham's Celestial Handbook, Vol " );
+            sb.append( i ).append( "</po:description>\n" );
+            sb.append( "    <po:per-unit-ounces>" ).append( 1 + i % 9 ).append( ".5</po:per-unit-ounces>\n" );
+            sb.append( "    <po:price>" ).append( 10 + i % 90 ).append( ".79</po:price>\n" );
+            sb.append( "    <po:quantity>" ).append( 1 + i % 7 ).append( "</po:quantity>\n" );
+            sb.append( "  </po:line-item>\n" );
+        }
+
+        sb.append( "  <po:shipper>\n" );
+        sb.append( "    <po:name>ZipShip</po:name>\n" );
+        sb.append( "    <po:per-ounce-rate>0.74</po:per-ounce-rate>\n" );
+        sb.append( "  </po:shipper>\n" );
+        sb.append( "</po:purchase-order>\n" );
+
+        return sb.toString();
+    }
+
+    public static byte[] purchaseOrderBytes ( int lineItems )
+    {
+        try
+        {
+            return purchaseOrder( lineItems ).getBytes( "UTF-8" );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openuri.easypo.PurchaseOrderDocument;
+
+/**
+ * Measures Saver.TextSaver (xmlText, save to a Writer and to an OutputStream)
+ * against Saver.OptimizedForSpeedSaver (SAVE_OPTIMIZE_FOR_SPEED, Writer only).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SaveBenchmark
+{
+    @Param({ "10", "1000", "100000" })
+    public int lineItems;
+
+    private XmlObject _doc;
+    private XmlOptions _prettyOptions;
+    private XmlOptions _speedOptions;
+    private int _expectedSize;
+
+    @Setup
+    public void setup ( ) throws Exception
+    {
+        _doc = PurchaseOrderDocument.Factory.parse( PODocuments.purchaseOrder( lineItems ) );
+
+        _prettyOptions = new XmlOptions().setSavePrettyPrint();
+
+        _speedOptions = new XmlOptions();
+        _speedOptions.put( XmlOptions.SAVE_OPTIMIZE_FOR_SPEED );
+
+        _expectedSize = PODocuments.purchaseOrderBytes( lineItems ).length;
+    }
+
+    @Benchmark
+    public String xmlText ( )
+    {
+        return _doc.xmlText();
+    }
+
+    @Benchmark
+    public String xmlTextPrettyPrint ( )
+    {
+        return _doc.xmlText( _prettyOptions );
+    }
+
+    @Benchmark
+    public StringWriter saveWriter ( ) throws Exception
+    {
+        StringWriter w = new StringWriter( _expectedSize );
+        _doc.save( w );
+        return w;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream saveOutputStream ( ) throws Exception
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream( _expectedSize );
+        _doc.save( os );
+        return os;
+    }
+
+    @Benchmark
+    public StringWriter saveWriterOptimizedForSpeed ( ) throws Exception
+    {
+        StringWriter w = new StringWriter( _expectedSize );
+        _doc.save( w, _speedOptions );
+        return w;
+    }
+}
@@ -0,0 +1,102 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures XmlObject.selectPath and XmlCursor.selectPath with the built-in
+ * path engine.  The predicate benchmark needs the Saxon delegate
+ * (xbean_xpath.jar and saxon9*.jar in build/lib) unless the native engine
+ * handles it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SelectPathBenchmark
+{
+    @Param({ "10", "1000", "100000" })
+    public int lineItems;
+
+    private XmlObject _doc;
+
+    @Setup
+    public void setup ( ) throws Exception
+    {
+        _doc = XmlObject.Factory.parse( PODocuments.purchaseOrder( lineItems ) );
+    }
+
+    @Benchmark
+    public XmlObject[] selectChildPath ( )
+    {
+        return
+            _doc.selectPath(
+                PODocuments.NS_DECL + "$this/po:purchase-order/po:line-item" );
+    }
+
+    @Benchmark
+    public XmlObject[] selectDescendantPath ( )
+    {
+        return _doc.selectPath( PODocuments.NS_DECL + "$this//po:quantity" );
+    }
+
+    @Benchmark
+    public int cursorSelectPath ( )
+    {
+        XmlCursor c = _doc.newCursor();
+
+        try
+        {
+            c.selectPath( PODocuments.NS_DECL + ".//po:price" );
+
+            int n = 0;
+
+            while ( c.toNextSelection() )
+                n++;
+
+            return n;
+        }
+        finally
+        {
+            c.dispose();
+        }
+    }
+
+    @Benchmark
+    public XmlObject[] selectPredicatePath ( )
+    {
+        return
+            _doc.selectPath(
+                PODocuments.NS_DECL + "$this//po:line-item[po:quantity='3']" );
+    }
+}
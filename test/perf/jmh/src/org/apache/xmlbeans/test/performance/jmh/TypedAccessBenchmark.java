@@ -0,0 +1,139 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openuri.easypo.Customer;
+import org.openuri.easypo.LineItem;
+import org.openuri.easypo.PurchaseOrderDocument;
+import org.openuri.easypo.Shipper;
+
+/**
+ * Measures typed getter/setter access through the generated easypo classes,
+ * i.e. XmlComplexContentImpl / XmlObjectBase on top of the Xobj TypeStore.
+ * State is per thread since several benchmarks mutate the document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TypedAccessBenchmark
+{
+    @Param({ "10", "1000", "100000" })
+    public int lineItems;
+
+    private PurchaseOrderDocument.PurchaseOrder _po;
+
+    @Setup
+    public void setup ( ) throws Exception
+    {
+        _po =
+            PurchaseOrderDocument.Factory.parse(
+                PODocuments.purchaseOrder( lineItems ) ).getPurchaseOrder();
+    }
+
+    @Benchmark
+    public void readAllArray ( Blackhole bh )
+    {
+        LineItem[] items = _po.getLineItemArray();
+
+        for ( int i = 0 ; i < items.length ; i++ )
+        {
+            LineItem li = items[ i ];
+            bh.consume( li.getDescription() );
+            bh.consume( li.getPerUnitOunces() );
+            bh.consume( li.getPrice() );
+            bh.consume( li.getQuantity() );
+        }
+    }
+
+    @Benchmark
+    public void readAllIndexed ( Blackhole bh )
+    {
+        int n = _po.sizeOfLineItemArray();
+
+        for ( int i = 0 ; i < n ; i++ )
+            bh.consume( _po.getLineItemArray( i ).getQuantity() );
+    }
+
+    @Benchmark
+    public int readPrimitives ( )
+    {
+        LineItem[] items = _po.getLineItemArray();
+        int sum = 0;
+
+        for ( int i = 0 ; i < items.length ; i++ )
+            sum += items[ i ].getQuantity() + (int) items[ i ].getPrice();
+
+        return sum;
+    }
+
+    @Benchmark
+    public String getSetGetCustomerName ( )
+    {
+        Customer customer = _po.getCustomer();
+        String name = customer.getName();
+        customer.setName( name );
+        return customer.getName();
+    }
+
+    @Benchmark
+    public PurchaseOrderDocument buildTopDown ( )
+    {
+        PurchaseOrderDocument doc = PurchaseOrderDocument.Factory.newInstance();
+        PurchaseOrderDocument.PurchaseOrder po = doc.addNewPurchaseOrder();
+
+        Customer customer = po.addNewCustomer();
+        customer.setName( "First Last" );
+        customer.setAddress( "123 Sesame St." );
+
+        po.setDate( Calendar.getInstance() );
+
+        BigDecimal ounces = new BigDecimal( "1.23" );
+
+        for ( int i = 0 ; i < lineItems ; i++ )
+        {
+            LineItem li = po.addNewLineItem();
+            li.setDescription( "line item description" );
+            li.setPerUnitOunces( ounces );
+            li.setPrice( 1.23 );
+            li.setQuantity( i );
+        }
+
+        Shipper shipper = po.addNewShipper();
+        shipper.setName( "Joe Shipper" );
+        shipper.setPerOunceRate( new BigDecimal( "4.56" ) );
+
+        return doc;
+    }
+}
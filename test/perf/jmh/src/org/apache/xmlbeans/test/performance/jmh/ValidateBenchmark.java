@@ -0,0 +1,78 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.xmlbeans.test.performance.jmh;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openuri.easypo.PurchaseOrderDocument;
+
+/**
+ * Measures a full Validator run over a typed document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ValidateBenchmark
+{
+    @Param({ "10", "1000", "100000" })
+    public int lineItems;
+
+    private XmlObject _doc;
+    private XmlOptions _options;
+    private ArrayList _errors;
+
+    @Setup
+    public void setup ( ) throws Exception
+    {
+        _doc = PurchaseOrderDocument.Factory.parse( PODocuments.purchaseOrder( lineItems ) );
+
+        _errors = new ArrayList();
+        _options = new XmlOptions().setErrorListener( _errors );
+
+        if (!_doc.validate())
+            throw new IllegalStateException( "benchmark document is not valid" );
+    }
+
+    @Benchmark
+    public boolean validate ( )
+    {
+        return _doc.validate();
+    }
+
+    @Benchmark
+    public boolean validateWithErrorListener ( )
+    {
+        _errors.clear();
+        return _doc.validate( _options );
+    }
+}
@@ -281,6 +281,197 @@ public class CompilationTests extends TestCase
         }
     }
 
+    private static final String INCREMENTAL_SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:incremental' xmlns:i='urn:incremental'>" +
+        "<xs:element name='order' type='i:order'/>" +
+        "<xs:complexType name='order'><xs:sequence>" +
+        "<xs:element name='item' type='i:item' maxOccurs='unbounded'/>" +
+        "</xs:sequence></xs:complexType>" +
+        "<xs:complexType name='item'><xs:attribute name='qty' type='xs:int'/>ITEM</xs:complexType>" +
+        "</xs:schema>";
+
+    private static void writeFile(File file, String text) throws IOException
+    {
+        java.io.Writer writer = new java.io.FileWriter(file);
+        writer.write(text);
+        writer.close();
+    }
+
+    public void testIncrementalScomp() throws Throwable
+    {
+        deltree(xbeanOutput("compile/scomp/incremental"));
+        File schema = xbeanOutput("compile/scomp/incremental/order.xsd");
+        File srcdir = xbeanOutput("compile/scomp/incremental/src");
+        File classesdir = xbeanOutput("compile/scomp/incremental/classes");
+        writeFile(schema, INCREMENTAL_SCHEMA.replaceAll("ITEM", ""));
+
+        SchemaCompiler.Parameters params = new SchemaCompiler.Parameters();
+        params.setXsdFiles(new File[] { schema });
+        params.setSrcDir(srcdir);
+        params.setClassesDir(classesdir);
+        params.setNojavac(true);
+        params.setIncremental(true);
+        params.setQuiet(true);
+        Assert.assertTrue("Build failed", SchemaCompiler.compile(params));
+
+        File order = new File(srcdir, "incremental/Order.java");
+        File item = new File(srcdir, "incremental/Item.java");
+        File itemImpl = new File(srcdir, "incremental/impl/ItemImpl.java");
+        Assert.assertTrue(order.exists() && item.exists() && itemImpl.exists());
+
+        // Nothing changed, nothing written
+        order.setLastModified(0);
+        item.setLastModified(0);
+        Assert.assertTrue(SchemaCompiler.compile(params));
+        Assert.assertEquals(0, order.lastModified());
+        Assert.assertEquals(0, item.lastModified());
+
+        // Only the sources of the changed type are written
+        writeFile(schema, INCREMENTAL_SCHEMA.replaceAll("ITEM", "<xs:attribute name='sku' type='xs:string'/>"));
+        Assert.assertTrue(SchemaCompiler.compile(params));
+        Assert.assertEquals(0, order.lastModified());
+        Assert.assertTrue(item.lastModified() != 0);
+
+        // The sources of a type that is gone are deleted
+        writeFile(schema, INCREMENTAL_SCHEMA.replaceAll("<xs:element name='item' type='i:item' maxOccurs='unbounded'/>", "")
+            .replaceAll("<xs:complexType name='item'>.*ITEM</xs:complexType>", ""));
+        Assert.assertTrue(SchemaCompiler.compile(params));
+        Assert.assertTrue(order.exists());
+        Assert.assertTrue(!item.exists());
+        Assert.assertTrue(!itemImpl.exists());
+    }
+
+    public void testIncrementalScompCompiled() throws Throwable
+    {
+        deltree(xbeanOutput("compile/scomp/incrementaljavac"));
+        File schema = xbeanOutput("compile/scomp/incrementaljavac/order.xsd");
+        File srcdir = xbeanOutput("compile/scomp/incrementaljavac/src");
+        File classesdir = xbeanOutput("compile/scomp/incrementaljavac/classes");
+        writeFile(schema, INCREMENTAL_SCHEMA.replaceAll("ITEM", ""));
+
+        SchemaCompiler.Parameters params = new SchemaCompiler.Parameters();
+        params.setXsdFiles(new File[] { schema });
+        params.setSrcDir(srcdir);
+        params.setClassesDir(classesdir);
+        params.setIncremental(true);
+        params.setQuiet(true);
+        Assert.assertTrue("Build failed", SchemaCompiler.compile(params));
+
+        File order = new File(classesdir, "incremental/Order.class");
+        File item = new File(classesdir, "incremental/Item.class");
+        File itemImpl = new File(classesdir, "incremental/impl/ItemImpl.class");
+        Assert.assertTrue(order.exists() && item.exists() && itemImpl.exists());
+
+        // Nothing changed, nothing compiled
+        order.setLastModified(0);
+        Assert.assertTrue(SchemaCompiler.compile(params));
+        Assert.assertEquals(0, order.lastModified());
+
+        // Only the changed type is compiled
+        writeFile(schema, INCREMENTAL_SCHEMA.replaceAll("ITEM", "<xs:attribute name='sku' type='xs:string'/>"));
+        item.setLastModified(0);
+        Assert.assertTrue(SchemaCompiler.compile(params));
+        Assert.assertEquals(0, order.lastModified());
+        Assert.assertTrue(item.lastModified() != 0);
+
+        // Classes deleted since the last build are built again, though
+        // no input changed
+        deltree(classesdir);
+        Assert.assertTrue(SchemaCompiler.compile(params));
+        Assert.assertTrue(order.exists() && item.exists() && itemImpl.exists());
+        File[] index = new File(classesdir, "schemaorg_apache_xmlbeans/system").listFiles();
+        Assert.assertEquals(1, index.length);
+        Assert.assertTrue(new File(index[0], "index.xsb").exists());
+
+        // and so is the class of an unchanged type, when another one changed
+        order.delete();
+        writeFile(schema, INCREMENTAL_SCHEMA.replaceAll("ITEM", ""));
+        Assert.assertTrue(SchemaCompiler.compile(params));
+        Assert.assertTrue(order.exists());
+
+        // the classes load as a type system
+        java.net.URLClassLoader loader = new java.net.URLClassLoader(
+            new java.net.URL[] { classesdir.toURL() }, getClass().getClassLoader());
+        SchemaType type = XmlBeans.typeLoaderForClassLoader(loader).findType(
+            new javax.xml.namespace.QName("urn:incremental", "item"));
+        Assert.assertNotNull(type);
+        Assert.assertEquals("incremental.Item", type.getFullJavaName());
+        Assert.assertNotNull(type.getJavaClass());
+    }
+
+    /**
+     * Generates the sources of INCREMENTAL_SCHEMA into the given directory,
+     * compiles them with CodeGenUtil and returns what it printed.
+     */
+    private static String compileGenerated(String dir, String genver) throws Throwable
+    {
+        deltree(xbeanOutput(dir));
+        File schema = xbeanOutput(dir + "/order.xsd");
+        File srcdir = xbeanOutput(dir + "/src");
+        File classesdir = xbeanOutput(dir + "/classes");
+        writeFile(schema, INCREMENTAL_SCHEMA.replaceAll("ITEM", ""));
+
+        SchemaCompiler.Parameters params = new SchemaCompiler.Parameters();
+        params.setXsdFiles(new File[] { schema });
+        params.setSrcDir(srcdir);
+        params.setClassesDir(classesdir);
+        params.setNojavac(true);
+        params.setQuiet(true);
+        Assert.assertTrue("Build failed", SchemaCompiler.compile(params));
+
+        // javac is verbose, for a separate one to print its command line
+        java.io.PrintStream out = System.out;
+        java.io.PrintStream err = System.err;
+        java.io.ByteArrayOutputStream printed = new java.io.ByteArrayOutputStream();
+        System.setOut(new java.io.PrintStream(printed, true));
+        System.setErr(new java.io.PrintStream(new java.io.ByteArrayOutputStream(), true));
+        try
+        {
+            Assert.assertTrue("Compile failed", CodeGenUtil.externalCompile(
+                Collections.singletonList(srcdir), classesdir, null, false,
+                CodeGenUtil.DEFAULT_COMPILER, genver, null, null, true, true));
+        }
+        finally
+        {
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        // the compiled classes load as a type system
+        java.net.URLClassLoader loader = new java.net.URLClassLoader(
+            new java.net.URL[] { classesdir.toURL() }, CompilationTests.class.getClassLoader());
+        XmlObject order = XmlBeans.typeLoaderForClassLoader(loader).parse(
+            "<i:order xmlns:i='urn:incremental'><item qty='2'/></i:order>", null, null);
+        Assert.assertEquals("incremental.OrderDocument", order.schemaType().getFullJavaName());
+        Assert.assertSame(loader, order.getClass().getClassLoader());
+        Assert.assertTrue(order.validate());
+
+        return printed.toString();
+    }
+
+    public void testInProcessCompile() throws Throwable
+    {
+        String printed = compileGenerated("compile/scomp/inprocess", null);
+
+        Assert.assertTrue(printed, printed.indexOf("compile command:") < 0);
+    }
+
+    public void testForkedCompile() throws Throwable
+    {
+        // when there is no compiler in this JVM, javac is started
+        System.setProperty("xmlbean.inprocessjavac", "false");
+        try
+        {
+            String printed = compileGenerated("compile/scomp/forked",
+                System.getProperty("java.specification.version"));
+            Assert.assertTrue(printed, printed.indexOf("compile command:") >= 0);
+        }
+        finally
+        {
+            System.getProperties().remove("xmlbean.inprocessjavac");
+        }
+    }
+
     public void __testPricequote() throws Throwable
     {
         deltree(xbeanOutput("compile/scomp/pricequote"));
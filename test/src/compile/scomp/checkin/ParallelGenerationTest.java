@@ -0,0 +1,94 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package compile.scomp.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.xmlbeans.Filer;
+import org.apache.xmlbeans.SchemaTypeSystem;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.schema.SchemaTypeSystemCompiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelGenerationTest extends TestCase
+{
+    public ParallelGenerationTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(ParallelGenerationTest.class); }
+
+    /** Keeps the names and text of the sources, in the order they are created */
+    private static class MemoryFiler implements Filer
+    {
+        List names = new ArrayList();
+        List sources = new ArrayList();
+
+        public OutputStream createBinaryFile(String typename)
+        {
+            return new ByteArrayOutputStream();
+        }
+
+        public Writer createSourceFile(String typename)
+        {
+            StringWriter writer = new StringWriter();
+            names.add(typename);
+            sources.add(writer.getBuffer());
+            return writer;
+        }
+    }
+
+    private static String schema()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:parallel' xmlns:p='urn:parallel'>");
+        for (int i = 0; i < 40; i++)
+        {
+            sb.append("<xs:element name='e" + i + "' type='p:t" + i + "'/>");
+            sb.append("<xs:complexType name='t" + i + "'><xs:sequence>");
+            sb.append("<xs:element name='a' type='xs:string' maxOccurs='unbounded'/>");
+            if (i > 0)
+                sb.append("<xs:element name='b' type='p:t" + (i - 1) + "' minOccurs='0'/>");
+            sb.append("</xs:sequence><xs:attribute name='n' type='xs:int'/></xs:complexType>");
+        }
+        sb.append("</xs:schema>");
+        return sb.toString();
+    }
+
+    public void testSameSourcesInSameOrder() throws Throwable
+    {
+        // Compiling with a filer generates the sources on one thread
+        MemoryFiler serial = new MemoryFiler();
+        SchemaTypeSystem sts = XmlBeans.compileXmlBeans(null, null,
+            new XmlObject[] { XmlObject.Factory.parse(schema()) }, null, XmlBeans.getBuiltinTypeSystem(), serial, null);
+
+        MemoryFiler parallel = new MemoryFiler();
+        Assert.assertTrue(SchemaTypeSystemCompiler.generateTypes(sts, parallel, new XmlOptions().setGenerateThreads(4)));
+
+        Assert.assertEquals(160, serial.names.size());
+        Assert.assertEquals(serial.names, parallel.names);
+
+        for (int i = 0; i < serial.sources.size(); i++)
+            Assert.assertEquals(serial.sources.get(i).toString(), parallel.sources.get(i).toString());
+    }
+}
@@ -0,0 +1,85 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package compile.scomp.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.xmlbeans.impl.schema.FileResourceLoader;
+import org.apache.xmlbeans.impl.tool.XsbBundler;
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.SchemaTypeSystem;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlObject;
+
+import javax.xml.namespace.QName;
+import java.io.File;
+
+public class XsbBundleTest extends TestCase
+{
+    public XsbBundleTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(XsbBundleTest.class); }
+
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:bundle' xmlns:b='urn:bundle' elementFormDefault='qualified'>" +
+        "<xs:element name='order' type='b:order'/>" +
+        "<xs:complexType name='order'><xs:sequence>" +
+        "<xs:element name='item' type='b:item' maxOccurs='unbounded'/>" +
+        "</xs:sequence></xs:complexType>" +
+        "<xs:complexType name='item'><xs:attribute name='qty' type='xs:int'/></xs:complexType>" +
+        "</xs:schema>";
+
+    private static void deleteUnbundled(File dir)
+    {
+        File[] files = dir.listFiles();
+        for (int i = 0; i < files.length; i++)
+        {
+            if (files[i].isDirectory())
+                deleteUnbundled(files[i]);
+            else if (files[i].getName().endsWith(".xsb") && !files[i].getName().equals("bundle.xsb"))
+                files[i].delete();
+        }
+    }
+
+    public void testLoadFromBundle() throws Throwable
+    {
+        File classesdir = CompilationTests.xbeanOutput("compile/scomp/bundle/classes");
+        CompilationTests.deltree(classesdir);
+
+        SchemaTypeSystem sts = XmlBeans.compileXsd(
+            new XmlObject[] { XmlObject.Factory.parse(SCHEMA) }, XmlBeans.getBuiltinTypeSystem(), null);
+        sts.saveToDirectory(classesdir);
+
+        Assert.assertEquals(1, XsbBundler.bundleDirectory(classesdir));
+
+        // Only the bundle is left to load the type system from
+        File systemdir = new File(classesdir, "schemaorg_apache_xmlbeans/system/" + sts.getName().substring(sts.getName().lastIndexOf('.') + 1));
+        deleteUnbundled(systemdir);
+        Assert.assertTrue(new File(systemdir, "bundle.xsb").isFile());
+        Assert.assertTrue(!new File(systemdir, "index.xsb").exists());
+
+        SchemaTypeLoader loader = XmlBeans.typeLoaderForResource(new FileResourceLoader(classesdir));
+        SchemaType order = loader.findType(new QName("urn:bundle", "order"));
+        Assert.assertNotNull(order);
+        Assert.assertEquals(1, order.getProperties().length);
+        Assert.assertEquals(new QName("urn:bundle", "item"), order.getProperties()[0].getType().getName());
+
+        XmlObject doc = loader.parse("<order xmlns='urn:bundle'><item qty='2'/></order>", null, null);
+        Assert.assertTrue(doc.validate());
+    }
+}
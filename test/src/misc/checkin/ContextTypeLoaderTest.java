@@ -0,0 +1,109 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package misc.checkin;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlInt;
+import org.apache.xmlbeans.SchemaTypeLoader;
+
+import javax.xml.namespace.QName;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * The context type loader of a class loader is shared by all the threads.
+ */
+public class ContextTypeLoaderTest extends TestCase
+{
+    public ContextTypeLoaderTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(ContextTypeLoaderTest.class);
+    }
+
+    /** the context type loaders of threads with the given context class loader */
+    private static SchemaTypeLoader[] contextTypeLoaders(
+        final ClassLoader cl, int count) throws Exception
+    {
+        final SchemaTypeLoader[] loaders = new SchemaTypeLoader[count];
+        Thread[] threads = new Thread[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            final int n = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    loaders[n] = XmlBeans.getContextTypeLoader();
+                }
+            };
+            threads[i].setContextClassLoader(cl);
+            threads[i].start();
+        }
+
+        for (int i = 0; i < count; i++)
+            threads[i].join();
+
+        return loaders;
+    }
+
+    public void testSharedByThreads() throws Exception
+    {
+        ClassLoader cl = new URLClassLoader(new URL[0], getClass().getClassLoader());
+
+        SchemaTypeLoader[] loaders = contextTypeLoaders(cl, 16);
+        SchemaTypeLoader[] again = contextTypeLoaders(cl, 4);
+
+        for (int i = 0; i < loaders.length; i++)
+            Assert.assertSame(again[0], loaders[i]);
+        for (int i = 0; i < again.length; i++)
+            Assert.assertSame(again[0], again[i]);
+
+        // a type found for one thread is found for all of them
+        Assert.assertSame(XmlInt.type, again[0].findType(XmlInt.type.getName()));
+        Assert.assertNull(again[0].findType(new QName("urn:none", "none")));
+        Assert.assertNull(loaders[3].findType(new QName("urn:none", "none")));
+    }
+
+    public void testClassLoaders() throws Exception
+    {
+        ClassLoader cl1 = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        ClassLoader cl2 = new URLClassLoader(new URL[0], getClass().getClassLoader());
+
+        SchemaTypeLoader stl1 = contextTypeLoaders(cl1, 1)[0];
+        SchemaTypeLoader stl2 = contextTypeLoaders(cl2, 1)[0];
+
+        Assert.assertTrue(stl1 != stl2);
+        Assert.assertSame(stl1, contextTypeLoaders(cl1, 1)[0]);
+
+        SchemaTypeLoader stlNull = contextTypeLoaders(null, 1)[0];
+
+        Assert.assertTrue(stl1 != stlNull);
+        Assert.assertSame(stlNull, contextTypeLoaders(null, 1)[0]);
+        Assert.assertSame(XmlInt.type, stlNull.findType(XmlInt.type.getName()));
+    }
+}
@@ -0,0 +1,100 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package misc.checkin;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import org.apache.xmlbeans.impl.regex.Match;
+import org.apache.xmlbeans.impl.regex.RegularExpression;
+
+public class RegexThreadingTest extends TestCase {
+    public RegexThreadingTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(RegexThreadingTest.class);
+    }
+
+    public static final int THREAD_COUNT = 8;
+    public static final int ITERATION_COUNT = 20000;
+
+    // An IBAN-like code, as used for pattern facets
+    private static final RegularExpression CODE =
+        new RegularExpression("[A-Z]{2}[0-9]{2}[A-Z0-9]{4}[0-9]{7}([A-Z0-9]?){0,16}", "X");
+
+    private static final String[] VALUES = {
+        "GB82WEST12345698765432", "gb82WEST12345698765432", "DE89370400440532013000",
+        "DE8937040044053201300", "NL91ABNA0417164300", "", "FR1420041010050500013M02606" };
+
+    private static final boolean[] EXPECTED = {
+        true, false, true, true, true, false, true };
+
+    public class MatchingThread extends Thread {
+        private Throwable _throwable;
+
+        public Throwable getException() {
+            return _throwable;
+        }
+
+        public void run() {
+            try {
+                for (int i = 0; i < ITERATION_COUNT; i++) {
+                    int v = i % VALUES.length;
+                    Assert.assertEquals(VALUES[v], EXPECTED[v], CODE.matches(VALUES[v]));
+                    Assert.assertEquals(VALUES[v], EXPECTED[v], CODE.matches(VALUES[v].toCharArray()));
+                }
+            }
+            catch (Throwable t) {
+                _throwable = t;
+            }
+        }
+    }
+
+    public void testSequentialMatches() {
+        // A failed match must leave the expression ready for the next one
+        for (int v = 0; v < VALUES.length; v++)
+            Assert.assertEquals(VALUES[v], EXPECTED[v], CODE.matches(VALUES[v]));
+
+        RegularExpression groups = new RegularExpression("(a+)(b+)");
+        Match match = new Match();
+        Assert.assertTrue(groups.matches("xaabbby", match));
+        Assert.assertEquals("aa", match.getCapturedText(1));
+        Assert.assertEquals("bbb", match.getCapturedText(2));
+        Assert.assertTrue(!groups.matches("xyz", match));
+    }
+
+    public void testThreadedMatches() throws Throwable {
+        MatchingThread[] threads = new MatchingThread[THREAD_COUNT];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new MatchingThread();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            Assert.assertNull(threads[i].getException());
+        }
+    }
+}
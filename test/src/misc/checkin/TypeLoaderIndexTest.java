@@ -0,0 +1,211 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package misc.checkin;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.impl.common.QNameHelper;
+import org.apache.xmlbeans.impl.schema.SchemaTypeLoaderImpl;
+
+import javax.xml.namespace.QName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * The components on the class path are found the same whether the
+ * loader looks them up in its index of the class path or probes for them,
+ * and are found when added to the class path after it has been indexed.
+ */
+public class TypeLoaderIndexTest extends TestCase
+{
+    public TypeLoaderIndexTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(TypeLoaderIndexTest.class);
+    }
+
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema";
+
+    private SchemaTypeLoader newTypeLoader()
+    {
+        return newTypeLoader(new URL[0]);
+    }
+
+    private SchemaTypeLoader newTypeLoader(URL[] urls)
+    {
+        return XmlBeans.typeLoaderForClassLoader(
+            new URLClassLoader(urls, getClass().getClassLoader()));
+    }
+
+    private static String namespaceResource(String namespace)
+    {
+        return "schema" + SchemaTypeLoaderImpl.METADATA_PACKAGE_LOAD + "/namespace/" +
+            QNameHelper.hexsafedir(new QName(namespace, "xmlns")) + ".xsb";
+    }
+
+    /** the resource telling the schema for schemas defines its namespace */
+    private byte[] namespaceEntry() throws Exception
+    {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(namespaceResource(XSD));
+        Assert.assertNotNull(in);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        for ( int n ; (n = in.read(buf)) > 0 ; )
+            out.write(buf, 0, n);
+        in.close();
+
+        return out.toByteArray();
+    }
+
+    private static void writeJar(File jar, String name, byte[] bytes) throws Exception
+    {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        out.putNextEntry(new ZipEntry(name == null ? "empty" : name));
+        if (bytes != null)
+            out.write(bytes);
+        out.close();
+    }
+
+    private static File tempDir() throws Exception
+    {
+        File dir = File.createTempFile("typeloaderindex", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    private static void delete(File f)
+    {
+        File[] files = f.listFiles();
+        for (int i = 0; files != null && i < files.length; i++)
+            delete(files[i]);
+        f.delete();
+    }
+
+    private static void checkLookups(SchemaTypeLoader stl)
+    {
+        // the schema for schemas is on the class path of xmlbeans
+        Assert.assertNotNull(stl.findElement(new QName(XSD, "schema")));
+        Assert.assertNotNull(stl.findDocumentType(new QName(XSD, "complexType")));
+        Assert.assertNotNull(stl.findType(new QName(XSD, "openAttrs")));
+        Assert.assertNotNull(stl.typeForClassname(
+            "org.apache.xmlbeans.impl.xb.xsdschema.SchemaDocument"));
+        Assert.assertTrue(stl.isNamespaceDefined(XSD));
+
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertNull(stl.findElement(new QName(XSD, "none" + i)));
+            Assert.assertNull(stl.findType(new QName("urn:none", "none" + i)));
+        }
+
+        Assert.assertNull(stl.typeForClassname("none.NoneDocument"));
+        Assert.assertTrue(!stl.isNamespaceDefined("urn:none"));
+    }
+
+    public void testIndexed() throws Exception
+    {
+        SchemaTypeLoader stl = newTypeLoader();
+        checkLookups(stl);
+        Assert.assertTrue(((SchemaTypeLoaderImpl) stl).isClassLoaderIndexed());
+    }
+
+    public void testProbed() throws Exception
+    {
+        System.setProperty("xmlbean.typeloaderindex", "false");
+
+        try
+        {
+            SchemaTypeLoader stl = newTypeLoader();
+            checkLookups(stl);
+            Assert.assertTrue(!((SchemaTypeLoaderImpl) stl).isClassLoaderIndexed());
+        }
+        finally
+        {
+            System.getProperties().remove("xmlbean.typeloaderindex");
+        }
+    }
+
+    public void testAddedToDirectory() throws Exception
+    {
+        File dir = tempDir();
+
+        try
+        {
+            SchemaTypeLoader stl = newTypeLoader(new URL[] { dir.toURI().toURL() });
+
+            Assert.assertTrue(!stl.isNamespaceDefined("urn:added"));
+            Assert.assertTrue(((SchemaTypeLoaderImpl) stl).isClassLoaderIndexed());
+
+            File f = new File(dir, namespaceResource("urn:added"));
+            f.getParentFile().mkdirs();
+            OutputStream out = new FileOutputStream(f);
+            out.write(namespaceEntry());
+            out.close();
+
+            Assert.assertTrue(stl.isNamespaceDefined("urn:added"));
+        }
+        finally
+        {
+            delete(dir);
+        }
+    }
+
+    public void testJarReplaced() throws Exception
+    {
+        File dir = tempDir();
+
+        try
+        {
+            File jar = new File(dir, "added.jar");
+            writeJar(jar, null, null);
+
+            SchemaTypeLoader stl = newTypeLoader(new URL[] { jar.toURI().toURL() });
+
+            Assert.assertTrue(!stl.isNamespaceDefined("urn:added"));
+            Assert.assertTrue(((SchemaTypeLoaderImpl) stl).isClassLoaderIndexed());
+
+            // the jars are looked at again at most once a second
+            long modified = jar.lastModified();
+            writeJar(jar, namespaceResource("urn:added"), namespaceEntry());
+            jar.setLastModified(modified + 10000);
+            Thread.sleep(1100);
+
+            Assert.assertTrue(stl.isNamespaceDefined("urn:added"));
+        }
+        finally
+        {
+            delete(dir);
+        }
+    }
+}
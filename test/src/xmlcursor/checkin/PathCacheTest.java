@@ -0,0 +1,158 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlcursor.checkin;
+
+import junit.framework.*;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.store.Path;
+
+/**
+ * checkin tests for the cache of compiled paths shared by
+ * XmlCursor.selectPath and XmlObject.selectPath
+ *
+ */
+public class PathCacheTest extends TestCase
+{
+    public PathCacheTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(PathCacheTest.class);
+    }
+
+    private static final String XML =
+        "<root><a i='0'/><b i='1'/><a i='2'/></root>";
+
+    public void setUp()
+    {
+        Path.clearCache();
+    }
+
+    private static int count(XmlCursor c, String path, XmlOptions options)
+    {
+        c.selectPath(path, options);
+        int n = c.getSelectionCount();
+        c.clearSelections();
+        return n;
+    }
+
+    public void testHitsAndMisses() throws Exception
+    {
+        XmlObject doc = XmlObject.Factory.parse(XML);
+        XmlCursor c = doc.newCursor();
+
+        assertEquals(2, count(c, "$this//a", null));
+        assertEquals(1, Path.getCacheMisses());
+        assertEquals(0, Path.getCacheHits());
+
+        assertEquals(2, count(c, "$this//a", null));
+        assertEquals(2, doc.selectPath("$this//a").length);
+        assertEquals(1, Path.getCacheMisses());
+        assertEquals(2, Path.getCacheHits());
+        assertEquals(1, Path.getCacheSize());
+
+        c.dispose();
+    }
+
+    public void testCurrentNodeVariable() throws Exception
+    {
+        XmlCursor c = XmlObject.Factory.parse(XML).newCursor();
+
+        XmlOptions options = new XmlOptions();
+        options.put(XmlOptions.XQUERY_CURRENT_NODE_VAR, "cur");
+
+        // the same expression, compiled for each variable
+        assertEquals(1, count(c, "$this//b", null));
+        assertEquals(1, count(c, "$cur//b", options));
+        assertEquals(2, Path.getCacheSize());
+
+        try
+        {
+            c.selectPath("$this//b", options);
+            fail("path compiled for another current node variable");
+        }
+        catch (RuntimeException e)
+        {
+        }
+
+        c.dispose();
+    }
+
+    public void testBounded() throws Exception
+    {
+        XmlCursor c = XmlObject.Factory.parse(XML).newCursor();
+
+        for (int i = 0; i < 2000; i++)
+            assertEquals(0, count(c, "$this//e" + i, null));
+
+        assertTrue(Path.getCacheSize() < 2000);
+        assertEquals(2000, Path.getCacheMisses());
+
+        // recently used paths stay
+        for (int i = 1990; i < 2000; i++)
+            count(c, "$this//e" + i, null);
+
+        assertEquals(2000, Path.getCacheMisses());
+
+        c.dispose();
+    }
+
+    public void testConcurrentLookups() throws Exception
+    {
+        final XmlObject doc = XmlObject.Factory.parse(XML);
+        final Throwable[] failure = new Throwable[1];
+
+        Thread[] threads = new Thread[8];
+
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < 500; i++)
+                        {
+                            XmlObject[] found = doc.selectPath(i % 20 == 0 ? "$this//a" : "$this//b");
+                            assertEquals(i % 20 == 0 ? 2 : 1, found.length);
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (int t = 0; t < threads.length; t++)
+            threads[t].join();
+
+        if (failure[0] != null)
+            throw new RuntimeException(failure[0]);
+
+        assertEquals(2, Path.getCacheSize());
+        assertEquals(4000, Path.getCacheHits() + Path.getCacheMisses());
+    }
+}
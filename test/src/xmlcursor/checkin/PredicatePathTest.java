@@ -0,0 +1,219 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlcursor.checkin;
+
+import junit.framework.*;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.common.XPath;
+import org.apache.xmlbeans.impl.store.Path;
+
+/**
+ * checkin tests for paths with predicates, run by the builtin path engine
+ * without a delegate, and compared with the delegate where XPath 1.0 and
+ * 2.0 read a predicate differently
+ *
+ */
+public class PredicatePathTest extends TestCase
+{
+    public PredicatePathTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(PredicatePathTest.class);
+    }
+
+    private static final String XML =
+        "<r xmlns:p='urn:p'>" +
+        "<item sku='A' n='1'><price>10</price><q>2</q></item>" +
+        "<item sku='B' n='2'><price>5.5</price><sub><item sku='C' n='3'><price>7</price></item></sub></item>" +
+        "<item sku='X' n='10' p:a='pa'><price>30</price><price>20</price></item>" +
+        "<other sku='A'/>" +
+        "<item><price>1</price></item>" +
+        "<g><item sku='D' n='-1'><price> 3 </price></item><item sku='E'/></g>" +
+        "</r>";
+
+    /** prices that are not numbers, and an item with two prices */
+    private static final String MIXED_XML =
+        "<r>" +
+        "<item sku='A' n='1'><price>10</price><q>2</q></item>" +
+        "<item sku='B' n='2'><price>5.5</price><q>x</q></item>" +
+        "<item sku='X' n='10'><price>abc</price><price>20</price></item>" +
+        "<item sku='Y' n='y'><price/></item>" +
+        "</r>";
+
+    private static XmlOptions xbeanOnly()
+    {
+        XmlOptions options = new XmlOptions();
+        options.put(Path._useXbeanForXpath);
+        return options;
+    }
+
+    private static XmlOptions delegateOnly()
+    {
+        XmlOptions options = new XmlOptions();
+        options.put(Path._useDelegateForXpath);
+        return options;
+    }
+
+    private static String select(String path) throws Exception
+    {
+        return select(XML, path, xbeanOnly());
+    }
+
+    /** the sku attribute, or the text, of each selection */
+    private static String select(String xml, String path, XmlOptions options)
+        throws Exception
+    {
+        XmlCursor c = XmlObject.Factory.parse(xml).newCursor();
+        c.selectPath(path, options);
+
+        StringBuffer sb = new StringBuffer();
+        while (c.toNextSelection())
+        {
+            String sku = c.isStart() ? c.getAttributeText(new QName("sku")) : null;
+            sb.append(sku != null ? sku : c.getTextValue().trim()).append(' ');
+        }
+
+        c.dispose();
+        return sb.toString().trim();
+    }
+
+    public void testAttributePredicates() throws Exception
+    {
+        assertEquals("X", select("$this//item[@sku='X']"));
+        assertEquals("B C X D E", select("$this//item[@sku != 'A']"));
+        assertEquals("A", select("$this//item[@*='A']"));
+        assertEquals("1", select("$this//item[not(@sku)]"));
+        assertEquals("A B", select("$this/r/item[@n < 3]"));
+        assertEquals("D", select("$this//item[-1 = @n]"));
+        assertEquals("A B", select("$this//item[(@sku = 'A' or @sku = 'B') and @n <= 2]"));
+        assertEquals("X", select("declare namespace p='urn:p'; $this//item[@p:a = 'pa']"));
+        assertEquals("C", select("$this//item/@sku[. = 'C']"));
+    }
+
+    public void testChildPredicates() throws Exception
+    {
+        assertEquals("A C X", select("$this//item[price > 6]"));
+        assertEquals("X", select("$this//item[price = 20]"));
+        assertEquals("X", select("$this//item[count(price) = 2]"));
+        assertEquals("B", select("$this//item[sub/item/@sku = 'C']"));
+        assertEquals("A", select("$this//item[contains(q, '2')]"));
+        assertEquals("D", select("$this//g/item[starts-with(price, ' 3')]"));
+        assertEquals("D", select("$this//item[price = 3]"));
+    }
+
+    public void testPositions() throws Exception
+    {
+        // positions count among the children of each parent
+        assertEquals("A C D", select("$this//item[1]"));
+        assertEquals("C 1 E", select("$this//item[last()]"));
+        assertEquals("X", select("$this/r/item[3]"));
+        assertEquals("X D", select("$this//item[position() = last() - 1]"));
+        assertEquals("B", select("$this//item[price][2]"));
+        assertEquals("5.5 7", select("$this//item[@sku='B']//price"));
+        assertEquals("3", select("$this//g/item[1]/price"));
+    }
+
+    public void testDocumentOrder() throws Exception
+    {
+        assertEquals("A C", select("$this//item[@sku='C'] | $this/r/item[@sku='A']"));
+        assertEquals("A A", select("$this//*[@sku='A']"));
+    }
+
+    /** the selections, or the failure, of a path */
+    private static String result(String path, XmlOptions options)
+    {
+        try
+        {
+            return select(MIXED_XML, path, options);
+        }
+        catch (Exception e)
+        {
+            return "failed";
+        }
+    }
+
+    public void testSameAsDelegate() throws Exception
+    {
+        String[] paths = {
+            "$this//item[price > q]",
+            "$this//item[@n < @sku]",
+            "$this//item[@n < 3]",
+            "$this//item[price > 6]",
+            "$this//item[price = 20]",
+            "$this//item[price != 5]",
+            "$this//item[q = 2]",
+            "$this//item[@n + 1 > 2]",
+            "$this//item[contains(price, '2')]",
+            "$this//item[starts-with(q, 'x')]",
+            "$this//item[count(price) = 2]",
+            "$this//item[@sku != 'A']",
+        };
+
+        for (int i = 0; i < paths.length; i++)
+        {
+            assertEquals(paths[i],
+                result(paths[i], delegateOnly()), result(paths[i], null));
+        }
+    }
+
+    public void testUnsupported() throws Exception
+    {
+        String[] paths = {
+            "$this//item[text()]",
+            "$this//item[@n > '2']",
+            "$this//item[price > q]",
+            "$this//item[@n < @sku]",
+            "$this//item[price = true()]",
+            "$this//item['a' = 1]",
+            "$this//item[contains(price, 1)]",
+            "$this//item[@n + 'a' = 1]",
+            "$this//item[fn:true()]",
+            "$this//item[.//price]",
+            "$this//item[@sku='A'",
+        };
+
+        for (int i = 0; i < paths.length; i++)
+        {
+            try
+            {
+                XPath.compileXPath(paths[i], "$this", null, true);
+                fail(paths[i]);
+            }
+            catch (XPath.XPathCompileException e)
+            {
+            }
+        }
+
+        // the paths of identity constraints have no predicates
+        try
+        {
+            XPath.compileXPath("item[1]", "$this", null);
+            fail("predicate in a streaming path");
+        }
+        catch (XPath.XPathCompileException e)
+        {
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlcursor.checkin;
+
+import junit.framework.*;
+
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlCursor;
+
+import javax.xml.namespace.QName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import xmlcursor.common.*;
+
+/**
+ * checkin tests for XmlCursor toChild methods on wide elements, whose
+ * children are found through an index
+ *
+ */
+public class ToChildTest extends BasicCursorTestCase
+{
+    public ToChildTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(ToChildTest.class);
+    }
+
+    private static final QName A = new QName("a");
+    private static final QName B = new QName("b");
+    private static final QName C = new QName("c");
+
+    private static XmlObject wideDocument(int count)
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer("<root>");
+        for (int i = 0; i < count; i++)
+            sb.append(i % 3 == 0 ? "<b i='" : "\n  <a i='").append(i).append("'/>");
+        sb.append("<!-- end --></root>");
+        return XmlObject.Factory.parse(sb.toString());
+    }
+
+    /** checks toChild against a walk over the children of the cursor */
+    private static void verifyChildren(XmlCursor parent)
+    {
+        List all = new ArrayList();
+        List as = new ArrayList();
+        List bs = new ArrayList();
+
+        XmlCursor walk = parent.newCursor();
+        for (boolean more = walk.toFirstChild(); more; more = walk.toNextSibling())
+        {
+            String i = walk.getAttributeText(new QName("i"));
+            all.add(i);
+            if (walk.getName().equals(A))
+                as.add(i);
+            else if (walk.getName().equals(B))
+                bs.add(i);
+        }
+        walk.dispose();
+
+        verifyChildren(parent, null, all);
+        verifyChildren(parent, A, as);
+        verifyChildren(parent, B, bs);
+    }
+
+    private static void verifyChildren(XmlCursor parent, QName name, List expected)
+    {
+        XmlCursor c = parent.newCursor();
+
+        // backwards, then forwards, as the old cache walked from the last hit
+        for (int i = expected.size() - 1; i >= 0; i--)
+        {
+            assertTrue(name + " " + i, name == null ? c.toChild(i) : c.toChild(name, i));
+            assertEquals(name + " " + i, expected.get(i), c.getAttributeText(new QName("i")));
+            c.toParent();
+        }
+
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertTrue(name + " " + i, name == null ? c.toChild(i) : c.toChild(name, i));
+            assertEquals(name + " " + i, expected.get(i), c.getAttributeText(new QName("i")));
+            c.toParent();
+        }
+
+        assertTrue(!(name == null ? c.toChild(expected.size()) : c.toChild(name, expected.size())));
+        c.dispose();
+    }
+
+    public void testWideElement() throws Exception
+    {
+        m_xc = wideDocument(1000).newCursor();
+        m_xc.toFirstChild();
+        verifyChildren(m_xc);
+
+        // narrow elements are walked
+        m_xc = wideDocument(10).newCursor();
+        m_xc.toFirstChild();
+        verifyChildren(m_xc);
+        assertTrue(!m_xc.toChild(C, 0));
+    }
+
+    public void testTwoWideElements() throws Exception
+    {
+        XmlObject doc = XmlObject.Factory.parse("<root><x/><y/></root>");
+        XmlCursor first = doc.newCursor();
+        first.toFirstChild();
+        first.toFirstChild();
+        XmlCursor second = first.newCursor();
+        second.toNextSibling();
+
+        XmlCursor c = first.newCursor();
+        c.toEndToken();
+        for (int i = 0; i < 200; i++)
+        {
+            c.insertElementWithText(A, "");
+            c.toPrevSibling();
+            c.setAttributeText(new QName("i"), String.valueOf(i));
+            c.toEndToken();
+            c.toNextToken();
+        }
+        c.dispose();
+
+        XmlCursor into = second.newCursor();
+        into.toEndToken();
+        first.copyXmlContents(into);
+        into.dispose();
+        m_xc = first;
+
+        for (int i = 0; i < 200; i += 7)
+        {
+            assertTrue(first.toChild(A, i));
+            assertEquals(String.valueOf(i), first.getAttributeText(new QName("i")));
+            first.toParent();
+            assertTrue(second.toChild(A, 199 - i));
+            assertEquals(String.valueOf(199 - i), second.getAttributeText(new QName("i")));
+            second.toParent();
+        }
+
+        second.dispose();
+    }
+
+    public void testChangesToWideElement() throws Exception
+    {
+        m_xc = wideDocument(300).newCursor();
+        m_xc.toFirstChild();
+        verifyChildren(m_xc);
+
+        XmlCursor c = m_xc.newCursor();
+
+        // insert in the middle
+        c.toChild(A, 100);
+        c.insertElement(A);
+        c.toPrevSibling();
+        c.setAttributeText(new QName("i"), "new");
+        verifyChildren(m_xc);
+
+        // rename
+        c.setName(B);
+        verifyChildren(m_xc);
+
+        // remove
+        c.toParent();
+        c.toChild(B, 0);
+        c.removeXml();
+        verifyChildren(m_xc);
+
+        // append at the end
+        c.toParent();
+        c.toEndToken();
+        c.insertElement(A);
+        c.toPrevSibling();
+        c.setAttributeText(new QName("i"), "last");
+        verifyChildren(m_xc);
+
+        // move children out
+        c.toParent();
+        c.toChild(A, 10);
+        XmlCursor to = XmlObject.Factory.newInstance().newCursor();
+        to.toNextToken();
+        c.moveXml(to);
+        to.dispose();
+        verifyChildren(m_xc);
+
+        c.dispose();
+    }
+}
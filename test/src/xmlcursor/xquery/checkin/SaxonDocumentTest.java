@@ -0,0 +1,151 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlcursor.xquery.checkin;
+
+import junit.framework.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.store.Path;
+import org.apache.xmlbeans.impl.store.Query;
+
+/**
+ * checkin tests for queries and paths run by Saxon over the documents of
+ * the store, which it reads in place rather than from a copy
+ *
+ */
+public class SaxonDocumentTest extends TestCase
+{
+    public SaxonDocumentTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(SaxonDocumentTest.class);
+    }
+
+    private static final String XML =
+        "<r><a x='1'>t1</a><b/><a x='2'><c/></a></r>";
+
+    private static XmlOptions saxon()
+    {
+        XmlOptions options = new XmlOptions();
+        options.put(Path.PATH_DELEGATE_INTERFACE,
+            "org.apache.xmlbeans.impl.xpath.saxon.XBeansXPath");
+        options.put(Query.QUERY_DELEGATE_INTERFACE,
+            "org.apache.xmlbeans.impl.xquery.saxon.XBeansXQuery");
+        return options;
+    }
+
+    public void testContextInDocument() throws Exception
+    {
+        XmlObject doc = XmlObject.Factory.parse(XML);
+        XmlObject a = doc.selectPath("$this//a", saxon())[1];
+
+        // a path from the context keeps its place in the document
+        XmlObject[] res = a.selectPath("../b", saxon());
+        assertEquals(1, res.length);
+        assertEquals("b", res[0].getDomNode().getLocalName());
+
+        res = a.selectPath("ancestor::*", saxon());
+        assertEquals(1, res.length);
+        assertEquals("r", res[0].getDomNode().getLocalName());
+
+        XmlCursor c = a.newCursor();
+        c.selectPath("preceding-sibling::b", saxon());
+        assertEquals(1, c.getSelectionCount());
+        c.dispose();
+    }
+
+    public void testElementContext() throws Exception
+    {
+        XmlObject doc = XmlObject.Factory.parse(XML);
+        XmlObject a = doc.selectPath("$this//a", saxon())[1];
+
+        // a query from an element runs over a document holding the element
+        XmlObject[] res = a.execQuery("$this/a/c", saxon());
+        assertEquals(1, res.length);
+        assertEquals("<c/>", res[0].xmlText());
+
+        assertEquals(0, a.execQuery("$this/../b", saxon()).length);
+
+        XmlCursor c = doc.newCursor();
+        c.toFirstChild();
+        XmlCursor found = c.execQuery("$this/r/a[@x = '2']/c", saxon());
+        assertEquals("<c/>", found.xmlText());
+        found.dispose();
+        c.dispose();
+    }
+
+    public void testResults() throws Exception
+    {
+        XmlObject doc = XmlObject.Factory.parse(XML);
+
+        XmlObject[] res = doc.execQuery(
+            "for $a in $this//a return <n>{string($a/@x)}</n>", saxon());
+        assertEquals(2, res.length);
+        assertEquals("<n>1</n>", res[0].xmlText());
+        assertEquals("<n>2</n>", res[1].xmlText());
+
+        // nodes of the document are copied out of it, not moved
+        res = doc.execQuery("$this//a[2]", saxon());
+        assertEquals("<a x=\"2\"><c/></a>", res[0].xmlText());
+        res[0].selectPath("*")[0].newCursor().removeXml();
+        assertEquals(1, doc.selectPath("$this//c", saxon()).length);
+    }
+
+    public void testVariables() throws Exception
+    {
+        XmlObject doc = XmlObject.Factory.parse(XML);
+        XmlObject b = doc.selectPath("$this//b", saxon())[0];
+
+        Map vars = new HashMap();
+        vars.put("v", b);
+        vars.put("w", XmlObject.Factory.parse("<z><y/></z>"));
+
+        XmlOptions options = saxon();
+        options.setXqueryVariables(vars);
+
+        // $v is a node of the context document
+        XmlObject[] res = doc.execQuery(
+            "declare variable $v external; declare variable $w external; " +
+            "($this//*[. is $v], $w//y)", options);
+        assertEquals(2, res.length);
+        assertEquals("<b/>", res[0].xmlText());
+        assertEquals("<y/>", res[1].xmlText());
+    }
+
+    public void testChangedDocument() throws Exception
+    {
+        XmlObject doc = XmlObject.Factory.parse(XML);
+        assertEquals(2, doc.execQuery("$this//a", saxon()).length);
+
+        XmlCursor c = doc.newCursor();
+        c.toFirstContentToken();
+        c.toEndToken();
+        c.insertElement("a");
+        c.dispose();
+
+        assertEquals(3, doc.execQuery("$this//a", saxon()).length);
+        assertEquals(3, doc.selectPath("$this//a[. = '' or @x]", saxon()).length);
+    }
+}
@@ -0,0 +1,220 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import java.util.Arrays;
+
+import org.apache.xmlbeans.XmlBoolean;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlInt;
+import org.apache.xmlbeans.XmlOptions;
+import xbean.test.xmlobject.primitives.ListsDocument;
+
+/**
+ * The primitive array getters read a run of elements in one pass, and the
+ * array setters replace it in one pass; both must agree with the accessors
+ * which go through the typed values of the elements.
+ */
+public class ArrayAccessorTest extends TestCase
+{
+    public ArrayAccessorTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(ArrayAccessorTest.class); }
+
+    private static ListsDocument.Lists parse(String xml) throws Exception
+    {
+        return ListsDocument.Factory.parse(
+            "<lists xmlns='http://xbean/test/xmlobject/primitives'" +
+            " xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'>" +
+            xml + "</lists>").getLists();
+    }
+
+    private static int[] typedInts(ListsDocument.Lists lists)
+    {
+        XmlInt[] xints = lists.xgetIntArray();
+        int[] values = new int[xints.length];
+        for (int i = 0; i < xints.length; i++)
+            values[i] = xints[i].getIntValue();
+        return values;
+    }
+
+    private static void assertInts(int[] expected, ListsDocument.Lists lists)
+    {
+        String e = toString(expected);
+        Assert.assertEquals(e, toString(lists.getIntArray()));
+        Assert.assertEquals(e, toString(typedInts(lists)));
+        Assert.assertEquals(expected.length, lists.sizeOfIntArray());
+        for (int i = 0; i < expected.length; i++)
+            Assert.assertEquals(expected[i], lists.getIntArray(i));
+    }
+
+    private static String toString(int[] values)
+    {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < values.length; i++)
+            sb.append(values[i]).append(' ');
+        return sb.toString();
+    }
+
+    private static String children(ListsDocument.Lists lists)
+    {
+        StringBuffer sb = new StringBuffer();
+        XmlCursor c = lists.newCursor();
+        for (boolean more = c.toFirstChild(); more; more = c.toNextSibling())
+            sb.append(c.getName().getLocalPart()).append('=').append(c.getTextValue()).append(' ');
+        c.dispose();
+        return sb.toString();
+    }
+
+    public void testGetters() throws Exception
+    {
+        ListsDocument.Lists lists = parse(
+            "<int>1</int><int> -2 </int><int>+3</int>" +
+            "<long>9223372036854775807</long><long>-4</long>" +
+            "<double>0.5</double><double>1e23</double><double>INF</double>" +
+            "<boolean>true</boolean><boolean>0</boolean><boolean> 1 </boolean>" +
+            "<string>a</string>");
+
+        assertInts(new int[] { 1, -2, 3 }, lists);
+
+        long[] longs = lists.getLongArray();
+        Assert.assertEquals(2, longs.length);
+        Assert.assertEquals(Long.MAX_VALUE, longs[0]);
+        Assert.assertEquals(-4L, longs[1]);
+
+        double[] doubles = lists.getDoubleArray();
+        Assert.assertEquals(3, doubles.length);
+        for (int i = 0; i < doubles.length; i++)
+            Assert.assertEquals(lists.xgetDoubleArray(i).getDoubleValue(), doubles[i], 0.0);
+
+        boolean[] booleans = lists.getBooleanArray();
+        Assert.assertTrue(Arrays.equals(new boolean[] { true, false, true }, booleans));
+
+        Assert.assertEquals(0, parse("").getIntArray().length);
+    }
+
+    public void testSetters() throws Exception
+    {
+        ListsDocument.Lists lists = parse(
+            "<int>1</int><int>2</int><long>3</long><string>s</string>");
+
+        // grow, with the new elements before the elements which follow
+        lists.setIntArray(new int[] { 5, 6, 7, 8 });
+        assertInts(new int[] { 5, 6, 7, 8 }, lists);
+
+        lists.setDoubleArray(new double[] { 0.25, Double.NaN, Double.NEGATIVE_INFINITY });
+        lists.setBooleanArray(new boolean[] { false, true });
+        Assert.assertEquals("int=5 int=6 int=7 int=8 long=3 double=0.25 double=NaN " +
+            "double=-INF boolean=false boolean=true string=s ", children(lists));
+
+        // shrink
+        lists.setIntArray(new int[] { 9 });
+        assertInts(new int[] { 9 }, lists);
+
+        lists.setIntArray(new int[0]);
+        assertInts(new int[0], lists);
+        Assert.assertEquals(1, lists.sizeOfLongArray());
+
+        lists.setLongArray(null);
+        Assert.assertEquals(0, lists.sizeOfLongArray());
+
+        lists.setStringArray(new String[] { "x", "y" });
+        Assert.assertTrue(Arrays.equals(new String[] { "x", "y" }, lists.getStringArray()));
+    }
+
+    public void testHeldValues() throws Exception
+    {
+        ListsDocument.Lists lists = parse(
+            "<int>1</int><int xsi:nil='true'/><int>3</int><int>4</int><boolean>true</boolean>");
+
+        XmlInt first = lists.xgetIntArray(0);
+        XmlInt nil = lists.xgetIntArray(1);
+        XmlInt last = lists.xgetIntArray(3);
+        XmlBoolean flag = lists.xgetBooleanArray(0);
+
+        Assert.assertTrue(lists.isNilIntArray(1));
+
+        lists.setIntArray(new int[] { 10, 20, 30 });
+        lists.setBooleanArray(new boolean[] { false });
+
+        Assert.assertTrue(first == lists.xgetIntArray(0));
+        Assert.assertEquals(10, first.getIntValue());
+        Assert.assertTrue(nil == lists.xgetIntArray(1));
+        Assert.assertTrue(!lists.isNilIntArray(1));
+        Assert.assertTrue(!nil.isNil());
+        Assert.assertEquals(20, nil.getIntValue());
+        Assert.assertTrue(!flag.getBooleanValue());
+        assertInts(new int[] { 10, 20, 30 }, lists);
+
+        try
+        {
+            last.getIntValue();
+            Assert.fail("value of a removed element");
+        }
+        catch (RuntimeException e)
+        {
+        }
+    }
+
+    public void testNullStrings() throws Exception
+    {
+        ListsDocument.Lists lists = parse("<string>a</string>");
+
+        // a null is set through the typed value, which sets the element nil
+        lists.setStringArray(new String[] { "b", null });
+        Assert.assertEquals(2, lists.sizeOfStringArray());
+        Assert.assertEquals("b", lists.getStringArray(0));
+        Assert.assertTrue(lists.xgetStringArray(1).isNil());
+    }
+
+    public void testValidateOnSet() throws Exception
+    {
+        ListsDocument doc = ListsDocument.Factory.parse(
+            "<lists xmlns='http://xbean/test/xmlobject/primitives'><int>1</int></lists>",
+            new XmlOptions().setValidateOnSet());
+
+        ListsDocument.Lists lists = doc.getLists();
+        lists.setIntArray(new int[] { 2, 3 });
+        assertInts(new int[] { 2, 3 }, lists);
+    }
+
+    public void testWideArrays() throws Exception
+    {
+        int count = 100000;
+
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++)
+            values[i] = i * 3 - count;
+
+        ListsDocument.Lists lists = ListsDocument.Factory.newInstance().addNewLists();
+        lists.setIntArray(values);
+        Assert.assertTrue(Arrays.equals(values, lists.getIntArray()));
+
+        // replace, keeping half
+        int[] half = new int[count / 2];
+        for (int i = 0; i < half.length; i++)
+            half[i] = -i;
+
+        lists.setIntArray(half);
+        Assert.assertTrue(Arrays.equals(half, lists.getIntArray()));
+        Assert.assertEquals(half.length, lists.sizeOfIntArray());
+        Assert.assertEquals(-7, lists.getIntArray(7));
+    }
+}
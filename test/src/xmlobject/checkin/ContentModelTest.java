@@ -0,0 +1,211 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.SchemaTypeElementSequencer;
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlObject;
+
+import javax.xml.namespace.QName;
+
+/**
+ * The steps through a content model are kept from an instance to the next;
+ * the instances must validate the same the first time and the next ones,
+ * however many the steps, and from several threads.
+ */
+public class ContentModelTest extends TestCase
+{
+    public ContentModelTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(ContentModelTest.class); }
+
+    private static final String NS = "urn:cm";
+
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'" +
+        "    targetNamespace='urn:cm' elementFormDefault='qualified'>" +
+        "  <xs:element name='seq'>" +
+        "    <xs:complexType><xs:sequence>" +
+        "      <xs:element name='a'/>" +
+        "      <xs:choice minOccurs='0' maxOccurs='unbounded'>" +
+        "        <xs:element name='b'/><xs:element name='c'/>" +
+        "      </xs:choice>" +
+        "      <xs:element name='d' minOccurs='0'/>" +
+        "    </xs:sequence></xs:complexType>" +
+        "  </xs:element>" +
+        "  <xs:element name='all'>" +
+        "    <xs:complexType><xs:all>" +
+        "      <xs:element name='a'/><xs:element name='b' minOccurs='0'/><xs:element name='c'/>" +
+        "    </xs:all></xs:complexType>" +
+        "  </xs:element>" +
+        "  <xs:element name='many'>" +
+        "    <xs:complexType><xs:sequence>" +
+        "      <xs:element name='a' maxOccurs='3000'/><xs:element name='b'/>" +
+        "    </xs:sequence></xs:complexType>" +
+        "  </xs:element>" +
+        "  <xs:element name='any'>" +
+        "    <xs:complexType><xs:sequence>" +
+        "      <xs:any namespace='##other' processContents='skip' minOccurs='0' maxOccurs='unbounded'/>" +
+        "      <xs:element name='end'/>" +
+        "    </xs:sequence></xs:complexType>" +
+        "  </xs:element>" +
+        "</xs:schema>";
+
+    private static SchemaTypeLoader load() throws Exception
+    {
+        return XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+    }
+
+    private static String doc(String root, String children)
+    {
+        return "<" + root + " xmlns='" + NS + "'>" + children + "</" + root + ">";
+    }
+
+    private static String repeat(String s, int n)
+    {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < n; i++)
+            sb.append(s);
+        return sb.toString();
+    }
+
+    private static void assertValid(SchemaTypeLoader stl, String xml, boolean valid)
+        throws Exception
+    {
+        Assert.assertEquals(xml, valid, stl.parse(xml, null, null).validate());
+    }
+
+    private static final Object[] CASES = {
+        doc("seq", "<a/>"), Boolean.TRUE,
+        doc("seq", "<a/><b/><c/><b/><d/>"), Boolean.TRUE,
+        doc("seq", "<a/><c/><c/><c/><c/><c/>"), Boolean.TRUE,
+        doc("seq", "<b/>"), Boolean.FALSE,
+        doc("seq", "<a/><d/><b/>"), Boolean.FALSE,
+        doc("seq", "<a/><b/><x/><c/>"), Boolean.FALSE,
+        doc("seq", ""), Boolean.FALSE,
+        doc("all", "<c/><a/>"), Boolean.TRUE,
+        doc("all", "<b/><c/><a/>"), Boolean.TRUE,
+        doc("all", "<a/><a/><c/>"), Boolean.FALSE,
+        doc("all", "<a/><b/>"), Boolean.FALSE,
+        doc("any", "<end/>"), Boolean.TRUE,
+        doc("any", "<x xmlns='urn:x'/><end/>"), Boolean.TRUE,
+        doc("any", "<end/><end/>"), Boolean.FALSE,
+        doc("any", "<x xmlns='urn:x'/>"), Boolean.FALSE,
+    };
+
+    public void testValidation() throws Exception
+    {
+        SchemaTypeLoader stl = load();
+
+        // the first pass finds the steps, the next ones take them
+        for (int pass = 0; pass < 3; pass++)
+        {
+            for (int i = 0; i < CASES.length; i += 2)
+                assertValid(stl, (String) CASES[i], ((Boolean) CASES[i + 1]).booleanValue());
+        }
+    }
+
+    public void testManySteps() throws Exception
+    {
+        SchemaTypeLoader stl = load();
+
+        // more counts of a than the steps kept
+        for (int pass = 0; pass < 2; pass++)
+        {
+            assertValid(stl, doc("many", repeat("<a/>", 2500) + "<b/>"), true);
+            assertValid(stl, doc("many", repeat("<a/>", 3000) + "<b/>"), true);
+            assertValid(stl, doc("many", repeat("<a/>", 3001) + "<b/>"), false);
+            assertValid(stl, doc("many", "<a/><b/>"), true);
+        }
+
+        // and more names in the wildcard than the steps kept
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < 200; i++)
+            sb.append("<x" + i + " xmlns='urn:x'/>");
+
+        for (int pass = 0; pass < 2; pass++)
+        {
+            assertValid(stl, doc("any", sb + "<end/>"), true);
+            assertValid(stl, doc("any", sb.toString()), false);
+        }
+    }
+
+    public void testSequencer() throws Exception
+    {
+        SchemaTypeLoader stl = load();
+        SchemaType type = stl.findElement(new QName(NS, "seq")).getType();
+
+        for (int pass = 0; pass < 2; pass++)
+        {
+            SchemaTypeElementSequencer seq = type.getElementSequencer();
+
+            Assert.assertTrue(!seq.peek(new QName(NS, "b")));
+            Assert.assertTrue(seq.peek(new QName(NS, "a")));
+            Assert.assertTrue(seq.next(new QName(NS, "a")));
+            Assert.assertTrue(seq.peek(new QName(NS, "d")));
+            Assert.assertTrue(seq.next(new QName(NS, "b")));
+            Assert.assertTrue(seq.next(new QName(NS, "c")));
+            Assert.assertTrue(!seq.next(new QName(NS, "a")));
+            Assert.assertTrue(seq.next(new QName(NS, "d")));
+            Assert.assertTrue(!seq.peek(new QName(NS, "b")));
+            Assert.assertTrue(seq.next(null));
+        }
+    }
+
+    public void testThreads() throws Exception
+    {
+        final SchemaTypeLoader stl = load();
+        final Throwable[] failure = new Throwable[1];
+
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int pass = 0; pass < 20; pass++)
+                        {
+                            for (int i = 0; i < CASES.length; i += 2)
+                                assertValid(stl, (String) CASES[i],
+                                    ((Boolean) CASES[i + 1]).booleanValue());
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (int t = 0; t < threads.length; t++)
+            threads[t].join();
+
+        if (failure[0] != null)
+            throw new RuntimeException(failure[0]);
+    }
+}
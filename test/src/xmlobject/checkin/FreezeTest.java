@@ -0,0 +1,199 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+
+public class FreezeTest extends TestCase
+{
+    public FreezeTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(FreezeTest.class); }
+
+    private static final String PO =
+        "<purchase-order xmlns='http://openuri.org/easypo'>" +
+        "<customer><name>David Bau</name><address>Gladwyne, PA</address></customer>" +
+        "<line-item><description>Burnham's Celestial Handbook, Vol 1</description>" +
+        "<per-unit-ounces>5</per-unit-ounces><price>21.79</price><quantity>2</quantity></line-item>" +
+        "<line-item><description>Burnham's Celestial Handbook, Vol 2</description>" +
+        "<per-unit-ounces>5</per-unit-ounces><price>19.89</price><quantity>x</quantity></line-item>" +
+        "</purchase-order>";
+
+    private static void assertReadOnly(PurchaseOrder order)
+    {
+        assertReadOnly(order, "David Bau");
+    }
+
+    private static void assertReadOnly(PurchaseOrder order, String name)
+    {
+        try
+        {
+            order.getCustomer().setName("Eric Vasilik");
+            Assert.fail("setter on a frozen document");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        try
+        {
+            order.removeLineItem(0);
+            Assert.fail("element removed from a frozen document");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        Assert.assertEquals(name, order.getCustomer().getName());
+        Assert.assertEquals(2, order.sizeOfLineItemArray());
+    }
+
+    public void testLoadReadOnly() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc =
+            XmlPurchaseOrderDocumentBean.Factory.parse(PO, new XmlOptions().setLoadReadOnly());
+
+        Assert.assertEquals(new BigDecimal("21.79"), doc.getPurchaseOrder().getLineItemArray(0).getPrice());
+        assertReadOnly(doc.getPurchaseOrder());
+    }
+
+    public void testFreeze() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.parse(PO);
+        PurchaseOrder order = doc.getPurchaseOrder();
+
+        // freezing any object freezes the whole document
+        XmlBeans.freeze(order.getCustomer());
+        XmlBeans.freeze(doc);
+
+        assertReadOnly(order);
+    }
+
+    public void testInvalidValueStaysAnError() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc =
+            XmlPurchaseOrderDocumentBean.Factory.parse(PO, new XmlOptions().setLoadReadOnly());
+
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                doc.getPurchaseOrder().getLineItemArray(1).getQuantity();
+                Assert.fail("invalid integer read from a frozen document");
+            }
+            catch (RuntimeException e)
+            {
+                Assert.assertTrue(!(e instanceof IllegalStateException));
+            }
+        }
+    }
+
+    public void testCopyOfFrozenIsWritable() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc =
+            XmlPurchaseOrderDocumentBean.Factory.parse(PO, new XmlOptions().setLoadReadOnly());
+
+        XmlPurchaseOrderDocumentBean copy = (XmlPurchaseOrderDocumentBean) doc.copy();
+        copy.getPurchaseOrder().getLineItemArray(0).setQuantity(new BigInteger("3"));
+
+        Assert.assertEquals(new BigInteger("3"), copy.getPurchaseOrder().getLineItemArray(0).getQuantity());
+        Assert.assertEquals(new BigInteger("2"), doc.getPurchaseOrder().getLineItemArray(0).getQuantity());
+
+        // a frozen element can also be the source of a set into a writable document
+        copy.getPurchaseOrder().setCustomer(doc.getPurchaseOrder().getCustomer());
+        Assert.assertEquals("David Bau", copy.getPurchaseOrder().getCustomer().getName());
+    }
+
+    public void testSameLocaleAsFrozenRejected() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc =
+            XmlPurchaseOrderDocumentBean.Factory.parse(PO, new XmlOptions().setLoadReadOnly());
+
+        XmlOptions options = new XmlOptions();
+        options.put("USE_SAME_LOCALE", doc);
+
+        try
+        {
+            XmlObject.Factory.parse("<a/>", options);
+            Assert.fail("document loaded into a frozen locale");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    public void testSharedLocaleNotFrozen() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.parse(PO);
+        XmlPurchaseOrderDocumentBean copy = (XmlPurchaseOrderDocumentBean) doc.copy();
+
+        XmlOptions options = new XmlOptions();
+        options.put("USE_SAME_LOCALE", doc);
+        XmlObject other = XmlObject.Factory.parse("<a/>", options);
+
+        Assert.assertSame(doc.monitor(), copy.monitor());
+        Assert.assertSame(doc.monitor(), other.monitor());
+
+        // freezing one of the documents would freeze the others with it
+        XmlObject[] shared = { doc, copy, other };
+        for (int i = 0; i < shared.length; i++)
+        {
+            try
+            {
+                XmlBeans.freeze(shared[i]);
+                Assert.fail("document sharing its locale frozen");
+            }
+            catch (IllegalStateException e)
+            {
+            }
+        }
+
+        doc.getPurchaseOrder().getCustomer().setName("Eric Vasilik");
+        copy.getPurchaseOrder().removeLineItem(1);
+        other.newCursor().toFirstChild();
+
+        Assert.assertEquals("Eric Vasilik", doc.getPurchaseOrder().getCustomer().getName());
+        Assert.assertEquals("David Bau", copy.getPurchaseOrder().getCustomer().getName());
+        Assert.assertEquals(1, copy.getPurchaseOrder().sizeOfLineItemArray());
+
+        // a copy in a domain of its own can be
+        XmlPurchaseOrderDocumentBean own = (XmlPurchaseOrderDocumentBean)
+            doc.copy(new XmlOptions().setCopyUseNewSynchronizationDomain(true));
+        XmlBeans.freeze(own);
+        assertReadOnly(own.getPurchaseOrder(), "Eric Vasilik");
+
+        try
+        {
+            options.setLoadReadOnly();
+            XmlObject.Factory.parse("<a/>", options);
+            Assert.fail("read-only document loaded into a shared locale");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+}
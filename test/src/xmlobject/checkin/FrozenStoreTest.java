@@ -0,0 +1,290 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import java.math.BigDecimal;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.w3c.dom.Node;
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+import com.easypo.XmlLineItemBean;
+
+/**
+ * The typed users and DOM text nodes of a frozen document are created on
+ * first use, and its text is compacted, without changing what is read
+ * from it.
+ */
+public class FrozenStoreTest extends TestCase
+{
+    public FrozenStoreTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(FrozenStoreTest.class); }
+
+    private static final String PO =
+        "<purchase-order xmlns='http://openuri.org/easypo'>" +
+        "<customer><name>David Bau</name><address>Gladwyne, PA</address></customer>" +
+        "<line-item><description>Burnham's Celestial Handbook, Vol 1</description>" +
+        "<per-unit-ounces>5</per-unit-ounces><price>21.79</price><quantity>2</quantity></line-item>" +
+        "<line-item><description>Burnham's Celestial Handbook, Vol 2</description>" +
+        "<per-unit-ounces>5</per-unit-ounces><price>19.89</price><quantity>2</quantity></line-item>" +
+        "</purchase-order>";
+
+    private static final String MIXED =
+        "<!-- before --><a x='1' y='a &amp; b'>text<b>one</b> tail &lt;&gt;" +
+        "<?pi data?><c><![CDATA[<raw>]]></c>  <d/><!-- in -->end</a>";
+
+    public void testUsersCreatedOnFirstUse() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc =
+            XmlPurchaseOrderDocumentBean.Factory.parse(PO, new XmlOptions().setLoadReadOnly());
+
+        XmlCursor c = doc.newCursor();
+        Assert.assertTrue(c.toFirstChild());
+        Assert.assertTrue(c.toChild(new QName("http://openuri.org/easypo", "line-item")));
+
+        // the user made for a node is the one found from then on, of its
+        // schema type, with its value computed
+        XmlObject o = c.getObject();
+        Assert.assertTrue(o instanceof XmlLineItemBean);
+        Assert.assertSame(o, c.getObject());
+        Assert.assertSame(o, doc.getPurchaseOrder().getLineItemArray(0));
+        Assert.assertEquals(new BigDecimal("21.79"), ((XmlLineItemBean) o).getPrice());
+
+        c.dispose();
+
+        try
+        {
+            ((XmlLineItemBean) o).setPrice(new BigDecimal("1"));
+            Assert.fail("setter of a user made after the freeze");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+    }
+
+    public void testUsersCreatedByManyThreads() throws Exception
+    {
+        final XmlPurchaseOrderDocumentBean doc =
+            XmlPurchaseOrderDocumentBean.Factory.parse(PO, new XmlOptions().setLoadReadOnly());
+
+        final Object[][] seen = new Object[8][];
+        final Throwable[] failed = new Throwable[1];
+        Thread[] threads = new Thread[seen.length];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int n = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        PurchaseOrder order = doc.getPurchaseOrder();
+                        XmlLineItemBean item = order.getLineItemArray(n % 2);
+                        seen[n] = new Object[] { order, item, item.getPrice(), item.getDescription() };
+                    }
+                    catch (Throwable e)
+                    {
+                        failed[0] = e;
+                    }
+                }
+            };
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].start();
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        if (failed[0] != null)
+            throw new RuntimeException(failed[0].toString());
+
+        // every thread finds the same users, with the same values
+        for (int i = 0; i < seen.length; i++)
+        {
+            Assert.assertSame(seen[0][0], seen[i][0]);
+            Assert.assertSame(seen[i % 2][1], seen[i][1]);
+            Assert.assertEquals(seen[i % 2][2], seen[i][2]);
+            Assert.assertEquals(seen[i % 2][3], seen[i][3]);
+        }
+
+        Assert.assertEquals(new BigDecimal("19.89"), seen[1][2]);
+        Assert.assertEquals("Burnham's Celestial Handbook, Vol 1", seen[0][3]);
+    }
+
+    private static void assertSameTokens(XmlObject expected, XmlObject actual)
+    {
+        XmlCursor e = expected.newCursor();
+        XmlCursor a = actual.newCursor();
+
+        for (;;)
+        {
+            XmlCursor.TokenType type = e.currentTokenType();
+            Assert.assertEquals(type, a.currentTokenType());
+
+            if (type.isText() || type.isAttr() || type.isComment() || type.isProcinst())
+                Assert.assertEquals(e.getTextValue(), a.getTextValue());
+            if (type.isText())
+                Assert.assertEquals(e.getChars(), a.getChars());
+            if (type.isStart() || type.isAttr())
+                Assert.assertEquals(e.getName(), a.getName());
+
+            if (e.toNextToken().isNone())
+                break;
+            a.toNextToken();
+        }
+
+        Assert.assertTrue(a.toNextToken().isNone());
+
+        e.dispose();
+        a.dispose();
+    }
+
+    public void testCompactedText() throws Exception
+    {
+        XmlObject writable = XmlObject.Factory.parse(MIXED);
+        XmlObject frozen = XmlObject.Factory.parse(MIXED);
+
+        // text loaded later on the same thread, and edits to a document
+        // loaded before, do not show in the frozen one
+        XmlBeans.freeze(frozen);
+
+        XmlObject later = XmlObject.Factory.parse(MIXED.replaceAll("text", "Text"));
+        XmlCursor c = writable.newCursor();
+        c.toFirstChild();
+        c.toFirstContentToken();
+        c.insertChars("inserted");
+        c.dispose();
+
+        Assert.assertEquals(XmlObject.Factory.parse(MIXED).xmlText(), frozen.xmlText());
+        assertSameTokens(XmlObject.Factory.parse(MIXED), frozen);
+        Assert.assertTrue(later.xmlText().indexOf("Text") > 0);
+
+        XmlCursor f = frozen.newCursor();
+        f.toFirstChild();
+        Assert.assertEquals("a & b", f.getAttributeText(new QName("y")));
+        Assert.assertEquals("textone tail <><raw>  end", f.getTextValue());
+        Assert.assertTrue(f.toChild(new QName("c")));
+        Assert.assertEquals("<raw>", f.getTextValue());
+        Assert.assertTrue(f.toNextSibling());
+        Assert.assertEquals("d", f.getName().getLocalPart());
+        Assert.assertTrue(f.toPrevSibling() && f.toPrevSibling());
+        Assert.assertEquals("one", f.getTextValue());
+        f.dispose();
+
+        Node a = frozen.getDomNode().getLastChild();
+        Assert.assertEquals("text", a.getFirstChild().getNodeValue());
+        Assert.assertEquals("end", a.getLastChild().getNodeValue());
+        Assert.assertEquals(" before ", frozen.getDomNode().getFirstChild().getNodeValue());
+    }
+
+    public void testCompactedTextOfTypedDocument() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.parse(PO);
+
+        // values held by the users before the freeze go back into the text
+        doc.getPurchaseOrder().getLineItemArray(1).setPrice(new BigDecimal("20.5"));
+        String text = doc.xmlText();
+        XmlBeans.freeze(doc);
+
+        Assert.assertEquals(text, doc.xmlText());
+        Assert.assertEquals(new BigDecimal("20.5"), doc.getPurchaseOrder().getLineItemArray(1).getPrice());
+        Assert.assertEquals("Gladwyne, PA", doc.getPurchaseOrder().getCustomer().getAddress());
+
+        XmlPurchaseOrderDocumentBean copy = (XmlPurchaseOrderDocumentBean) doc.copy();
+        Assert.assertEquals(text, copy.xmlText());
+        assertSameTokens(copy, doc);
+    }
+
+    public void testDomTextOfFrozenDocument() throws Exception
+    {
+        final XmlObject frozen = XmlObject.Factory.parse(MIXED, new XmlOptions().setLoadReadOnly());
+
+        final Node[][] seen = new Node[8][];
+        final Throwable[] failed = new Throwable[1];
+        Thread[] threads = new Thread[seen.length];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int n = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Node a = frozen.getDomNode().getLastChild();
+                        seen[n] = new Node[] { a.getFirstChild(), a.getLastChild(),
+                            a.getFirstChild().getNextSibling().getNextSibling() };
+                    }
+                    catch (Throwable e)
+                    {
+                        failed[0] = e;
+                    }
+                }
+            };
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].start();
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        if (failed[0] != null)
+            throw new RuntimeException(failed[0].toString());
+
+        // the text nodes made for a frozen document are made once, and
+        // every thread finds the same ones
+        for (int i = 0; i < seen.length; i++)
+        {
+            for (int j = 0; j < seen[i].length; j++)
+                Assert.assertSame(seen[0][j], seen[i][j]);
+        }
+
+        Assert.assertEquals("text", seen[0][0].getNodeValue());
+        Assert.assertEquals("end", seen[0][1].getNodeValue());
+        Assert.assertEquals(" tail <>", seen[0][2].getNodeValue());
+    }
+
+    public void testTrimTextBuffer() throws Exception
+    {
+        XmlObject trimmed = XmlObject.Factory.parse(MIXED, new XmlOptions().setLoadTrimTextBuffer());
+
+        Assert.assertEquals(XmlObject.Factory.parse(MIXED).xmlText(), trimmed.xmlText());
+        assertSameTokens(XmlObject.Factory.parse(MIXED), trimmed);
+
+        // and stays writable
+        XmlCursor c = trimmed.newCursor();
+        c.toFirstChild();
+        c.toEndToken();
+        c.insertChars("!");
+        c.toStartDoc();
+        c.toFirstChild();
+        Assert.assertEquals("textone tail <><raw>  end!", c.getTextValue());
+        c.dispose();
+    }
+}
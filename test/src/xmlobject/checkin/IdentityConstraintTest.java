@@ -0,0 +1,170 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The keys, uniques, keyrefs and IDs of an instance are checked the same
+ * when their values are looked up in the selectors in scope, and however
+ * many the values.
+ */
+public class IdentityConstraintTest extends TestCase
+{
+    public IdentityConstraintTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(IdentityConstraintTest.class); }
+
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+        "  <xs:element name='table'>" +
+        "    <xs:complexType><xs:sequence>" +
+        "      <xs:element name='row' minOccurs='0' maxOccurs='unbounded'>" +
+        "        <xs:complexType>" +
+        "          <xs:attribute name='id' type='xs:int'/>" +
+        "          <xs:attribute name='ref' type='xs:int'/>" +
+        "          <xs:attribute name='name' type='xs:string'/>" +
+        "        </xs:complexType>" +
+        "      </xs:element>" +
+        "    </xs:sequence></xs:complexType>" +
+        "    <xs:key name='rowKey'>" +
+        "      <xs:selector xpath='row'/><xs:field xpath='@id'/><xs:field xpath='@name'/>" +
+        "    </xs:key>" +
+        "    <xs:keyref name='rowRef' refer='rowKey'>" +
+        "      <xs:selector xpath='row'/><xs:field xpath='@ref'/><xs:field xpath='@name'/>" +
+        "    </xs:keyref>" +
+        "  </xs:element>" +
+        "  <xs:element name='db'>" +
+        "    <xs:complexType><xs:sequence>" +
+        "      <xs:element name='group' minOccurs='0' maxOccurs='unbounded'>" +
+        "        <xs:complexType><xs:sequence>" +
+        "          <xs:element name='item' minOccurs='0' maxOccurs='unbounded'>" +
+        "            <xs:complexType><xs:attribute name='n' type='xs:decimal'/></xs:complexType>" +
+        "          </xs:element>" +
+        "        </xs:sequence></xs:complexType>" +
+        "        <xs:unique name='itemUnique'>" +
+        "          <xs:selector xpath='item'/><xs:field xpath='@n'/>" +
+        "        </xs:unique>" +
+        "      </xs:element>" +
+        "      <xs:element name='use' minOccurs='0' maxOccurs='unbounded'>" +
+        "        <xs:complexType><xs:attribute name='n' type='xs:decimal'/></xs:complexType>" +
+        "      </xs:element>" +
+        "    </xs:sequence></xs:complexType>" +
+        "    <xs:key name='itemKey'>" +
+        "      <xs:selector xpath='group/item'/><xs:field xpath='@n'/>" +
+        "    </xs:key>" +
+        "    <xs:keyref name='useRef' refer='itemKey'>" +
+        "      <xs:selector xpath='use'/><xs:field xpath='@n'/>" +
+        "    </xs:keyref>" +
+        "  </xs:element>" +
+        "  <xs:element name='ids'>" +
+        "    <xs:complexType><xs:sequence>" +
+        "      <xs:element name='e' minOccurs='0' maxOccurs='unbounded'>" +
+        "        <xs:complexType>" +
+        "          <xs:attribute name='id' type='xs:ID'/>" +
+        "          <xs:attribute name='ref' type='xs:IDREF'/>" +
+        "          <xs:attribute name='refs' type='xs:IDREFS'/>" +
+        "        </xs:complexType>" +
+        "      </xs:element>" +
+        "    </xs:sequence></xs:complexType>" +
+        "  </xs:element>" +
+        "</xs:schema>";
+
+    private static SchemaTypeLoader load() throws Exception
+    {
+        return XmlBeans.loadXsd(new XmlObject[] { XmlObject.Factory.parse(SCHEMA) });
+    }
+
+    private static int errors(SchemaTypeLoader stl, String xml) throws Exception
+    {
+        List errors = new ArrayList();
+        stl.parse(xml, null, null).validate(new XmlOptions().setErrorListener(errors));
+
+        int n = 0;
+        for (int i = 0; i < errors.size(); i++)
+        {
+            if (((XmlError) errors.get(i)).getSeverity() == XmlError.SEVERITY_ERROR)
+                n++;
+        }
+        return n;
+    }
+
+    private static final Object[] CASES = {
+        // a key and a keyref with the same selector
+        "<table/>", new Integer(0),
+        "<table><row id='1' name='a'/><row id='2' name='a' ref='1'/></table>", new Integer(0),
+        "<table><row id='1' name='a' ref='2'/><row id='2' name='a'/></table>", new Integer(0),
+        "<table><row id='1' name='a'/><row id='01' name='a'/></table>", new Integer(1),
+        "<table><row id='1' name='a'/><row id='1' name='b'/></table>", new Integer(0),
+        "<table><row id='1' name='a'/><row id='2' name='b' ref='1'/></table>", new Integer(1),
+        "<table><row id='1'/></table>", new Integer(1),
+        "<table><row id='1' name='a' ref='3'/><row id='1' name='a'/></table>", new Integer(2),
+        // a key over the children, a unique in each child
+        "<db><group><item n='1'/><item n='2'/></group><use n='2.0'/></db>", new Integer(0),
+        "<db><group><item n='1'/></group><group><item n='2'/></group><use n='1'/><use n='2'/></db>", new Integer(0),
+        "<db><group><item n='1'/><item n='1.00'/></group></db>", new Integer(2),
+        "<db><group><item n='1'/></group><group><item n='1'/></group></db>", new Integer(1),
+        "<db><group><item n='1'/></group><use n='3'/></db>", new Integer(1),
+        // IDs
+        "<ids><e id='a'/><e id='b' ref='a' refs='a b'/></ids>", new Integer(0),
+        "<ids><e id='a'/><e id='a'/></ids>", new Integer(1),
+        "<ids><e id='a' ref='b'/></ids>", new Integer(1),
+        "<ids><e id='a' refs='a c d'/></ids>", new Integer(2),
+    };
+
+    public void testConstraints() throws Exception
+    {
+        SchemaTypeLoader stl = load();
+
+        for (int i = 0; i < CASES.length; i += 2)
+        {
+            Assert.assertEquals((String) CASES[i],
+                ((Integer) CASES[i + 1]).intValue(), errors(stl, (String) CASES[i]));
+        }
+    }
+
+    public void testManyRows() throws Exception
+    {
+        SchemaTypeLoader stl = load();
+
+        StringBuffer sb = new StringBuffer("<table>");
+        for (int i = 0; i < 5000; i++)
+            sb.append("<row id='" + i + "' name='r' ref='" + ((i * 7) % 5000) + "'/>");
+
+        Assert.assertEquals(0, errors(stl, sb.toString() + "</table>"));
+
+        // a row with a key seen, a row referring to one not there
+        sb.append("<row id='10' name='r'/><row id='5000' name='r' ref='5001'/></table>");
+        Assert.assertEquals(2, errors(stl, sb.toString()));
+
+        StringBuffer ids = new StringBuffer("<ids>");
+        for (int i = 0; i < 5000; i++)
+            ids.append("<e id='e" + i + "' ref='e" + (4999 - i) + "'/>");
+        ids.append("<e refs='e1 e2 x'/></ids>");
+        Assert.assertEquals(1, errors(stl, ids.toString()));
+    }
+}
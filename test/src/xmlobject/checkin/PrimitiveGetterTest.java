@@ -0,0 +1,216 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlOptions;
+import xbean.test.xmlobject.primitives.ValuesDocument;
+
+/**
+ * The primitive getters read plain values straight from the text, and
+ * must give what the getters of the typed values (xget) give.
+ */
+public class PrimitiveGetterTest extends TestCase
+{
+    public PrimitiveGetterTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(PrimitiveGetterTest.class); }
+
+    private static final String[] INTEGERS = {
+        "0", "7", "-7", "+7", " 42 ", "\n\t-0042\n", "2147483647", "-2147483648",
+        "2147483648", "-2147483649", "123456789012345678", "9223372036854775807",
+        "-9223372036854775808", "9223372036854775808", "1.0", "1e3", "- 1", "", "  ", "x", "+", "-"
+    };
+
+    private static final String[] DOUBLES = {
+        "0", "-0", "0.0", "-0.0", "1", "1.", ".5", "-.5", "+2.5", " 3.25 ", "0.1", "0.3",
+        "123456789012345", "1234567890123456", "9007199254740993", "1e22", "1e23", "1.5e-3",
+        "2E+10", "1e-22", "4.9e-324", "1.7976931348623157E308", "0.000000000000000000000001",
+        "INF", "-INF", "NaN", "1d", "1f", "0x10", "Infinity", "1e", "e1", ".", "", "1..2", "1e1000"
+    };
+
+    private static final String[] BOOLEANS = {
+        "true", "false", "1", "0", " true ", "\nfalse", "TRUE", "yes", "", "2"
+    };
+
+    private static ValuesDocument parse(String xml) throws Exception
+    {
+        return ValuesDocument.Factory.parse(
+            "<values xmlns='http://xbean/test/xmlobject/primitives'" + xml);
+    }
+
+    private static String element(String name, String text)
+    {
+        return "><" + name + ">" + text + "</" + name + "></values>";
+    }
+
+    private static String escape(String text)
+    {
+        return text.replaceAll("\n", "&#10;").replaceAll("\t", "&#9;");
+    }
+
+    /** Returns the value, or the class of the exception, as a String */
+    private static String intValue(ValuesDocument doc, int getter)
+    {
+        try
+        {
+            ValuesDocument.Values v = doc.getValues();
+            switch (getter)
+            {
+                case 0: return "" + v.getInt();
+                case 1: return "" + v.xgetInt().getIntValue();
+                case 2: return "" + v.getLong();
+                case 3: return "" + v.xgetLong().getLongValue();
+                case 4: return "" + v.getCount();
+                default: return "" + v.xgetCount().getIntValue();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            return e.getClass().getName();
+        }
+    }
+
+    private static String doubleValue(ValuesDocument doc, boolean typed, boolean attr)
+    {
+        try
+        {
+            ValuesDocument.Values v = doc.getValues();
+            double d = attr
+                ? (typed ? v.xgetRatio().getDoubleValue() : v.getRatio())
+                : (typed ? v.xgetDouble().getDoubleValue() : v.getDouble());
+            return Long.toHexString(Double.doubleToRawLongBits(d));
+        }
+        catch (RuntimeException e)
+        {
+            return e.getClass().getName();
+        }
+    }
+
+    private static String booleanValue(ValuesDocument doc, boolean typed)
+    {
+        try
+        {
+            ValuesDocument.Values v = doc.getValues();
+            return "" + (typed ? v.xgetBoolean().getBooleanValue() : v.getBoolean());
+        }
+        catch (RuntimeException e)
+        {
+            return e.getClass().getName();
+        }
+    }
+
+    public void testIntegers() throws Exception
+    {
+        for (int i = 0; i < INTEGERS.length; i++)
+        {
+            String text = escape(INTEGERS[i]);
+
+            Assert.assertEquals(text,
+                intValue(parse(element("int", text)), 1),
+                intValue(parse(element("int", text)), 0));
+            Assert.assertEquals(text,
+                intValue(parse(element("long", text)), 3),
+                intValue(parse(element("long", text)), 2));
+            Assert.assertEquals(text,
+                intValue(parse(" count='" + text + "'/>"), 5),
+                intValue(parse(" count='" + text + "'/>"), 4));
+        }
+    }
+
+    public void testDoubles() throws Exception
+    {
+        for (int i = 0; i < DOUBLES.length; i++)
+        {
+            String text = escape(DOUBLES[i]);
+
+            Assert.assertEquals(text,
+                doubleValue(parse(element("double", text)), true, false),
+                doubleValue(parse(element("double", text)), false, false));
+            Assert.assertEquals(text,
+                doubleValue(parse(" ratio='" + text + "'/>"), true, true),
+                doubleValue(parse(" ratio='" + text + "'/>"), false, true));
+        }
+    }
+
+    public void testBooleans() throws Exception
+    {
+        for (int i = 0; i < BOOLEANS.length; i++)
+        {
+            String text = escape(BOOLEANS[i]);
+
+            Assert.assertEquals(text,
+                booleanValue(parse(element("boolean", text)), true),
+                booleanValue(parse(element("boolean", text)), false));
+        }
+    }
+
+    public void testMissingDefaultAndNil() throws Exception
+    {
+        ValuesDocument.Values v = parse("/>").getValues();
+        Assert.assertEquals(0, v.getInt());
+        Assert.assertEquals(0L, v.getLong());
+        Assert.assertEquals(0.0, v.getDouble(), 0.0);
+        Assert.assertTrue(!v.getBoolean());
+        Assert.assertEquals(0, v.getCount());
+        Assert.assertTrue(v.getFlag());
+
+        v = parse("><default-int/></values>").getValues();
+        Assert.assertEquals(7, v.getDefaultInt());
+
+        v = parse(" xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'>" +
+            "<nil-int xsi:nil='true'/></values>").getValues();
+        Assert.assertEquals(v.xgetNilInt().getIntValue(), v.getNilInt());
+    }
+
+    public void testChangedValues() throws Exception
+    {
+        ValuesDocument.Values v = parse(element("int", "5")).getValues();
+        Assert.assertEquals(5, v.getInt());
+
+        v.setInt(6);
+        Assert.assertEquals(6, v.getInt());
+
+        // the typed value exists now, and the text is changed under it
+        XmlCursor c = v.xgetInt().newCursor();
+        c.setTextValue("8");
+        c.dispose();
+        Assert.assertEquals(8, v.getInt());
+
+        v.xgetInt().setIntValue(9);
+        Assert.assertEquals(9, v.getInt());
+    }
+
+    public void testReadOnly() throws Exception
+    {
+        ValuesDocument doc = ValuesDocument.Factory.parse(
+            "<values xmlns='http://xbean/test/xmlobject/primitives' count='3' ratio='0.5'>" +
+            "<int>1</int><long>2</long><double>1.5</double><boolean>true</boolean></values>",
+            new XmlOptions().setLoadReadOnly());
+
+        ValuesDocument.Values v = doc.getValues();
+        Assert.assertEquals(1, v.getInt());
+        Assert.assertEquals(2L, v.getLong());
+        Assert.assertEquals(1.5, v.getDouble(), 0.0);
+        Assert.assertTrue(v.getBoolean());
+        Assert.assertEquals(3, v.getCount());
+        Assert.assertEquals(0.5, v.getRatio(), 0.0);
+    }
+}
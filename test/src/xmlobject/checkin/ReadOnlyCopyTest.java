@@ -0,0 +1,170 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlOptions;
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+import com.easypo.XmlLineItemBean;
+
+public class ReadOnlyCopyTest extends TestCase
+{
+    public ReadOnlyCopyTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(ReadOnlyCopyTest.class); }
+
+    private static final String PO =
+        "<purchase-order xmlns='http://openuri.org/easypo'>" +
+        "<customer><name>David Bau</name><address>Gladwyne, PA</address></customer>" +
+        "<date>2003-01-07T14:16:00-05:00</date>" +
+        "<line-item><description>Burnham's Celestial Handbook, Vol 1</description>" +
+        "<per-unit-ounces>5</per-unit-ounces><price>21.79</price><quantity>2</quantity></line-item>" +
+        "<line-item><description>Burnham's Celestial Handbook, Vol 2</description>" +
+        "<per-unit-ounces>5</per-unit-ounces><price>19.89</price><quantity>2</quantity></line-item>" +
+        "<shipper><name>UPS</name><per-ounce-rate>0.74</per-ounce-rate></shipper>" +
+        "</purchase-order>";
+
+    private static XmlPurchaseOrderDocumentBean readOnlyCopy() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.parse(PO);
+        return (XmlPurchaseOrderDocumentBean) doc.copy(new XmlOptions().setCopyReadOnly());
+    }
+
+    public void testRead() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = readOnlyCopy();
+        PurchaseOrder order = doc.getPurchaseOrder();
+
+        Assert.assertEquals("David Bau", order.getCustomer().getName());
+        Assert.assertEquals(2, order.sizeOfLineItemArray());
+        Assert.assertEquals(new BigDecimal("19.89"), order.getLineItemArray(1).getPrice());
+        Assert.assertEquals(new BigInteger("2"), order.getLineItemArray(1).getQuantity());
+        Assert.assertTrue(order.isSetShipper());
+        Assert.assertTrue(doc.validate());
+
+        XmlCursor c = order.newCursor();
+        try
+        {
+            Assert.assertTrue(c.toChild(new javax.xml.namespace.QName("http://openuri.org/easypo", "shipper")));
+            Assert.assertEquals("UPS0.74", c.getTextValue());
+        }
+        finally
+        {
+            c.dispose();
+        }
+    }
+
+    public void testWriteThrows() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = readOnlyCopy();
+        PurchaseOrder order = doc.getPurchaseOrder();
+
+        try
+        {
+            order.getLineItemArray(0).setQuantity(new BigInteger("3"));
+            Assert.fail("typed setter on a read-only copy");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        try
+        {
+            order.addNewLineItem();
+            Assert.fail("element added to a read-only copy");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+
+        XmlCursor c = order.newCursor();
+        try
+        {
+            c.toFirstChild();
+            c.removeXml();
+            Assert.fail("cursor removed a node of a read-only copy");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        finally
+        {
+            c.dispose();
+        }
+
+        Assert.assertEquals(new BigInteger("2"), order.getLineItemArray(0).getQuantity());
+        Assert.assertEquals(2, order.sizeOfLineItemArray());
+    }
+
+    public void testSourceStaysWritable() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = XmlPurchaseOrderDocumentBean.Factory.parse(PO);
+        XmlPurchaseOrderDocumentBean copy =
+            (XmlPurchaseOrderDocumentBean) doc.copy(new XmlOptions().setCopyReadOnly());
+
+        doc.getPurchaseOrder().getLineItemArray(0).setQuantity(new BigInteger("7"));
+
+        Assert.assertEquals(new BigInteger("7"), doc.getPurchaseOrder().getLineItemArray(0).getQuantity());
+        Assert.assertEquals(new BigInteger("2"), copy.getPurchaseOrder().getLineItemArray(0).getQuantity());
+    }
+
+    public void testConcurrentReaders() throws Exception
+    {
+        final XmlPurchaseOrderDocumentBean doc = readOnlyCopy();
+        final Throwable[] failure = new Throwable[1];
+
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int n = 0; n < 500; n++)
+                        {
+                            XmlLineItemBean[] items = doc.getPurchaseOrder().getLineItemArray();
+                            Assert.assertEquals(2, items.length);
+                            Assert.assertEquals(new BigDecimal("21.79"), items[0].getPrice());
+                            Assert.assertTrue(doc.xmlText().indexOf("Vol 2") > 0);
+                        }
+                    }
+                    catch (Throwable t)
+                    {
+                        synchronized (failure) { failure[0] = t; }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        if (failure[0] != null)
+            throw new RuntimeException(failure[0].toString());
+    }
+}
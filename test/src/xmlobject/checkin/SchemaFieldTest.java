@@ -0,0 +1,167 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlInt;
+import org.apache.xmlbeans.impl.values.XmlObjectBase;
+import xbean.test.xmlobject.primitives.RowsDocument;
+
+/**
+ * The rows before the separator and the rows after it are different fields,
+ * with their own default and nillability; each row must get the field of
+ * its position, however wide the parent, and after the rows change.
+ */
+public class SchemaFieldTest extends TestCase
+{
+    public SchemaFieldTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(SchemaFieldTest.class); }
+
+    private static RowsDocument parse(int before, int after) throws Exception
+    {
+        StringBuffer sb = new StringBuffer(
+            "<rows xmlns='http://xbean/test/xmlobject/primitives'>");
+        for (int i = 0; i < before; i++)
+            sb.append("<row/>");
+        sb.append("<sep/>");
+        for (int i = 0; i < after; i++)
+            sb.append("<row/>");
+        sb.append("</rows>");
+
+        return RowsDocument.Factory.parse(sb.toString());
+    }
+
+    /** the defaults of the rows, as a String of 1s and 2s */
+    private static String defaults(RowsDocument.Rows rows)
+    {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < rows.sizeOfRowArray(); i++)
+            sb.append(rows.xgetRowArray(i).getIntValue());
+        return sb.toString();
+    }
+
+    private static String expected(int before, int after)
+    {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < before; i++)
+            sb.append('1');
+        for (int i = 0; i < after; i++)
+            sb.append('2');
+        return sb.toString();
+    }
+
+    private static boolean nillable(XmlInt row)
+    {
+        return ((XmlObjectBase) row).isNillable();
+    }
+
+    public void testPositions() throws Exception
+    {
+        int[][] sizes = { { 0, 0 }, { 3, 2 }, { 100, 0 }, { 0, 100 }, { 250, 250 } };
+
+        for (int i = 0; i < sizes.length; i++)
+        {
+            RowsDocument.Rows rows = parse(sizes[i][0], sizes[i][1]).getRows();
+            Assert.assertEquals(expected(sizes[i][0], sizes[i][1]), defaults(rows));
+        }
+
+        RowsDocument.Rows rows = parse(100, 100).getRows();
+        Assert.assertTrue(!nillable(rows.xgetRowArray(99)));
+        Assert.assertTrue(nillable(rows.xgetRowArray(100)));
+    }
+
+    public void testChangedRows() throws Exception
+    {
+        RowsDocument.Rows rows = parse(100, 100).getRows();
+        Assert.assertEquals(expected(100, 100), defaults(rows));
+
+        // appended rows follow the separator
+        for (int i = 0; i < 50; i++)
+            rows.addNewRow();
+        Assert.assertEquals(expected(100, 150), defaults(rows));
+
+        // and so do rows inserted after it
+        rows.insertNewRow(120);
+        rows.insertNewRow(0);
+        Assert.assertEquals(expected(101, 151), defaults(rows));
+
+        rows.removeRow(0);
+        rows.removeRow(0);
+        Assert.assertEquals(expected(99, 151), defaults(rows));
+
+        // without the separator, all the rows are before it; the values
+        // of the rows already read keep the default they were read with
+        XmlCursor c = rows.newCursor();
+        c.toChild(rows.getDomNode().getFirstChild().getNamespaceURI(), "sep");
+        c.removeXml();
+        c.dispose();
+
+        rows.addNewRow();
+        Assert.assertEquals(1, rows.xgetRowArray(250).getIntValue());
+        Assert.assertTrue(!nillable(rows.xgetRowArray(250)));
+    }
+
+    public void testFrozen() throws Exception
+    {
+        RowsDocument doc = parse(200, 200);
+        XmlBeans.freeze(doc);
+
+        final RowsDocument.Rows rows = doc.getRows();
+        final String expected = expected(200, 200);
+        final Throwable[] failure = new Throwable[1];
+
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < 20; i++)
+                            Assert.assertEquals(expected, defaults(rows));
+                    }
+                    catch (Throwable e)
+                    {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (int t = 0; t < threads.length; t++)
+            threads[t].join();
+
+        if (failure[0] != null)
+            throw new RuntimeException(failure[0]);
+    }
+
+    public void testWideParent() throws Exception
+    {
+        // touching each row once is linear in the number of rows
+        RowsDocument.Rows rows = parse(20000, 20000).getRows();
+        Assert.assertEquals(expected(20000, 20000), defaults(rows));
+    }
+}
@@ -24,7 +24,9 @@ import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
 import com.easypo.XmlLineItemBean;
 import com.easypo.XmlShipperBean;
 import com.easypo.XmlPurchaseOrderDocumentBean;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptionCharEscapeMap;
 import org.apache.xmlbeans.SchemaTypeLoader;
 import org.apache.xmlbeans.XmlBeans;
 import org.apache.xmlbeans.XmlOptions;
@@ -39,6 +41,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ObjectInputStream;
 import java.io.File;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -141,6 +144,110 @@ public class SerializationTests extends TestCase
         Assert.assertEquals(new BigDecimal("0.74"), neworder.getShipper().getPerOunceRate());
     }
 
+    private static byte[] readFully(java.io.InputStream in) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        for (int n; (n = in.read(buf)) >= 0; )
+            out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+
+    public void testSaveToOutputStream() throws Exception
+    {
+        // Characters of one, two, three and four bytes in UTF-8, unpaired
+        // surrogates and enough of them to fill several buffers
+        StringBuffer sb = new StringBuffer("<doc a='x&amp;\u00e9'>");
+        for (int i = 0; i < 2000; i++)
+            sb.append("<e i='" + i + "'>a\u00e9\u20ac&lt;<![CDATA[]]>]]&gt;</e>");
+        sb.append("<e/><!--\u00ff--></doc>");
+        XmlObject doc = XmlObject.Factory.parse(sb.toString());
+
+        // The parser does not take surrogates
+        XmlCursor c = doc.newCursor();
+        c.toFirstChild();
+        c.toLastChild();
+        c.setTextValue("\ud834\udd1e\udd1e.\ud834");
+        c.dispose();
+
+        String[] encodings = { null, "UTF-8", "US-ASCII", "ISO-8859-1", "UTF-16" };
+
+        for (int i = 0; i < encodings.length; i++)
+        {
+            for (int pretty = 0; pretty < 2; pretty++)
+            {
+                XmlOptions options = new XmlOptions();
+                if (encodings[i] != null)
+                    options.setCharacterEncoding(encodings[i]);
+                if (pretty == 1)
+                    options.setSavePrettyPrint();
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                doc.save(out, options);
+
+                // newInputStream still encodes through a Writer
+                byte[] expected = readFully(doc.newInputStream(options));
+
+                Assert.assertTrue(encodings[i] + " " + pretty,
+                    java.util.Arrays.equals(expected, out.toByteArray()));
+            }
+        }
+    }
+
+    public void testSaveToWriter() throws Exception
+    {
+        // Text long enough, and with enough entities, to be saved as CDATA
+        // with the thresholds used below, and markup the escaping applies to
+        XmlObject doc = XmlObject.Factory.parse(
+            "<a:doc xmlns:a='urn:a' xmlns:b='urn:b' b:at='x&quot;y&lt;z\u00e9'>" +
+            "<a:e>&lt;&lt;&lt;&lt;&lt;&lt;&lt;&lt; ]]&gt; &amp; x\u00e9\r</a:e>" +
+            "<e xmlns='urn:c'>]]&gt;<!--a-b-->x<?pi a?b?>\u00e9<f/></e>" +
+            "<b:e>  text  </b:e></a:doc>");
+
+        // The parser does not take these, the savers have to fix them up
+        XmlCursor c = doc.newCursor();
+        c.toFirstChild();
+        c.toFirstChild();
+        c.insertComment("a--b-");
+        c.insertProcInst("pi", "?>\u0001>");
+        c.insertChars("\u0001]]>");
+
+        XmlOptionCharEscapeMap escapes = new XmlOptionCharEscapeMap();
+        escapes.addMapping('\u00e9', XmlOptionCharEscapeMap.HEXADECIMAL);
+
+        java.util.Map prefixes = new java.util.HashMap();
+        prefixes.put("urn:c", "c");
+
+        XmlOptions[] options = new XmlOptions[10];
+        for (int i = 0; i < options.length; i++)
+            options[i] = new XmlOptions();
+
+        options[1].setSavePrettyPrint();
+        options[2].setSaveCDataLengthThreshold(5).setSaveCDataEntityCountThreshold(2);
+        options[3].setSaveSubstituteCharacters(escapes);
+        options[4].setSaveInner();
+        options[5].setSaveOuter();
+        options[6].setSaveSuggestedPrefixes(prefixes).setSaveAggressiveNamespaces();
+        options[7].setSaveNamespacesFirst().setSavePrettyPrint().setSavePrettyPrintIndent(1);
+        options[8].setSaveSyntheticDocumentElement(new javax.xml.namespace.QName("urn:d", "synth"));
+        options[9].setSaveUseOpenFrag().setSaveCDataLengthThreshold(0).setSaveCDataEntityCountThreshold(0);
+
+        c.toParent();
+        XmlObject[] objects = { doc, c.getObject() };
+        c.dispose();
+
+        for (int i = 0; i < objects.length; i++)
+        {
+            for (int j = 0; j < options.length; j++)
+            {
+                StringWriter out = new StringWriter();
+                objects[i].save(out, options[j]);
+
+                Assert.assertEquals(i + " " + j, objects[i].xmlText(options[j]), out.toString());
+            }
+        }
+    }
+
     public void testWsdlSerialization()
     {
         // test for TextSaver
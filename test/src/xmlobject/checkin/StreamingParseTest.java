@@ -0,0 +1,269 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xmlbeans.SimpleValue;
+import org.apache.xmlbeans.XmlAnySimpleType;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlElementHandler;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlInt;
+import org.apache.xmlbeans.XmlObject;
+import com.easypo.XmlLineItemBean;
+
+public class StreamingParseTest extends TestCase
+{
+    public StreamingParseTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(StreamingParseTest.class); }
+
+    private static final String NS = "http://openuri.org/easypo";
+
+    private static final QName LINE_ITEM = new QName(NS, "line-item");
+
+    private static final String PO =
+        "<po:purchase-order xmlns:po='" + NS + "' xmlns:x='urn:x'>" +
+        "<po:customer><po:name>David Bau</po:name><po:address>Gladwyne, PA</po:address></po:customer>" +
+        "<po:line-item><po:description>Vol 1</po:description>" +
+        "<po:per-unit-ounces>5</po:per-unit-ounces><po:price>21.79</po:price><po:quantity>2</po:quantity></po:line-item>" +
+        "<po:line-item><po:description>Vol 2</po:description>" +
+        "<po:per-unit-ounces>5</po:per-unit-ounces><po:price>19.89</po:price><po:quantity>2</po:quantity></po:line-item>" +
+        "<po:line-item><po:description>Vol 3</po:description>" +
+        "<po:per-unit-ounces>5</po:per-unit-ounces><po:price>17.99</po:price><po:quantity>1</po:quantity></po:line-item>" +
+        "</po:purchase-order>";
+
+    private static XMLStreamReader reader(String xml) throws Exception
+    {
+        return XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+    }
+
+    private static class Collector implements XmlElementHandler
+    {
+        List elements = new ArrayList();
+        int max = Integer.MAX_VALUE;
+
+        public boolean element(XmlObject element)
+        {
+            elements.add(element);
+            return elements.size() < max;
+        }
+    }
+
+    public void testTypedElements() throws Exception
+    {
+        Collector collector = new Collector();
+        XmlBeans.parseElements(reader(PO), LINE_ITEM, XmlLineItemBean.type, collector, null);
+
+        Assert.assertEquals(3, collector.elements.size());
+
+        XmlLineItemBean item = (XmlLineItemBean) collector.elements.get(1);
+        Assert.assertEquals("Vol 2", item.getDescription());
+        Assert.assertEquals(new BigDecimal("19.89"), item.getPrice());
+        Assert.assertTrue(item.validate());
+    }
+
+    public void testStop() throws Exception
+    {
+        Collector collector = new Collector();
+        collector.max = 2;
+
+        XMLStreamReader xsr = reader(PO);
+        XmlBeans.parseElements(xsr, LINE_ITEM, XmlLineItemBean.type, collector, null);
+
+        Assert.assertEquals(2, collector.elements.size());
+        Assert.assertTrue(xsr.isEndElement());
+        Assert.assertEquals(LINE_ITEM, xsr.getName());
+    }
+
+    public void testStartedInside() throws Exception
+    {
+        XMLStreamReader xsr = reader(
+            "<batches><batch><po:line-item xmlns:po='" + NS + "'/><po:line-item xmlns:po='" + NS + "'/></batch>" +
+            "<batch><po:line-item xmlns:po='" + NS + "'/></batch></batches>");
+
+        // one batch at a time, each parse ending at the end of its batch
+        int[] sizes = { 2, 1 };
+        for (int i = 0; i < sizes.length; i++)
+        {
+            while (!(xsr.isStartElement() && xsr.getLocalName().equals("batch")))
+                xsr.next();
+            xsr.next();
+
+            Collector collector = new Collector();
+            XmlBeans.parseElements(xsr, LINE_ITEM, XmlLineItemBean.type, collector, null);
+
+            Assert.assertEquals(sizes[i], collector.elements.size());
+            Assert.assertTrue(xsr.isEndElement());
+            Assert.assertEquals("batch", xsr.getLocalName());
+        }
+    }
+
+    public void testPathAndNamespaces() throws Exception
+    {
+        Collector collector = new Collector();
+        QName[] path = new QName[] { new QName(NS, "purchase-order"), new QName(NS, "customer") };
+        XmlBeans.parseElements(reader(PO), path, null, collector, null);
+
+        Assert.assertEquals(1, collector.elements.size());
+
+        XmlCursor c = ((XmlObject) collector.elements.get(0)).newCursor();
+        try
+        {
+            Assert.assertTrue(c.toFirstChild());
+            Assert.assertEquals(new QName(NS, "customer"), c.getName());
+            Assert.assertEquals("urn:x", c.namespaceForPrefix("x"));
+            Assert.assertEquals("David BauGladwyne, PA", c.getTextValue());
+        }
+        finally
+        {
+            c.dispose();
+        }
+
+        // the path has to start at the document element
+        collector = new Collector();
+        XmlBeans.parseElements(reader(PO), new QName[] { LINE_ITEM }, null, collector, null);
+        Assert.assertEquals(0, collector.elements.size());
+    }
+
+    private static final String FEED =
+        "<feed xmlns:x='urn:x'>" +
+        "<order id='1'><x:total>10</x:total><note/></order>" +
+        "<group><order id='2'><x:total>20</x:total></order></group>" +
+        "<order id='3' x:rush='true'><x:total>30</x:total></order>" +
+        "</feed>";
+
+    /** the text of each item a path selects from a stream */
+    private static String select(String xml, String path) throws Exception
+    {
+        Collector collector = new Collector();
+        XmlBeans.selectPath(reader(xml), path, null, collector, null);
+
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < collector.elements.size(); i++)
+        {
+            Object o = collector.elements.get(i);
+            sb.append(o instanceof SimpleValue
+                ? ((SimpleValue) o).getStringValue()
+                : ((XmlObject) o).newCursor().getTextValue()).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    /** the text of each item a path selects from the loaded document */
+    private static String selectLoaded(String xml, String path) throws Exception
+    {
+        XmlCursor c = XmlObject.Factory.parse(xml).newCursor();
+        c.selectPath(path);
+
+        StringBuffer sb = new StringBuffer();
+        while (c.toNextSelection())
+            sb.append(c.getTextValue()).append(' ');
+
+        c.dispose();
+        return sb.toString().trim();
+    }
+
+    public void testSelectPath() throws Exception
+    {
+        String[] paths = {
+            "$this/feed/order",
+            "$this//order",
+            "$this//order/@id",
+            "$this/feed/*/@id",
+            "declare namespace x='urn:x'; $this//x:total",
+            "declare namespace x='urn:x'; $this//order/@x:rush",
+            "$this//order/@*",
+            "$this//group | $this/feed/order/@id",
+            "./feed/group/order/@id",
+            "$this//missing",
+        };
+
+        for (int i = 0; i < paths.length; i++)
+            Assert.assertEquals(paths[i], selectLoaded(FEED, paths[i]), select(FEED, paths[i]));
+
+        // an element selected is handed over whole
+        Assert.assertEquals("20", select(FEED, "$this//group | $this//group/order"));
+        Assert.assertEquals("102030", select(FEED, "$this"));
+    }
+
+    public void testSelectPathTypes() throws Exception
+    {
+        Collector collector = new Collector();
+        XmlBeans.selectPath(reader(FEED), "$this//order/@id", XmlInt.type, collector, null);
+
+        Assert.assertEquals(3, collector.elements.size());
+        Assert.assertEquals(2, ((XmlInt) collector.elements.get(1)).getIntValue());
+
+        collector = new Collector();
+        XmlBeans.selectPath(reader(FEED), "$this//order/@id", null, collector, null);
+        Assert.assertTrue(collector.elements.get(0) instanceof XmlAnySimpleType);
+
+        collector = new Collector();
+        XmlBeans.selectPath(reader(PO),
+            "declare namespace po='" + NS + "'; $this/po:purchase-order/po:line-item",
+            XmlLineItemBean.type, collector, null);
+
+        Assert.assertEquals(3, collector.elements.size());
+        Assert.assertEquals("Vol 3", ((XmlLineItemBean) collector.elements.get(2)).getDescription());
+    }
+
+    public void testSelectPathStop() throws Exception
+    {
+        Collector collector = new Collector();
+        collector.max = 2;
+
+        XMLStreamReader xsr = reader(FEED);
+        XmlBeans.selectPath(xsr, "$this//order/@id", null, collector, null);
+
+        Assert.assertEquals(2, collector.elements.size());
+        // on the end of the second order, which holds nothing selected
+        Assert.assertTrue(xsr.isEndElement());
+        Assert.assertEquals("order", xsr.getLocalName());
+        Assert.assertEquals(XMLStreamReader.END_ELEMENT, xsr.next());
+        Assert.assertEquals("group", xsr.getLocalName());
+    }
+
+    public void testSelectPathUnsupported() throws Exception
+    {
+        String[] paths = { "$this//order[1]", "$this//.", "$this/.." };
+
+        for (int i = 0; i < paths.length; i++)
+        {
+            try
+            {
+                XmlBeans.selectPath(reader(FEED), paths[i], null, new Collector(), null);
+                Assert.fail(paths[i]);
+            }
+            catch (XmlException e)
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*   Copyright 2004 The Apache Software Foundation
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package xmlobject.checkin;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.Assert;
+
+import java.math.BigDecimal;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlDecimal;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.values.XmlValueDisconnectedException;
+import com.easypo.XmlLineItemBean;
+import com.easypo.XmlPurchaseOrderDocumentBean;
+import com.easypo.XmlPurchaseOrderDocumentBean.PurchaseOrder;
+
+public class ValueCacheTest extends TestCase
+{
+    public ValueCacheTest(String name) { super(name); }
+    public static Test suite() { return new TestSuite(ValueCacheTest.class); }
+
+    private static final int ITEMS = 200;
+
+    private static final QName PRICE = new QName("http://openuri.org/easypo", "price");
+
+    private static XmlPurchaseOrderDocumentBean parse(int cacheSize) throws Exception
+    {
+        StringBuffer sb = new StringBuffer("<purchase-order xmlns='http://openuri.org/easypo'>");
+        sb.append("<customer><name>David Bau</name><address>Gladwyne, PA</address></customer>");
+        for (int i = 0; i < ITEMS; i++)
+        {
+            sb.append("<line-item><description>Item ").append(i).append("</description>");
+            sb.append("<per-unit-ounces>5</per-unit-ounces><price>").append(i).append(".25</price>");
+            sb.append("<quantity>1</quantity></line-item>");
+        }
+        sb.append("</purchase-order>");
+
+        return XmlPurchaseOrderDocumentBean.Factory.parse(sb.toString(),
+            new XmlOptions().setLoadValueCacheSize(cacheSize));
+    }
+
+    private static BigDecimal total(PurchaseOrder order)
+    {
+        BigDecimal total = new BigDecimal(0);
+        for (int i = 0; i < order.sizeOfLineItemArray(); i++)
+            total = total.add(order.getLineItemArray(i).getPrice());
+        return total;
+    }
+
+    public void testValuesAreReadAgain() throws Exception
+    {
+        PurchaseOrder order = parse(8).getPurchaseOrder();
+
+        // sum of i + 0.25 over all the items
+        BigDecimal expected = new BigDecimal(ITEMS * (ITEMS - 1) / 2).add(
+            new BigDecimal("0.25").multiply(new BigDecimal(ITEMS)));
+
+        Assert.assertEquals(expected, total(order));
+        Assert.assertEquals(expected, total(order));
+        Assert.assertEquals("Item 150", order.getLineItemArray(150).getDescription());
+    }
+
+    public void testHeldObjectKeepsIdentityAndValue() throws Exception
+    {
+        PurchaseOrder order = parse(4).getPurchaseOrder();
+
+        XmlLineItemBean item = order.getLineItemArray(5);
+        XmlDecimal price = item.xgetPrice();
+        Assert.assertEquals(new BigDecimal("5.25"), price.getBigDecimalValue());
+
+        XmlCursor c = item.newCursor();
+        Assert.assertTrue(c.toChild(PRICE));
+
+        total(order);
+        Assert.assertTrue(price == order.getLineItemArray(5).xgetPrice());
+
+        // the text changes while the price is not held by the document
+        total(order);
+        c.setTextValue("1.50");
+        c.dispose();
+        total(order);
+
+        Assert.assertEquals(new BigDecimal("1.50"), price.getBigDecimalValue());
+        Assert.assertEquals(new BigDecimal("1.50"), item.getPrice());
+    }
+
+    public void testSetters() throws Exception
+    {
+        PurchaseOrder order = parse(4).getPurchaseOrder();
+
+        XmlDecimal held = order.getLineItemArray(0).xgetPrice();
+
+        for (int i = 0; i < ITEMS; i++)
+            order.getLineItemArray(i).setPrice(new BigDecimal(1));
+
+        held.setBigDecimalValue(new BigDecimal(2));
+
+        Assert.assertEquals(new BigDecimal(ITEMS + 1), total(order));
+        Assert.assertEquals(new BigDecimal(2), order.getLineItemArray(0).getPrice());
+    }
+
+    public void testRemovedWhileNotHeld() throws Exception
+    {
+        PurchaseOrder order = parse(4).getPurchaseOrder();
+
+        XmlDecimal price = order.getLineItemArray(5).xgetPrice();
+        total(order);
+
+        order.removeLineItem(5);
+
+        try
+        {
+            price.getBigDecimalValue();
+            Assert.fail("value of a removed element");
+        }
+        catch (XmlValueDisconnectedException e)
+        {
+        }
+
+        Assert.assertEquals(ITEMS - 1, order.sizeOfLineItemArray());
+        Assert.assertEquals(new BigDecimal("6.25"), order.getLineItemArray(5).getPrice());
+    }
+
+    public void testFreeze() throws Exception
+    {
+        XmlPurchaseOrderDocumentBean doc = parse(4);
+        PurchaseOrder order = doc.getPurchaseOrder();
+
+        XmlDecimal price = order.getLineItemArray(5).xgetPrice();
+        total(order);
+
+        XmlBeans.freeze(doc);
+
+        Assert.assertTrue(price == order.getLineItemArray(5).xgetPrice());
+        Assert.assertEquals(new BigDecimal("5.25"), price.getBigDecimalValue());
+        total(order);
+    }
+
+    public void testBadSize() throws Exception
+    {
+        try
+        {
+            parse(0);
+            Assert.fail("value cache of size 0");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+}